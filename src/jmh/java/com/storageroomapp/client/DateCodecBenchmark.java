@@ -0,0 +1,68 @@
+package com.storageroomapp.client;
+
+import java.util.Calendar;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.storageroomapp.client.util.StorageRoomUtil;
+
+/**
+ * Measures the StorageRoom date and time codecs. Run with -t to check
+ * that throughput scales across threads.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@Threads(1)
+@State(Scope.Thread)
+public class DateCodecBenchmark {
+
+	private String timeStr = "2013-01-10T21:17:00Z";
+	private String dateStr = "2013-01-10";
+	private long millis;
+	private Calendar cal;
+
+	@Setup
+	public void setup() {
+		millis = StorageRoomUtil.storageRoomTimeStringToEpochMillis(timeStr);
+		cal = StorageRoomUtil.epochMillisToCalendar(millis);
+	}
+
+	@Benchmark
+	public long parseTimeToEpochMillis() {
+		return StorageRoomUtil.storageRoomTimeStringToEpochMillis(timeStr);
+	}
+
+	@Benchmark
+	public Calendar parseTimeToCalendar() {
+		return StorageRoomUtil.storageRoomTimeStringToCalendar(timeStr);
+	}
+
+	@Benchmark
+	public long parseDateToEpochMillis() {
+		return StorageRoomUtil.storageRoomDateStringToEpochMillis(dateStr);
+	}
+
+	@Benchmark
+	public String formatTime() {
+		return StorageRoomUtil.epochMillisToStorageRoomTimeString(millis);
+	}
+
+	@Benchmark
+	public String formatCalendarAsTime() {
+		return StorageRoomUtil.calendarToStorageRoomTimeString(cal);
+	}
+}
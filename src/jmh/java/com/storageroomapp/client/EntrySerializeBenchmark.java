@@ -0,0 +1,61 @@
+package com.storageroomapp.client;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Measures writing entries back out as JSON, as done for every insert
+ * and update.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class EntrySerializeBenchmark {
+
+	private List<Entry> entries;
+	private OutputStream sink = OutputStream.nullOutputStream();
+
+	@Setup
+	public void setup() {
+		Collection collection = Fixtures.loadCollection(Application.getInstance("bench"));
+		entries = PageOfEntries.parseJSON(collection, Fixtures.load("page-100.json")).asList();
+	}
+
+	@Benchmark
+	public void toJSONStringDataFields(Blackhole bh) {
+		for (Entry entry : entries) {
+			bh.consume(entry.toJSONString(true));
+		}
+	}
+
+	@Benchmark
+	public void toJSONStringAllFields(Blackhole bh) {
+		for (Entry entry : entries) {
+			bh.consume(entry.toJSONString(false));
+		}
+	}
+
+	@Benchmark
+	public void writeJSONDataFields() throws IOException {
+		for (Entry entry : entries) {
+			entry.writeJSON(sink, true);
+		}
+	}
+}
@@ -0,0 +1,30 @@
+package com.storageroomapp.client;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Loads the checked-in JSON fixtures under src/jmh/resources/fixtures
+ */
+class Fixtures {
+
+	static String load(String name) {
+		try (InputStream is = Fixtures.class.getResourceAsStream("/fixtures/"+name)) {
+			if (is == null) {
+				throw new IllegalStateException("Missing benchmark fixture ["+name+"]");
+			}
+			return new String(is.readAllBytes(), StandardCharsets.UTF_8);
+		} catch (IOException ioe) {
+			throw new IllegalStateException("Could not read benchmark fixture ["+name+"]", ioe);
+		}
+	}
+
+	static byte[] loadBytes(String name) {
+		return load(name).getBytes(StandardCharsets.UTF_8);
+	}
+
+	static Collection loadCollection(Application app) {
+		return Collection.parseJson(app, load("collection.json"));
+	}
+}
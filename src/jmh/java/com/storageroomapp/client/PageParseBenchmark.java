@@ -0,0 +1,77 @@
+package com.storageroomapp.client;
+
+import java.io.ByteArrayInputStream;
+import java.util.concurrent.TimeUnit;
+
+import org.json.simple.JSONArray;
+import org.json.simple.JSONObject;
+import org.json.simple.JSONValue;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import com.storageroomapp.client.field.Fields;
+
+/**
+ * Measures binding a page of entries from JSON, both from the response 
+ * stream and from a String, and the per-entry field binding on its own.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class PageParseBenchmark {
+
+	@Param({"20", "100"})
+	public int pageSize;
+
+	private Collection collection;
+	private String pageJson;
+	private byte[] pageBytes;
+	private JSONObject[] entryObjects;
+
+	@Setup
+	public void setup() {
+		collection = Fixtures.loadCollection(Application.getInstance("bench"));
+		pageJson = Fixtures.load("page-"+pageSize+".json");
+		pageBytes = Fixtures.loadBytes("page-"+pageSize+".json");
+
+		JSONObject root = (JSONObject)JSONValue.parse(pageJson);
+		JSONArray resources = (JSONArray)((JSONObject)root.get("array")).get("resources");
+		entryObjects = new JSONObject[resources.size()];
+		for (int i = 0; i < entryObjects.length; i++) {
+			entryObjects[i] = (JSONObject)resources.get(i);
+		}
+	}
+
+	@Benchmark
+	public PageOfEntries parsePageFromStream() {
+		return PageOfEntries.parseJSON(collection, new ByteArrayInputStream(pageBytes));
+	}
+
+	@Benchmark
+	public PageOfEntries parsePageFromString() {
+		return PageOfEntries.parseJSON(collection, pageJson);
+	}
+
+	@Benchmark
+	public void parseFieldsInEntryJsonObject(Blackhole bh) {
+		Fields fields = collection.getFields();
+		for (JSONObject entryObject : entryObjects) {
+			Entry entry = new Entry(collection);
+			fields.parseFieldsInEntryJsonObject(entryObject, entry);
+			bh.consume(entry);
+		}
+	}
+}
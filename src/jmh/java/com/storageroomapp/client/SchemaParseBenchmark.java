@@ -0,0 +1,41 @@
+package com.storageroomapp.client;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures parsing the collection definitions of a large account
+ * (100 collections of 20 fields each).
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class SchemaParseBenchmark {
+
+	private Application application;
+	private String collectionsJson;
+
+	@Setup
+	public void setup() {
+		application = Application.getInstance("bench");
+		collectionsJson = Fixtures.load("collections-100.json");
+	}
+
+	@Benchmark
+	public Collections parseCollections() {
+		return Collections.parseJson(application, collectionsJson);
+	}
+}
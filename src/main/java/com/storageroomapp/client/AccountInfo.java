@@ -49,6 +49,9 @@ public class AccountInfo {
 	protected String collectionsUrl = null; // e.g. "http://api.storageroomapp.com/accounts/50ef2fcc0f6602017a000787/collections"
 	protected String deletedEntriesUrl = null; // e.g. "http://api.storageroomapp.com/accounts/50ef2fcc0f6602017a000787/collections"
 	
+	// the json this object was parsed from, kept for SchemaSnapshot
+	protected JSONObject sourceJson = null;
+	
 	/**
 	 * Constructor. Since StorageRoom does not support creating Accounts through the API,
 	 * this is protected and can only be created via deserializing json.
@@ -102,6 +105,7 @@ public class AccountInfo {
 	 */
 	static public AccountInfo parseJsonObject(JSONObject jsonObj) {
 		AccountInfo accountInfo = new AccountInfo();
+		accountInfo.sourceJson = jsonObj;
 		
 		// REQUIRED PROPERTIES
 		accountInfo.name = JsonSimpleUtil.parseJsonStringValue(jsonObj, "name");
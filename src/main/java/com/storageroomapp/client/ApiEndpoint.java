@@ -0,0 +1,153 @@
+/*
+Copyright 2013 Peter Laird
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+*/
+package com.storageroomapp.client;
+
+import java.net.URI;
+import java.net.URISyntaxException;
+
+import com.storageroomapp.client.util.StorageRoomUtil;
+
+/**
+ * Encapsulates where an Application sends its API traffic. The members you
+ * can set in this class are raw values used to build URLs.
+ * <p>
+ * The defaults are the public StorageRoom API. Pointing the host at a 
+ * regional endpoint, a caching reverse proxy or a local stand-in works
+ * because URLs the server returns for the public API host (the hypermedia
+ * links in every response) are rewritten to this endpoint before use.
+ * The same rewrite upgrades those links to https when the scheme is https.
+ */
+public class ApiEndpoint {
+
+	/**
+	 * "http" or "https"
+	 */
+	public String scheme = "http";
+
+	/**
+	 * Host name or address of the API, or of the proxy fronting it
+	 */
+	public String host = StorageRoomUtil.API_HOST;
+
+	/**
+	 * Port of the API, or -1 for the default port of the scheme
+	 */
+	public int port = -1;
+
+	/**
+	 * Path that connect() appends the accountId to; must end with /
+	 */
+	public String accountsPath = "/accounts/";
+
+	/**
+	 * Parses a base URL such as "https://localhost:8443/accounts/" into an
+	 * endpoint.
+	 * @param baseUrl the String URL, up to and including the accounts path
+	 * @return the ApiEndpoint, or null if the URL is not a valid http(s) URL
+	 */
+	static public ApiEndpoint parseBaseUrl(String baseUrl) {
+		if (baseUrl == null) {
+			return null;
+		}
+		URI uri;
+		try {
+			uri = new URI(baseUrl);
+		} catch (URISyntaxException use) {
+			return null;
+		}
+		String scheme = uri.getScheme();
+		if ((uri.getHost() == null) || !("http".equalsIgnoreCase(scheme) || "https".equalsIgnoreCase(scheme))) {
+			return null;
+		}
+		ApiEndpoint endpoint = new ApiEndpoint();
+		endpoint.scheme = scheme.toLowerCase();
+		endpoint.host = uri.getHost();
+		endpoint.port = uri.getPort();
+		String path = uri.getRawPath();
+		if ((path == null) || path.isEmpty()) {
+			path = "/";
+		}
+		endpoint.accountsPath = path.endsWith("/") ? path : path + "/";
+		return endpoint;
+	}
+
+	/**
+	 * @return the scheme, host and port, e.g. "https://api.storageroomapp.com"
+	 */
+	public String getOrigin() {
+		if (port == -1) {
+			return scheme+"://"+host;
+		}
+		return scheme+"://"+host+":"+port;
+	}
+
+	/**
+	 * @return the URL that connect() appends the accountId to
+	 */
+	public String getBaseUrl() {
+		return getOrigin()+accountsPath;
+	}
+
+	/**
+	 * Rewrites a URL returned by the server for the public API host so that
+	 * it goes to this endpoint instead. Other URLs, such as file downloads
+	 * or links already pointing elsewhere, are returned untouched. When this
+	 * endpoint is the public API host itself, links are only ever upgraded
+	 * to https, never downgraded to http.
+	 * @param url the String URL
+	 * @return the rewritten URL
+	 */
+	public String rewriteUrl(String url) {
+		if (url == null) {
+			return null;
+		}
+		int hostEnd = canonicalHostEnd(url);
+		if (hostEnd == -1) {
+			return url;
+		}
+		boolean isPublicHost = host.equalsIgnoreCase(StorageRoomUtil.API_HOST) && (port == -1);
+		if (isPublicHost && !("https".equals(scheme) && url.startsWith("http://"))) {
+			return url;
+		}
+		return getOrigin() + url.substring(hostEnd);
+	}
+
+	// INTERNAL
+
+	/**
+	 * Returns the index just past the public API host if the URL starts with
+	 * it (over http or https, on the default port), or -1
+	 */
+	static private int canonicalHostEnd(String url) {
+		int hostStart;
+		if (url.startsWith("http://")) {
+			hostStart = 7;
+		} else if (url.startsWith("https://")) {
+			hostStart = 8;
+		} else {
+			return -1;
+		}
+		String host = StorageRoomUtil.API_HOST;
+		if (!url.regionMatches(true, hostStart, host, 0, host.length())) {
+			return -1;
+		}
+		int hostEnd = hostStart + host.length();
+		if ((hostEnd < url.length()) && (url.charAt(hostEnd) != '/') && (url.charAt(hostEnd) != '?')) {
+			return -1;
+		}
+		return hostEnd;
+	}
+}
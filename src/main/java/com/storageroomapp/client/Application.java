@@ -15,10 +15,31 @@ Copyright 2013 Peter Laird
 */
 package com.storageroomapp.client;
 
+import java.io.File;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import com.storageroomapp.client.util.BlobCache;
+import com.storageroomapp.client.util.CircuitBreakers;
+import com.storageroomapp.client.util.CircuitBreakingTransport;
+import com.storageroomapp.client.util.CompressionStats;
+import com.storageroomapp.client.util.DecompressingTransport;
+import com.storageroomapp.client.util.DefaultOptionsTransport;
 import com.storageroomapp.client.util.Http;
+import com.storageroomapp.client.util.RateLimiter;
+import com.storageroomapp.client.util.RequestOptions;
+import com.storageroomapp.client.util.RetryPolicy;
+import com.storageroomapp.client.util.RetryingTransport;
+import com.storageroomapp.client.util.SingleFlight;
 import com.storageroomapp.client.util.StorageRoomUtil;
+import com.storageroomapp.client.util.ThrottlingTransport;
+import com.storageroomapp.client.util.Transport;
+import com.storageroomapp.client.util.ValidatorCache;
 
 /**
  * Application is the parent object to all interaction within the Java StorageRoom API.
@@ -27,6 +48,7 @@ import com.storageroomapp.client.util.StorageRoomUtil;
  * name. 
  */
 public class Application {
+	static private Log log = LogFactory.getLog(Application.class);
 
 	// Identity
 	private String name = null;
@@ -34,9 +56,28 @@ public class Application {
 	private String authToken = null; // e.g. "9ixzsJb77axXhRdgL3Tk";
 	static protected Map<String, Application> apps = new HashMap<String, Application>();
 
+	// Plumbing
+	protected Transport transport = null;
+	protected ApiEndpoint endpoint = new ApiEndpoint();
+	protected RetryPolicy retryPolicy = new RetryPolicy();
+	protected RateLimiter rateLimiter = null;
+	protected CircuitBreakers circuitBreakers = null;
+	protected RequestOptions requestOptions = RequestOptions.defaults();
+	protected boolean compressionEnabled = true;
+	protected final CompressionStats compressionStats = new CompressionStats();
+	protected ValidatorCache validatorCache = new ValidatorCache();
+	protected QueryCache queryCache = null;
+	protected BlobCache blobCache = null;
+	protected final SingleFlight<String, Collections> collectionsReads = new SingleFlight<String, Collections>();
+	protected final SingleFlight<String, PageOfEntries> pageReads = new SingleFlight<String, PageOfEntries>();
+	// bumped by every setter that changes the decorators of the transport chain
+	private final AtomicInteger transportConfigVersion = new AtomicInteger();
+	private volatile TransportChain transportChain = null;
+
 	// Children
-	protected AccountInfo accountInfo = null;
-	protected Collections collections = null;
+	protected volatile AccountInfo accountInfo = null;
+	protected volatile Collections collections = null;
+	private volatile CompletableFuture<Boolean> snapshotRevalidation = null;
 	
 	private Application(String name) {
 		this.name = name;
@@ -97,6 +138,351 @@ public class Application {
 		return authToken;
 	}
 	
+	/**
+	 * Returns the Transport used for every live API call made on behalf
+	 * of this Application: the configured HTTP stack, wrapped with this 
+	 * Application's rate limiter, circuit breakers and retry policy.
+	 * 
+	 * @return the Transport configured with setTransport(), or the
+	 * process wide default from Http if none was configured, with the
+	 * decorators of this Application applied
+	 */
+	public Transport getTransport() {
+		// read the version before the settings, so a setter that runs while
+		// the chain is built leaves the built chain stale, not current
+		int version = transportConfigVersion.get();
+		Transport base = (transport != null) ? transport : Http.getDefaultTransport();
+		TransportChain cached = transportChain;
+		if ((cached != null) && (cached.base == base) && (cached.version == version)) {
+			return cached.chain;
+		}
+		Transport chain = buildTransportChain(base);
+		transportChain = new TransportChain(base, version, chain);
+		return chain;
+	}
+	
+	/**
+	 * Configures the HTTP stack for this Application, e.g. an 
+	 * ApacheHttpTransport or a JdkHttpTransport. The Transport is not
+	 * shut down by this class; the caller owns its lifecycle.
+	 * 
+	 * @param transport the Transport, or null to use the process wide default
+	 */
+	public void setTransport(Transport transport) {
+		this.transport = transport;
+		transportConfigVersion.incrementAndGet();
+	}
+	
+	/**
+	 * Returns the policy used to retry failed idempotent requests.
+	 * 
+	 * @return the RetryPolicy, or null if retries are disabled
+	 */
+	public RetryPolicy getRetryPolicy() {
+		return retryPolicy;
+	}
+	
+	/**
+	 * Configures how failed requests made for this Application are retried.
+	 * 
+	 * @param retryPolicy the RetryPolicy, or null to disable retries
+	 */
+	public void setRetryPolicy(RetryPolicy retryPolicy) {
+		this.retryPolicy = retryPolicy;
+		transportConfigVersion.incrementAndGet();
+	}
+	
+	/**
+	 * Returns the endpoint this Application sends its API traffic to.
+	 * 
+	 * @return the ApiEndpoint; changes to its members apply to later calls
+	 */
+	public ApiEndpoint getEndpoint() {
+		return endpoint;
+	}
+	
+	/**
+	 * Points this Application at a different StorageRoom API endpoint, 
+	 * such as https, a regional host, a caching reverse proxy or a local
+	 * stand-in server. Call this before connect().
+	 * 
+	 * @param endpoint the ApiEndpoint, or null for the public API
+	 */
+	public void setEndpoint(ApiEndpoint endpoint) {
+		this.endpoint = (endpoint != null) ? endpoint : new ApiEndpoint();
+	}
+	
+	/**
+	 * Returns the root URL that connect() appends the accountId to.
+	 * 
+	 * @return the base URL of the configured endpoint
+	 */
+	public String getApiBaseUrl() {
+		return endpoint.getBaseUrl();
+	}
+	
+	/**
+	 * Convenience for setEndpoint(), from a URL.
+	 * 
+	 * @param apiBaseUrl the URL up to and including the accounts path, 
+	 * e.g. "http://localhost:8080/accounts/", or null for the public API
+	 * @return false if the URL could not be parsed, in which case the
+	 * endpoint is unchanged
+	 */
+	public boolean setApiBaseUrl(String apiBaseUrl) {
+		if (apiBaseUrl == null) {
+			setEndpoint(null);
+			return true;
+		}
+		ApiEndpoint parsed = ApiEndpoint.parseBaseUrl(apiBaseUrl);
+		if (parsed == null) {
+			return false;
+		}
+		setEndpoint(parsed);
+		return true;
+	}
+	
+	/**
+	 * Marks up a url received from the server (hypermedia) for a live API
+	 * call: it is rewritten to the configured endpoint, then decorated with
+	 * the auth token.
+	 * 
+	 * @param url the String unadorned API url
+	 * @param extraQueryParams a String of extra query params, or null
+	 * @return the adorned url, or null if url is null or not yet connected
+	 */
+	public String decorateUrl(String url, String extraQueryParams) {
+		return StorageRoomUtil.decorateUrl(endpoint.rewriteUrl(url), authToken, true, extraQueryParams);
+	}
+	
+	/**
+	 * Returns the limiter applied to every request of this Application.
+	 * 
+	 * @return the RateLimiter, or null if requests are not limited
+	 */
+	public RateLimiter getRateLimiter() {
+		return rateLimiter;
+	}
+	
+	/**
+	 * Limits the request rate and the number of requests in flight for this
+	 * Application, to stay under the server's throttling limits. Pass the 
+	 * same RateLimiter to every Application that uses the same account.
+	 * 
+	 * @param rateLimiter the RateLimiter, or null to not limit requests
+	 */
+	public void setRateLimiter(RateLimiter rateLimiter) {
+		this.rateLimiter = rateLimiter;
+		transportConfigVersion.incrementAndGet();
+	}
+	
+	/**
+	 * Returns the circuit breakers guarding the endpoints of this Application.
+	 * Check isOpen() on them to fall back to cached data without waiting
+	 * for a request to fail.
+	 * 
+	 * @return the CircuitBreakers, or null if none are configured
+	 */
+	public CircuitBreakers getCircuitBreakers() {
+		return circuitBreakers;
+	}
+	
+	/**
+	 * Guards the endpoints of this Application with circuit breakers, so that
+	 * requests fail fast while the API is degraded.
+	 * 
+	 * @param circuitBreakers the CircuitBreakers, or null to send every request
+	 */
+	public void setCircuitBreakers(CircuitBreakers circuitBreakers) {
+		this.circuitBreakers = circuitBreakers;
+		transportConfigVersion.incrementAndGet();
+	}
+	
+	/**
+	 * Returns the default timeouts for the live API calls of this Application.
+	 * 
+	 * @return the RequestOptions, or null if the Transport's own apply
+	 */
+	public RequestOptions getRequestOptions() {
+		return requestOptions;
+	}
+	
+	/**
+	 * Sets the default connect, read and total timeouts for the live API
+	 * calls of this Application. Individual calls can override them, see
+	 * CollectionQuery.requestOptions.
+	 * 
+	 * @param requestOptions the RequestOptions, or null to use the 
+	 * Transport's own timeouts
+	 */
+	public void setRequestOptions(RequestOptions requestOptions) {
+		this.requestOptions = requestOptions;
+		transportConfigVersion.incrementAndGet();
+	}
+	
+	/**
+	 * Returns true if responses are requested gzip or deflate compressed.
+	 * 
+	 * @return true if compression is negotiated
+	 */
+	public boolean isCompressionEnabled() {
+		return compressionEnabled;
+	}
+	
+	/**
+	 * Turns compression of API responses on or off. It is on by default; 
+	 * responses are decoded transparently as they are read.
+	 * 
+	 * @param compressionEnabled false to request uncompressed responses
+	 */
+	public void setCompressionEnabled(boolean compressionEnabled) {
+		this.compressionEnabled = compressionEnabled;
+		transportConfigVersion.incrementAndGet();
+	}
+	
+	/**
+	 * Returns the compressed vs. raw byte counts of the responses received 
+	 * by this Application.
+	 * 
+	 * @return the CompressionStats, never null
+	 */
+	public CompressionStats getCompressionStats() {
+		return compressionStats;
+	}
+	
+	/**
+	 * Returns the cache used to revalidate collection schemas and pages of
+	 * entries with conditional GETs.
+	 * 
+	 * @return the ValidatorCache, or null if every GET downloads in full
+	 */
+	public ValidatorCache getValidatorCache() {
+		return validatorCache;
+	}
+	
+	/**
+	 * Configures the cache of ETag and Last-Modified validators. When the 
+	 * server reports a schema or page unchanged (304), the object parsed
+	 * from the previous response is returned again. It is on by default.
+	 * 
+	 * @param validatorCache the ValidatorCache, or null to disable 
+	 * conditional GETs
+	 */
+	public void setValidatorCache(ValidatorCache validatorCache) {
+		this.validatorCache = validatorCache;
+	}
+	
+	/**
+	 * Returns the cache of query results for the Collections of this Application.
+	 * 
+	 * @return the QueryCache, or null if every query goes to the server
+	 */
+	public QueryCache getQueryCache() {
+		return queryCache;
+	}
+	
+	/**
+	 * Answers repeated identical Collection queries from memory. Off by 
+	 * default; see QueryCache for what is and is not invalidated.
+	 * 
+	 * @param queryCache the QueryCache, or null to disable it
+	 */
+	public void setQueryCache(QueryCache queryCache) {
+		this.queryCache = queryCache;
+	}
+	
+	/**
+	 * Returns the disk cache for the files and images of this Application.
+	 * 
+	 * @return the BlobCache, or null if content is always downloaded
+	 */
+	public BlobCache getBlobCache() {
+		return blobCache;
+	}
+	
+	/**
+	 * Keeps downloaded File and Image content on disk, so FileValue, 
+	 * ImageValue and ImageVersion serve it locally after the first 
+	 * download. Several Applications may share one BlobCache.
+	 * 
+	 * @param blobCache the BlobCache, or null to always download
+	 */
+	public void setBlobCache(BlobCache blobCache) {
+		this.blobCache = blobCache;
+	}
+	
+	/**
+	 * Returns the coalescing of concurrent identical page queries: while a
+	 * page is being fetched, other queries for the same URL wait for it and
+	 * share its result. Its metrics show how many requests were saved.
+	 * 
+	 * @return the SingleFlight, keyed by decorated URL
+	 */
+	public SingleFlight<String, PageOfEntries> getPageReads() {
+		return pageReads;
+	}
+	
+	/**
+	 * Returns the coalescing of concurrent getCollections() refreshes.
+	 * 
+	 * @return the SingleFlight, keyed by decorated URL
+	 */
+	public SingleFlight<String, Collections> getCollectionsReads() {
+		return collectionsReads;
+	}
+	
+	/**
+	 * Drops the cached query results of a Collection after a write to it
+	 */
+	protected void invalidateQueries(Collection collection) {
+		QueryCache cache = queryCache;
+		if ((cache != null) && (collection != null)) {
+			cache.invalidate(collection);
+		}
+	}
+	
+	/**
+	 * A built chain, with the base Transport and the configuration version
+	 * it was built from
+	 */
+	static private final class TransportChain {
+		final Transport base;
+		final int version;
+		final Transport chain;
+		
+		TransportChain(Transport base, int version, Transport chain) {
+			this.base = base;
+			this.version = version;
+			this.chain = chain;
+		}
+	}
+	
+	/**
+	 * Wraps the base HTTP stack with the decorators configured on this
+	 * Application: retry(breaker(throttle(decompress(options(base))))).
+	 * Retries are outermost, so each attempt is rate limited, counted by 
+	 * the breakers and given the full timeouts.
+	 */
+	protected Transport buildTransportChain(Transport base) {
+		Transport chain = base;
+		if (requestOptions != null) {
+			chain = new DefaultOptionsTransport(chain, requestOptions);
+		}
+		if (compressionEnabled) {
+			chain = new DecompressingTransport(chain, compressionStats);
+		}
+		if (rateLimiter != null) {
+			chain = new ThrottlingTransport(chain, rateLimiter);
+		}
+		if (circuitBreakers != null) {
+			chain = new CircuitBreakingTransport(chain, circuitBreakers);
+		}
+		if (retryPolicy != null) {
+			chain = new RetryingTransport(chain, retryPolicy);
+		}
+		return chain;
+	}
+	
 	/**
 	 * Returns the AccountInfo returned during connect()
 	 * 
@@ -137,11 +523,11 @@ public class Application {
 		
 		// this is the root request, so we need to manually build up the URL
 		// the rest of the URLs come via hypermedia
-		String url = "http://"+StorageRoomUtil.URL_BASE+accountId;
+		String url = getApiBaseUrl()+accountId;
 		url = StorageRoomUtil.decorateUrl(url, authToken, true, null);
 		
 		// make the request, it will return null for all bad reasons (no internet, bad credentials, etc)
-		String accountInfoJson = Http.getAsString(url);
+		String accountInfoJson = getTransport().getAsString(url);
 		if (accountInfoJson == null) {
 			
 			// we will leave the cached account info alone, if one exists
@@ -168,7 +554,8 @@ public class Application {
 	 * 
 	 * @param useCache if false, the SR API call will be made even if the collections
 	 * are already cached
-	 * @return the Collections object or null if a failure occurred
+	 * @return the Collections object, the previously cached Collections if 
+	 * they could not be refreshed, or null if a failure occurred
 	 */
 	public Collections getCollections(boolean useCache) {
 		if (useCache && (collections != null)) {
@@ -177,12 +564,113 @@ public class Application {
 		
 		getAccountInfo(useCache);
 		if (accountInfo != null) {
-			String url = StorageRoomUtil.decorateUrl(accountInfo.collectionsUrl, authToken, true, null);
-			String collectionsJson = Http.getAsString(url);
-			collections = Collections.parseJson(this, collectionsJson);
+			String url = decorateUrl(accountInfo.collectionsUrl, null);
+			// concurrent refreshes share one request and one parse
+			Collections newCollections = collectionsReads.execute(url, () -> readCollections(url));
+			if (newCollections != null) {
+				collections = newCollections;
+			} else if (collections != null) {
+				// e.g. the API is down or its circuit is open, serve what we have
+				log.warn("Could not refresh the collections of application ["+name+"], using the cached collections");
+			}
 		}
 		
 		return collections;
 	}
+	
+	/**
+	 * Connects from a local SchemaSnapshot instead of the server, so the
+	 * AccountInfo and Collections are available at once. The snapshot is 
+	 * then revalidated in the background: both are fetched from the server
+	 * and, if that succeeds, replace the snapshot's and are saved to the 
+	 * file. Wait on getSnapshotRevalidation() to know when it is done.
+	 * <p>
+	 * If the file is missing, unreadable, or of another account or endpoint,
+	 * this connects the normal way and writes the snapshot for next time.
+	 * <p>
+	 * NOTE: the credentials are not verified until the revalidation runs
+	 * <p>
+	 * SERVER ROUND TRIP: this is a live API call, if there is no usable snapshot
+	 * 
+	 * @param snapshotFile the File the snapshot is read from and saved to
+	 * @param accountId the String accountId as provided by the SR GUI
+	 * @param authToken the String accountToken as provided by the SR GUI
+	 * @return true if this Application is connected
+	 */
+	public boolean connectFromSnapshot(final File snapshotFile, String accountId, String authToken) {
+		SchemaSnapshot snapshot = SchemaSnapshot.load(snapshotFile);
+		AccountInfo snapshotAccountInfo = null;
+		Collections snapshotCollections = null;
+		if ((snapshot != null) && snapshot.matches(accountId, getApiBaseUrl())) {
+			snapshotAccountInfo = snapshot.parseAccountInfo();
+			snapshotCollections = (snapshotAccountInfo != null) ? snapshot.parseCollections(this) : null;
+		}
+		if (snapshotCollections == null) {
+			// cold start the slow way, and leave a snapshot for next time
+			if (!connect(accountId, authToken, false) || (getCollections(false) == null)) {
+				return false;
+			}
+			saveSnapshot(snapshotFile);
+			snapshotRevalidation = CompletableFuture.completedFuture(Boolean.TRUE);
+			return true;
+		}
+		
+		this.accountInfo = snapshotAccountInfo;
+		this.collections = snapshotCollections;
+		this.accountId = accountId;
+		this.authToken = authToken;
+		snapshotRevalidation = CompletableFuture.supplyAsync(() -> revalidateSnapshot(snapshotFile), runnable -> {
+			Thread thread = new Thread(runnable, "storageroom-snapshot-revalidation");
+			thread.setDaemon(true);
+			thread.start();
+		});
+		return true;
+	}
+	
+	/**
+	 * Returns the background revalidation started by connectFromSnapshot().
+	 * 
+	 * @return a future that completes with true if the schema was refreshed
+	 * from the server and saved, or null if connectFromSnapshot() was not used
+	 */
+	public CompletableFuture<Boolean> getSnapshotRevalidation() {
+		return snapshotRevalidation;
+	}
+	
+	/**
+	 * Saves the AccountInfo and Collections of this connected Application
+	 * to a SchemaSnapshot file, for connectFromSnapshot().
+	 * 
+	 * @param snapshotFile the File to write
+	 * @return true if the snapshot was written
+	 */
+	public boolean saveSnapshot(File snapshotFile) {
+		return SchemaSnapshot.save(this, snapshotFile);
+	}
+	
+	private boolean revalidateSnapshot(File snapshotFile) {
+		if (!connect(accountId, authToken, false)) {
+			log.warn("Could not revalidate the schema snapshot of application ["+name+"], the account could not be fetched");
+			return false;
+		}
+		final String url = decorateUrl(accountInfo.collectionsUrl, null);
+		Collections fresh = collectionsReads.execute(url, () -> readCollections(url));
+		if (fresh == null) {
+			log.warn("Could not revalidate the schema snapshot of application ["+name+"], the collections could not be fetched");
+			return false;
+		}
+		collections = fresh;
+		return saveSnapshot(snapshotFile);
+	}
+	
+	private Collections readCollections(String url) {
+		ValidatorCache validators = validatorCache;
+		if (validators != null) {
+			// an unchanged schema comes back as the Collections parsed before
+			return validators.get(getTransport(), url, null, in -> Collections.parseJson(this, in));
+		}
+		String collectionsJson = getTransport().getAsString(url);
+		return (collectionsJson != null) ? Collections.parseJson(this, collectionsJson) : null;
+	}
 		
 }
@@ -15,9 +15,25 @@ Copyright 2013 Peter Laird
 */
 package com.storageroomapp.client;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
 import com.storageroomapp.client.field.Fields;
-import com.storageroomapp.client.util.Http;
-import com.storageroomapp.client.util.StorageRoomUtil;
+import com.storageroomapp.client.util.RequestOptions;
 
 /**
  * CollectionEntries encapsulate the entries associated with a Collection.
@@ -25,6 +41,14 @@ import com.storageroomapp.client.util.StorageRoomUtil;
  * such as querying.
  */
 public class CollectionEntries {
+	static private Log log = LogFactory.getLog(CollectionEntries.class);
+	
+	/**
+	 * The number of pages requested ahead of the page being consumed
+	 * by iterator() and stream(), unless otherwise specified.
+	 */
+	public static final int DEFAULT_PREFETCH_DEPTH = 2;
+	
 	protected Collection parentCollection = null;
 	
 	protected CollectionEntries(Collection parent) {
@@ -49,6 +73,18 @@ public class CollectionEntries {
 		return el;
 	}
 	
+	/**
+	 * Asynchronous variant of queryAll()
+	 * <p>
+	 * SERVER ROUND TRIP: this is a live API call
+	 * 
+	 * @return a future for the first page of the results, which 
+	 *  completes with null if there was a problem.
+	 */
+	public CompletableFuture<PageOfEntries> queryAllAsync() {
+		return PageOfEntries.doLiveQueryAsync(parentCollection, null, 0);
+	}
+	
 	/**
 	 * Returns a page of results for this Collection using
 	 * the specified filtering. Paging through the results is done
@@ -68,6 +104,162 @@ public class CollectionEntries {
 		return el;
 	}
 	
+	/**
+	 * Asynchronous variant of query()
+	 * <p>
+	 * SERVER ROUND TRIP: this is a live API call
+	 * 
+	 * @param queryDef defines the filtering for the query
+	 * @return a future for the first page of the results, which 
+	 *  completes with null if there was a problem.
+	 */
+	public CompletableFuture<PageOfEntries> queryAsync(CollectionQuery queryDef) {
+		return PageOfEntries.doLiveQueryAsync(parentCollection, queryDef, 0);
+	}
+	
+	/**
+	 * Returns an Iterator over every Entry matched by the query, across
+	 * all pages of the results. Pages are fetched lazily, and the next
+	 * DEFAULT_PREFETCH_DEPTH pages are requested in the background while
+	 * the current page is consumed.
+	 * <p>
+	 * SERVER ROUND TRIP: the returned iterator makes live API calls
+	 * 
+	 * @param queryDef defines the filtering for the query, or null for all entries
+	 * @return the EntryIterator, or null if this object has no Collection
+	 */
+	public EntryIterator iterator(CollectionQuery queryDef) {
+		return iterator(queryDef, DEFAULT_PREFETCH_DEPTH);
+	}
+	
+	/**
+	 * Returns an Iterator over every Entry matched by the query, across
+	 * all pages of the results.
+	 * <p>
+	 * SERVER ROUND TRIP: the returned iterator makes live API calls
+	 * 
+	 * @param queryDef defines the filtering for the query, or null for all entries
+	 * @param prefetchDepth the number of pages to request ahead of the page
+	 *  being consumed, 0 to fetch each page only when it is reached
+	 * @return the EntryIterator, or null if this object has no Collection
+	 */
+	public EntryIterator iterator(CollectionQuery queryDef, int prefetchDepth) {
+		if (parentCollection == null) {
+			return null;
+		}
+		return new EntryIterator(parentCollection, queryDef, prefetchDepth);
+	}
+	
+	/**
+	 * Returns a lazy sequential Stream of every Entry matched by the query,
+	 * across all pages of the results. See iterator(). Closing the stream
+	 * abandons any pages still being prefetched.
+	 * <p>
+	 * SERVER ROUND TRIP: the returned stream makes live API calls
+	 * 
+	 * @param queryDef defines the filtering for the query, or null for all entries
+	 * @return the Stream of entries, which is empty if this object has no Collection
+	 */
+	public Stream<Entry> stream(CollectionQuery queryDef) {
+		return stream(queryDef, DEFAULT_PREFETCH_DEPTH);
+	}
+	
+	/**
+	 * Returns a lazy sequential Stream of every Entry matched by the query,
+	 * across all pages of the results. See iterator().
+	 * <p>
+	 * SERVER ROUND TRIP: the returned stream makes live API calls
+	 * 
+	 * @param queryDef defines the filtering for the query, or null for all entries
+	 * @param prefetchDepth the number of pages to request ahead of the page
+	 *  being consumed, 0 to fetch each page only when it is reached
+	 * @return the Stream of entries, which is empty if this object has no Collection
+	 */
+	public Stream<Entry> stream(CollectionQuery queryDef, int prefetchDepth) {
+		EntryIterator it = iterator(queryDef, prefetchDepth);
+		if (it == null) {
+			return Stream.empty();
+		}
+		Spliterator<Entry> split = Spliterators.spliteratorUnknownSize(it, 
+				Spliterator.ORDERED | Spliterator.NONNULL);
+		return StreamSupport.stream(split, false).onClose(it::close);
+	}
+	
+	/**
+	 * Retrieves every Entry matched by the query, in page order. See
+	 * fetchAll(CollectionQuery, int, boolean).
+	 * <p>
+	 * SERVER ROUND TRIP: this is a live API call
+	 * 
+	 * @param queryDef defines the filtering for the query, or null for all entries
+	 * @param parallelism the maximum number of pages requested at the same time
+	 * @return the List of all entries, or null if there was a problem
+	 */
+	public List<Entry> fetchAll(CollectionQuery queryDef, int parallelism) {
+		return fetchAll(queryDef, parallelism, true);
+	}
+	
+	/**
+	 * Retrieves every Entry matched by the query. The first page is
+	 * requested on the calling thread; once it reports the number of pages,
+	 * the remaining pages are requested at the same time over a pool of
+	 * at most parallelism threads. Use this for full scans where the whole
+	 * result is needed at once; use stream() when the entries can be 
+	 * processed as they arrive.
+	 * <p>
+	 * SERVER ROUND TRIP: this is a live API call
+	 * 
+	 * @param queryDef defines the filtering for the query, or null for all entries
+	 * @param parallelism the maximum number of pages requested at the same time
+	 * @param ordered true to return the entries in page order, false to 
+	 *  append each page as it arrives
+	 * @return the List of all entries, or null if any page could not be retrieved
+	 */
+	public List<Entry> fetchAll(CollectionQuery queryDef, int parallelism, boolean ordered) {
+		if (parentCollection == null) {
+			return null;
+		}
+		PageOfEntries first = PageOfEntries.doLiveQuery(parentCollection, queryDef, 0);
+		if (first == null) {
+			return null;
+		}
+		List<Entry> all = new ArrayList<Entry>();
+		appendPage(all, first);
+		
+		int numPages = first.getNumResultsPages();
+		if (numPages <= PageOfEntries.FIRST_PAGE) {
+			return all;
+		}
+		int numThreads = Math.max(1, Math.min(parallelism, numPages - 1));
+		ExecutorService executor = Executors.newFixedThreadPool(numThreads);
+		try {
+			CompletionService<PageOfEntries> completion = new ExecutorCompletionService<PageOfEntries>(executor);
+			List<Future<PageOfEntries>> futures = new ArrayList<Future<PageOfEntries>>(numPages - 1);
+			for (int page = PageOfEntries.FIRST_PAGE + 1; page <= numPages; page++) {
+				final int pageToFetch = page;
+				futures.add(completion.submit(() -> PageOfEntries.doLiveQuery(parentCollection, queryDef, pageToFetch)));
+			}
+			for (int i = 0; i < futures.size(); i++) {
+				Future<PageOfEntries> future = ordered ? futures.get(i) : completion.take();
+				PageOfEntries page = future.get();
+				if (page == null) {
+					log.error("Could not retrieve a page of entries for collection ["+parentCollection.getName()+"], abandoning fetchAll");
+					return null;
+				}
+				appendPage(all, page);
+			}
+		} catch (InterruptedException ie) {
+			Thread.currentThread().interrupt();
+			return null;
+		} catch (ExecutionException ee) {
+			log.error("Failure retrieving a page of entries for collection ["+parentCollection.getName()+"]", ee.getCause());
+			return null;
+		} finally {
+			executor.shutdownNow();
+		}
+		return all;
+	}
+	
 	/**
 	 * Adds an entry to the Collection on the server. The passed
 	 * Entry object should have been first retrieved from the 
@@ -77,9 +269,23 @@ public class CollectionEntries {
 	 * SERVER ROUND TRIP: this is a live API call
 	 * 
 	 * @param newEntry the populated Entry object
-	 * @return
+	 * @return true if the insert succeeded, false if not
 	 */
 	public boolean insertNewEntry(Entry newEntry) {
+		return insertNewEntry(newEntry, null);
+	}
+
+	/**
+	 * Variant of insertNewEntry() with timeouts for this call.
+	 * <p>
+	 * SERVER ROUND TRIP: this is a live API call
+	 * 
+	 * @param newEntry the populated Entry object
+	 * @param options the RequestOptions overriding those of the Application,
+	 * or null
+	 * @return true if the insert succeeded, false if not
+	 */
+	public boolean insertNewEntry(Entry newEntry, RequestOptions options) {
 		boolean success = false;
 		
 		// we will only accept new entries associated with this collection
@@ -88,16 +294,57 @@ public class CollectionEntries {
 		}
 
 		Application application = parentCollection.getParentApplication();
-		String insertUrl = parentCollection.getEntriesUrl();
-		insertUrl = StorageRoomUtil.decorateUrl(insertUrl, application.getAuthToken(), true, null);
+		String insertUrl = buildInsertUrl();
 		
-		String postBody = newEntry.toJSONString(true);
-		if (postBody != null) {
-			success = Http.post(insertUrl, postBody);
-		}
+		success = application.getTransport().post(insertUrl, newEntry.toRequestBody(true), options);
+		application.invalidateQueries(parentCollection);
 		return success;
 	}
 
+	/**
+	 * Asynchronous variant of insertNewEntry()
+	 * <p>
+	 * SERVER ROUND TRIP: this is a live API call
+	 * 
+	 * @param newEntry the populated Entry object
+	 * @return a future that completes with true if the insert succeeded
+	 */
+	public CompletableFuture<Boolean> insertNewEntryAsync(Entry newEntry) {
+		return insertNewEntryAsync(newEntry, null);
+	}
+
+	/**
+	 * Asynchronous variant of insertNewEntry(Entry, RequestOptions)
+	 * <p>
+	 * SERVER ROUND TRIP: this is a live API call
+	 * 
+	 * @param newEntry the populated Entry object
+	 * @param options the RequestOptions overriding those of the Application,
+	 * or null
+	 * @return a future that completes with true if the insert succeeded
+	 */
+	public CompletableFuture<Boolean> insertNewEntryAsync(Entry newEntry, RequestOptions options) {
+		// we will only accept new entries associated with this collection
+		if (!newEntry.parentCollection.equals(this.parentCollection)) {
+			return CompletableFuture.completedFuture(Boolean.FALSE);
+		}
+
+		Application application = parentCollection.getParentApplication();
+		String insertUrl = buildInsertUrl();
+		
+		return application.getTransport().postAsync(insertUrl, newEntry.toRequestBody(true), options)
+				.thenApply(success -> {
+					application.invalidateQueries(parentCollection);
+					return success;
+				});
+	}
+	
+	private String buildInsertUrl() {
+		Application application = parentCollection.getParentApplication();
+		String insertUrl = parentCollection.getEntriesUrl();
+		return application.decorateUrl(insertUrl, null);
+	}
+
 	/**
 	 * Returns a template Entry for this Collection that has
 	 * blank Field metadata objects ready for definition by your code.
@@ -116,4 +363,13 @@ public class CollectionEntries {
 		return newEntry;
 	}
 	
+	
+	// INTERNAL
+	
+	private static void appendPage(List<Entry> all, PageOfEntries page) {
+		List<Entry> entries = page.asList();
+		if (entries != null) {
+			all.addAll(entries);
+		}
+	}
 }
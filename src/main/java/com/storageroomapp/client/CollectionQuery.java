@@ -15,6 +15,10 @@ Copyright 2013 Peter Laird
 */
 package com.storageroomapp.client;
 
+import java.util.Objects;
+
+import com.storageroomapp.client.util.RequestOptions;
+
 /**
  * Encapsulates a Collection query for Entries on the 
  * StorageRoom API. Given the complexity and power of
@@ -70,6 +74,13 @@ public class CollectionQuery {
 	 */
 	public String filterOptions = null;
 	
+	// Call Options
+	/**
+	 * Timeouts for the page fetches of this query, overriding those of
+	 * the Application. Set to null to use the Application's.
+	 */
+	public RequestOptions requestOptions = null;
+	
 	/**
 	 * Generate the query string for the URL given the query
 	 * and filter options configured.
@@ -121,4 +132,32 @@ public class CollectionQuery {
 		
 		return sb.toString();
 	}
+
+	/**
+	 * Two queries are equal if they select the same results, i.e. generate
+	 * the same query string. The requestOptions are not compared.
+	 */
+	@Override
+	public boolean equals(Object obj) {
+		if (this == obj) {
+			return true;
+		}
+		if (!(obj instanceof CollectionQuery)) {
+			return false;
+		}
+		CollectionQuery other = (CollectionQuery)obj;
+		return (pageSize == other.pageSize) && (sortOrder == other.sortOrder) 
+				&& Objects.equals(sortFieldName, other.sortFieldName) 
+				&& Objects.equals(filterOptions, other.filterOptions);
+	}
+
+	@Override
+	public int hashCode() {
+		return Objects.hash(sortFieldName, sortOrder, Integer.valueOf(pageSize), filterOptions);
+	}
+
+	@Override
+	public String toString() {
+		return "CollectionQuery ["+generateQueryString(0)+"]";
+	}
 }
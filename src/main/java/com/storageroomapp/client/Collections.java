@@ -15,6 +15,10 @@ Copyright 2013 Peter Laird
 */
 package com.storageroomapp.client;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
 import java.util.ArrayList;
 import java.util.Iterator;
 
@@ -29,6 +33,8 @@ public class Collections extends ArrayList<Collection> {
 
 	protected Application parentApplication = null;
 	protected String url = null;
+	// the json this object was parsed from, kept for SchemaSnapshot
+	protected transient JSONObject sourceJson = null;
 
 	// where are the children Collection objects?
 	// remember, this class extends List of Collection items, so e.g. get(i) will get a child Collection
@@ -74,7 +80,40 @@ public class Collections extends ArrayList<Collection> {
 	 * @return an Collections object, or null if the parsing failed
 	 */
 	static public Collections parseJson(Application parent, String json) {
-		JSONObject root = (JSONObject)JSONValue.parse(json);
+		return parseJsonRoot(parent, (JSONObject)JSONValue.parse(json));
+	}
+	
+	/**
+	 * Parses a stream of UTF-8 json text, see parseJson(Application, String).
+	 * The stream is closed.
+	 * 
+	 * @param parent the Application object associated with the json
+	 * @param is the InputStream with the json text
+	 * @return an Collections object, or null if the parsing failed
+	 */
+	static public Collections parseJson(Application parent, InputStream is) {
+		if (is == null) {
+			return null;
+		}
+		Reader reader = null;
+		try {
+			reader = new InputStreamReader(is, "UTF-8");
+			return parseJsonRoot(parent, (JSONObject)JSONValue.parse(reader));
+		} catch (IOException ioe) {
+			return null;
+		} finally {
+			try {
+				if (reader != null) {
+					reader.close();
+				} else {
+					is.close();
+				}
+			} catch (IOException ioe) {
+			}
+		}
+	}
+	
+	static private Collections parseJsonRoot(Application parent, JSONObject root) {
 		if (root == null) {
 			return null;
 		}
@@ -98,6 +137,7 @@ public class Collections extends ArrayList<Collection> {
 	 */
 	static public Collections parseJsonObject(Application parent, JSONObject jsonObj) {
 		Collections colls = new Collections(parent);
+		colls.sourceJson = jsonObj;
 		colls.url = JsonSimpleUtil.parseJsonStringValue(jsonObj, "@url");
 		if (colls.url == null) {
 			return null;
@@ -15,18 +15,35 @@ Copyright 2013 Peter Laird
 */
 package com.storageroomapp.client;
 
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
 import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
 
 import org.json.simple.JSONObject;
 
+import com.storageroomapp.client.field.EntryBinder;
+import com.storageroomapp.client.field.EntryWriter;
 import com.storageroomapp.client.field.Fields;
 import com.storageroomapp.client.field.GenericField;
+import com.storageroomapp.client.field.GenericValue;
 import com.storageroomapp.client.field.StringField;
 import com.storageroomapp.client.util.FileUtil;
-import com.storageroomapp.client.util.Http;
-import com.storageroomapp.client.util.StorageRoomUtil;
+import com.storageroomapp.client.util.JsonPullParser;
+import com.storageroomapp.client.util.RequestBody;
+import com.storageroomapp.client.util.RequestOptions;
+import com.storageroomapp.client.util.Utf8JsonWriter;
 
 /**
  * The Entry object represents an entry in a collection. Entry objects
@@ -38,15 +55,33 @@ import com.storageroomapp.client.util.StorageRoomUtil;
  * <p>
  * To UPDATE or DELETE a particular entry, this object offers methods to 
  * do that.
+ * <p>
+ * An Entry is a Map of field identifier to data field, but it does not 
+ * retain the data fields. It holds just the field values, one slot per 
+ * field defined by the Collection (see Fields.slotOf()), and get() returns
+ * a new data field view each time it is called. Calling setValue() on that
+ * view writes through to this Entry.
  */
-public class Entry extends HashMap<String, GenericField<?>> {
-	static private final long serialVersionUID = 1L;
+public class Entry extends AbstractMap<String, GenericField<?>> {
+
+	// marks a slot of a field that is present, but has no value
+	static private final Object NO_VALUE = new Object();
+	
+	static private final byte[] ENTRY_START = "{ \"entry\": {".getBytes(StandardCharsets.US_ASCII);
+	static private final byte[] ENTRY_END = "} }".getBytes(StandardCharsets.US_ASCII);
+	static private final byte[] SEPARATOR = ", ".getBytes(StandardCharsets.US_ASCII);
 
 	protected Collection parentCollection = null;
 	
-	// Strange not to see any more members, but an Entry in 
-	// StorageRoom really is just a bag of Field values. This
-	// Entry class extends HashMap for that purpose
+	// An Entry in StorageRoom really is just a bag of Field values. The 
+	// values are held in the slots of the Collection's field definitions; 
+	// a null slot means the Entry does not have that field.
+	private Object[] slots;
+	private int slotsInUse = 0;
+	
+	// data fields put under an identifier the Collection does not define
+	// (or of another field type than the definition); normally null
+	private Map<String, GenericField<?>> otherFields = null;
 	
 	/**
 	 * Public callers should not be creating raw Entry objects. When creating
@@ -58,6 +93,7 @@ public class Entry extends HashMap<String, GenericField<?>> {
 	 */
 	protected Entry(Collection parent) {
 		this.parentCollection = parent;
+		this.slots = new Object[parent.getFields().getEntryBinder().getSlotCount()];
 	}
 	
 	// DESERIALIZATION
@@ -84,11 +120,12 @@ public class Entry extends HashMap<String, GenericField<?>> {
 	 * @param jsonObj the JSONObject
 	 * @return an Entry object, or null if the unpacking failed
 	 */
-	static public Entry parseJSONObject(Collection parent, JSONObject jsonObj) {
+	static public com.storageroomapp.client.Entry parseJSONObject(Collection parent, JSONObject jsonObj) {
 		if (jsonObj == null) {
 			return null;
 		}
-		Entry entry = new Entry(parent);
+		// fully qualified, as the inherited Map.Entry would otherwise shadow this class
+		com.storageroomapp.client.Entry entry = new com.storageroomapp.client.Entry(parent);
 		
 		// an Entry is just a bag of field values, nothing to parse
 		// except the fields themselves...
@@ -99,6 +136,277 @@ public class Entry extends HashMap<String, GenericField<?>> {
 		return entry;
 	}
 	
+	/**
+	 * Binds an Entry object straight from a streaming parser, without
+	 * building an intermediate JSONObject. The parser must be positioned
+	 * on the START_OBJECT token of the entry; on return it is positioned 
+	 * on the matching END_OBJECT.
+	 * 
+	 * @param parent the Collection the entry belongs to
+	 * @param parser the JsonPullParser
+	 * @return an Entry object
+	 * @throws IOException if the json is malformed or cannot be read
+	 */
+	static public com.storageroomapp.client.Entry parseJSON(Collection parent, JsonPullParser parser) throws IOException {
+		com.storageroomapp.client.Entry entry = new com.storageroomapp.client.Entry(parent);
+		
+		EntryBinder binder = parent.getFields().getEntryBinder();
+		binder.bind(parser, entry);
+		
+		return entry;
+	}
+	
+	/**
+	 * Stores a value in one of the slots of this Entry. This is the low level
+	 * hook used by Fields when binding parsed values, and by the data field 
+	 * views when their value is set; other callers should use put().
+	 * 
+	 * @param slot the slot of the field (see Fields.slotOf())
+	 * @param value the GenericValue, or null to keep the field without a value
+	 */
+	public void bindSlot(int slot, GenericValue<?> value) {
+		if (slot >= slots.length) {
+			slots = Arrays.copyOf(slots, slot + 1);
+		}
+		if (slots[slot] == null) {
+			slotsInUse++;
+		}
+		slots[slot] = (value != null) ? value : NO_VALUE;
+	}
+	
+	// MAP VIEW
+	
+	@Override
+	public int size() {
+		int size = slotsInUse;
+		if (otherFields != null) {
+			size += otherFields.size();
+		}
+		return size;
+	}
+	
+	@Override
+	public boolean containsKey(Object key) {
+		int slot = slotOf(key);
+		if (slot >= 0) {
+			return true;
+		}
+		return (otherFields != null) && otherFields.containsKey(key);
+	}
+	
+	@Override
+	public GenericField<?> get(Object key) {
+		int slot = slotOf(key);
+		if (slot >= 0) {
+			return viewOfSlot(slot);
+		}
+		if (otherFields == null) {
+			return null;
+		}
+		return otherFields.get(key);
+	}
+	
+	/**
+	 * Sets a field of this Entry. Only the value of the data field is kept
+	 * when the Collection defines the field; a later get() returns a new 
+	 * data field with that value, not the passed object.
+	 */
+	@Override
+	public GenericField<?> put(String key, GenericField<?> field) {
+		GenericField<?> previous = remove(key);
+		Fields fields = parentCollection.getFields();
+		int slot = (key != null) ? fields.slotOf(key) : -1;
+		if ((slot >= 0) && fields.fitsSlot(slot, field)) {
+			bindSlot(slot, field.getValueWrapper());
+		} else {
+			if (otherFields == null) {
+				otherFields = new LinkedHashMap<String, GenericField<?>>();
+			}
+			otherFields.put(key, field);
+		}
+		return previous;
+	}
+	
+	@Override
+	public GenericField<?> remove(Object key) {
+		int slot = slotOf(key);
+		if (slot >= 0) {
+			GenericField<?> previous = viewOfSlot(slot);
+			slots[slot] = null;
+			slotsInUse--;
+			return previous;
+		}
+		if (otherFields == null) {
+			return null;
+		}
+		return otherFields.remove(key);
+	}
+	
+	@Override
+	public void clear() {
+		Arrays.fill(slots, null);
+		slotsInUse = 0;
+		otherFields = null;
+	}
+	
+	@Override
+	public Set<Map.Entry<String, GenericField<?>>> entrySet() {
+		return new AbstractSet<Map.Entry<String, GenericField<?>>>() {
+			@Override
+			public Iterator<Map.Entry<String, GenericField<?>>> iterator() {
+				return new SlotIterator();
+			}
+			@Override
+			public int size() {
+				return com.storageroomapp.client.Entry.this.size();
+			}
+		};
+	}
+	
+	/**
+	 * Entries are equal when they belong to the same Collection and hold
+	 * the same value objects.
+	 */
+	@Override
+	public boolean equals(Object o) {
+		if (o == this) {
+			return true;
+		}
+		if (!(o instanceof com.storageroomapp.client.Entry)) {
+			return false;
+		}
+		com.storageroomapp.client.Entry other = (com.storageroomapp.client.Entry)o;
+		if (parentCollection != other.parentCollection) {
+			return false;
+		}
+		int length = Math.max(slots.length, other.slots.length);
+		for (int slot = 0; slot < length; slot++) {
+			if (slotValue(slot) != other.slotValue(slot)) {
+				return false;
+			}
+		}
+		boolean hasOthers = (otherFields != null) && !otherFields.isEmpty();
+		boolean otherHasOthers = (other.otherFields != null) && !other.otherFields.isEmpty();
+		return hasOthers ? otherFields.equals(other.otherFields) : !otherHasOthers;
+	}
+	
+	/**
+	 * Hashes only the slots in use, so entries that equals() finds equal
+	 * hash alike whatever the length of their slot arrays.
+	 */
+	@Override
+	public int hashCode() {
+		int hash = 0;
+		for (int slot = 0; slot < slots.length; slot++) {
+			Object value = slots[slot];
+			if (value != null) {
+				hash += (slot * 31) ^ System.identityHashCode(value);
+			}
+		}
+		if (otherFields != null) {
+			hash += otherFields.hashCode();
+		}
+		return hash;
+	}
+	
+	// INTERNAL
+	
+	/**
+	 * Returns the slot of a field this Entry holds, or -1 if the key is not
+	 * a field the Entry holds in a slot.
+	 */
+	private int slotOf(Object key) {
+		if (!(key instanceof String)) {
+			return -1;
+		}
+		int slot = parentCollection.getFields().slotOf((String)key);
+		if ((slot < 0) || (slot >= slots.length) || (slots[slot] == null)) {
+			return -1;
+		}
+		return slot;
+	}
+	
+	private Object slotValue(int slot) {
+		if (slot >= slots.length) {
+			return null;
+		}
+		return slots[slot];
+	}
+	
+	private GenericField<?> viewOfSlot(int slot) {
+		Object value = slots[slot];
+		GenericValue<?> valueWrapper = (value == NO_VALUE) ? null : (GenericValue<?>)value;
+		return parentCollection.getFields().createSlotView(this, slot, valueWrapper);
+	}
+	
+	/**
+	 * Iterates the slots in field definition order, then any other fields.
+	 */
+	private class SlotIterator implements Iterator<Map.Entry<String, GenericField<?>>> {
+		private int nextSlot = 0;
+		private int lastSlot = -1;
+		private Iterator<Map.Entry<String, GenericField<?>>> others = null;
+		
+		SlotIterator() {
+			advance();
+		}
+		
+		private void advance() {
+			while ((nextSlot < slots.length) && (slots[nextSlot] == null)) {
+				nextSlot++;
+			}
+		}
+		
+		@Override
+		public boolean hasNext() {
+			if (nextSlot < slots.length) {
+				return true;
+			}
+			if ((others == null) && (otherFields != null)) {
+				others = otherFields.entrySet().iterator();
+			}
+			return (others != null) && others.hasNext();
+		}
+		
+		@Override
+		public Map.Entry<String, GenericField<?>> next() {
+			if (!hasNext()) {
+				throw new NoSuchElementException();
+			}
+			if (nextSlot < slots.length) {
+				lastSlot = nextSlot++;
+				advance();
+				GenericField<?> field = viewOfSlot(lastSlot);
+				return new SimpleEntry<String, GenericField<?>>(field.getIdentifier(), field) {
+					static private final long serialVersionUID = 1L;
+					@Override
+					public GenericField<?> setValue(GenericField<?> value) {
+						GenericField<?> previous = super.setValue(value);
+						put(getKey(), value);
+						return previous;
+					}
+				};
+			}
+			lastSlot = -1;
+			return others.next();
+		}
+		
+		@Override
+		public void remove() {
+			if (lastSlot >= 0) {
+				if (slots[lastSlot] == null) {
+					throw new IllegalStateException();
+				}
+				slots[lastSlot] = null;
+				slotsInUse--;
+			} else if (others != null) {
+				others.remove();
+			} else {
+				throw new IllegalStateException();
+			}
+		}
+	}
+	
 	// OPERATIONS
 	
 	/**
@@ -115,45 +423,141 @@ public class Entry extends HashMap<String, GenericField<?>> {
 	 * @return true if the delete succeeded, false if not
 	 */
 	public boolean delete() {
+		return delete(null);
+	}
+
+	/**
+	 * Variant of delete() with timeouts for this call.
+	 * <p>
+	 * SERVER ROUND TRIP: this is a live API call
+	 * 
+	 * @param options the RequestOptions overriding those of the Application,
+	 * or null
+	 * @return true if the delete succeeded, false if not
+	 */
+	public boolean delete(RequestOptions options) {
 		boolean success = false;
 		
-		StringField itemUrlValue = (StringField)this.get("@url");
-		if (itemUrlValue == null) {
-			return false;
-		}
-		String itemUrl = itemUrlValue.getValueWrapper().getInnerValue();
+		String itemUrl = buildItemUrl();
 		if (itemUrl == null) {
 			return false;
 		}
 		Application application = parentCollection.getParentApplication();
-		itemUrl = StorageRoomUtil.decorateUrl(itemUrl, application.getAuthToken(), true, null);
-		
-		success = Http.delete(itemUrl);
+		success = application.getTransport().delete(itemUrl, options);
+		application.invalidateQueries(parentCollection);
 		
 		return success;
 	}
 
+	/**
+	 * Asynchronous variant of delete()
+	 * <p>
+	 * SERVER ROUND TRIP: this is a live API call
+	 * 
+	 * @return a future that completes with true if the delete succeeded
+	 */
+	public CompletableFuture<Boolean> deleteAsync() {
+		return deleteAsync(null);
+	}
+
+	/**
+	 * Asynchronous variant of delete(RequestOptions)
+	 * <p>
+	 * SERVER ROUND TRIP: this is a live API call
+	 * 
+	 * @param options the RequestOptions overriding those of the Application,
+	 * or null
+	 * @return a future that completes with true if the delete succeeded
+	 */
+	public CompletableFuture<Boolean> deleteAsync(RequestOptions options) {
+		String itemUrl = buildItemUrl();
+		if (itemUrl == null) {
+			return CompletableFuture.completedFuture(Boolean.FALSE);
+		}
+		Application application = parentCollection.getParentApplication();
+		return application.getTransport().deleteAsync(itemUrl, options).thenApply(success -> {
+			application.invalidateQueries(parentCollection);
+			return success;
+		});
+	}
+
 	public boolean update() {
+		return update(null);
+	}
+
+	/**
+	 * Variant of update() with timeouts for this call.
+	 * <p>
+	 * SERVER ROUND TRIP: this is a live API call
+	 * 
+	 * @param options the RequestOptions overriding those of the Application,
+	 * or null
+	 * @return true if the update succeeded, false if not
+	 */
+	public boolean update(RequestOptions options) {
 		boolean success = false;
 		
-		StringField itemUrlValue = (StringField)this.get("@url");
-		if (itemUrlValue == null) {
-			return false;
-		}
-		String itemUrl = itemUrlValue.getValueWrapper().getInnerValue();
+		String itemUrl = buildItemUrl();
 		if (itemUrl == null) {
 			return false;
 		}
 		Application application = parentCollection.getParentApplication();
-		itemUrl = StorageRoomUtil.decorateUrl(itemUrl, application.getAuthToken(), true, null);
 		
-		String putBody = toJSONString(true);
-		if (putBody != null) {
-			success = Http.put(itemUrl, putBody);
-		}
+		success = application.getTransport().put(itemUrl, toRequestBody(true), options);
+		application.invalidateQueries(parentCollection);
 				
 		return success;
 	}
+
+	/**
+	 * Asynchronous variant of update()
+	 * <p>
+	 * SERVER ROUND TRIP: this is a live API call
+	 * 
+	 * @return a future that completes with true if the update succeeded
+	 */
+	public CompletableFuture<Boolean> updateAsync() {
+		return updateAsync(null);
+	}
+
+	/**
+	 * Asynchronous variant of update(RequestOptions)
+	 * <p>
+	 * SERVER ROUND TRIP: this is a live API call
+	 * 
+	 * @param options the RequestOptions overriding those of the Application,
+	 * or null
+	 * @return a future that completes with true if the update succeeded
+	 */
+	public CompletableFuture<Boolean> updateAsync(RequestOptions options) {
+		String itemUrl = buildItemUrl();
+		if (itemUrl == null) {
+			return CompletableFuture.completedFuture(Boolean.FALSE);
+		}
+		Application application = parentCollection.getParentApplication();
+		
+		return application.getTransport().putAsync(itemUrl, toRequestBody(true), options).thenApply(success -> {
+			application.invalidateQueries(parentCollection);
+			return success;
+		});
+	}
+	
+	/**
+	 * Returns the decorated API url of this entry, or null if the entry
+	 * has not been saved to the server yet.
+	 */
+	private String buildItemUrl() {
+		StringField itemUrlValue = (StringField)this.get("@url");
+		if (itemUrlValue == null) {
+			return null;
+		}
+		String itemUrl = itemUrlValue.getValueWrapper().getInnerValue();
+		if (itemUrl == null) {
+			return null;
+		}
+		Application application = parentCollection.getParentApplication();
+		return application.decorateUrl(itemUrl, null);
+	}
 	
 	// CONVENIENCE METHODS
 	
@@ -231,28 +635,108 @@ public class Entry extends HashMap<String, GenericField<?>> {
 	}
 	
 	public String toJSONString(boolean dataFieldsOnly) {
-		java.util.Collection<GenericField<?>> fieldList = this.values();
-		if (dataFieldsOnly) {
-			fieldList = this.asListOfDataFieldsOnly();
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream(256);
+		try {
+			writeJSON(bytes, dataFieldsOnly);
+		} catch (IOException ioe) {
+			// not possible with a ByteArrayOutputStream
 		}
+		return new String(bytes.toByteArray(), StandardCharsets.UTF_8);
+	}
+	
+	/**
+	 * Writes this Entry as json, in the form used to insert or update it,
+	 * straight to a stream as UTF-8.
+	 * 
+	 * @param out the OutputStream, which is flushed but not closed
+	 * @param dataFieldsOnly true to leave out the metadata fields (@url, ...)
+	 * @throws IOException if the stream cannot be written
+	 */
+	public void writeJSON(OutputStream out, boolean dataFieldsOnly) throws IOException {
+		Utf8JsonWriter writer = new Utf8JsonWriter(out);
+		writeJSON(writer, dataFieldsOnly);
+		writer.flush();
+	}
+	
+	/**
+	 * Writes a batch of entries as a json array, straight to a stream as UTF-8.
+	 * 
+	 * @param entries the Entry objects
+	 * @param out the OutputStream, which is flushed but not closed
+	 * @param dataFieldsOnly true to leave out the metadata fields (@url, ...)
+	 * @throws IOException if the stream cannot be written
+	 */
+	static public void writeJSON(Iterable<com.storageroomapp.client.Entry> entries, OutputStream out, 
+			boolean dataFieldsOnly) throws IOException {
+		Utf8JsonWriter writer = new Utf8JsonWriter(out);
+		writer.writeAscii("[ ");
+		boolean isFirst = true;
+		for (com.storageroomapp.client.Entry entry : entries) {
+			if (isFirst) {
+				isFirst = false;
+			} else {
+				writer.writeRaw(SEPARATOR);
+			}
+			entry.writeJSON(writer, dataFieldsOnly);
+		}
+		writer.writeAscii(" ]");
+		writer.flush();
+	}
+	
+	/**
+	 * Returns a request body that writes this Entry straight to the 
+	 * connection, instead of building its json as a String. The json is 
+	 * written from the current values each time the body is sent.
+	 * 
+	 * @param dataFieldsOnly true to leave out the metadata fields (@url, ...)
+	 * @return the RequestBody
+	 */
+	public RequestBody toRequestBody(final boolean dataFieldsOnly) {
+		return out -> writeJSON(out, dataFieldsOnly);
+	}
+	
+	protected void writeJSON(Utf8JsonWriter writer, boolean dataFieldsOnly) throws IOException {
+		EntryWriter entryWriter = parentCollection.getFields().getEntryWriter();
 		
-		StringBuilder sb = new StringBuilder();
-		sb.append("{ \"entry\": {");
+		writer.writeRaw(ENTRY_START);
 		boolean isFirst = true;
-		for (GenericField<?> dataField : fieldList) {
-			String fieldStr = dataField.toJSONString();
-			if (fieldStr == null) {
+		for (int slot = 0; slot < slots.length; slot++) {
+			Object value = slots[slot];
+			if ((value == null) || (value == NO_VALUE)) {
+				continue;
+			}
+			if (dataFieldsOnly && !entryWriter.isDataSlot(slot)) {
 				continue;
 			}
 			if (isFirst) {
 				isFirst = false;
 			} else {
-				sb.append(", ");
+				writer.writeRaw(SEPARATOR);
 			}
-			sb.append(fieldStr);
+			entryWriter.writeField(writer, slot, (GenericValue<?>)value);
 		}
-		sb.append("} }");
-		return sb.toString();
+		if (otherFields != null) {
+			Fields fields = parentCollection.getFields();
+			for (Map.Entry<String, GenericField<?>> other : otherFields.entrySet()) {
+				String key = other.getKey();
+				GenericValue<?> value = (other.getValue() != null) ? other.getValue().getValueWrapper() : null;
+				if ((key == null) || (value == null)) {
+					continue;
+				}
+				// a field of an unexpected class put under a data identifier is still data
+				if (dataFieldsOnly && !entryWriter.isDataSlot(fields.slotOf(key))) {
+					continue;
+				}
+				if (isFirst) {
+					isFirst = false;
+				} else {
+					writer.writeRaw(SEPARATOR);
+				}
+				writer.writeRaw(Utf8JsonWriter.encodeName(key));
+				value.writeJSON(writer);
+			}
+		}
+		writer.writeRaw(ENTRY_END);
 	}
 	
 }
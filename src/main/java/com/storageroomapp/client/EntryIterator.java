@@ -0,0 +1,152 @@
+/*
+Copyright 2013 Peter Laird
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+*/
+package com.storageroomapp.client;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.concurrent.CompletableFuture;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+/**
+ * Iterates over every Entry matched by a query, across all pages of the
+ * results. It is obtained from the iterator() and stream() methods on the
+ * CollectionEntries object.
+ * <p>
+ * Pages are fetched lazily, starting with the first call to hasNext(). Once
+ * the number of pages is known, the next pages are requested in the 
+ * background while the current page is being consumed, so a full scan is
+ * bound by throughput rather than by the sum of the round trips.
+ * <p>
+ * If a page cannot be retrieved, iteration stops early; check isComplete()
+ * after the loop if a partial scan matters to you.
+ * <p>
+ * SERVER ROUND TRIP: this iterator makes live API calls
+ */
+public class EntryIterator implements Iterator<Entry>, AutoCloseable {
+	static private Log log = LogFactory.getLog(EntryIterator.class);
+
+	protected Collection parentCollection = null;
+	protected CollectionQuery queryOptions = null;
+	protected int prefetchDepth = 0;
+
+	private Iterator<Entry> currentPage = null;
+	private int numResultsPages = 0;
+	private int lastRequestedPage = 0;
+	private final Deque<CompletableFuture<PageOfEntries>> pending = new ArrayDeque<CompletableFuture<PageOfEntries>>();
+	private boolean started = false;
+	private boolean failed = false;
+	private boolean closed = false;
+
+	/**
+	 * @param parent the Collection to scan
+	 * @param query the query definition, or null for all entries
+	 * @param prefetchDepth the number of pages to request ahead of the 
+	 * page being consumed, 0 to fetch pages one at a time
+	 */
+	protected EntryIterator(Collection parent, CollectionQuery query, int prefetchDepth) {
+		this.parentCollection = parent;
+		this.queryOptions = query;
+		this.prefetchDepth = Math.max(0, prefetchDepth);
+	}
+
+	public boolean hasNext() {
+		if (!started) {
+			started = true;
+			PageOfEntries first = PageOfEntries.doLiveQuery(parentCollection, queryOptions, 0);
+			acceptPage(first);
+			if (first != null) {
+				numResultsPages = first.getNumResultsPages();
+				lastRequestedPage = PageOfEntries.FIRST_PAGE;
+				prefetch();
+			}
+		}
+		while ((currentPage != null) && !currentPage.hasNext()) {
+			currentPage = null;
+			CompletableFuture<PageOfEntries> next = pending.pollFirst();
+			if (next != null) {
+				acceptPage(next.join());
+			} else if (!failed && !closed && (lastRequestedPage < numResultsPages)) {
+				// no prefetch, fetch the next page on demand
+				lastRequestedPage++;
+				acceptPage(PageOfEntries.doLiveQuery(parentCollection, queryOptions, lastRequestedPage));
+			} else {
+				break;
+			}
+			prefetch();
+		}
+		return (currentPage != null) && currentPage.hasNext();
+	}
+
+	public Entry next() {
+		if (!hasNext()) {
+			throw new NoSuchElementException();
+		}
+		return currentPage.next();
+	}
+
+	/**
+	 * Returns true once every page of the results has been consumed
+	 * without error.
+	 * @return true if the scan finished, false if it is still in progress,
+	 * stopped early because a page failed, or was closed
+	 */
+	public boolean isComplete() {
+		return started && !failed && !closed && (currentPage == null) && pending.isEmpty()
+				&& (lastRequestedPage >= numResultsPages);
+	}
+
+	/**
+	 * Stops iterating and abandons any pages still being prefetched.
+	 */
+	public void close() {
+		closed = true;
+		currentPage = null;
+		for (CompletableFuture<PageOfEntries> future : pending) {
+			future.cancel(false);
+		}
+		pending.clear();
+	}
+
+	// INTERNAL
+
+	private void acceptPage(PageOfEntries page) {
+		if (page == null) {
+			if (!closed) {
+				log.error("Could not retrieve a page of entries for collection ["+parentCollection.getName()+"], stopping iteration");
+			}
+			failed = true;
+			currentPage = null;
+			close();
+			return;
+		}
+		Iterable<Entry> entries = page.asIterable();
+		currentPage = (entries != null) ? entries.iterator() : java.util.Collections.<Entry>emptyIterator();
+	}
+
+	private void prefetch() {
+		if (failed || closed) {
+			return;
+		}
+		while ((pending.size() < prefetchDepth) && (lastRequestedPage < numResultsPages)) {
+			lastRequestedPage++;
+			pending.add(PageOfEntries.doLiveQueryAsync(parentCollection, queryOptions, lastRequestedPage));
+		}
+	}
+}
@@ -15,17 +15,24 @@ Copyright 2013 Peter Laird
 */
 package com.storageroomapp.client;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+import java.io.StringReader;
 import java.util.ArrayList;
 import java.util.Iterator;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
 
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
 import org.json.simple.JSONArray;
 import org.json.simple.JSONObject;
-import org.json.simple.JSONValue;
 
-import com.storageroomapp.client.util.Http;
+import com.storageroomapp.client.util.JsonPullParser;
 import com.storageroomapp.client.util.JsonSimpleUtil;
-import com.storageroomapp.client.util.StorageRoomUtil;
+import com.storageroomapp.client.util.RequestOptions;
+import com.storageroomapp.client.util.ValidatorCache;
 
 /**
  * Encapsulates a page of live results from a query to the StorageRoom
@@ -35,6 +42,13 @@ import com.storageroomapp.client.util.StorageRoomUtil;
  *
  */
 public class PageOfEntries  {
+	static private Log log = LogFactory.getLog(PageOfEntries.class);
+	
+	/**
+	 * StorageRoom numbers result pages from 1; a query for page 0 (no page
+	 * parameter at all) returns this page.
+	 */
+	static public final int FIRST_PAGE = 1;
 	
 	// INPUT into server
 	protected Collection parentCollection = null;
@@ -63,16 +77,102 @@ public class PageOfEntries  {
 		if (json == null) {
 			return null;
 		}
-		JSONObject jsonObj = (JSONObject)JSONValue.parse(json);
-		if (jsonObj == null) {
+		return parseJSON(parent, new StringReader(json));
+	}
+
+	/**
+	 * Parses a stream of UTF-8 json text and returns an PageOfEntries object.
+	 * The stream is read once and each entry is bound straight into an Entry
+	 * using the Collection's Fields, without building a String or a JSONObject
+	 * tree for the page. The stream is closed.
+	 * 
+	 * @param parent the Collection the entries belong to
+	 * @param is the InputStream with the json text
+	 * @return an PageOfEntries object, or null if the parsing failed
+	 */
+	static public PageOfEntries parseJSON(Collection parent, InputStream is) {
+		if (is == null) {
 			return null;
 		}
-		JSONObject jsonArrayObj = (JSONObject)jsonObj.get("array");
-		if (jsonArrayObj != null) {
-			jsonObj = jsonArrayObj;
+		return parse(parent, new JsonPullParser(is));
+	}
+
+	/**
+	 * Parses json text from a Reader, see parseJSON(Collection, InputStream).
+	 * The reader is closed.
+	 * 
+	 * @param parent the Collection the entries belong to
+	 * @param reader the Reader with the json text
+	 * @return an PageOfEntries object, or null if the parsing failed
+	 */
+	static public PageOfEntries parseJSON(Collection parent, Reader reader) {
+		if (reader == null) {
+			return null;
 		}
-		
-		return parseJSONObject(parent, jsonObj);
+		return parse(parent, new JsonPullParser(reader));
+	}
+	
+	static private PageOfEntries parse(Collection parent, JsonPullParser parser) {
+		PageOfEntries el = null;
+		try {
+			if (parser.nextToken() == JsonPullParser.Token.START_OBJECT) {
+				el = new PageOfEntries();
+				el.currentPage = 0;
+				el.currentPageSize = 20;
+				el.numResultsPages = 1;
+				parsePageObject(parent, parser, el);
+				if (el.currentPageEntries == null) {
+					// no 'resources', this is not a page of entries
+					el = null;
+				}
+			}
+		} catch (IOException ioe) {
+			log.error("Error parsing a page of entries", ioe);
+			el = null;
+		} catch (RuntimeException re) {
+			// e.g. a field value that does not match the field type
+			log.error("Error binding a page of entries", re);
+			el = null;
+		} finally {
+			try { parser.close(); } catch (IOException ioe) {}
+		}
+		return el;
+	}
+	
+	/**
+	 * Consumes the fields of the page object the parser is positioned on,
+	 * descending into an 'array' wrapper if there is one.
+	 */
+	static private void parsePageObject(Collection parent, JsonPullParser parser, PageOfEntries el) throws IOException {
+		while (parser.nextToken() == JsonPullParser.Token.FIELD_NAME) {
+			String key = parser.getText();
+			JsonPullParser.Token token = parser.nextToken();
+			
+			if ("array".equals(key) && (token == JsonPullParser.Token.START_OBJECT)) {
+				parsePageObject(parent, parser, el);
+			} else if ("resources".equals(key) && (token == JsonPullParser.Token.START_ARRAY)) {
+				el.currentPageEntries = new ArrayList<Entry>();
+				while (parser.nextToken() == JsonPullParser.Token.START_OBJECT) {
+					el.currentPageEntries.add(Entry.parseJSON(parent, parser));
+				}
+			} else if ("@page".equals(key)) {
+				el.currentPage = parseInt(parser, el.currentPage);
+			} else if ("@total_resources".equals(key)) {
+				el.currentPageSize = parseInt(parser, el.currentPageSize);
+			} else if ("@pages".equals(key)) {
+				el.numResultsPages = parseInt(parser, el.numResultsPages);
+			} else {
+				parser.skipChildren();
+			}
+		}
+	}
+	
+	static private int parseInt(JsonPullParser parser, int defaultValue) throws IOException {
+		if (parser.getCurrentToken() == JsonPullParser.Token.VALUE_NUMBER) {
+			return parser.getIntValue();
+		}
+		parser.skipChildren();
+		return defaultValue;
 	}
 
 	/**
@@ -130,18 +230,112 @@ public class PageOfEntries  {
 			return null;
 		}
 		
+		QueryCache cache = parent.getParentApplication().getQueryCache();
+		if (cache == null) {
+			return fetchPage(parent, query, page);
+		}
+		PageOfEntries cached = cache.get(parent, query, page);
+		if (cached != null) {
+			return cached;
+		}
+		long generation = cache.getGeneration();
+		PageOfEntries el = fetchPage(parent, query, page);
+		cache.put(parent, query, page, el, generation);
+		return el;
+	}
+
+	/**
+	 * Asynchronous variant of doLiveQuery(). The returned future completes
+	 * with null if a problem occurred, it does not complete exceptionally.
+	 * <p>
+	 * SERVER ROUND TRIP: this is a live API call
+	 * 
+	 * @param parent the Collection
+	 * @param query the query definition
+	 * @param page the page to retrieve, 0 for the first page
+	 * @return a future for the PageOfEntries result
+	 */
+	static protected CompletableFuture<PageOfEntries> doLiveQueryAsync(final Collection parent, 
+			final CollectionQuery query, final int page) {
+		
+		if (parent == null) {
+			return CompletableFuture.completedFuture(null);
+		}
+		
+		final QueryCache cache = parent.getParentApplication().getQueryCache();
+		if (cache == null) {
+			return fetchPageAsync(parent, query, page);
+		}
+		PageOfEntries cached = cache.get(parent, query, page);
+		if (cached != null) {
+			return CompletableFuture.completedFuture(cached);
+		}
+		final long generation = cache.getGeneration();
+		return fetchPageAsync(parent, query, page).thenApply(el -> {
+			cache.put(parent, query, page, el, generation);
+			return el;
+		});
+	}
+	
+	/**
+	 * Concurrent fetches of the same page share one request and one parse
+	 */
+	static private PageOfEntries fetchPage(final Collection parent, final CollectionQuery query, final int page) {
+		Application pa = parent.getParentApplication();
+		final String queryUrl = buildQueryUrl(parent, query, page);
+		return pa.getPageReads().execute(queryUrl, () -> readPage(parent, query, page, queryUrl));
+	}
+	
+	static private CompletableFuture<PageOfEntries> fetchPageAsync(final Collection parent, 
+			final CollectionQuery query, final int page) {
+		Application pa = parent.getParentApplication();
+		final String queryUrl = buildQueryUrl(parent, query, page);
+		return pa.getPageReads().executeAsync(queryUrl, () -> readPageAsync(parent, query, page, queryUrl));
+	}
+	
+	static private PageOfEntries readPage(Collection parent, CollectionQuery query, int page, String queryUrl) {
+		Application pa = parent.getParentApplication();
+		ValidatorCache validators = pa.getValidatorCache();
+		if (validators != null) {
+			return validators.get(pa.getTransport(), queryUrl, requestOptions(query), 
+					results -> bindResults(parent, query, page, results));
+		}
+		InputStream results = pa.getTransport().get(queryUrl, requestOptions(query));
+		return bindResults(parent, query, page, results);
+	}
+	
+	static private CompletableFuture<PageOfEntries> readPageAsync(final Collection parent, 
+			final CollectionQuery query, final int page, String queryUrl) {
+		Application pa = parent.getParentApplication();
+		ValidatorCache validators = pa.getValidatorCache();
+		if (validators != null) {
+			return validators.getAsync(pa.getTransport(), queryUrl, requestOptions(query), 
+					results -> bindResults(parent, query, page, results));
+		}
+		return pa.getTransport().getAsync(queryUrl, requestOptions(query))
+				.thenApply(results -> bindResults(parent, query, page, results));
+	}
+	
+	static private RequestOptions requestOptions(CollectionQuery query) {
+		return (query != null) ? query.requestOptions : null;
+	}
+	
+	static private String buildQueryUrl(Collection parent, CollectionQuery query, int page) {
 		Application pa = parent.getParentApplication();
 		String entriesUrl = parent.getEntriesUrl();
 		
 		String extraQueryParams = null;
 		if (query != null) {
 			extraQueryParams = query.generateQueryString(page);
+		} else if (page > 0) {
+			// an unfiltered query still needs the page parameter
+			extraQueryParams = new CollectionQuery().generateQueryString(page);
 		}
 		
-		String queryUrl = StorageRoomUtil.decorateUrl(entriesUrl, pa.getAuthToken(), 
-				true, extraQueryParams);
-		
-		String results = Http.getAsString(queryUrl);
+		return pa.decorateUrl(entriesUrl, extraQueryParams);
+	}
+	
+	static private PageOfEntries bindResults(Collection parent, CollectionQuery query, int page, InputStream results) {
 		if (results == null) {
 			return null;
 		}
@@ -168,6 +362,19 @@ public class PageOfEntries  {
 		return doLiveQuery(this.parentCollection, this.queryOptions, newPage);
 	}
 	
+	/**
+	 * Asynchronous variant of jumpPage()
+	 * <p>
+	 * SERVER ROUND TRIP: this is a live API call
+	 * 
+	 * @param newPage the new page in the results to fetch
+	 * @return a future for the PageOfEntries result, which completes with
+	 * null if a problem occurred
+	 */
+	public CompletableFuture<PageOfEntries> jumpPageAsync(int newPage) {
+		return doLiveQueryAsync(this.parentCollection, this.queryOptions, newPage);
+	}
+	
 	// GETTERS
 	
 	public Collection getParentCollection() {
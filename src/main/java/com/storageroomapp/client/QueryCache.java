@@ -0,0 +1,166 @@
+/*
+Copyright 2013 Peter Laird
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+*/
+package com.storageroomapp.client;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.storageroomapp.client.util.TtlCache;
+
+/**
+ * Caches the results of Collection queries in memory, so repeated
+ * identical queries are answered without a server round trip. Results are
+ * keyed by collection, query string and page; they expire after a fixed
+ * time, and the least recently used are evicted when the cache is full.
+ * <p>
+ * Inserts, updates and deletes made through this client invalidate the
+ * cached results of the collection they touch. Changes made by anyone
+ * else show up once the results expire.
+ * <p>
+ * A cached PageOfEntries is shared by every caller that gets it, so do 
+ * not modify its entries in place if the cache is enabled.
+ * <p>
+ * Enable it with Application.setQueryCache().
+ */
+public class QueryCache {
+
+	static public final int DEFAULT_MAX_ENTRIES = 1000;
+	static public final long DEFAULT_TTL_MILLIS = 60000;
+
+	protected final TtlCache<Key, PageOfEntries> cache;
+	private final AtomicLong generation = new AtomicLong();
+
+	public QueryCache() {
+		this(DEFAULT_MAX_ENTRIES, DEFAULT_TTL_MILLIS);
+	}
+
+	/**
+	 * @param maxEntries the most pages held at once
+	 * @param ttlMillis how long a page is served from the cache
+	 */
+	public QueryCache(int maxEntries, long ttlMillis) {
+		this.cache = new TtlCache<Key, PageOfEntries>(maxEntries, ttlMillis);
+	}
+
+	// OPERATIONS
+
+	/**
+	 * @return the cached page, or null if not cached or expired
+	 */
+	public PageOfEntries get(Collection collection, CollectionQuery query, int page) {
+		return cache.get(new Key(collection, query, page));
+	}
+
+	public void put(Collection collection, CollectionQuery query, int page, PageOfEntries results) {
+		cache.put(new Key(collection, query, page), results);
+	}
+
+	/**
+	 * Caches a page fetched from the server, unless the cache was 
+	 * invalidated while the fetch was in flight; the page may then
+	 * predate the write.
+	 * @param generation the value of getGeneration() before the fetch
+	 */
+	public void put(Collection collection, CollectionQuery query, int page, PageOfEntries results, long generation) {
+		if (generation == this.generation.get()) {
+			put(collection, query, page, results);
+		}
+	}
+
+	/**
+	 * @return a counter that changes on every invalidation
+	 */
+	public long getGeneration() {
+		return generation.get();
+	}
+
+	/**
+	 * Drops every cached page of the collection
+	 * @param collection the Collection that changed
+	 * @return the number of pages dropped
+	 */
+	public int invalidate(Collection collection) {
+		final String url = String.valueOf(collection.getUrl());
+		generation.incrementAndGet();
+		return cache.removeIf(key -> key.collectionUrl.equals(url));
+	}
+
+	public void clear() {
+		generation.incrementAndGet();
+		cache.clear();
+	}
+
+	// METRICS
+
+	public int size() {
+		return cache.size();
+	}
+
+	public long getHitCount() {
+		return cache.getHitCount();
+	}
+
+	public long getMissCount() {
+		return cache.getMissCount();
+	}
+
+	public long getEvictionCount() {
+		return cache.getEvictionCount();
+	}
+
+	public double getHitRate() {
+		return cache.getHitRate();
+	}
+
+	@Override
+	public String toString() {
+		return "QueryCache "+cache;
+	}
+
+	// INTERNAL
+
+	/**
+	 * The query string is captured when the key is made, so a 
+	 * CollectionQuery changed afterwards does not corrupt the cache.
+	 */
+	static protected final class Key {
+		final String collectionUrl;
+		final String queryString;
+		final int page;
+
+		Key(Collection collection, CollectionQuery query, int page) {
+			this.collectionUrl = String.valueOf(collection.getUrl());
+			this.queryString = (query != null) ? query.generateQueryString(page) : "";
+			this.page = page;
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (this == obj) {
+				return true;
+			}
+			if (!(obj instanceof Key)) {
+				return false;
+			}
+			Key other = (Key)obj;
+			return (page == other.page) && collectionUrl.equals(other.collectionUrl) && queryString.equals(other.queryString);
+		}
+
+		@Override
+		public int hashCode() {
+			return (31 * collectionUrl.hashCode() + queryString.hashCode()) * 31 + page;
+		}
+	}
+}
@@ -0,0 +1,205 @@
+/*
+Copyright 2013 Peter Laird
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+*/
+package com.storageroomapp.client;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.json.simple.JSONObject;
+import org.json.simple.JSONValue;
+
+/**
+ * A local copy of the AccountInfo and Collections (with their Fields) of
+ * an Application, so a process can start working without the two round
+ * trips of connect() and getCollections(). The file holds the json the
+ * server sent, gzip compressed; the auth token is NOT stored.
+ * <p>
+ * Use it through Application.connectFromSnapshot() and saveSnapshot().
+ */
+public class SchemaSnapshot {
+	static private Log log = LogFactory.getLog(SchemaSnapshot.class);
+
+	static public final int FORMAT_VERSION = 1;
+
+	protected String accountId = null;
+	protected String apiBaseUrl = null;
+	protected long savedAtMillis = 0;
+	protected JSONObject account = null;
+	protected JSONObject collections = null;
+
+	protected SchemaSnapshot() {
+	}
+
+	// OPERATIONS
+
+	/**
+	 * Writes the schema of a connected Application to a file. The file is
+	 * written to a temporary file first and moved into place, so readers
+	 * never see a partial snapshot.
+	 * 
+	 * @param app the Application, with its AccountInfo and Collections loaded
+	 * @param file the File to write
+	 * @return true if the snapshot was written
+	 */
+	@SuppressWarnings("unchecked")
+	static public boolean save(Application app, File file) {
+		AccountInfo accountInfo = app.accountInfo;
+		Collections collections = app.collections;
+		if ((app.getAccountId() == null) || (accountInfo == null) || (accountInfo.sourceJson == null) 
+				|| (collections == null) || (collections.sourceJson == null)) {
+			return false;
+		}
+		JSONObject root = new JSONObject();
+		root.put("version", Long.valueOf(FORMAT_VERSION));
+		root.put("account_id", app.getAccountId());
+		root.put("api_base_url", app.getApiBaseUrl());
+		root.put("saved_at", Long.valueOf(System.currentTimeMillis()));
+		root.put("account", accountInfo.sourceJson);
+		root.put("collections", collections.sourceJson);
+		
+		File dir = file.getAbsoluteFile().getParentFile();
+		File temp = null;
+		Writer writer = null;
+		try {
+			if ((dir != null) && !dir.isDirectory() && !dir.mkdirs()) {
+				throw new IOException("Cannot create directory ["+dir+"]");
+			}
+			temp = File.createTempFile(file.getName(), ".tmp", dir);
+			writer = new OutputStreamWriter(new GZIPOutputStream(new FileOutputStream(temp)), "UTF-8");
+			root.writeJSONString(writer);
+			writer.close();
+			writer = null;
+			try {
+				Files.move(temp.toPath(), file.toPath(), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+			} catch (AtomicMoveNotSupportedException amnse) {
+				Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+			}
+			return true;
+		} catch (IOException ioe) {
+			log.error("Could not save the schema snapshot to ["+file+"]", ioe);
+			if (temp != null) {
+				temp.delete();
+			}
+			return false;
+		} finally {
+			if (writer != null) {
+				try { writer.close(); } catch (IOException ioe) {}
+			}
+		}
+	}
+
+	/**
+	 * Reads a snapshot written by save()
+	 * 
+	 * @param file the File to read
+	 * @return the SchemaSnapshot, or null if the file is missing or unreadable
+	 */
+	static public SchemaSnapshot load(File file) {
+		if ((file == null) || !file.isFile()) {
+			return null;
+		}
+		Reader reader = null;
+		try {
+			reader = new BufferedReader(new InputStreamReader(new GZIPInputStream(new FileInputStream(file)), "UTF-8"));
+			Object parsed = JSONValue.parse(reader);
+			if (!(parsed instanceof JSONObject)) {
+				log.warn("Ignoring the malformed schema snapshot ["+file+"]");
+				return null;
+			}
+			JSONObject root = (JSONObject)parsed;
+			Object version = root.get("version");
+			if (!(version instanceof Number) || (((Number)version).intValue() != FORMAT_VERSION)) {
+				log.warn("Ignoring the schema snapshot ["+file+"], its format version is ["+version+"]");
+				return null;
+			}
+			SchemaSnapshot snapshot = new SchemaSnapshot();
+			snapshot.accountId = (String)root.get("account_id");
+			snapshot.apiBaseUrl = (String)root.get("api_base_url");
+			Object savedAt = root.get("saved_at");
+			snapshot.savedAtMillis = (savedAt instanceof Number) ? ((Number)savedAt).longValue() : 0;
+			snapshot.account = (JSONObject)root.get("account");
+			snapshot.collections = (JSONObject)root.get("collections");
+			if ((snapshot.accountId == null) || (snapshot.account == null) || (snapshot.collections == null)) {
+				log.warn("Ignoring the incomplete schema snapshot ["+file+"]");
+				return null;
+			}
+			return snapshot;
+		} catch (IOException ioe) {
+			log.warn("Could not read the schema snapshot ["+file+"]", ioe);
+			return null;
+		} catch (RuntimeException re) {
+			log.warn("Ignoring the malformed schema snapshot ["+file+"]", re);
+			return null;
+		} finally {
+			if (reader != null) {
+				try { reader.close(); } catch (IOException ioe) {}
+			}
+		}
+	}
+
+	/**
+	 * @return true if this snapshot was taken of the account at the endpoint
+	 */
+	public boolean matches(String accountId, String apiBaseUrl) {
+		return this.accountId.equals(accountId) && ((this.apiBaseUrl == null) || this.apiBaseUrl.equals(apiBaseUrl));
+	}
+
+	// GETTERS
+
+	public String getAccountId() {
+		return accountId;
+	}
+
+	public String getApiBaseUrl() {
+		return apiBaseUrl;
+	}
+
+	/**
+	 * @return when the snapshot was saved, in epoch millis
+	 */
+	public long getSavedAtMillis() {
+		return savedAtMillis;
+	}
+
+	/**
+	 * @return a freshly parsed AccountInfo, or null if parsing failed
+	 */
+	public AccountInfo parseAccountInfo() {
+		return AccountInfo.parseJsonObject(account);
+	}
+
+	/**
+	 * @param app the Application the Collections will belong to
+	 * @return freshly parsed Collections, or null if parsing failed
+	 */
+	public Collections parseCollections(Application app) {
+		return Collections.parseJsonObject(app, collections);
+	}
+}
@@ -15,6 +15,10 @@ Copyright 2013 Peter Laird
 */
 package com.storageroomapp.client.field;
 
+import java.io.IOException;
+
+import com.storageroomapp.client.util.JsonPullParser;
+
 public class BooleanField extends GenericField<GenericValue<Boolean>> {
 
 	static public final String STORAGEROOM_TYPE_NAME = "BooleanField";
@@ -32,7 +36,18 @@ public class BooleanField extends GenericField<GenericValue<Boolean>> {
 			return new BooleanValue();
 		}
 		Boolean valueBool = (Boolean)jsonValue;
-		return new BooleanValue(valueBool);
+		return new BooleanValue(valueBool.booleanValue());
+	}
+	
+	@Override
+	protected BooleanValue deserializeJsonValue(JsonPullParser parser) throws IOException {
+		JsonPullParser.Token token = parser.getCurrentToken();
+		if (token == JsonPullParser.Token.VALUE_TRUE) {
+			return new BooleanValue(true);
+		} else if (token == JsonPullParser.Token.VALUE_FALSE) {
+			return new BooleanValue(false);
+		}
+		return deserializeJsonValue(parser.readValue());
 	}
 
 }
@@ -15,6 +15,14 @@ Copyright 2013 Peter Laird
 */
 package com.storageroomapp.client.field;
 
+import java.io.IOException;
+
+import com.storageroomapp.client.util.Utf8JsonWriter;
+
+/**
+ * Holds a StorageRoom boolean value. Values are always one of the shared
+ * Boolean constants, so holding one costs no allocation.
+ */
 public class BooleanValue extends GenericValue<Boolean>{
 
 	public BooleanValue() {
@@ -24,4 +32,42 @@ public class BooleanValue extends GenericValue<Boolean>{
 	public BooleanValue(Boolean value) {
 		this.innerValue = value;
 	}
+	
+	public BooleanValue(boolean value) {
+		this.innerValue = Boolean.valueOf(value);
+	}
+	
+	/**
+	 * Returns whether this holds a value at all.
+	 * @return true if there is a value
+	 */
+	public boolean hasValue() {
+		return (innerValue != null);
+	}
+	
+	/**
+	 * Returns the value as a primitive.
+	 * @return the boolean value, or false if there is no value
+	 */
+	public boolean getBooleanValue() {
+		return (innerValue != null) && innerValue.booleanValue();
+	}
+	
+	/**
+	 * Sets the value from a primitive.
+	 * @param value the boolean value
+	 */
+	public void setBooleanValue(boolean value) {
+		this.innerValue = Boolean.valueOf(value);
+	}
+	
+	@Override
+	public void writeJSON(Utf8JsonWriter writer) throws IOException {
+		if (!hasValue()) {
+			writer.writeNull();
+			return;
+		}
+		// quoted, as toJSONString() writes it
+		writer.writeAscii(getBooleanValue() ? "\"true\"" : "\"false\"");
+	}
 }
@@ -15,8 +15,6 @@ Copyright 2013 Peter Laird
 */
 package com.storageroomapp.client.field;
 
-import java.util.Calendar;
-
 import com.storageroomapp.client.util.StorageRoomUtil;
 
 public class DateField extends GenericField<DateValue> {
@@ -36,12 +34,11 @@ public class DateField extends GenericField<DateValue> {
 			return new DateValue();
 		}
 		String valueStr = jsonValue.toString();
-		Calendar valueCal = StorageRoomUtil.storageRoomDateStringToCalendar(valueStr);
-		if (valueCal == null) {
+		long valueMillis = StorageRoomUtil.storageRoomDateStringToEpochMillis(valueStr);
+		if (valueMillis == StorageRoomUtil.INVALID_EPOCH_MILLIS) {
 			return new DateValue();
 		}
-		DateValue dateValue = new DateValue(valueCal);
-		return dateValue;
+		return new DateValue(valueMillis);
 	}
 
 	@Override
@@ -49,11 +46,10 @@ public class DateField extends GenericField<DateValue> {
 		if (value == null) {
 			return null;
 		}
-		Calendar calValue = value.innerValue;
-		if (calValue == null) {
+		String calString = value.toString();
+		if (calString == null) {
 			return null;
 		}
-		String calString = StorageRoomUtil.calendarToStorageRoomDateString(calValue);
-		return this.identifier+" ["+calString+"] ";
+		return getIdentifier()+" ["+calString+"] ";
 	}
 }
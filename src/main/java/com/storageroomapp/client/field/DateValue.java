@@ -19,6 +19,10 @@ import java.util.Calendar;
 
 import com.storageroomapp.client.util.StorageRoomUtil;
 
+/**
+ * Holds a StorageRoom date value. Values read from the server are parsed
+ * straight into epoch millis, without a date format.
+ */
 public class DateValue extends GenericValue<Calendar>{
 
 	public DateValue() {
@@ -29,11 +33,43 @@ public class DateValue extends GenericValue<Calendar>{
 		this.innerValue = value;
 	}
 	
-	public String toString() {
+	/**
+	 * @param epochMillis the date as milliseconds since the epoch, or
+	 * StorageRoomUtil.INVALID_EPOCH_MILLIS for no value
+	 */
+	public DateValue(long epochMillis) {
+		setEpochMillis(epochMillis);
+	}
+	
+	/**
+	 * Returns the date as milliseconds since the epoch.
+	 * @return the epoch millis, or StorageRoomUtil.INVALID_EPOCH_MILLIS if there is no value
+	 */
+	public long getEpochMillis() {
 		if (innerValue == null) {
+			return StorageRoomUtil.INVALID_EPOCH_MILLIS;
+		}
+		return innerValue.getTimeInMillis();
+	}
+	
+	/**
+	 * Sets the date as milliseconds since the epoch.
+	 * @param epochMillis the epoch millis, or StorageRoomUtil.INVALID_EPOCH_MILLIS for no value
+	 */
+	public void setEpochMillis(long epochMillis) {
+		if (epochMillis == StorageRoomUtil.INVALID_EPOCH_MILLIS) {
+			this.innerValue = null;
+		} else {
+			this.innerValue = StorageRoomUtil.epochMillisToCalendar(epochMillis);
+		}
+	}
+	
+	public String toString() {
+		long millis = getEpochMillis();
+		if (millis == StorageRoomUtil.INVALID_EPOCH_MILLIS) {
 			return null;
 		}
-		return StorageRoomUtil.calendarToStorageRoomDateString(innerValue);
+		return StorageRoomUtil.epochMillisToStorageRoomDateString(millis);
 	}
 	
 }
@@ -0,0 +1,154 @@
+/*
+Copyright 2013 Peter Laird
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+*/
+package com.storageroomapp.client.field;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.json.simple.JSONObject;
+
+import com.storageroomapp.client.Entry;
+import com.storageroomapp.client.util.JsonPullParser;
+
+/**
+ * Binds entry json to Entry objects for one Collection. The binder is
+ * compiled once from the Collection's Fields into a table from json key 
+ * to the slot and field definition (the decoder) of that key, so binding 
+ * an entry is a single pass over the keys actually present in the json.
+ * <p>
+ * A binder is immutable; Fields compiles a new one whenever its list of
+ * field definitions changes. Obtain it with Fields.getEntryBinder().
+ */
+public class EntryBinder {
+
+	// one per field definition, looked up by json key
+	static private final class Binding {
+		final int slot;
+		final GenericField<?> decoder;
+		
+		Binding(int slot, GenericField<?> decoder) {
+			this.slot = slot;
+			this.decoder = decoder;
+		}
+	}
+	
+	private final Map<String, Binding> bindings;
+	private final int slotCount;
+	// the Fields modCount this binder was compiled from
+	final int fieldsModCount;
+	
+	EntryBinder(Fields fields, int fieldsModCount) {
+		this.slotCount = fields.size();
+		this.fieldsModCount = fieldsModCount;
+		this.bindings = new HashMap<String, Binding>(slotCount * 2);
+		for (int slot = 0; slot < slotCount; slot++) {
+			GenericField<?> field = fields.get(slot);
+			bindings.put(field.getIdentifier(), new Binding(slot, field));
+		}
+	}
+	
+	// GETTERS
+	
+	/**
+	 * Returns the value slot of a field.
+	 * @param identifier the String identifier of the field
+	 * @return the slot, or -1 if the Collection has no such field
+	 */
+	public int slotOf(String identifier) {
+		Binding binding = bindings.get(identifier);
+		if (binding == null) {
+			return -1;
+		}
+		return binding.slot;
+	}
+	
+	/**
+	 * @return the number of slots an Entry of the Collection needs
+	 */
+	public int getSlotCount() {
+		return slotCount;
+	}
+	
+	// BINDING
+	
+	/**
+	 * Binds every field of the json object that the Collection defines. 
+	 * Null values and unknown keys are skipped.
+	 * @param jsonObj the json of the entry
+	 * @param hydrate the Entry to bind into
+	 */
+	public void bind(JSONObject jsonObj, Entry hydrate) {
+		for (Object o : jsonObj.entrySet()) {
+			Map.Entry<?, ?> member = (Map.Entry<?, ?>)o;
+			Object valueJson = member.getValue();
+			if (valueJson == null) {
+				continue;
+			}
+			Binding binding = bindings.get(member.getKey());
+			if (binding == null) {
+				continue;
+			}
+			GenericValue<?> value = binding.decoder.deserializeJsonValue(valueJson);
+			if (value != null) {
+				hydrate.bindSlot(binding.slot, value);
+			}
+		}
+	}
+	
+	/**
+	 * Binds the rest of a json object from a streaming parser. The parser
+	 * must be positioned on the START_OBJECT token of the entry (or on a
+	 * value already bound); on return it is positioned on the matching 
+	 * END_OBJECT.
+	 * @param parser the JsonPullParser
+	 * @param hydrate the Entry to bind into
+	 * @throws IOException if the json is malformed or cannot be read
+	 */
+	public void bind(JsonPullParser parser, Entry hydrate) throws IOException {
+		while (parser.nextToken() == JsonPullParser.Token.FIELD_NAME) {
+			String identifier = parser.getText();
+			parser.nextToken();
+			bindValue(parser, identifier, hydrate);
+		}
+	}
+	
+	/**
+	 * Binds one value from a streaming parser positioned on the value (just
+	 * past the field name); the whole value is consumed, whether or not it 
+	 * is bound.
+	 * @param parser the JsonPullParser positioned on the value
+	 * @param identifier the String field name the value was found under
+	 * @param hydrate the Entry to bind into
+	 * @throws IOException if the value cannot be read
+	 */
+	public void bindValue(JsonPullParser parser, String identifier, Entry hydrate) throws IOException {
+		Binding binding = bindings.get(identifier);
+		if (binding == null) {
+			// not part of the Collection definition
+			parser.skipChildren();
+			return;
+		}
+		if (parser.getCurrentToken() == JsonPullParser.Token.VALUE_NULL) {
+			return;
+		}
+		GenericValue<?> value = binding.decoder.deserializeJsonValue(parser);
+		if (value != null) {
+			hydrate.bindSlot(binding.slot, value);
+		}
+	}
+	
+}
@@ -0,0 +1,73 @@
+/*
+Copyright 2013 Peter Laird
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+*/
+package com.storageroomapp.client.field;
+
+import java.io.IOException;
+
+import com.storageroomapp.client.util.Utf8JsonWriter;
+
+/**
+ * Writes the fields of entries of one Collection as json. The member 
+ * names (e.g. <code>"identifier": </code>) are encoded to UTF-8 once, when
+ * the writer is compiled from the Collection's Fields, and copied as is 
+ * for every entry written.
+ * <p>
+ * A writer is immutable; Fields compiles a new one whenever its list of
+ * field definitions changes. Obtain it with Fields.getEntryWriter().
+ */
+public class EntryWriter {
+
+	private final byte[][] namePrefixes;
+	private final boolean[] isDataSlot;
+	// the Fields modCount this writer was compiled from
+	final int fieldsModCount;
+	
+	EntryWriter(Fields fields, int fieldsModCount) {
+		this.fieldsModCount = fieldsModCount;
+		int slotCount = fields.size();
+		this.namePrefixes = new byte[slotCount][];
+		this.isDataSlot = new boolean[slotCount];
+		for (int slot = 0; slot < slotCount; slot++) {
+			GenericField<?> field = fields.get(slot);
+			namePrefixes[slot] = Utf8JsonWriter.encodeName(field.getIdentifier());
+			isDataSlot[slot] = fields.withOnlyDataFields().contains(field);
+		}
+	}
+	
+	/**
+	 * Returns whether a slot holds a data field, as opposed to one of the
+	 * metadata fields every entry has (@url, @version, ...)
+	 * @param slot the slot
+	 * @return true for data fields
+	 */
+	public boolean isDataSlot(int slot) {
+		return (slot >= 0) && (slot < isDataSlot.length) && isDataSlot[slot];
+	}
+	
+	/**
+	 * Writes one json member: the pre-encoded name of the slot's field, 
+	 * then the value.
+	 * @param writer the Utf8JsonWriter
+	 * @param slot the slot of the field
+	 * @param value the GenericValue, not null
+	 * @throws IOException if the field cannot be written
+	 */
+	public void writeField(Utf8JsonWriter writer, int slot, GenericValue<?> value) throws IOException {
+		writer.writeRaw(namePrefixes[slot]);
+		value.writeJSON(writer);
+	}
+	
+}
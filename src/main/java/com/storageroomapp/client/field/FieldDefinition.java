@@ -0,0 +1,61 @@
+/*
+Copyright 2013 Peter Laird
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+*/
+package com.storageroomapp.client.field;
+
+import java.util.Collections;
+import java.util.Map;
+
+import com.storageroomapp.client.Collection;
+
+/**
+ * The immutable description of a field of a Collection: its type, name, 
+ * identifier and other properties. Every GenericField holds one; the data
+ * fields of all entries share the definition of the field they belong to,
+ * so a data field itself only carries its value.
+ */
+final class FieldDefinition {
+	final Collection parentCollection;
+	final String type;
+	final String name;
+	final String identifier;
+	final Map<String, String> additionalProperties;
+	final boolean isCompoundFieldType;
+	
+	FieldDefinition(Collection parentCollection, String type, String name, String identifier, 
+			Map<String, String> additionalProperties, boolean isCompoundFieldType) {
+		this.parentCollection = parentCollection;
+		this.type = type;
+		this.name = name;
+		this.identifier = identifier;
+		this.additionalProperties = Collections.unmodifiableMap(additionalProperties);
+		this.isCompoundFieldType = isCompoundFieldType;
+	}
+	
+	/**
+	 * @return a copy of this definition for another Collection
+	 */
+	FieldDefinition forCollection(Collection otherCollection) {
+		return new FieldDefinition(otherCollection, type, name, identifier, additionalProperties, isCompoundFieldType);
+	}
+	
+	/**
+	 * @return a copy of this definition with other names, for another Collection
+	 */
+	FieldDefinition forCollection(Collection otherCollection, String type, String name, String identifier) {
+		return new FieldDefinition(otherCollection, type, name, identifier, additionalProperties, isCompoundFieldType);
+	}
+	
+}
@@ -15,6 +15,7 @@ Copyright 2013 Peter Laird
 */
 package com.storageroomapp.client.field;
 
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.Iterator;
@@ -26,6 +27,7 @@ import org.json.simple.JSONObject;
 
 import com.storageroomapp.client.Collection;
 import com.storageroomapp.client.Entry;
+import com.storageroomapp.client.util.JsonPullParser;
 import com.storageroomapp.client.util.JsonSimpleUtil;
 
 public class Fields extends ArrayList<GenericField<?>> {
@@ -33,6 +35,10 @@ public class Fields extends ArrayList<GenericField<?>> {
 		
 	protected Collection parentCollection = null;
 	private ArrayList<GenericField<?>> dataFieldsOnlyList = new ArrayList<GenericField<?>>();
+	
+	// compiled from this list on first use, and again whenever this list changes
+	private volatile EntryBinder entryBinder = null;
+	private volatile EntryWriter entryWriter = null;
 
 	
 	public Fields(Collection parentCollection) {
@@ -117,13 +123,105 @@ public class Fields extends ArrayList<GenericField<?>> {
 	// ENTRY FIELD INSTANCE PARSING
 	
 	public void parseFieldsInEntryJsonObject(JSONObject jsonObject, Entry hydrate) {
-		for (GenericField<?> field : this) {
-			String identifier = field.getIdentifier();
-			GenericField<?> instance = field.parseValueJsonForField(jsonObject, identifier);
-			if (instance != null) {
-				hydrate.put(identifier, instance);
-			}
+		getEntryBinder().bind(jsonObject, hydrate);
+	}
+	
+	/**
+	 * Binds one field value of an entry directly from a streaming parser. The
+	 * parser must be positioned on the value (just past the field name); the
+	 * whole value is consumed, whether or not it is bound.
+	 * 
+	 * @param parser the JsonPullParser positioned on the value
+	 * @param identifier the String field name the value was found under
+	 * @param hydrate the Entry to add the field to
+	 * @throws IOException if the value cannot be read
+	 */
+	public void parseFieldInEntry(JsonPullParser parser, String identifier, Entry hydrate) throws IOException {
+		getEntryBinder().bindValue(parser, identifier, hydrate);
+	}
+	
+	/**
+	 * Returns the binder compiled from the current field definitions, 
+	 * compiling a new one if the definitions changed since the last call.
+	 * @return the EntryBinder, never null
+	 */
+	public EntryBinder getEntryBinder() {
+		EntryBinder binder = entryBinder;
+		if ((binder == null) || (binder.fieldsModCount != modCount)) {
+			binder = new EntryBinder(this, modCount);
+			entryBinder = binder;
+		}
+		return binder;
+	}
+	
+	/**
+	 * Returns the writer compiled from the current field definitions, 
+	 * compiling a new one if the definitions changed since the last call.
+	 * @return the EntryWriter, never null
+	 */
+	public EntryWriter getEntryWriter() {
+		EntryWriter writer = entryWriter;
+		if ((writer == null) || (writer.fieldsModCount != modCount)) {
+			writer = new EntryWriter(this, modCount);
+			entryWriter = writer;
+		}
+		return writer;
+	}
+	
+	/**
+	 * Finds a field definition (metadata or data) by its identifier.
+	 * @param identifier the String identifier
+	 * @return the field definition, or null if this Collection has no such field
+	 */
+	public GenericField<?> findFieldByIdentifier(String identifier) {
+		int slot = slotOf(identifier);
+		if (slot < 0) {
+			return null;
+		}
+		return get(slot);
+	}
+	
+	/**
+	 * Returns the value slot Entry objects of this Collection use for a field, 
+	 * which is the position of the field definition in this list.
+	 * @param identifier the String identifier
+	 * @return the slot, or -1 if this Collection has no such field
+	 */
+	public int slotOf(String identifier) {
+		return getEntryBinder().slotOf(identifier);
+	}
+	
+	/**
+	 * Creates the data field view of a value held in an Entry slot. The view 
+	 * is not retained by the Entry; setting its value writes through to the slot.
+	 * 
+	 * @param entry the Entry holding the value
+	 * @param slot the slot of the value
+	 * @param value the GenericValue in the slot, may be null
+	 * @return the data field
+	 */
+	public GenericField<?> createSlotView(Entry entry, int slot, GenericValue<?> value) {
+		return createSlotView(get(slot), entry, slot, value);
+	}
+	
+	@SuppressWarnings("unchecked")
+	static private <T extends GenericValue<?>> GenericField<T> createSlotView(GenericField<T> definition, 
+			Entry entry, int slot, GenericValue<?> value) {
+		return definition.cloneAsSlotView((T)value, entry, slot);
+	}
+	
+	/**
+	 * Determines if a data field can be stored in a slot, i.e. it is of the 
+	 * same field type as the definition that owns the slot.
+	 * @param slot the slot
+	 * @param field the data field
+	 * @return true if the value of the field can be stored in the slot
+	 */
+	public boolean fitsSlot(int slot, GenericField<?> field) {
+		if ((field == null) || field.isFieldDefinition) {
+			return false;
 		}
+		return field.getClass() == get(slot).getClass();
 	}
 	
 	public void addMissingDataFieldsToEntry(Entry hydrate) {
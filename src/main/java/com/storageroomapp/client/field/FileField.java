@@ -22,13 +22,11 @@ public class FileField extends GenericField<FileValue> {
 	static public final String STORAGEROOM_TYPE_NAME = "FileField";
 
 	public FileField() {
-		super(STORAGEROOM_TYPE_NAME);
+		// File objects are complex, labeled in SR as 'compound'
+		super(STORAGEROOM_TYPE_NAME, true);
 		
 		// all Fields must have an instantiated Value container
 		this.value = new FileValue();
-		
-		// File objects are complex, labeled in SR as 'compound'
-		this.isCompoundFieldType = true;
 	}
 	
 	@Override
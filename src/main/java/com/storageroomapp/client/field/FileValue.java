@@ -26,6 +26,7 @@ import org.json.simple.JSONObject;
 import com.storageroomapp.client.util.FileUtil;
 import com.storageroomapp.client.util.Http;
 import com.storageroomapp.client.util.JsonSimpleUtil;
+import com.storageroomapp.client.util.Utf8JsonWriter;
 
 public class FileValue extends GenericValue<String> {
 	
@@ -89,8 +90,11 @@ public class FileValue extends GenericValue<String> {
 		if (isObjectConfiguredForUpload) {
 			throw new IllegalStateException();
 		}
-		InputStream istream = Http.get(this.innerValue);
-		return istream;
+		if (parentField != null) {
+			// served from the Application's BlobCache, if it has one
+			return parentField.openContent(this.innerValue);
+		}
+		return Http.getDefaultTransport().get(this.innerValue);
 	}
 
 	public boolean getFileAsFile(File fileToWrite) {
@@ -135,6 +139,11 @@ public class FileValue extends GenericValue<String> {
 		return result;
 	}
 	
+	@Override
+	public void writeJSON(Utf8JsonWriter writer) throws IOException {
+		writer.writeRawString(toJSONString());
+	}
+	
 	@Override
 	public String toJSONString() {
 		StringBuilder sb = new StringBuilder();
@@ -15,6 +15,10 @@ Copyright 2013 Peter Laird
 */
 package com.storageroomapp.client.field;
 
+import java.io.IOException;
+
+import com.storageroomapp.client.util.JsonPullParser;
+
 public class FloatField extends GenericField<FloatValue> {
 
 	static public final String STORAGEROOM_TYPE_NAME = "FloatField";
@@ -32,8 +36,18 @@ public class FloatField extends GenericField<FloatValue> {
 			return new FloatValue();
 		}
 		Number valueNum = (Number)jsonValue;
-		Float valueFloat = valueNum.floatValue();
-		return new FloatValue(valueFloat);
+		return new FloatValue(valueNum.floatValue());
+	}
+	
+	@Override
+	protected FloatValue deserializeJsonValue(JsonPullParser parser) throws IOException {
+		if (parser.getCurrentToken() != JsonPullParser.Token.VALUE_NUMBER) {
+			return super.deserializeJsonValue(parser);
+		}
+		if (parser.isIntegralNumber()) {
+			return new FloatValue((float)parser.getLongValue());
+		}
+		return new FloatValue((float)parser.getDoubleValue());
 	}
 
 }
@@ -15,6 +15,14 @@ Copyright 2013 Peter Laird
 */
 package com.storageroomapp.client.field;
 
+import java.io.IOException;
+
+import com.storageroomapp.client.util.Utf8JsonWriter;
+
+/**
+ * Holds a StorageRoom float value. getFloatValue() and setFloatValue() let
+ * callers work with a primitive float.
+ */
 public class FloatValue extends GenericValue<Float>{
 
 	public FloatValue() {
@@ -24,4 +32,44 @@ public class FloatValue extends GenericValue<Float>{
 	public FloatValue(Float value) {
 		this.innerValue = value;
 	}
+	
+	public FloatValue(float value) {
+		this.innerValue = Float.valueOf(value);
+	}
+	
+	/**
+	 * Returns whether this holds a value at all.
+	 * @return true if there is a value
+	 */
+	public boolean hasValue() {
+		return (innerValue != null);
+	}
+	
+	/**
+	 * Returns the value as a primitive.
+	 * @return the float value, or 0 if there is no value
+	 */
+	public float getFloatValue() {
+		return (innerValue != null) ? innerValue.floatValue() : 0;
+	}
+	
+	/**
+	 * Sets the value from a primitive.
+	 * @param value the float value
+	 */
+	public void setFloatValue(float value) {
+		this.innerValue = Float.valueOf(value);
+	}
+	
+	@Override
+	public void writeJSON(Utf8JsonWriter writer) throws IOException {
+		if (!hasValue()) {
+			writer.writeNull();
+			return;
+		}
+		// quoted, as toJSONString() writes it
+		writer.writeRaw((byte)'"');
+		writer.writeAscii(Float.toString(getFloatValue()));
+		writer.writeRaw((byte)'"');
+	}
 }
@@ -15,13 +15,22 @@ Copyright 2013 Peter Laird
 */
 package com.storageroomapp.client.field;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
 
 import org.json.simple.JSONObject;
 
+import com.storageroomapp.client.Application;
 import com.storageroomapp.client.Collection;
+import com.storageroomapp.client.Entry;
+import com.storageroomapp.client.util.BlobCache;
+import com.storageroomapp.client.util.Http;
+import com.storageroomapp.client.util.JsonPullParser;
 import com.storageroomapp.client.util.JsonSimpleUtil;
+import com.storageroomapp.client.util.Transport;
 
 abstract public class GenericField<T extends GenericValue<?>> implements Cloneable {
 
@@ -66,19 +75,9 @@ abstract public class GenericField<T extends GenericValue<?>> implements Cloneab
 	 */
 	
 	
-	protected Collection parentCollection = null;
-	
-	// this is used by subclasses to differentiate
-	protected String type = "all";
-
-	// the core properties of a Field
-	protected String name = "undefined";
-	protected String identifier = "undefined";
-	// the rest of the properties
-	protected Map<String, String> additionalProperties = new HashMap<String, String>();
-
-	// is this a compound field? File, Image, Location, Association
-	protected boolean isCompoundFieldType = false;
+	// The type, name, identifier and other properties of the field. Data fields
+	// share the definition of their metadata field, they only carry a value.
+	FieldDefinition definition;
 
 	// If isFieldDefinition is true, this object is a metadata field, meaning it
 	// is associated with a Collection, not an Entry
@@ -86,8 +85,22 @@ abstract public class GenericField<T extends GenericValue<?>> implements Cloneab
 	// Field 'value' should only be used if isFieldDefinition is false
 	protected T value = null;
 	
+	// A data field handed out by an Entry is a transient view onto one of the 
+	// Entry's value slots; setValue() writes through to that slot
+	protected Entry boundEntry = null;
+	protected int boundSlot = -1;
+	
 	protected GenericField(String type) {
-		this.type = type;
+		this(type, false);
+	}
+	
+	/**
+	 * @param type the StorageRoom type label
+	 * @param isCompoundFieldType true for File, Image, Location and the like
+	 */
+	protected GenericField(String type, boolean isCompoundFieldType) {
+		this.definition = new FieldDefinition(null, type, "undefined", "undefined", 
+				Collections.<String, String>emptyMap(), isCompoundFieldType);
 	}
 	
 	
@@ -115,7 +128,7 @@ abstract public class GenericField<T extends GenericValue<?>> implements Cloneab
 	protected GenericField<T> cloneAsMetadataField(Collection otherCollection) {
 		GenericField<T> clone = build();
 				
-		clone.parentCollection = otherCollection;
+		clone.definition = definition.forCollection(otherCollection);
 
 		return clone;
 	}
@@ -124,10 +137,7 @@ abstract public class GenericField<T extends GenericValue<?>> implements Cloneab
 			String name, String identifier) {
 		GenericField<T> clone = build();
 				
-		clone.parentCollection = otherCollection;
-		clone.type = type;
-		clone.name = name;
-		clone.identifier = identifier;
+		clone.definition = definition.forCollection(otherCollection, definition.type, name, identifier);
 		
 		return clone;
 	}
@@ -135,10 +145,10 @@ abstract public class GenericField<T extends GenericValue<?>> implements Cloneab
 	protected GenericField<T> cloneAsMetadataField(Collection otherCollection, JSONObject jsonObj) {
 		GenericField<T> clone = build();
 				
-		clone.parentCollection = otherCollection;
-		clone.type = JsonSimpleUtil.parseJsonStringValue(jsonObj, "@type");
-		clone.name = JsonSimpleUtil.parseJsonStringValue(jsonObj, "name");
-		clone.identifier = JsonSimpleUtil.parseJsonStringValue(jsonObj, "identifier");
+		clone.definition = definition.forCollection(otherCollection, 
+				JsonSimpleUtil.parseJsonStringValue(jsonObj, "@type"),
+				JsonSimpleUtil.parseJsonStringValue(jsonObj, "name"),
+				JsonSimpleUtil.parseJsonStringValue(jsonObj, "identifier"));
 		
 		return clone;
 	}
@@ -154,6 +164,15 @@ abstract public class GenericField<T extends GenericValue<?>> implements Cloneab
 		return clone;
 	}
 	
+	protected GenericField<T> cloneAsSlotView(T value, Entry entry, int slot) {
+		GenericField<T> clone = cloneAsDataField(value);
+		
+		clone.boundEntry = entry;
+		clone.boundSlot = slot;
+		
+		return clone;
+	}
+	
 	/*
     "@type":"IntegerField",
     "name":"InStock",
@@ -165,6 +184,16 @@ abstract public class GenericField<T extends GenericValue<?>> implements Cloneab
 	
 	protected GenericField<T> parseValueJsonForField(JSONObject entry, String identifier) {
 		Object valueJson = entry.get(identifier);
+		return parseValueJson(valueJson);
+	}
+	
+	/**
+	 * Builds a data field from the json value of this field, as found in
+	 * an entry.
+	 * @param valueJson the value as produced by json-simple (or JsonPullParser.readValue())
+	 * @return the data field, or null if there is no value
+	 */
+	protected GenericField<T> parseValueJson(Object valueJson) {
 		if (valueJson == null) {
 			return null;
 		}
@@ -178,6 +207,19 @@ abstract public class GenericField<T extends GenericValue<?>> implements Cloneab
 	}
 	
 	abstract protected T deserializeJsonValue(Object jsonValue);
+	
+	/**
+	 * Builds the value of this field straight from a streaming parser
+	 * positioned on a non-null value; the whole value is consumed. Fields 
+	 * with scalar values override this to avoid the boxed objects that 
+	 * JsonPullParser.readValue() would create.
+	 * @param parser the JsonPullParser positioned on the value
+	 * @return the value, or null if there is none
+	 * @throws IOException if the value cannot be read
+	 */
+	protected T deserializeJsonValue(JsonPullParser parser) throws IOException {
+		return deserializeJsonValue(parser.readValue());
+	}
 
 	
 	// GETTERS and SETTERS
@@ -188,7 +230,7 @@ abstract public class GenericField<T extends GenericValue<?>> implements Cloneab
 	 * @return the String type
 	 */
 	public String getType() {
-		return type;
+		return definition.type;
 	}
 
 	/**
@@ -197,7 +239,7 @@ abstract public class GenericField<T extends GenericValue<?>> implements Cloneab
 	 * @return the String name
 	 */
 	public String getName() {
-		return name;
+		return definition.name;
 	}
 
 	/**
@@ -208,7 +250,24 @@ abstract public class GenericField<T extends GenericValue<?>> implements Cloneab
 	 * @return the String id
 	 */
 	public String getIdentifier() {
-		return identifier;
+		return definition.identifier;
+	}
+
+	/**
+	 * Returns the Collection this field belongs to.
+	 * @return the Collection, or null for the field prototypes
+	 */
+	public Collection getParentCollection() {
+		return definition.parentCollection;
+	}
+	
+	/**
+	 * Returns the properties of the field definition other than the type,
+	 * name and identifier.
+	 * @return an unmodifiable Map, never null
+	 */
+	public Map<String, String> getAdditionalProperties() {
+		return definition.additionalProperties;
 	}
 
 	/**
@@ -218,7 +277,45 @@ abstract public class GenericField<T extends GenericValue<?>> implements Cloneab
 	 * @return true if it is a compound type, false if not.
 	 */
 	public boolean isCompoundFieldType() {
-		return isCompoundFieldType;
+		return definition.isCompoundFieldType;
+	}
+	
+	// Subclasses used to assign the definition members directly. The definition
+	// is shared by all data fields of a collection field, so these setters give
+	// this field its own changed copy instead of modifying it.
+	
+	protected final void setParentCollection(Collection parentCollection) {
+		FieldDefinition d = definition;
+		definition = new FieldDefinition(parentCollection, d.type, d.name, d.identifier, d.additionalProperties, d.isCompoundFieldType);
+	}
+	
+	protected final void setType(String type) {
+		FieldDefinition d = definition;
+		definition = new FieldDefinition(d.parentCollection, type, d.name, d.identifier, d.additionalProperties, d.isCompoundFieldType);
+	}
+	
+	protected final void setName(String name) {
+		FieldDefinition d = definition;
+		definition = new FieldDefinition(d.parentCollection, d.type, name, d.identifier, d.additionalProperties, d.isCompoundFieldType);
+	}
+	
+	protected final void setIdentifier(String identifier) {
+		FieldDefinition d = definition;
+		definition = new FieldDefinition(d.parentCollection, d.type, d.name, identifier, d.additionalProperties, d.isCompoundFieldType);
+	}
+	
+	/**
+	 * @param additionalProperties the properties, copied
+	 */
+	protected final void setAdditionalProperties(Map<String, String> additionalProperties) {
+		FieldDefinition d = definition;
+		definition = new FieldDefinition(d.parentCollection, d.type, d.name, d.identifier, 
+				new HashMap<String, String>(additionalProperties), d.isCompoundFieldType);
+	}
+	
+	protected final void setCompoundFieldType(boolean isCompoundFieldType) {
+		FieldDefinition d = definition;
+		definition = new FieldDefinition(d.parentCollection, d.type, d.name, d.identifier, d.additionalProperties, isCompoundFieldType);
 	}
 	
 	/**
@@ -280,6 +377,9 @@ abstract public class GenericField<T extends GenericValue<?>> implements Cloneab
 			throw new IllegalArgumentException();
 		}
 		value = newValue;
+		if (boundEntry != null) {
+			boundEntry.bindSlot(boundSlot, newValue);
+		}
 	}
 	
 	/**
@@ -292,15 +392,55 @@ abstract public class GenericField<T extends GenericValue<?>> implements Cloneab
 		if (match == null) {
 			return false;
 		}
-		if (!this.parentCollection.equals(match.parentCollection)) {
+		if (this.definition == match.definition) {
+			return true;
+		}
+		if (!getParentCollection().equals(match.getParentCollection())) {
 			return false;
 		}
-		if (!this.identifier.equals(match.identifier)) {
+		if (!getIdentifier().equals(match.getIdentifier())) {
 			return false;
 		}
 		return true;
 	}
 
+	/**
+	 * Returns the Transport of the Application that owns this field, for
+	 * the compound fields that download content (File, Image).
+	 * @return the Transport, never null
+	 */
+	protected Transport getTransport() {
+		Collection parentCollection = getParentCollection();
+		if (parentCollection != null) {
+			Application application = parentCollection.getParentApplication();
+			if (application != null) {
+				return application.getTransport();
+			}
+		}
+		return Http.getDefaultTransport();
+	}
+
+	/**
+	 * Opens downloadable content (File, Image) of this field, through the
+	 * Application's BlobCache if it has one.
+	 * <p>
+	 * NOTE: caller must close the stream
+	 * @param url the String url of the content
+	 * @return an InputStream, or null if the content could not be fetched
+	 */
+	protected InputStream openContent(String url) {
+		Transport transport = getTransport();
+		Collection parentCollection = getParentCollection();
+		if (parentCollection != null) {
+			Application application = parentCollection.getParentApplication();
+			BlobCache blobCache = (application != null) ? application.getBlobCache() : null;
+			if (blobCache != null) {
+				return blobCache.get(transport, url);
+			}
+		}
+		return transport.get(url);
+	}
+	
 	// Serialization
 	
 	@Override
@@ -309,11 +449,11 @@ abstract public class GenericField<T extends GenericValue<?>> implements Cloneab
 		
 		if (isFieldDefinition) {
 			sb.append("{ type [");
-			sb.append(type);
+			sb.append(definition.type);
 			sb.append("] name [");
-			sb.append(name);
+			sb.append(definition.name);
 			sb.append("] id [");
-			sb.append(identifier);
+			sb.append(definition.identifier);
 			sb.append("] value [");
 			sb.append(value);
 			sb.append("]");
@@ -323,7 +463,7 @@ abstract public class GenericField<T extends GenericValue<?>> implements Cloneab
 			if (value != null) {
 				valueStr = value.toString();
 			}
-			sb.append(identifier);
+			sb.append(definition.identifier);
 			sb.append(" [");
 			sb.append(valueStr);
 			sb.append("] ");
@@ -336,11 +476,11 @@ abstract public class GenericField<T extends GenericValue<?>> implements Cloneab
 		
 		if (isFieldDefinition) {
 			sb.append("{ \"@type\": \"");
-			sb.append(type);
+			sb.append(definition.type);
 			sb.append("\", \"name\": \"");
-			sb.append(name);
+			sb.append(definition.name);
 			sb.append("\", \"identifier\": \"");
-			sb.append(identifier);
+			sb.append(definition.identifier);
 			sb.append("\"");
 			sb.append(" }");
 		} else {
@@ -348,7 +488,7 @@ abstract public class GenericField<T extends GenericValue<?>> implements Cloneab
 				return null;
 			}
 			sb.append("\"");
-			sb.append(identifier);
+			sb.append(definition.identifier);
 			sb.append("\": ");
 			sb.append(value.toJSONString());
 		}
@@ -15,13 +15,30 @@ Copyright 2013 Peter Laird
 */
 package com.storageroomapp.client.field;
 
+import java.io.IOException;
+
+import com.storageroomapp.client.util.Utf8JsonWriter;
+
 public class GenericValue<V> {
+	/**
+	 * The value. Callers assign it directly, e.g. null to clear the value,
+	 * so subclasses must not keep a second copy of the value that this 
+	 * field could disagree with.
+	 */
 	public V innerValue = null;
 	
 	public V getInnerValue() {
 		return innerValue;
 	}
 	
+	/**
+	 * Replaces the value.
+	 * @param value the new value, or null to clear it
+	 */
+	public void setInnerValue(V value) {
+		this.innerValue = value;
+	}
+	
 	public String toString() {
 		if (innerValue == null) {
 			return null;
@@ -44,4 +61,17 @@ public class GenericValue<V> {
 		// is to just output the innerValue
 		return "\""+this.toString()+"\"";
 	}
+	
+	/**
+	 * Streaming variant of toJSONString(), used when entries are written
+	 * straight into a request body. By default the value is written as a
+	 * quoted and escaped String, or as null if it is not set.
+	 * <p>
+	 * The compound field types write their toJSONString() as is.
+	 * @param writer the Utf8JsonWriter
+	 * @throws IOException if the value cannot be written
+	 */
+	public void writeJSON(Utf8JsonWriter writer) throws IOException {
+		writer.writeString(this.toString());
+	}
 }
@@ -23,13 +23,11 @@ public class ImageField extends GenericField<ImageValue> {
 	static public final String STORAGEROOM_TYPE_NAME = "ImageField";
 	
 	public ImageField() {
-		super(STORAGEROOM_TYPE_NAME);
+		// Image objects are complex, labeled in SR as 'compound'
+		super(STORAGEROOM_TYPE_NAME, true);
 
 		// all Fields must have an instantiated Value container
 		this.value = new ImageValue();
-		
-		// Image objects are complex, labeled in SR as 'compound'
-		this.isCompoundFieldType = true;
 	}
 	
 	@Override
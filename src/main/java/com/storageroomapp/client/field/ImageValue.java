@@ -16,6 +16,7 @@ Copyright 2013 Peter Laird
 package com.storageroomapp.client.field;
 
 import java.io.File;
+import java.io.IOException;
 import java.io.InputStream;
 import java.util.List;
 
@@ -24,6 +25,7 @@ import org.json.simple.JSONObject;
 import com.storageroomapp.client.util.FileUtil;
 import com.storageroomapp.client.util.Http;
 import com.storageroomapp.client.util.JsonSimpleUtil;
+import com.storageroomapp.client.util.Utf8JsonWriter;
 
 public class ImageValue extends GenericValue<String> {
 
@@ -70,6 +72,9 @@ public class ImageValue extends GenericValue<String> {
 		JSONObject versionObject = (JSONObject)jsonObj.get("@versions");
 		if (versionObject != null) {
 			value.versions = ImageVersion.parseJSONListObject(versionObject);
+			for (ImageVersion version : value.versions) {
+				version.parentField = parentField;
+			}
 		}
 		return value;
 	}
@@ -79,8 +84,11 @@ public class ImageValue extends GenericValue<String> {
 		if (isObjectConfiguredForUpload) {
 			throw new IllegalStateException();
 		}
-		InputStream istream = Http.get(this.innerValue);
-		return istream;
+		if (parentField != null) {
+			// served from the Application's BlobCache, if it has one
+			return parentField.openContent(this.innerValue);
+		}
+		return Http.getDefaultTransport().get(this.innerValue);
 	}
 
 	public boolean getImageAsFile(File fileToWrite) {
@@ -111,6 +119,11 @@ public class ImageValue extends GenericValue<String> {
 		return sb.toString();
 	}
 	
+	@Override
+	public void writeJSON(Utf8JsonWriter writer) throws IOException {
+		writer.writeRawString(toJSONString());
+	}
+	
 	public String toJSONString() {
 		return "FIXME ImageFieldValue";
 	}
@@ -30,6 +30,9 @@ public class ImageVersion {
 	public String identifier = null;
 	public String url = null;
 	
+	// set when parsed as part of an ImageValue, for its Application's Transport
+	protected ImageField parentField = null;
+	
 	public ImageVersion(String identifier, String url) {
 		this.identifier = identifier;
 		this.url = url;
@@ -68,6 +71,10 @@ public class ImageVersion {
 	
 	// client closes stream
 	public InputStream getImageAsStream() {
+		if (parentField != null) {
+			// served from the Application's BlobCache, if it has one
+			return parentField.openContent(this.url);
+		}
 		InputStream istream = Http.get(this.url);
 		return istream;
 	}
@@ -15,6 +15,10 @@ Copyright 2013 Peter Laird
 */
 package com.storageroomapp.client.field;
 
+import java.io.IOException;
+
+import com.storageroomapp.client.util.JsonPullParser;
+
 public class IntegerField extends GenericField<IntegerValue> {
 
 	static public final String STORAGEROOM_TYPE_NAME = "IntegerField";
@@ -32,8 +36,15 @@ public class IntegerField extends GenericField<IntegerValue> {
 			return new IntegerValue();
 		}
 		Number valueNum = (Number)jsonValue;
-		Integer valueInt = valueNum.intValue();
-		return new IntegerValue(valueInt);
+		return new IntegerValue(valueNum.intValue());
+	}
+	
+	@Override
+	protected IntegerValue deserializeJsonValue(JsonPullParser parser) throws IOException {
+		if (parser.getCurrentToken() != JsonPullParser.Token.VALUE_NUMBER) {
+			return super.deserializeJsonValue(parser);
+		}
+		return new IntegerValue(parser.getIntValue());
 	}
 
 }
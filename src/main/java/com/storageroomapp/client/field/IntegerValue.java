@@ -15,6 +15,15 @@ Copyright 2013 Peter Laird
 */
 package com.storageroomapp.client.field;
 
+import java.io.IOException;
+
+import com.storageroomapp.client.util.Utf8JsonWriter;
+
+/**
+ * Holds a StorageRoom integer value. getIntValue() and setIntValue() let
+ * callers work with a primitive int; values from -128 to 127 share the
+ * cached Integers.
+ */
 public class IntegerValue extends GenericValue<Integer>{
 
 	public IntegerValue() {
@@ -24,4 +33,44 @@ public class IntegerValue extends GenericValue<Integer>{
 	public IntegerValue(Integer value) {
 		this.innerValue = value;
 	}
+	
+	public IntegerValue(int value) {
+		this.innerValue = Integer.valueOf(value);
+	}
+	
+	/**
+	 * Returns whether this holds a value at all.
+	 * @return true if there is a value
+	 */
+	public boolean hasValue() {
+		return (innerValue != null);
+	}
+	
+	/**
+	 * Returns the value as a primitive.
+	 * @return the integer value, or 0 if there is no value
+	 */
+	public int getIntValue() {
+		return (innerValue != null) ? innerValue.intValue() : 0;
+	}
+	
+	/**
+	 * Sets the value from a primitive.
+	 * @param value the integer value
+	 */
+	public void setIntValue(int value) {
+		this.innerValue = Integer.valueOf(value);
+	}
+	
+	@Override
+	public void writeJSON(Utf8JsonWriter writer) throws IOException {
+		if (!hasValue()) {
+			writer.writeNull();
+			return;
+		}
+		// quoted, as toJSONString() writes it
+		writer.writeRaw((byte)'"');
+		writer.writeLong(getIntValue());
+		writer.writeRaw((byte)'"');
+	}
 }
@@ -22,13 +22,11 @@ public class LocationField extends GenericField<LocationValue> {
 	static public final String STORAGEROOM_TYPE_NAME = "LocationField";
 
 	public LocationField() {
-		super(STORAGEROOM_TYPE_NAME);
+		// Location objects are complex, labeled in SR as 'compound'
+		super(STORAGEROOM_TYPE_NAME, true);
 		
 		// all Fields must have an instantiated Value container
 		this.value = new LocationValue();
-		
-		// Location objects are complex, labeled in SR as 'compound'
-		this.isCompoundFieldType = true;
 	}
 	
 	@Override
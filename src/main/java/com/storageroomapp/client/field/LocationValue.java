@@ -15,9 +15,12 @@ Copyright 2013 Peter Laird
 */
 package com.storageroomapp.client.field;
 
+import java.io.IOException;
+
 import org.json.simple.JSONObject;
 
 import com.storageroomapp.client.util.JsonSimpleUtil;
+import com.storageroomapp.client.util.Utf8JsonWriter;
 
 public class LocationValue extends GenericValue<String>{
 	protected LocationField parentField = null;
@@ -50,29 +53,31 @@ public class LocationValue extends GenericValue<String>{
 		if (jsonObj == null) {
 			return null;
 		}
-		Float lat = JsonSimpleUtil.parseJsonFloatValue(jsonObj, "lat", null);
-		if (lat == null) {
+		float lat = JsonSimpleUtil.parseJsonFloatValue(jsonObj, "lat", Float.NaN);
+		if (Float.isNaN(lat)) {
 			return null;
 		}
-		Float lng = JsonSimpleUtil.parseJsonFloatValue(jsonObj, "lng", null);
-		if (lng == null) {
+		float lng = JsonSimpleUtil.parseJsonFloatValue(jsonObj, "lng", Float.NaN);
+		if (Float.isNaN(lng)) {
 			return null;
 		}
 		
-		LocationValue value = new LocationValue(parentField);
-		value.latitude = lat;
-		value.longitude = lng;
-		return value;
+		return new LocationValue(parentField, lat, lng);
 	}
 
+	@Override
+	public void writeJSON(Utf8JsonWriter writer) throws IOException {
+		writer.writeRawString(toJSONString());
+	}
+	
 	public String toJSONString() {
 		StringBuilder sb = new StringBuilder();
-		sb.append("{ \"lat\": \"");
+		sb.append("{ \"lat\": ");
 		sb.append(latitude);
-		sb.append("\", \"lng\": \"");
+		sb.append(", \"lng\": ");
 		sb.append(longitude);
-		sb.append("\" }");
-		return innerValue.toString();
+		sb.append(" }");
+		return sb.toString();
 	}
 	
 }
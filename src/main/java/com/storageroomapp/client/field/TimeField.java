@@ -15,8 +15,6 @@ Copyright 2013 Peter Laird
 */
 package com.storageroomapp.client.field;
 
-import java.util.Calendar;
-
 import com.storageroomapp.client.util.StorageRoomUtil;
 
 public class TimeField extends GenericField<TimeValue> {
@@ -36,8 +34,11 @@ public class TimeField extends GenericField<TimeValue> {
 			return new TimeValue();
 		}
 		String valueStr = jsonValue.toString();
-		Calendar valueCal = StorageRoomUtil.storageRoomTimeStringToCalendar(valueStr);
-		return new TimeValue(valueCal);
+		long valueMillis = StorageRoomUtil.storageRoomTimeStringToEpochMillis(valueStr);
+		if (valueMillis == StorageRoomUtil.INVALID_EPOCH_MILLIS) {
+			return new TimeValue();
+		}
+		return new TimeValue(valueMillis);
 	}
 
 	@Override
@@ -45,11 +46,10 @@ public class TimeField extends GenericField<TimeValue> {
 		if (value == null) {
 			return null;
 		}
-		Calendar calValue = value.innerValue;
-		if (calValue == null) {
+		String calString = value.toString();
+		if (calString == null) {
 			return null;
 		}
-		String calString = StorageRoomUtil.calendarToStorageRoomTimeString(calValue);
-		return this.identifier+" ["+calString+"] ";
+		return getIdentifier()+" ["+calString+"] ";
 	}
 }
@@ -19,21 +19,57 @@ import java.util.Calendar;
 
 import com.storageroomapp.client.util.StorageRoomUtil;
 
+/**
+ * Holds a StorageRoom time value. Values read from the server are parsed
+ * straight into epoch millis, without a date format.
+ */
 public class TimeValue extends GenericValue<Calendar>{
 
 	public TimeValue() {
 		this.innerValue = null;
 	}
-	
+
 	public TimeValue(Calendar value) {
 		this.innerValue = value;
 	}
 	
-	public String toString() {
+	/**
+	 * @param epochMillis the time as milliseconds since the epoch, or
+	 * StorageRoomUtil.INVALID_EPOCH_MILLIS for no value
+	 */
+	public TimeValue(long epochMillis) {
+		setEpochMillis(epochMillis);
+	}
+	
+	/**
+	 * Returns the time as milliseconds since the epoch.
+	 * @return the epoch millis, or StorageRoomUtil.INVALID_EPOCH_MILLIS if there is no value
+	 */
+	public long getEpochMillis() {
 		if (innerValue == null) {
+			return StorageRoomUtil.INVALID_EPOCH_MILLIS;
+		}
+		return innerValue.getTimeInMillis();
+	}
+	
+	/**
+	 * Sets the time as milliseconds since the epoch.
+	 * @param epochMillis the epoch millis, or StorageRoomUtil.INVALID_EPOCH_MILLIS for no value
+	 */
+	public void setEpochMillis(long epochMillis) {
+		if (epochMillis == StorageRoomUtil.INVALID_EPOCH_MILLIS) {
+			this.innerValue = null;
+		} else {
+			this.innerValue = StorageRoomUtil.epochMillisToCalendar(epochMillis);
+		}
+	}
+	
+	public String toString() {
+		long millis = getEpochMillis();
+		if (millis == StorageRoomUtil.INVALID_EPOCH_MILLIS) {
 			return null;
 		}
-		return StorageRoomUtil.calendarToStorageRoomTimeString(innerValue);
+		return StorageRoomUtil.epochMillisToStorageRoomTimeString(millis);
 	}
 	
 }
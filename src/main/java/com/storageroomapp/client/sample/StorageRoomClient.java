@@ -26,6 +26,7 @@ import com.storageroomapp.client.Collection;
 import com.storageroomapp.client.CollectionEntries;
 import com.storageroomapp.client.Collections;
 import com.storageroomapp.client.Entry;
+import com.storageroomapp.client.EntryIterator;
 import com.storageroomapp.client.PageOfEntries;
 import com.storageroomapp.client.field.BooleanField;
 import com.storageroomapp.client.field.FileField;
@@ -107,25 +108,13 @@ public class StorageRoomClient {
 	
 	private boolean listCollection(Collection col) {
 		CollectionEntries entries = col.getEntries();
-		PageOfEntries results = entries.queryAll();
+		EntryIterator results = entries.iterator(null);
 
-		int currentPage = 0;
-		boolean done = false;
-		while (!done) {
-			for (Entry entry : results.asIterable()) {
-				log.info(entry.toJSONString(true));
-			}
-			currentPage++;
-			if (currentPage < results.getNumResultsPages()) {
-				results = results.jumpPage(currentPage);
-				if (results == null) {
-					done = true;
-				}
-			} else {
-				done = true;
-			}
+		while (results.hasNext()) {
+			Entry entry = results.next();
+			log.info(entry.toJSONString(true));
 		}
-		return true;
+		return results.isComplete();
 	}
 	
 	private boolean getAndDeleteCollection(Collection col, String[] args) {
@@ -0,0 +1,316 @@
+/*
+Copyright 2013 Peter Laird
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+*/
+package com.storageroomapp.client.util;
+
+import java.io.BufferedReader;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+/**
+ * Base class for Transport implementations. Subclasses provide execute(),
+ * this class builds the verb methods on top of it.
+ * <p>
+ * The default executeAsync() runs execute() on a thread pool owned by this
+ * Transport. Subclasses backed by a non-blocking client should override it.
+ */
+abstract public class AbstractTransport implements Transport {
+	static private Log log = LogFactory.getLog(AbstractTransport.class);
+
+	private ExecutorService asyncExecutor = null;
+
+	public String getAsString(String url) {
+		String body = null;
+		TransportResponse response = null;
+		try {
+			response = execute(TransportRequest.get(url));
+			int code = response.getStatusCode();
+			String reason = response.getReasonPhrase();
+			if (response.getBody() != null) {
+				body = deserializeBody(response.getBody());
+				if (log.isDebugEnabled()) {
+					log.debug("Transport.getAsString url ["+url+"] response code ["+code+"] reason ["+reason+"] body ["+body+"]");
+				}
+			} else {
+				if (log.isDebugEnabled()) {
+					log.debug("Transport.getAsString url ["+url+"] response code ["+code+"] reason ["+reason+"] body [nothing returned]");
+				}
+			}
+		} catch (Exception e) {
+			log.error("Transport.getAsString failed, with url ["+url+"]", e);
+		} finally {
+			if (response != null) {
+				response.close();
+			}
+		}
+		return body;
+	}
+
+	public InputStream get(String url) {
+		return get(url, null);
+	}
+
+	public InputStream get(String url, RequestOptions options) {
+		InputStream instream = null;
+		try {
+			TransportResponse response = execute(withOptions(TransportRequest.get(url), options));
+			int code = response.getStatusCode();
+			String reason = response.getReasonPhrase();
+			instream = response.getBody();
+			if (log.isDebugEnabled()) {
+				String bodyDesc = (instream != null) ? "input stream" : "nothing returned";
+				log.debug("Transport.get url ["+url+"] response code ["+code+"] reason ["+reason+"] body ["+bodyDesc+"]");
+			}
+		} catch (Exception e) {
+			log.error("Transport.get failed, with url ["+url+"]", e);
+		}
+		return instream;
+	}
+
+	public boolean post(String url, String body) {
+		return post(url, body, null);
+	}
+
+	public boolean post(String url, String body, RequestOptions options) {
+		return send(withOptions(TransportRequest.post(url, body), options));
+	}
+
+	public boolean put(String url, String body) {
+		return put(url, body, null);
+	}
+
+	public boolean put(String url, String body, RequestOptions options) {
+		return send(withOptions(TransportRequest.put(url, body), options));
+	}
+
+	public boolean post(String url, RequestBody body, RequestOptions options) {
+		return send(withOptions(TransportRequest.post(url, body), options));
+	}
+
+	public boolean put(String url, RequestBody body, RequestOptions options) {
+		return send(withOptions(TransportRequest.put(url, body), options));
+	}
+
+	public boolean delete(String url) {
+		return delete(url, null);
+	}
+
+	public boolean delete(String url, RequestOptions options) {
+		return send(withOptions(TransportRequest.delete(url), options));
+	}
+
+	// ASYNC VERBS
+
+	public CompletableFuture<TransportResponse> executeAsync(final TransportRequest request) {
+		return CompletableFuture.supplyAsync(() -> {
+			try {
+				return execute(request);
+			} catch (Exception e) {
+				throw new CompletionException(e);
+			}
+		}, getAsyncExecutor());
+	}
+
+	public CompletableFuture<String> getAsStringAsync(final String url) {
+		return executeAsync(TransportRequest.get(url)).handle((response, failure) -> {
+			if (failure != null) {
+				log.error("Transport.getAsStringAsync failed, with url ["+url+"]", failure);
+				return null;
+			}
+			String body = deserializeBody(response.getBody());
+			if (log.isDebugEnabled()) {
+				log.debug("Transport.getAsStringAsync url ["+url+"] response code ["+response.getStatusCode()+"] body ["+body+"]");
+			}
+			return body;
+		});
+	}
+
+	public CompletableFuture<InputStream> getAsync(String url) {
+		return getAsync(url, null);
+	}
+
+	public CompletableFuture<InputStream> getAsync(final String url, RequestOptions options) {
+		return executeAsync(withOptions(TransportRequest.get(url), options)).handle((response, failure) -> {
+			if (failure != null) {
+				log.error("Transport.getAsync failed, with url ["+url+"]", failure);
+				return null;
+			}
+			if (log.isDebugEnabled()) {
+				log.debug("Transport.getAsync url ["+url+"] response code ["+response.getStatusCode()+"] body [input stream]");
+			}
+			return response.getBody();
+		});
+	}
+
+	public CompletableFuture<Boolean> postAsync(String url, String body) {
+		return postAsync(url, body, null);
+	}
+
+	public CompletableFuture<Boolean> postAsync(String url, String body, RequestOptions options) {
+		return sendAsync(withOptions(TransportRequest.post(url, body), options));
+	}
+
+	public CompletableFuture<Boolean> putAsync(String url, String body) {
+		return putAsync(url, body, null);
+	}
+
+	public CompletableFuture<Boolean> putAsync(String url, String body, RequestOptions options) {
+		return sendAsync(withOptions(TransportRequest.put(url, body), options));
+	}
+
+	public CompletableFuture<Boolean> postAsync(String url, RequestBody body, RequestOptions options) {
+		return sendAsync(withOptions(TransportRequest.post(url, body), options));
+	}
+
+	public CompletableFuture<Boolean> putAsync(String url, RequestBody body, RequestOptions options) {
+		return sendAsync(withOptions(TransportRequest.put(url, body), options));
+	}
+
+	public CompletableFuture<Boolean> deleteAsync(String url) {
+		return deleteAsync(url, null);
+	}
+
+	public CompletableFuture<Boolean> deleteAsync(String url, RequestOptions options) {
+		return sendAsync(withOptions(TransportRequest.delete(url), options));
+	}
+
+	public synchronized void shutdown() {
+		if (asyncExecutor != null) {
+			asyncExecutor.shutdown();
+			asyncExecutor = null;
+		}
+	}
+
+	// INTERNAL
+
+	static protected TransportRequest withOptions(TransportRequest request, RequestOptions options) {
+		request.setOptions(options);
+		return request;
+	}
+
+	/**
+	 * Asynchronous variant of send()
+	 */
+	protected CompletableFuture<Boolean> sendAsync(final TransportRequest request) {
+		return executeAsync(request).handle((response, failure) -> {
+			if (failure != null) {
+				log.error("Transport."+request.getMethod().toLowerCase()+"Async failed, with url ["+request.getUrl()+"]", failure);
+				return Boolean.FALSE;
+			}
+			response.close();
+			if (log.isDebugEnabled()) {
+				log.debug("Transport."+request.getMethod().toLowerCase()+"Async url ["+request.getUrl()+"] body ["+request.describeBody()+
+						"] response code ["+response.getStatusCode()+"] reason ["+response.getReasonPhrase()+"]");
+			}
+			return response.isSuccess();
+		});
+	}
+
+	/**
+	 * Returns the pool that runs blocking requests for executeAsync(). The
+	 * threads are daemons, so an unclosed Transport does not hold up JVM exit.
+	 */
+	protected synchronized ExecutorService getAsyncExecutor() {
+		if (asyncExecutor == null) {
+			asyncExecutor = createAsyncExecutor();
+		}
+		return asyncExecutor;
+	}
+
+	/**
+	 * Creates the pool used by getAsyncExecutor(). Subclasses override this
+	 * to bound it, e.g. to the size of their connection pool.
+	 */
+	protected ExecutorService createAsyncExecutor() {
+		return Executors.newCachedThreadPool(new DaemonThreadFactory(getClass().getSimpleName()));
+	}
+
+	static protected class DaemonThreadFactory implements ThreadFactory {
+		private final String prefix;
+		private final AtomicInteger count = new AtomicInteger();
+
+		public DaemonThreadFactory(String prefix) {
+			this.prefix = prefix;
+		}
+
+		public Thread newThread(Runnable r) {
+			Thread t = new Thread(r, prefix+"-"+count.incrementAndGet());
+			t.setDaemon(true);
+			return t;
+		}
+	}
+
+	/**
+	 * Executes a request whose response body is of no interest, and
+	 * reports whether it succeeded.
+	 */
+	protected boolean send(TransportRequest request) {
+		boolean success = false;
+		TransportResponse response = null;
+		try {
+			response = execute(request);
+			success = response.isSuccess();
+			
+			if (log.isDebugEnabled()) {
+				log.debug("Transport."+request.getMethod().toLowerCase()+" url ["+request.getUrl()+"] body ["+request.describeBody()+
+						"] response code ["+response.getStatusCode()+"] reason ["+response.getReasonPhrase()+"]");
+			}
+		} catch (Exception e) {
+			log.error("Transport."+request.getMethod().toLowerCase()+" failed, with url ["+request.getUrl()+"]", e);
+		} finally {
+			if (response != null) {
+				response.close();
+			}
+		}
+		return success;
+	}
+
+	static protected String deserializeBody(InputStream is) {
+		if (is == null) {
+			return null;
+		}
+		StringBuilder sb = new StringBuilder();
+		BufferedReader br = null;
+		try {
+			br = new BufferedReader(new InputStreamReader(is, "UTF-8"));
+			String line;
+			while ((line = br.readLine()) != null) {
+				sb.append(line);
+			}
+		} catch (Exception e) {
+			log.error("Http response deserialization error", e);
+		} finally {
+			try {
+				if (br != null)
+					br.close();
+			} catch (Exception a) {
+			}
+			try {
+				is.close();
+			} catch (Exception a) {
+			}
+		}
+		return sb.toString();
+	}
+}
@@ -0,0 +1,342 @@
+/*
+Copyright 2013 Peter Laird
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+*/
+package com.storageroomapp.client.util;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.SocketTimeoutException;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.http.Header;
+import org.apache.http.HttpEntity;
+import org.apache.http.HttpResponse;
+import org.apache.http.client.methods.HttpDelete;
+import org.apache.http.client.methods.HttpEntityEnclosingRequestBase;
+import org.apache.http.client.methods.HttpGet;
+import org.apache.http.client.methods.HttpPost;
+import org.apache.http.client.methods.HttpPut;
+import org.apache.http.client.methods.HttpRequestBase;
+import org.apache.http.conn.ConnectionKeepAliveStrategy;
+import org.apache.http.entity.EntityTemplate;
+import org.apache.http.entity.StringEntity;
+import org.apache.http.impl.client.DefaultConnectionKeepAliveStrategy;
+import org.apache.http.impl.client.DefaultHttpClient;
+import org.apache.http.impl.conn.PoolingClientConnectionManager;
+import org.apache.http.params.HttpConnectionParams;
+import org.apache.http.params.HttpParams;
+import org.apache.http.protocol.HttpContext;
+
+/**
+ * Transport built on Apache HttpClient 4.2. All requests share a single
+ * HttpClient backed by a pooled connection manager, so connections are
+ * kept alive and reused between calls. The pool is sized by an
+ * HttpPoolConfig.
+ * <p>
+ * HttpClient 4.2 is blocking, so the asynchronous verbs run on a thread
+ * pool sized to the connection pool; at most maxTotalConnections requests
+ * are in flight and the rest queue.
+ * <p>
+ * Connect and read timeouts come from the request's RequestOptions, or 
+ * the HttpPoolConfig. A total timeout aborts the request, even mid-body,
+ * once it expires.
+ */
+public class ApacheHttpTransport extends AbstractTransport {
+
+	protected HttpPoolConfig poolConfig = null;
+	private DefaultHttpClient client = null;
+	private PoolingClientConnectionManager connectionManager = null;
+	private IdleConnectionEvictor evictor = null;
+	private ScheduledThreadPoolExecutor deadlineTimer = null;
+
+	public ApacheHttpTransport() {
+		this(new HttpPoolConfig());
+	}
+
+	public ApacheHttpTransport(HttpPoolConfig config) {
+		if (config == null) {
+			throw new IllegalArgumentException("HttpPoolConfig must not be null");
+		}
+		this.poolConfig = config;
+	}
+
+	public TransportResponse execute(TransportRequest request) throws IOException {
+		HttpRequestBase httpRequest = createRequest(request);
+		for (Map.Entry<String, String> header : request.getHeaders().entrySet()) {
+			httpRequest.setHeader(header.getKey(), header.getValue());
+		}
+		RequestOptions options = request.getOptions();
+		ScheduledFuture<?> deadline = applyOptions(httpRequest, options);
+		try {
+			HttpResponse response = getClient().execute(httpRequest);
+			HttpEntity entity = response.getEntity();
+			
+			// closing the content stream hands the connection back to the pool
+			InputStream content = (entity != null) ? entity.getContent() : null;
+			if (deadline != null) {
+				if (content != null) {
+					content = new DeadlineInputStream(content, deadline);
+				} else {
+					deadline.cancel(false);
+				}
+			}
+			TransportResponse result = new TransportResponse(response.getStatusLine().getStatusCode(),
+					response.getStatusLine().getReasonPhrase(), content);
+			for (Header header : response.getAllHeaders()) {
+				result.setHeader(header.getName(), header.getValue());
+			}
+			return result;
+		} catch (IOException ioe) {
+			// releases the connection back to the pool (it will not be reused)
+			httpRequest.abort();
+			if ((deadline != null) && !deadline.cancel(false)) {
+				throw totalTimeoutExceeded(request, ioe);
+			}
+			throw ioe;
+		} catch (RuntimeException re) {
+			httpRequest.abort();
+			if (deadline != null) {
+				deadline.cancel(false);
+			}
+			throw re;
+		}
+	}
+
+	/**
+	 * Closes all pooled connections and stops the idle connection evictor.
+	 * It is safe to keep using this object afterwards; a new pool is
+	 * created on the next request.
+	 */
+	@Override
+	public synchronized void shutdown() {
+		super.shutdown();
+		if (deadlineTimer != null) {
+			deadlineTimer.shutdownNow();
+			deadlineTimer = null;
+		}
+		if (evictor != null) {
+			evictor.shutdown();
+			evictor = null;
+		}
+		if (connectionManager != null) {
+			connectionManager.shutdown();
+			connectionManager = null;
+		}
+		client = null;
+	}
+
+	// INTERNAL
+
+	@Override
+	protected ExecutorService createAsyncExecutor() {
+		return Executors.newFixedThreadPool(Math.max(1, poolConfig.maxTotalConnections), 
+				new DaemonThreadFactory(getClass().getSimpleName()));
+	}
+
+	protected HttpRequestBase createRequest(TransportRequest request) throws IOException {
+		String method = request.getMethod();
+		String url = request.getUrl();
+		HttpRequestBase httpRequest = null;
+		if (TransportRequest.GET.equals(method)) {
+			httpRequest = new HttpGet(url);
+		} else if (TransportRequest.POST.equals(method)) {
+			httpRequest = new HttpPost(url);
+		} else if (TransportRequest.PUT.equals(method)) {
+			httpRequest = new HttpPut(url);
+		} else if (TransportRequest.DELETE.equals(method)) {
+			httpRequest = new HttpDelete(url);
+		} else {
+			throw new IllegalArgumentException("Unsupported HTTP method ["+method+"]");
+		}
+		if (httpRequest instanceof HttpEntityEnclosingRequestBase) {
+			final RequestBody streamingBody = request.getStreamingBody();
+			if (streamingBody != null) {
+				// no Content-Length, the body is sent chunked as it is written
+				EntityTemplate entity = new EntityTemplate(out -> streamingBody.writeTo(out));
+				entity.setChunked(true);
+				((HttpEntityEnclosingRequestBase)httpRequest).setEntity(entity);
+			} else if (request.getBody() != null) {
+				((HttpEntityEnclosingRequestBase)httpRequest).setEntity(new StringEntity(request.getBody(), "UTF-8"));
+			}
+		}
+		return httpRequest;
+	}
+
+	/**
+	 * Sets the connect and read timeouts of the request, and schedules its
+	 * abort when it has a total timeout.
+	 * @return the scheduled abort, or null if there is no total timeout
+	 */
+	protected ScheduledFuture<?> applyOptions(final HttpRequestBase httpRequest, RequestOptions options) {
+		if (options == null) {
+			return null;
+		}
+		HttpParams params = httpRequest.getParams();
+		if (options.connectTimeoutMillis >= 0) {
+			HttpConnectionParams.setConnectionTimeout(params, toIntMillis(options.connectTimeoutMillis));
+		}
+		if (options.readTimeoutMillis >= 0) {
+			HttpConnectionParams.setSoTimeout(params, toIntMillis(options.readTimeoutMillis));
+		}
+		if (options.totalTimeoutMillis <= 0) {
+			return null;
+		}
+		return getDeadlineTimer().schedule(new Runnable() {
+			public void run() {
+				httpRequest.abort();
+			}
+		}, options.totalTimeoutMillis, TimeUnit.MILLISECONDS);
+	}
+
+	protected synchronized ScheduledThreadPoolExecutor getDeadlineTimer() {
+		if (deadlineTimer == null) {
+			deadlineTimer = new ScheduledThreadPoolExecutor(1, new DaemonThreadFactory(getClass().getSimpleName()+"-deadline"));
+			deadlineTimer.setRemoveOnCancelPolicy(true);
+		}
+		return deadlineTimer;
+	}
+
+	static private int toIntMillis(long millis) {
+		return (int)Math.min(millis, Integer.MAX_VALUE);
+	}
+
+	static private IOException totalTimeoutExceeded(TransportRequest request, IOException cause) {
+		SocketTimeoutException timeout = new SocketTimeoutException("Total timeout of ["+
+				request.getOptions().totalTimeoutMillis+"] millis exceeded for "+request);
+		timeout.initCause(cause);
+		return timeout;
+	}
+
+	protected synchronized DefaultHttpClient getClient() {
+		if (client == null) {
+			final HttpPoolConfig config = poolConfig;
+			connectionManager = new PoolingClientConnectionManager();
+			connectionManager.setMaxTotal(config.maxTotalConnections);
+			connectionManager.setDefaultMaxPerRoute(config.maxConnectionsPerRoute);
+			
+			client = new DefaultHttpClient(connectionManager);
+			HttpConnectionParams.setConnectionTimeout(client.getParams(), config.connectTimeoutMillis);
+			HttpConnectionParams.setSoTimeout(client.getParams(), config.socketTimeoutMillis);
+			client.setKeepAliveStrategy(new ConnectionKeepAliveStrategy() {
+				private final ConnectionKeepAliveStrategy serverStrategy = new DefaultConnectionKeepAliveStrategy();
+				public long getKeepAliveDuration(HttpResponse response, HttpContext context) {
+					long duration = serverStrategy.getKeepAliveDuration(response, context);
+					if (config.keepAliveMillis < 0) {
+						return duration;
+					}
+					if ((duration < 0) || (duration > config.keepAliveMillis)) {
+						duration = config.keepAliveMillis;
+					}
+					return duration;
+				}
+			});
+			
+			if (config.idleConnectionTimeoutMillis > 0) {
+				evictor = new IdleConnectionEvictor(connectionManager, config.idleConnectionTimeoutMillis);
+				evictor.start();
+			}
+		}
+		return client;
+	}
+
+	/**
+	 * Cancels the scheduled abort of a request once its body is closed.
+	 * Reads after the abort fired fail with a SocketTimeoutException.
+	 */
+	static private class DeadlineInputStream extends FilterInputStream {
+		private final ScheduledFuture<?> deadline;
+
+		DeadlineInputStream(InputStream in, ScheduledFuture<?> deadline) {
+			super(in);
+			this.deadline = deadline;
+		}
+
+		@Override
+		public int read() throws IOException {
+			try {
+				return super.read();
+			} catch (IOException ioe) {
+				throw translate(ioe);
+			}
+		}
+
+		@Override
+		public int read(byte[] b, int off, int len) throws IOException {
+			try {
+				return super.read(b, off, len);
+			} catch (IOException ioe) {
+				throw translate(ioe);
+			}
+		}
+
+		@Override
+		public void close() throws IOException {
+			deadline.cancel(false);
+			super.close();
+		}
+
+		private IOException translate(IOException ioe) {
+			if (deadline.isDone() && !deadline.isCancelled()) {
+				SocketTimeoutException timeout = new SocketTimeoutException("Total timeout exceeded while reading the response body");
+				timeout.initCause(ioe);
+				return timeout;
+			}
+			return ioe;
+		}
+	}
+
+	/**
+	 * Background daemon that periodically closes expired connections and
+	 * connections that have sat idle in the pool for too long, so stale
+	 * sockets do not accumulate between bursts of requests.
+	 */
+	static private class IdleConnectionEvictor extends Thread {
+		private final PoolingClientConnectionManager manager;
+		private final long idleTimeoutMillis;
+		private volatile boolean running = true;
+		
+		IdleConnectionEvictor(PoolingClientConnectionManager manager, long idleTimeoutMillis) {
+			super("storageroom-http-evictor");
+			setDaemon(true);
+			this.manager = manager;
+			this.idleTimeoutMillis = idleTimeoutMillis;
+		}
+		
+		@Override
+		public void run() {
+			long sleepMillis = Math.max(1000, idleTimeoutMillis / 2);
+			while (running) {
+				try {
+					Thread.sleep(sleepMillis);
+				} catch (InterruptedException ie) {
+					break;
+				}
+				manager.closeExpiredConnections();
+				manager.closeIdleConnections(idleTimeoutMillis, TimeUnit.MILLISECONDS);
+			}
+		}
+		
+		void shutdown() {
+			running = false;
+			interrupt();
+		}
+	}
+}
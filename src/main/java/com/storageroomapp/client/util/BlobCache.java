@@ -0,0 +1,389 @@
+/*
+Copyright 2013 Peter Laird
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+*/
+package com.storageroomapp.client.util;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileTime;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+/**
+ * A disk cache for downloaded files and images, so content already 
+ * fetched from files.storageroomapp.com is served locally. 
+ * <p>
+ * Content is stored once per SHA-256 of its bytes (blobs/), and each URL
+ * maps to the hash of the content it served (urls/). Files are written to
+ * a temporary file and renamed into place, so a reader never sees a 
+ * partial file, and several processes may share the directory. Cached
+ * content is streamed straight from a FileChannel. When the blobs exceed
+ * maxBytes, the least recently used are deleted; a reader that already
+ * opened one keeps reading it (on POSIX file systems).
+ * <p>
+ * The content of a URL is assumed not to change. Use remove() for a URL
+ * whose file was replaced.
+ */
+public class BlobCache {
+	static private Log log = LogFactory.getLog(BlobCache.class);
+
+	static public final long DEFAULT_MAX_BYTES = 256L * 1024 * 1024;
+
+	protected final Path blobDir;
+	protected final Path urlDir;
+	protected final Path tempDir;
+	protected final long maxBytes;
+
+	// LRU order of the blobs, hash to size
+	private final LinkedHashMap<String, Long> blobs = new LinkedHashMap<String, Long>(16, 0.75f, true);
+	private long totalBytes = 0;
+	private final SingleFlight<String, String> downloads = new SingleFlight<String, String>();
+	private final AtomicLong hitCount = new AtomicLong();
+	private final AtomicLong missCount = new AtomicLong();
+	private final AtomicLong evictionCount = new AtomicLong();
+
+	public BlobCache(File directory) throws IOException {
+		this(directory, DEFAULT_MAX_BYTES);
+	}
+
+	/**
+	 * Opens (or creates) a cache in the directory. Blobs already there are
+	 * adopted, oldest first in the LRU order.
+	 * 
+	 * @param directory the File directory to keep the cache in
+	 * @param maxBytes the most bytes of content kept
+	 * @throws IOException if the directory cannot be created or read
+	 */
+	public BlobCache(File directory, long maxBytes) throws IOException {
+		if (maxBytes <= 0) {
+			throw new IllegalArgumentException("A BlobCache needs room for content");
+		}
+		Path root = directory.toPath();
+		this.blobDir = Files.createDirectories(root.resolve("blobs"));
+		this.urlDir = Files.createDirectories(root.resolve("urls"));
+		this.tempDir = Files.createDirectories(root.resolve("tmp"));
+		this.maxBytes = maxBytes;
+		loadIndex();
+	}
+
+	// OPERATIONS
+
+	/**
+	 * Opens the content of the url, downloading it on a cache miss.
+	 * Concurrent misses for the same url share one download.
+	 * <p>
+	 * NOTE: caller must close the stream
+	 * 
+	 * @param transport the Transport to download with
+	 * @param url a String url
+	 * @return an InputStream of the content, or null if it could not be 
+	 * downloaded
+	 */
+	public InputStream get(final Transport transport, final String url) {
+		InputStream cached = open(lookup(url));
+		if (cached != null) {
+			hitCount.incrementAndGet();
+			return cached;
+		}
+		missCount.incrementAndGet();
+		String hash = downloads.execute(url, () -> download(transport, url));
+		InputStream downloaded = open(hash);
+		if ((hash != null) && (downloaded == null)) {
+			// evicted already, the cache is too small for the content
+			return transport.get(url);
+		}
+		return downloaded;
+	}
+
+	/**
+	 * @param url a String url
+	 * @return true if the content of the url is on disk
+	 */
+	public boolean contains(String url) {
+		String hash = lookup(url);
+		return (hash != null) && Files.isRegularFile(blobPath(hash));
+	}
+
+	/**
+	 * Forgets the url, so its next get() downloads it again. The content
+	 * itself ages out through the LRU order.
+	 * @param url a String url
+	 */
+	public void remove(String url) {
+		try {
+			Files.deleteIfExists(urlPath(url));
+		} catch (IOException ioe) {
+			log.warn("BlobCache could not remove the url ["+url+"]", ioe);
+		}
+	}
+
+	// METRICS
+
+	public long getHitCount() {
+		return hitCount.get();
+	}
+
+	public long getMissCount() {
+		return missCount.get();
+	}
+
+	public long getEvictionCount() {
+		return evictionCount.get();
+	}
+
+	/**
+	 * @return the bytes of content on disk, as known to this instance
+	 */
+	public synchronized long getTotalBytes() {
+		return totalBytes;
+	}
+
+	public long getMaxBytes() {
+		return maxBytes;
+	}
+
+	// INTERNAL
+
+	/**
+	 * @return the content hash the url last served, or null
+	 */
+	private String lookup(String url) {
+		try {
+			String hash = new String(Files.readAllBytes(urlPath(url)), StandardCharsets.US_ASCII).trim();
+			return (hash.length() == 64) ? hash : null;
+		} catch (NoSuchFileException nsfe) {
+			return null;
+		} catch (IOException ioe) {
+			log.warn("BlobCache could not read the index of url ["+url+"]", ioe);
+			return null;
+		}
+	}
+
+	private InputStream open(String hash) {
+		if (hash == null) {
+			return null;
+		}
+		Path blob = blobPath(hash);
+		try {
+			InputStream stream = Channels.newInputStream(FileChannel.open(blob, StandardOpenOption.READ));
+			touch(hash, blob);
+			return stream;
+		} catch (NoSuchFileException nsfe) {
+			return null;
+		} catch (IOException ioe) {
+			log.warn("BlobCache could not open the blob ["+blob+"]", ioe);
+			return null;
+		}
+	}
+
+	/**
+	 * Downloads the url into a blob and indexes it
+	 * @return the content hash, or null if the download failed
+	 */
+	private String download(Transport transport, String url) {
+		TransportResponse response = null;
+		Path temp = null;
+		try {
+			response = transport.execute(TransportRequest.get(url));
+			InputStream body = response.getBody();
+			if (!response.isSuccess() || (body == null)) {
+				log.error("BlobCache could not download url ["+url+"] response code ["+response.getStatusCode()+"]");
+				return null;
+			}
+			temp = Files.createTempFile(tempDir, "blob", ".tmp");
+			MessageDigest digest = MessageDigest.getInstance("SHA-256");
+			long size;
+			try (InputStream in = new DigestInputStream(body, digest); OutputStream out = Files.newOutputStream(temp)) {
+				size = copy(in, out);
+			}
+			String hash = toHex(digest.digest());
+			Path blob = blobPath(hash);
+			boolean added = moveIntoPlace(temp, blob);
+			temp = null;
+			writeIndex(url, hash);
+			if (added) {
+				admit(hash, size);
+			}
+			return hash;
+		} catch (IOException ioe) {
+			log.error("BlobCache could not store the content of url ["+url+"]", ioe);
+			return null;
+		} catch (NoSuchAlgorithmException nsae) {
+			throw new IllegalStateException(nsae);
+		} finally {
+			if (response != null) {
+				response.close();
+			}
+			if (temp != null) {
+				try { Files.deleteIfExists(temp); } catch (IOException ioe) {}
+			}
+		}
+	}
+
+	/**
+	 * @return false if identical content was already in place
+	 */
+	private boolean moveIntoPlace(Path temp, Path target) throws IOException {
+		Files.createDirectories(target.getParent());
+		if (Files.exists(target)) {
+			Files.delete(temp);
+			return false;
+		}
+		try {
+			Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE);
+		} catch (AtomicMoveNotSupportedException amnse) {
+			Files.move(temp, target);
+		} catch (FileAlreadyExistsException faee) {
+			// another process stored the same content first
+			Files.delete(temp);
+			return false;
+		}
+		return true;
+	}
+
+	private void writeIndex(String url, String hash) throws IOException {
+		Path temp = Files.createTempFile(tempDir, "url", ".tmp");
+		try {
+			Files.write(temp, hash.getBytes(StandardCharsets.US_ASCII));
+			try {
+				Files.move(temp, urlPath(url), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+			} catch (AtomicMoveNotSupportedException amnse) {
+				Files.move(temp, urlPath(url), StandardCopyOption.REPLACE_EXISTING);
+			}
+			temp = null;
+		} finally {
+			if (temp != null) {
+				Files.deleteIfExists(temp);
+			}
+		}
+	}
+
+	private synchronized void admit(String hash, long size) {
+		Long previous = blobs.put(hash, Long.valueOf(size));
+		if (previous == null) {
+			totalBytes += size;
+		}
+		evict();
+	}
+
+	private synchronized void touch(String hash, Path blob) {
+		if (blobs.get(hash) == null) {
+			// stored by another process
+			try {
+				long size = Files.size(blob);
+				blobs.put(hash, Long.valueOf(size));
+				totalBytes += size;
+			} catch (IOException ioe) {
+				return;
+			}
+		}
+		try {
+			// keeps the LRU order across restarts
+			Files.setLastModifiedTime(blob, FileTime.fromMillis(System.currentTimeMillis()));
+		} catch (IOException ioe) {
+		}
+	}
+
+	private synchronized void evict() {
+		Iterator<Map.Entry<String, Long>> eldest = blobs.entrySet().iterator();
+		while ((totalBytes > maxBytes) && eldest.hasNext()) {
+			Map.Entry<String, Long> victim = eldest.next();
+			try {
+				Files.deleteIfExists(blobPath(victim.getKey()));
+			} catch (IOException ioe) {
+				// e.g. open by a reader on a platform that forbids it, try again later
+				continue;
+			}
+			totalBytes -= victim.getValue().longValue();
+			eldest.remove();
+			evictionCount.incrementAndGet();
+		}
+	}
+
+	private synchronized void loadIndex() throws IOException {
+		final List<Path> found = new ArrayList<Path>();
+		try (Stream<Path> files = Files.walk(blobDir)) {
+			files.filter(Files::isRegularFile).forEach(found::add);
+		}
+		found.sort(Comparator.comparingLong(blob -> blob.toFile().lastModified()));
+		for (Path blob : found) {
+			long size = Files.size(blob);
+			blobs.put(blob.getFileName().toString(), Long.valueOf(size));
+			totalBytes += size;
+		}
+		evict();
+	}
+
+	private Path blobPath(String hash) {
+		// fan out, so no directory grows too large
+		return blobDir.resolve(hash.substring(0, 2)).resolve(hash);
+	}
+
+	private Path urlPath(String url) {
+		return urlDir.resolve(toHex(sha256(url.getBytes(StandardCharsets.UTF_8))));
+	}
+
+	static private byte[] sha256(byte[] bytes) {
+		try {
+			return MessageDigest.getInstance("SHA-256").digest(bytes);
+		} catch (NoSuchAlgorithmException nsae) {
+			throw new IllegalStateException(nsae);
+		}
+	}
+
+	static private long copy(InputStream in, OutputStream out) throws IOException {
+		byte[] buffer = new byte[16384];
+		long total = 0;
+		int len;
+		while ((len = in.read(buffer)) != -1) {
+			out.write(buffer, 0, len);
+			total += len;
+		}
+		return total;
+	}
+
+	static private String toHex(byte[] bytes) {
+		StringBuilder sb = new StringBuilder(bytes.length * 2);
+		for (byte b : bytes) {
+			sb.append(Character.forDigit((b >> 4) & 0xf, 16));
+			sb.append(Character.forDigit(b & 0xf, 16));
+		}
+		return sb.toString();
+	}
+}
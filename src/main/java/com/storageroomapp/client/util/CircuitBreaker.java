@@ -0,0 +1,170 @@
+/*
+Copyright 2013 Peter Laird
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+*/
+package com.storageroomapp.client.util;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+/**
+ * A circuit breaker for one class of StorageRoom endpoint. While CLOSED,
+ * requests flow and consecutive failures are counted. Once they reach the
+ * policy's threshold the circuit is OPEN and requests are refused without
+ * being sent. After openDurationMillis it is HALF_OPEN: a few probe 
+ * requests are let through, and their outcome closes or reopens it.
+ */
+public class CircuitBreaker {
+	static private Log log = LogFactory.getLog(CircuitBreaker.class);
+
+	public enum State {
+		CLOSED,
+		OPEN,
+		HALF_OPEN
+	}
+
+	protected final String name;
+	protected final CircuitBreakerPolicy policy;
+
+	// guarded by this
+	private State state = State.CLOSED;
+	private int consecutiveFailures = 0;
+	private long openedAtMillis = 0;
+	private int probesInFlight = 0;
+	private int probeSuccesses = 0;
+	private long rejectedCount = 0;
+	private long openedCount = 0;
+
+	public CircuitBreaker(String name, CircuitBreakerPolicy policy) {
+		this.name = name;
+		this.policy = (policy != null) ? policy : new CircuitBreakerPolicy();
+	}
+
+	// OPERATIONS
+
+	/**
+	 * Asks whether a request may be sent. If true, the outcome must be 
+	 * reported with onSuccess() or onFailure().
+	 * @return true if the request may be sent, false to fail fast
+	 */
+	public synchronized boolean tryAcquire() {
+		if (state == State.OPEN) {
+			if (System.currentTimeMillis() - openedAtMillis < policy.openDurationMillis) {
+				rejectedCount++;
+				return false;
+			}
+			transition(State.HALF_OPEN);
+		}
+		if (state == State.HALF_OPEN) {
+			if (probesInFlight >= Math.max(1, policy.halfOpenMaxProbes)) {
+				rejectedCount++;
+				return false;
+			}
+			probesInFlight++;
+		}
+		return true;
+	}
+
+	public synchronized void onSuccess() {
+		if (state == State.HALF_OPEN) {
+			probesInFlight = Math.max(0, probesInFlight - 1);
+			probeSuccesses++;
+			if (probeSuccesses >= Math.max(1, policy.halfOpenSuccessThreshold)) {
+				transition(State.CLOSED);
+			}
+		} else {
+			consecutiveFailures = 0;
+		}
+	}
+
+	public synchronized void onFailure() {
+		if (state == State.HALF_OPEN) {
+			probesInFlight = Math.max(0, probesInFlight - 1);
+			transition(State.OPEN);
+		} else if (state == State.CLOSED) {
+			consecutiveFailures++;
+			if (consecutiveFailures >= policy.failureThreshold) {
+				transition(State.OPEN);
+			}
+		}
+	}
+
+	/**
+	 * Reports that a request admitted by tryAcquire() was never sent, so
+	 * its outcome says nothing about the server.
+	 */
+	public synchronized void onIgnored() {
+		if (state == State.HALF_OPEN) {
+			probesInFlight = Math.max(0, probesInFlight - 1);
+		}
+	}
+
+	// GETTERS
+
+	public String getName() {
+		return name;
+	}
+
+	/**
+	 * @return the current state; an OPEN circuit whose open period has 
+	 * elapsed is reported as HALF_OPEN
+	 */
+	public synchronized State getState() {
+		if ((state == State.OPEN) && (System.currentTimeMillis() - openedAtMillis >= policy.openDurationMillis)) {
+			return State.HALF_OPEN;
+		}
+		return state;
+	}
+
+	/**
+	 * @return true if requests are currently being refused
+	 */
+	public boolean isOpen() {
+		return getState() == State.OPEN;
+	}
+
+	public synchronized int getConsecutiveFailures() {
+		return consecutiveFailures;
+	}
+
+	/**
+	 * @return the number of requests refused since this breaker was created
+	 */
+	public synchronized long getRejectedCount() {
+		return rejectedCount;
+	}
+
+	/**
+	 * @return the number of times this breaker has opened
+	 */
+	public synchronized long getOpenedCount() {
+		return openedCount;
+	}
+
+	// INTERNAL
+
+	private void transition(State newState) {
+		if (newState == State.OPEN) {
+			openedAtMillis = System.currentTimeMillis();
+			openedCount++;
+			log.warn("Circuit ["+name+"] opened after "+consecutiveFailures+" consecutive failures");
+		} else if (newState == State.CLOSED) {
+			log.info("Circuit ["+name+"] closed");
+		}
+		state = newState;
+		consecutiveFailures = 0;
+		probesInFlight = 0;
+		probeSuccesses = 0;
+	}
+}
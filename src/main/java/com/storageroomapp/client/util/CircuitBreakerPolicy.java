@@ -0,0 +1,45 @@
+/*
+Copyright 2013 Peter Laird
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+*/
+package com.storageroomapp.client.util;
+
+/**
+ * Encapsulates when a CircuitBreaker opens and how it recovers. The members
+ * you can set in this class are raw values read by the breakers.
+ */
+public class CircuitBreakerPolicy {
+
+	/**
+	 * Number of consecutive failures (IOExceptions or 5xx responses) that
+	 * opens the circuit
+	 */
+	public int failureThreshold = 5;
+
+	/**
+	 * How long an open circuit fails requests fast before letting probe
+	 * requests through
+	 */
+	public long openDurationMillis = 30000;
+
+	/**
+	 * Number of probe requests allowed at the same time while half open
+	 */
+	public int halfOpenMaxProbes = 1;
+
+	/**
+	 * Number of successful probes needed to close the circuit again
+	 */
+	public int halfOpenSuccessThreshold = 1;
+}
@@ -0,0 +1,97 @@
+/*
+Copyright 2013 Peter Laird
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+*/
+package com.storageroomapp.client.util;
+
+import java.util.EnumMap;
+import java.util.Map;
+
+/**
+ * The set of CircuitBreakers guarding one Application, one per class of
+ * StorageRoom endpoint, so that e.g. failing file downloads do not stop
+ * entry queries.
+ * <p>
+ * Callers can check isOpen() to serve cached data instead of waiting for
+ * a request to be refused.
+ */
+public class CircuitBreakers {
+
+	/**
+	 * The classes of endpoint that get their own breaker
+	 */
+	public enum EndpointClass {
+		ACCOUNT,
+		COLLECTIONS,
+		ENTRIES,
+		FILES
+	}
+
+	protected final CircuitBreakerPolicy policy;
+	private final Map<EndpointClass, CircuitBreaker> breakers = new EnumMap<EndpointClass, CircuitBreaker>(EndpointClass.class);
+
+	public CircuitBreakers(CircuitBreakerPolicy policy) {
+		this.policy = (policy != null) ? policy : new CircuitBreakerPolicy();
+		for (EndpointClass endpointClass : EndpointClass.values()) {
+			breakers.put(endpointClass, new CircuitBreaker(endpointClass.name().toLowerCase(), this.policy));
+		}
+	}
+
+	public CircuitBreakerPolicy getPolicy() {
+		return policy;
+	}
+
+	public CircuitBreaker getBreaker(EndpointClass endpointClass) {
+		return breakers.get(endpointClass);
+	}
+
+	/**
+	 * @return the breaker guarding the endpoint the url belongs to
+	 */
+	public CircuitBreaker getBreaker(String url) {
+		return breakers.get(classify(url));
+	}
+
+	/**
+	 * @return true if requests to that class of endpoint are being refused
+	 */
+	public boolean isOpen(EndpointClass endpointClass) {
+		return breakers.get(endpointClass).isOpen();
+	}
+
+	/**
+	 * Works out which class of endpoint a url belongs to, from its path.
+	 * API calls always ask for the .json representation; anything else 
+	 * (file and image downloads) is FILES.
+	 * @param url the String url
+	 * @return the EndpointClass
+	 */
+	static public EndpointClass classify(String url) {
+		if (url == null) {
+			return EndpointClass.FILES;
+		}
+		int query = url.indexOf('?');
+		String path = (query >= 0) ? url.substring(0, query) : url;
+		if (!path.endsWith(".json") || !path.contains("/accounts/")) {
+			return EndpointClass.FILES;
+		}
+		if (path.contains("/entries")) {
+			return EndpointClass.ENTRIES;
+		}
+		if (path.contains("/collections")) {
+			return EndpointClass.COLLECTIONS;
+		}
+		return EndpointClass.ACCOUNT;
+	}
+}
@@ -0,0 +1,115 @@
+/*
+Copyright 2013 Peter Laird
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+*/
+package com.storageroomapp.client.util;
+
+import java.io.IOException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+/**
+ * Guards the wrapped Transport with a set of CircuitBreakers. Requests to
+ * an endpoint whose circuit is open fail at once with a 
+ * CircuitOpenException instead of waiting on a degraded server. 
+ * IOExceptions and 5xx responses count as failures; requests refused
+ * by other decorators, such as the rate limiter, do not.
+ */
+public class CircuitBreakingTransport extends TransportDecorator {
+
+	protected final CircuitBreakers breakers;
+
+	public CircuitBreakingTransport(Transport delegate, CircuitBreakers breakers) {
+		super(delegate);
+		this.breakers = breakers;
+	}
+
+	public CircuitBreakers getCircuitBreakers() {
+		return breakers;
+	}
+
+	/**
+	 * Thrown when a request is refused because its circuit is open
+	 */
+	static public class CircuitOpenException extends TransportRejectedException {
+		private static final long serialVersionUID = 1L;
+
+		public CircuitOpenException(String message) {
+			super(message);
+		}
+	}
+
+	@Override
+	public TransportResponse execute(TransportRequest request) throws IOException {
+		CircuitBreaker breaker = acquire(request);
+		TransportResponse response;
+		try {
+			response = delegate.execute(request);
+		} catch (IOException ioe) {
+			recordFailure(breaker, ioe);
+			throw ioe;
+		} catch (RuntimeException re) {
+			breaker.onFailure();
+			throw re;
+		}
+		record(breaker, response);
+		return response;
+	}
+
+	@Override
+	public CompletableFuture<TransportResponse> executeAsync(TransportRequest request) {
+		final CircuitBreaker breaker;
+		try {
+			breaker = acquire(request);
+		} catch (CircuitOpenException coe) {
+			CompletableFuture<TransportResponse> failed = new CompletableFuture<TransportResponse>();
+			failed.completeExceptionally(coe);
+			return failed;
+		}
+		return delegate.executeAsync(request).whenComplete((response, failure) -> {
+			if (failure != null) {
+				recordFailure(breaker, (failure instanceof CompletionException) ? failure.getCause() : failure);
+			} else {
+				record(breaker, response);
+			}
+		});
+	}
+
+	// INTERNAL
+
+	private CircuitBreaker acquire(TransportRequest request) throws CircuitOpenException {
+		CircuitBreaker breaker = breakers.getBreaker(request.getUrl());
+		if (!breaker.tryAcquire()) {
+			throw new CircuitOpenException("Circuit ["+breaker.getName()+"] is open, refusing "+request.getMethod()+" ["+request.getUrl()+"]");
+		}
+		return breaker;
+	}
+
+	static private void record(CircuitBreaker breaker, TransportResponse response) {
+		if (response.getStatusCode() >= 500) {
+			breaker.onFailure();
+		} else {
+			breaker.onSuccess();
+		}
+	}
+
+	static private void recordFailure(CircuitBreaker breaker, Throwable failure) {
+		if (failure instanceof TransportRejectedException) {
+			// the request never went out, so it says nothing about the server
+			breaker.onIgnored();
+		} else {
+			breaker.onFailure();
+		}
+	}
+}
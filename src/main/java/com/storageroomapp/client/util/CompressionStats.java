@@ -0,0 +1,69 @@
+/*
+Copyright 2013 Peter Laird
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+*/
+package com.storageroomapp.client.util;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Byte counters kept by a DecompressingTransport. They compare the bytes
+ * that came over the wire for compressed responses with their decoded 
+ * size, and are updated as bodies are read, so a body that is closed
+ * unread is not counted.
+ * <p>
+ * An instance can outlive the transports that update it, e.g. the 
+ * Application keeps one across changes to its Transport.
+ */
+public class CompressionStats {
+
+	final AtomicLong compressedResponseCount = new AtomicLong();
+	final AtomicLong compressedBytes = new AtomicLong();
+	final AtomicLong rawBytes = new AtomicLong();
+
+	/**
+	 * @return the number of responses the server sent compressed
+	 */
+	public long getCompressedResponseCount() {
+		return compressedResponseCount.get();
+	}
+
+	/**
+	 * @return the bytes read off the wire for compressed responses
+	 */
+	public long getCompressedBytes() {
+		return compressedBytes.get();
+	}
+
+	/**
+	 * @return the decoded size of the bytes counted by getCompressedBytes()
+	 */
+	public long getRawBytes() {
+		return rawBytes.get();
+	}
+
+	/**
+	 * @return raw bytes per compressed byte, or 0 if nothing was compressed
+	 */
+	public double getCompressionRatio() {
+		long compressed = compressedBytes.get();
+		return (compressed > 0) ? ((double)rawBytes.get() / compressed) : 0;
+	}
+
+	@Override
+	public String toString() {
+		return "CompressionStats responses ["+getCompressedResponseCount()+"] compressed ["+
+				getCompressedBytes()+"] raw ["+getRawBytes()+"]";
+	}
+}
@@ -0,0 +1,198 @@
+/*
+Copyright 2013 Peter Laird
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+*/
+package com.storageroomapp.client.util;
+
+import java.io.ByteArrayInputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PushbackInputStream;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * Negotiates gzip or deflate compressed responses with the server and
+ * decodes them as the body is read, so callers always see the plain 
+ * payload. Entry pages and collection schemas repeat long @url strings,
+ * and typically compress several times over.
+ * <p>
+ * The bytes saved are counted in a CompressionStats.
+ */
+public class DecompressingTransport extends TransportDecorator {
+
+	static public final String ACCEPT_ENCODING = "gzip, deflate";
+
+	protected final CompressionStats stats;
+
+	public DecompressingTransport(Transport delegate) {
+		this(delegate, new CompressionStats());
+	}
+
+	public DecompressingTransport(Transport delegate, CompressionStats stats) {
+		super(delegate);
+		this.stats = (stats != null) ? stats : new CompressionStats();
+	}
+
+	public CompressionStats getStats() {
+		return stats;
+	}
+
+	@Override
+	public TransportResponse execute(TransportRequest request) throws IOException {
+		TransportResponse response = delegate.execute(acceptCompressed(request));
+		try {
+			return decode(response);
+		} catch (IOException ioe) {
+			response.close();
+			throw ioe;
+		}
+	}
+
+	@Override
+	public CompletableFuture<TransportResponse> executeAsync(TransportRequest request) {
+		return delegate.executeAsync(acceptCompressed(request)).thenApply(response -> {
+			try {
+				return decode(response);
+			} catch (IOException ioe) {
+				response.close();
+				throw new CompletionException(ioe);
+			}
+		});
+	}
+
+	// INTERNAL
+
+	private TransportRequest acceptCompressed(TransportRequest request) {
+		if (!request.getHeaders().containsKey("Accept-Encoding")) {
+			request.setHeader("Accept-Encoding", ACCEPT_ENCODING);
+		}
+		return request;
+	}
+
+	private TransportResponse decode(TransportResponse response) throws IOException {
+		String encoding = response.getHeader("Content-Encoding");
+		InputStream body = response.getBody();
+		if ((encoding == null) || (body == null)) {
+			return response;
+		}
+		encoding = encoding.trim().toLowerCase();
+		boolean gzip = encoding.equals("gzip") || encoding.equals("x-gzip");
+		if (!gzip && !encoding.equals("deflate")) {
+			// identity, or an encoding we did not ask for
+			return response;
+		}
+		// a 204, a 304 or a HEAD may carry the encoding of a body it does not
+		// have, and the decoders fail on an empty stream
+		int code = response.getStatusCode();
+		if ((code == 204) || (code == 304) || "0".equals(trim(response.getHeader("Content-Length")))) {
+			return withoutBody(response);
+		}
+		PushbackInputStream wire = new PushbackInputStream(new CountingInputStream(body, stats.compressedBytes), 1);
+		int first = wire.read();
+		if (first < 0) {
+			return withoutBody(response);
+		}
+		wire.unread(first);
+		InputStream decoded = gzip ? new GZIPInputStream(wire) : inflate(wire);
+		stats.compressedResponseCount.incrementAndGet();
+		response.setBody(new CountingInputStream(decoded, stats.rawBytes));
+		// the headers now describe the decoded body
+		response.removeHeader("Content-Encoding");
+		response.removeHeader("Content-Length");
+		return response;
+	}
+
+	static private TransportResponse withoutBody(TransportResponse response) throws IOException {
+		response.getBody().close();
+		response.setBody(new ByteArrayInputStream(new byte[0]));
+		response.removeHeader("Content-Encoding");
+		response.removeHeader("Content-Length");
+		return response;
+	}
+
+	static private String trim(String str) {
+		return (str != null) ? str.trim() : null;
+	}
+
+	/**
+	 * HTTP deflate is meant to be zlib wrapped, but some servers send a raw
+	 * deflate stream. The zlib header is recognized by its checksum.
+	 */
+	static private InputStream inflate(InputStream wire) throws IOException {
+		PushbackInputStream in = new PushbackInputStream(wire, 2);
+		int cmf = in.read();
+		int flg = in.read();
+		if (flg >= 0) {
+			in.unread(flg);
+		}
+		if (cmf >= 0) {
+			in.unread(cmf);
+		}
+		boolean zlib = (cmf >= 0) && (flg >= 0) && ((cmf & 0x0f) == 8) && ((((cmf << 8) | flg) % 31) == 0);
+		final Inflater inflater = new Inflater(!zlib);
+		return new InflaterInputStream(in, inflater) {
+			@Override
+			public void close() throws IOException {
+				try {
+					super.close();
+				} finally {
+					// a caller supplied Inflater is not released by the stream
+					inflater.end();
+				}
+			}
+		};
+	}
+
+	static private class CountingInputStream extends FilterInputStream {
+		private final AtomicLong counter;
+
+		CountingInputStream(InputStream in, AtomicLong counter) {
+			super(in);
+			this.counter = counter;
+		}
+
+		@Override
+		public int read() throws IOException {
+			int b = super.read();
+			if (b >= 0) {
+				counter.incrementAndGet();
+			}
+			return b;
+		}
+
+		@Override
+		public int read(byte[] b, int off, int len) throws IOException {
+			int n = super.read(b, off, len);
+			if (n > 0) {
+				counter.addAndGet(n);
+			}
+			return n;
+		}
+
+		@Override
+		public long skip(long n) throws IOException {
+			long skipped = super.skip(n);
+			if (skipped > 0) {
+				counter.addAndGet(skipped);
+			}
+			return skipped;
+		}
+	}
+}
@@ -0,0 +1,55 @@
+/*
+Copyright 2013 Peter Laird
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+*/
+package com.storageroomapp.client.util;
+
+import java.io.IOException;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Fills in default RequestOptions on every request that passes through,
+ * underneath any options set on the request itself. This is how the 
+ * timeouts configured on an Application reach the HTTP stack.
+ */
+public class DefaultOptionsTransport extends TransportDecorator {
+
+	protected final RequestOptions defaults;
+
+	public DefaultOptionsTransport(Transport delegate, RequestOptions defaults) {
+		super(delegate);
+		this.defaults = defaults;
+	}
+
+	public RequestOptions getDefaults() {
+		return defaults;
+	}
+
+	@Override
+	public TransportResponse execute(TransportRequest request) throws IOException {
+		return delegate.execute(applyDefaults(request));
+	}
+
+	@Override
+	public CompletableFuture<TransportResponse> executeAsync(TransportRequest request) {
+		return delegate.executeAsync(applyDefaults(request));
+	}
+
+	// INTERNAL
+
+	private TransportRequest applyDefaults(TransportRequest request) {
+		request.setOptions(RequestOptions.merge(request.getOptions(), defaults));
+		return request;
+	}
+}
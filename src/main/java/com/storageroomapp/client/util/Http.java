@@ -15,32 +15,73 @@ Copyright 2013 Peter Laird
 */
 package com.storageroomapp.client.util;
 
-import java.io.BufferedReader;
 import java.io.InputStream;
-import java.io.InputStreamReader;
-
-import org.apache.commons.logging.Log;
-import org.apache.commons.logging.LogFactory;
-import org.apache.http.Header;
-import org.apache.http.HttpEntity;
-import org.apache.http.HttpResponse;
-import org.apache.http.client.HttpClient;
-import org.apache.http.client.methods.HttpDelete;
-import org.apache.http.client.methods.HttpGet;
-import org.apache.http.client.methods.HttpPost;
-import org.apache.http.client.methods.HttpPut;
-import org.apache.http.entity.StringEntity;
-import org.apache.http.impl.client.DefaultHttpClient;
-import org.apache.http.message.BasicHeader;
 
 /**
  * Abstraction class for accessing HTTP endpoints using verbs.
- * 
- * The default implementation uses org.apache.http.* as a dependency
- * but feel free to replace it with your own.
+ * <p>
+ * The static methods delegate to a process wide default Transport, which
+ * is an ApacheHttpTransport unless replaced with setDefaultTransport().
+ * Applications that need their own HTTP stack should prefer 
+ * Application.setTransport().
  */
 public class Http {
-	static private Log log = LogFactory.getLog(Http.class);
+
+	static private HttpPoolConfig poolConfig = new HttpPoolConfig();
+	static private Transport defaultTransport = null;
+
+	// CONFIGURATION
+
+	/**
+	 * Returns the Transport used by the static methods of this class, and
+	 * by any Application that was not given a Transport of its own.
+	 * @return the Transport, never null
+	 */
+	static public synchronized Transport getDefaultTransport() {
+		if (defaultTransport == null) {
+			defaultTransport = new ApacheHttpTransport(poolConfig);
+		}
+		return defaultTransport;
+	}
+
+	/**
+	 * Replaces the default Transport. The previous default is shut down.
+	 * @param transport the new Transport, or null to go back to an
+	 * ApacheHttpTransport
+	 */
+	static public synchronized void setDefaultTransport(Transport transport) {
+		if ((defaultTransport != null) && (defaultTransport != transport)) {
+			defaultTransport.shutdown();
+		}
+		defaultTransport = transport;
+	}
+
+	/**
+	 * Replaces the connection pool settings of the default Transport. The
+	 * current default is shut down and a new ApacheHttpTransport is built
+	 * lazily on the next request.
+	 * 
+	 * @param config the HttpPoolConfig, must not be null
+	 */
+	static public synchronized void configure(HttpPoolConfig config) {
+		if (config == null) {
+			throw new IllegalArgumentException("HttpPoolConfig must not be null");
+		}
+		setDefaultTransport(null);
+		poolConfig = config;
+	}
+
+	/**
+	 * Closes all pooled connections held by the default Transport. It is
+	 * safe to keep using this class afterwards.
+	 */
+	static public synchronized void shutdown() {
+		if (defaultTransport != null) {
+			defaultTransport.shutdown();
+		}
+	}
+
+	// VERBS
 
 	/**
 	 * GET the payload for the given URL as a String
@@ -49,29 +90,7 @@ public class Http {
 	 * @return a String if successful, null otherwise
 	 */
 	static public String getAsString(String url) {
-		String body = null;
-		try {
-			HttpClient httpclient = new DefaultHttpClient();
-			HttpGet httpget = new HttpGet(url);
-			HttpResponse response = httpclient.execute(httpget);
-			HttpEntity entity = response.getEntity();
-			int code = response.getStatusLine().getStatusCode();
-			String reason = response.getStatusLine().getReasonPhrase();
-			if (entity != null) {
-				InputStream instream = entity.getContent();
-				body = deserializeBody(instream);
-				if (log.isDebugEnabled()) {
-					log.debug("Http.getAsString url ["+url+"] response code ["+code+"] reason ["+reason+"] body ["+body+"]");
-				}
-			} else {
-				if (log.isDebugEnabled()) {
-					log.debug("Http.getAsString url ["+url+"] response code ["+code+"] reason ["+reason+"] body [nothing returned]");
-				}
-			}
-		} catch (Exception e) {
-			log.error("Http.getAsString failed, with url ["+url+"]", e);
-		}
-		return body;
+		return getDefaultTransport().getAsString(url);
 	}
 
 	/**
@@ -82,31 +101,9 @@ public class Http {
 	 * @return an Inputstream if successful, null otherwise
 	 */
 	static public InputStream get(String url) {
-		InputStream instream = null;
-		try {
-			HttpClient httpclient = new DefaultHttpClient();
-			HttpGet httpget = new HttpGet(url);
-			HttpResponse response = httpclient.execute(httpget);
-			HttpEntity entity = response.getEntity();
-			int code = response.getStatusLine().getStatusCode();
-			String reason = response.getStatusLine().getReasonPhrase();
-			if (entity != null) {
-				instream = entity.getContent();
-				if (log.isDebugEnabled()) {
-					log.debug("Http.get url ["+url+"] response code ["+code+"] reason ["+reason+"] body [input stream]");
-				}
-			} else {
-				if (log.isDebugEnabled()) {
-					log.debug("Http.get url ["+url+"] response code ["+code+"] reason ["+reason+"] body [nothing returned]");
-				}
-			}	
-		} catch (Exception e) {
-			log.error("Http.get failed, with url ["+url+"]", e);
-		}
-		return instream;
+		return getDefaultTransport().get(url);
 	}
 
-	
 	/**
 	 * POST to the url with the provided body.
 	 * @param url a String url
@@ -114,33 +111,7 @@ public class Http {
 	 * @return true if successful (response code < 400), false otherwise
 	 */
 	static public boolean post(String url, String body) {
-		boolean success = false;
-		try {
-			HttpClient httpclient = new DefaultHttpClient();
-			HttpPost httppost = new HttpPost(url);
-			HttpEntity entity = new StringEntity(body);
-			httppost.setEntity(entity);
-
-			// Be sure to add these headers or the StRoom API will NOT work! 
-			Header contentType = new BasicHeader("Content-Type",
-					"application/json");
-			httppost.setHeader(contentType);
-			Header accept = new BasicHeader("Accept", "*/*");
-			httppost.setHeader(accept);
-			
-			HttpResponse response = httpclient.execute(httppost);
-			int code = response.getStatusLine().getStatusCode();
-			String reason = response.getStatusLine().getReasonPhrase();
-			success = code < 400;
-
-			if (log.isDebugEnabled()) {
-				log.debug("Http.post url ["+url+"] body ["+body+"] response code ["+code+"] reason ["+reason+"]");
-			}
-			
-		} catch (Exception e) {
-			log.error("Http.post failed, with url ["+url+"]", e);
-		}
-		return success;
+		return getDefaultTransport().post(url, body);
 	}
 
 	/**
@@ -150,33 +121,7 @@ public class Http {
 	 * @return true if successful (response code < 400), false otherwise
 	 */
 	static public boolean put(String url, String body) {
-		boolean success = false;
-		try {
-			HttpClient httpclient = new DefaultHttpClient();
-			HttpPut httpPut = new HttpPut(url);
-			HttpEntity entity = new StringEntity(body);
-			httpPut.setEntity(entity);
-			
-			// Be sure to add these headers or the StRoom API will NOT work! 
-			Header contentType = new BasicHeader("Content-Type",
-					"application/json");
-			httpPut.setHeader(contentType);
-			Header accept = new BasicHeader("Accept", "*/*");
-			httpPut.setHeader(accept);
-			
-			HttpResponse response = httpclient.execute(httpPut);
-			int code = response.getStatusLine().getStatusCode();
-			success = code < 400;
-
-			if (log.isDebugEnabled()) {
-				String reason = response.getStatusLine().getReasonPhrase();
-				log.debug("Http.post url ["+url+"] body ["+body+"] response code ["+code+"] reason ["+reason+"]");
-			}
-	
-		} catch (Exception e) {
-			log.error("Http.put failed, with url ["+url+"]", e);
-		}
-		return success;
+		return getDefaultTransport().put(url, body);
 	}
 
 	/**
@@ -185,53 +130,7 @@ public class Http {
 	 * @return true if successful (response code < 400), false otherwise
 	 */
 	static public boolean delete(String url) {
-		boolean success = false;
-		try {
-			HttpClient httpclient = new DefaultHttpClient();
-			HttpDelete httpdelete = new HttpDelete(url);
-			HttpResponse response = httpclient.execute(httpdelete);
-			int code = response.getStatusLine().getStatusCode();
-			success = code < 400;
-
-			if (log.isDebugEnabled()) {
-				String reason = response.getStatusLine().getReasonPhrase();
-				log.debug("Http.delete url ["+url+"] response code ["+code+"] reason ["+reason+"]");
-			}
-		
-		} catch (Exception e) {
-			log.error("Http.delete failed, with url ["+url+"]", e);
-		}
-		return success;
-	}
-
-	// INTERNAL
-
-	static private String deserializeBody(InputStream is) {
-		if (is == null) {
-			return null;
-		}
-		StringBuilder sb = new StringBuilder();
-		BufferedReader br = null;
-		try {
-			br = new BufferedReader(new InputStreamReader(is));
-			String line;
-			while ((line = br.readLine()) != null) {
-				sb.append(line);
-			}
-		} catch (Exception e) {
-			log.error("Http response deserialization error", e);
-		} finally {
-			try {
-				if (br != null)
-					br.close();
-			} catch (Exception a) {
-			}
-			try {
-				is.close();
-			} catch (Exception a) {
-			}
-		}
-		return sb.toString();
+		return getDefaultTransport().delete(url);
 	}
 
 }
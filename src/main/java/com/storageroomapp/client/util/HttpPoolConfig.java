@@ -0,0 +1,65 @@
+/*
+Copyright 2013 Peter Laird
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+*/
+package com.storageroomapp.client.util;
+
+/**
+ * Encapsulates the connection pool settings used by the shared HTTP
+ * transport. The members you can set in this class are raw values
+ * handed to the underlying connection manager.
+ * <p>
+ * Pass a configured instance to Http.configure() before making your
+ * first request; the defaults are sized for a single busy client.
+ */
+public class HttpPoolConfig {
+
+	/**
+	 * Maximum number of pooled connections, across all hosts.
+	 */
+	public int maxTotalConnections = 40;
+
+	/**
+	 * Maximum number of pooled connections to a single host (route).
+	 * Nearly all traffic goes to api.storageroomapp.com, so this is
+	 * the number that usually matters.
+	 */
+	public int maxConnectionsPerRoute = 20;
+
+	/**
+	 * Connections idle in the pool longer than this are closed by the
+	 * background evictor. Use -1 to disable idle eviction.
+	 */
+	public long idleConnectionTimeoutMillis = 30000;
+
+	/**
+	 * Upper bound on how long a connection is kept alive for reuse,
+	 * applied when the server does not send a Keep-Alive timeout of
+	 * its own (or sends a longer one). Use -1 to defer to the server.
+	 */
+	public long keepAliveMillis = 60000;
+
+	/**
+	 * How long to wait for a connection to be established, for requests
+	 * that do not carry RequestOptions of their own. Use 0 to wait forever.
+	 */
+	public int connectTimeoutMillis = 10000;
+
+	/**
+	 * How long a socket read may block, for requests that do not carry
+	 * RequestOptions of their own. Use 0 to wait forever.
+	 */
+	public int socketTimeoutMillis = 30000;
+
+}
@@ -0,0 +1,206 @@
+/*
+Copyright 2013 Peter Laird
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+*/
+package com.storageroomapp.client.util;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Transport built on the JDK java.net.http client. HTTP/2 is preferred,
+ * so concurrent requests to the same host are multiplexed over a single
+ * connection where the server supports it; otherwise the client falls
+ * back to pooled HTTP/1.1 connections.
+ * <p>
+ * The asynchronous verbs are truly non-blocking: a single caller thread
+ * can keep hundreds of requests in flight.
+ * <p>
+ * The JDK client takes its connect timeout once, when it is built, so the
+ * connectTimeoutMillis of RequestOptions is not honored per request. It 
+ * also has no socket read timeout: a request's timeout bounds the wait
+ * for the response headers (the total timeout if set, else the read 
+ * timeout). The asynchronous verbs buffer the body, so for them the total
+ * timeout covers the whole response.
+ * <p>
+ * A streaming RequestBody is written to a byte array before the request
+ * is sent, as the JDK client pulls the body rather than letting it be 
+ * pushed; use ApacheHttpTransport to stream large bodies unbuffered.
+ */
+public class JdkHttpTransport extends AbstractTransport {
+
+	protected HttpClient client = null;
+	protected long defaultTimeoutMillis = 0;
+
+	public JdkHttpTransport() {
+		this(new HttpPoolConfig());
+	}
+
+	/**
+	 * Builds a client with the timeouts of the config. The pool settings
+	 * do not apply, the JDK client manages its connections itself.
+	 * @param config the HttpPoolConfig
+	 */
+	public JdkHttpTransport(HttpPoolConfig config) {
+		this(buildClient(config));
+		this.defaultTimeoutMillis = config.socketTimeoutMillis;
+	}
+
+	/**
+	 * Use a preconfigured JDK client, e.g. one with a custom executor,
+	 * proxy selector or SSLContext.
+	 * @param client the HttpClient
+	 */
+	public JdkHttpTransport(HttpClient client) {
+		if (client == null) {
+			throw new IllegalArgumentException("HttpClient must not be null");
+		}
+		this.client = client;
+	}
+
+	public TransportResponse execute(TransportRequest request) throws IOException {
+		HttpResponse<InputStream> response = null;
+		try {
+			response = client.send(createRequest(request), HttpResponse.BodyHandlers.ofInputStream());
+		} catch (InterruptedException ie) {
+			Thread.currentThread().interrupt();
+			throw new IOException("Interrupted while waiting for ["+request+"]", ie);
+		}
+		return toTransportResponse(response);
+	}
+
+	/**
+	 * Sends the request with the JDK client's own async machinery. The body
+	 * is buffered before the future completes, so reading it never blocks.
+	 */
+	@Override
+	public CompletableFuture<TransportResponse> executeAsync(TransportRequest request) {
+		HttpRequest httpRequest = null;
+		try {
+			httpRequest = createRequest(request);
+		} catch (IOException ioe) {
+			return CompletableFuture.failedFuture(ioe);
+		}
+		CompletableFuture<HttpResponse<byte[]>> sent = client.sendAsync(httpRequest, HttpResponse.BodyHandlers.ofByteArray());
+		CompletableFuture<TransportResponse> future = sent.thenApply(response -> {
+			TransportResponse result = new TransportResponse(response.statusCode(), null, 
+					new ByteArrayInputStream(response.body()));
+			copyHeaders(response, result);
+			return result;
+		});
+		RequestOptions options = request.getOptions();
+		long totalTimeoutMillis = (options != null) ? options.totalTimeoutMillis : 0;
+		return withDeadline(sent, future, totalTimeoutMillis);
+	}
+
+	// INTERNAL
+
+	/**
+	 * Fails the future once the deadline passes. orTimeout() only fails the
+	 * derived future, so the exchange itself is cancelled as well, as it is
+	 * when the caller cancels.
+	 * @param sent the future of the exchange
+	 * @param future the future handed to the caller, derived from sent
+	 * @param totalTimeoutMillis the deadline, 0 for none
+	 * @return the future to hand to the caller
+	 */
+	static protected <T> CompletableFuture<T> withDeadline(final CompletableFuture<?> sent, 
+			CompletableFuture<T> future, long totalTimeoutMillis) {
+		if (totalTimeoutMillis > 0) {
+			future = future.orTimeout(totalTimeoutMillis, TimeUnit.MILLISECONDS);
+		}
+		future.whenComplete((result, failure) -> {
+			if (failure != null) {
+				sent.cancel(true);
+			}
+		});
+		return future;
+	}
+
+	static private HttpClient buildClient(HttpPoolConfig config) {
+		if (config == null) {
+			throw new IllegalArgumentException("HttpPoolConfig must not be null");
+		}
+		HttpClient.Builder builder = HttpClient.newBuilder()
+				.version(HttpClient.Version.HTTP_2)
+				.followRedirects(HttpClient.Redirect.NORMAL);
+		if (config.connectTimeoutMillis > 0) {
+			builder.connectTimeout(Duration.ofMillis(config.connectTimeoutMillis));
+		}
+		return builder.build();
+	}
+
+	/**
+	 * @return the millis to wait for the response headers, 0 for no limit
+	 */
+	protected long timeoutMillis(RequestOptions options) {
+		if (options != null) {
+			if (options.totalTimeoutMillis > 0) {
+				return options.totalTimeoutMillis;
+			}
+			if (options.readTimeoutMillis >= 0) {
+				return options.readTimeoutMillis;
+			}
+		}
+		return defaultTimeoutMillis;
+	}
+
+	protected HttpRequest createRequest(TransportRequest request) throws IOException {
+		HttpRequest.Builder builder = HttpRequest.newBuilder(URI.create(request.getUrl()));
+		String body = request.getBody();
+		HttpRequest.BodyPublisher publisher = HttpRequest.BodyPublishers.noBody();
+		if (request.getStreamingBody() != null) {
+			ByteArrayOutputStream bytes = new ByteArrayOutputStream(1024);
+			request.getStreamingBody().writeTo(bytes);
+			publisher = HttpRequest.BodyPublishers.ofByteArray(bytes.toByteArray());
+		} else if (body != null) {
+			publisher = HttpRequest.BodyPublishers.ofString(body);
+		}
+		builder.method(request.getMethod(), publisher);
+		for (Map.Entry<String, String> header : request.getHeaders().entrySet()) {
+			builder.setHeader(header.getKey(), header.getValue());
+		}
+		long timeout = timeoutMillis(request.getOptions());
+		if (timeout > 0) {
+			builder.timeout(Duration.ofMillis(timeout));
+		}
+		return builder.build();
+	}
+
+	static protected TransportResponse toTransportResponse(HttpResponse<InputStream> response) {
+		// the JDK client does not surface the reason phrase
+		TransportResponse result = new TransportResponse(response.statusCode(), null, response.body());
+		copyHeaders(response, result);
+		return result;
+	}
+
+	static protected void copyHeaders(HttpResponse<?> response, TransportResponse result) {
+		for (Map.Entry<String, List<String>> header : response.headers().map().entrySet()) {
+			if (!header.getValue().isEmpty()) {
+				result.setHeader(header.getKey(), header.getValue().get(0));
+			}
+		}
+	}
+}
@@ -0,0 +1,498 @@
+/*
+Copyright 2013 Peter Laird
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+*/
+package com.storageroomapp.client.util;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+
+import org.json.simple.JSONArray;
+import org.json.simple.JSONObject;
+
+/**
+ * A small streaming, pull based JSON parser. It reads its input exactly
+ * once through a fixed size buffer and hands out one token at a time, so
+ * large responses can be bound straight into objects without first
+ * building a String or a json-simple tree.
+ * <p>
+ * Typical use:
+ * <pre>
+ *   JsonPullParser parser = new JsonPullParser(inputStream);
+ *   JsonPullParser.Token token = parser.nextToken();
+ *   while ((token = parser.nextToken()) == JsonPullParser.Token.FIELD_NAME) {
+ *       String key = parser.getText();
+ *       parser.nextToken(); // move onto the value
+ *       ...
+ *   }
+ * </pre>
+ * This class is not thread safe.
+ */
+public class JsonPullParser implements Closeable {
+
+	public enum Token {
+		START_OBJECT,
+		END_OBJECT,
+		START_ARRAY,
+		END_ARRAY,
+		FIELD_NAME,
+		VALUE_STRING,
+		VALUE_NUMBER,
+		VALUE_TRUE,
+		VALUE_FALSE,
+		VALUE_NULL
+	}
+
+	static private final int BUFFER_SIZE = 8192;
+	static private final double[] POWERS_OF_TEN = {
+		1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+		1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+	};
+
+	private final Reader reader;
+	private final char[] buffer = new char[BUFFER_SIZE];
+	private int pos = 0;
+	private int limit = 0;
+
+	// container stack, true for an object, false for an array
+	private boolean[] stack = new boolean[32];
+	private int depth = 0;
+	private boolean expectFieldName = false;
+
+	private Token currentToken = null;
+	private final StringBuilder text = new StringBuilder(64);
+
+	// number state, valid when currentToken is VALUE_NUMBER
+	private boolean numberIsIntegral = true;
+	private boolean numberFitsLong = true;
+	private long numberMantissa = 0;
+	private int numberDigits = 0;
+	private int numberExponent = 0;
+
+	public JsonPullParser(Reader reader) {
+		this.reader = reader;
+	}
+
+	/**
+	 * Parses UTF-8 encoded JSON from a stream
+	 * @param is the InputStream, closed by close()
+	 */
+	public JsonPullParser(InputStream is) {
+		this(new InputStreamReader(is, StandardCharsets.UTF_8));
+	}
+
+	// TOKENS
+
+	/**
+	 * Advances to the next token.
+	 * @return the Token, or null at the end of the input
+	 * @throws IOException on read errors or malformed JSON
+	 */
+	public Token nextToken() throws IOException {
+		int c = skipWhitespace();
+		if ((c == ',') && (depth > 0)) {
+			pos++;
+			expectFieldName = stack[depth-1];
+			c = skipWhitespace();
+		}
+		if (c == -1) {
+			if (depth > 0) {
+				throw error("Unexpected end of input");
+			}
+			currentToken = null;
+			return null;
+		}
+		if (expectFieldName) {
+			return currentToken = readFieldName(c);
+		}
+		pos++;
+		switch (c) {
+		case '{':
+			push(true);
+			expectFieldName = true;
+			return currentToken = Token.START_OBJECT;
+		case '[':
+			push(false);
+			return currentToken = Token.START_ARRAY;
+		case '}':
+		case ']':
+			return currentToken = pop(c);
+		case '"':
+			readString();
+			return currentToken = Token.VALUE_STRING;
+		case 't':
+			expectLiteral("rue");
+			return currentToken = Token.VALUE_TRUE;
+		case 'f':
+			expectLiteral("alse");
+			return currentToken = Token.VALUE_FALSE;
+		case 'n':
+			expectLiteral("ull");
+			return currentToken = Token.VALUE_NULL;
+		default:
+			if ((c == '-') || ((c >= '0') && (c <= '9'))) {
+				pos--;
+				readNumber();
+				return currentToken = Token.VALUE_NUMBER;
+			}
+			throw error("Unexpected character '"+(char)c+"'");
+		}
+	}
+
+	public Token getCurrentToken() {
+		return currentToken;
+	}
+
+	/**
+	 * Returns the text of the current token: the field name, the unescaped
+	 * string value, or the literal text of a number.
+	 * @return the String text
+	 */
+	public String getText() {
+		if (currentToken == Token.VALUE_TRUE) {
+			return "true";
+		} else if (currentToken == Token.VALUE_FALSE) {
+			return "false";
+		} else if (currentToken == Token.VALUE_NULL) {
+			return null;
+		}
+		return text.toString();
+	}
+
+	/**
+	 * Compares the text of the current token without creating a String.
+	 * @param match the String to compare with
+	 * @return true if equal
+	 */
+	public boolean textEquals(String match) {
+		int len = text.length();
+		if (len != match.length()) {
+			return false;
+		}
+		for (int i = 0; i < len; i++) {
+			if (text.charAt(i) != match.charAt(i)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Returns true if the current number token has no fraction or exponent.
+	 * @return true for integral numbers
+	 */
+	public boolean isIntegralNumber() {
+		return numberIsIntegral;
+	}
+
+	public long getLongValue() {
+		if (numberIsIntegral && numberFitsLong) {
+			return numberMantissa;
+		}
+		return (long)getDoubleValue();
+	}
+
+	public int getIntValue() {
+		return (int)getLongValue();
+	}
+
+	public double getDoubleValue() {
+		if (numberFitsLong && (numberDigits <= 15)) {
+			// exact fast path: both the mantissa and the power of ten are exact doubles
+			if ((numberExponent >= 0) && (numberExponent < POWERS_OF_TEN.length)) {
+				return numberMantissa * POWERS_OF_TEN[numberExponent];
+			} else if ((numberExponent < 0) && (-numberExponent < POWERS_OF_TEN.length)) {
+				return numberMantissa / POWERS_OF_TEN[-numberExponent];
+			}
+		}
+		return Double.parseDouble(text.toString());
+	}
+
+	/**
+	 * Skips over the current value. If the current token starts an object
+	 * or array, everything up to and including the matching end token is
+	 * consumed; otherwise this does nothing.
+	 * @throws IOException on read errors or malformed JSON
+	 */
+	public void skipChildren() throws IOException {
+		if ((currentToken != Token.START_OBJECT) && (currentToken != Token.START_ARRAY)) {
+			return;
+		}
+		int targetDepth = depth - 1;
+		while (depth > targetDepth) {
+			if (nextToken() == null) {
+				throw error("Unexpected end of input");
+			}
+		}
+	}
+
+	/**
+	 * Reads the current value (and any children) into the types used by
+	 * json-simple: JSONObject, JSONArray, String, Long, Double, Boolean or
+	 * null. This is useful for small nested values such as File or Location
+	 * fields.
+	 * @return the value
+	 * @throws IOException on read errors or malformed JSON
+	 */
+	@SuppressWarnings("unchecked")
+	public Object readValue() throws IOException {
+		if (currentToken == null) {
+			return null;
+		}
+		switch (currentToken) {
+		case START_OBJECT:
+			JSONObject obj = new JSONObject();
+			while (nextToken() == Token.FIELD_NAME) {
+				String key = getText();
+				nextToken();
+				obj.put(key, readValue());
+			}
+			return obj;
+		case START_ARRAY:
+			JSONArray array = new JSONArray();
+			while (nextToken() != Token.END_ARRAY) {
+				array.add(readValue());
+			}
+			return array;
+		case VALUE_STRING:
+			return getText();
+		case VALUE_NUMBER:
+			if (numberIsIntegral && numberFitsLong) {
+				return Long.valueOf(numberMantissa);
+			}
+			return Double.valueOf(getDoubleValue());
+		case VALUE_TRUE:
+			return Boolean.TRUE;
+		case VALUE_FALSE:
+			return Boolean.FALSE;
+		case VALUE_NULL:
+			return null;
+		default:
+			throw error("No value at token "+currentToken);
+		}
+	}
+
+	public void close() throws IOException {
+		reader.close();
+	}
+
+	// INTERNAL
+
+	private Token readFieldName(int c) throws IOException {
+		if (c == '}') {
+			pos++;
+			return pop(c);
+		}
+		if (c != '"') {
+			throw error("Expected a field name");
+		}
+		pos++;
+		readString();
+		if (skipWhitespace() != ':') {
+			throw error("Expected ':' after field name");
+		}
+		pos++;
+		expectFieldName = false;
+		return Token.FIELD_NAME;
+	}
+
+	private void push(boolean isObject) {
+		if (depth == stack.length) {
+			boolean[] bigger = new boolean[stack.length * 2];
+			System.arraycopy(stack, 0, bigger, 0, stack.length);
+			stack = bigger;
+		}
+		stack[depth++] = isObject;
+	}
+
+	private Token pop(int c) throws IOException {
+		boolean isObject = (c == '}');
+		if ((depth == 0) || (stack[depth-1] != isObject)) {
+			throw error("Unbalanced '"+(char)c+"'");
+		}
+		depth--;
+		expectFieldName = false;
+		return isObject ? Token.END_OBJECT : Token.END_ARRAY;
+	}
+
+	private int peek() throws IOException {
+		if (pos == limit) {
+			limit = reader.read(buffer, 0, buffer.length);
+			pos = 0;
+			if (limit <= 0) {
+				limit = 0;
+				return -1;
+			}
+		}
+		return buffer[pos];
+	}
+
+	private int read() throws IOException {
+		int c = peek();
+		if (c != -1) {
+			pos++;
+		}
+		return c;
+	}
+
+	private int skipWhitespace() throws IOException {
+		int c = peek();
+		while ((c == ' ') || (c == '\n') || (c == '\r') || (c == '\t')) {
+			pos++;
+			c = peek();
+		}
+		return c;
+	}
+
+	private void expectLiteral(String rest) throws IOException {
+		for (int i = 0; i < rest.length(); i++) {
+			if (read() != rest.charAt(i)) {
+				throw error("Invalid literal");
+			}
+		}
+	}
+
+	private void readString() throws IOException {
+		text.setLength(0);
+		while (true) {
+			// copy runs of plain characters straight from the buffer
+			int start = pos;
+			while (pos < limit) {
+				char ch = buffer[pos];
+				if ((ch == '"') || (ch == '\\')) {
+					break;
+				}
+				pos++;
+			}
+			text.append(buffer, start, pos - start);
+			int c = read();
+			if (c == -1) {
+				throw error("Unterminated string");
+			} else if (c == '"') {
+				return;
+			} else if (c == '\\') {
+				readEscape();
+			} else {
+				text.append((char)c);
+			}
+		}
+	}
+
+	private void readEscape() throws IOException {
+		int c = read();
+		switch (c) {
+		case '"': text.append('"'); break;
+		case '\\': text.append('\\'); break;
+		case '/': text.append('/'); break;
+		case 'b': text.append('\b'); break;
+		case 'f': text.append('\f'); break;
+		case 'n': text.append('\n'); break;
+		case 'r': text.append('\r'); break;
+		case 't': text.append('\t'); break;
+		case 'u':
+			int code = 0;
+			for (int i = 0; i < 4; i++) {
+				int h = Character.digit(read(), 16);
+				if (h < 0) {
+					throw error("Invalid unicode escape");
+				}
+				code = (code << 4) | h;
+			}
+			text.append((char)code);
+			break;
+		default:
+			throw error("Invalid escape");
+		}
+	}
+
+	private void readNumber() throws IOException {
+		text.setLength(0);
+		numberIsIntegral = true;
+		numberFitsLong = true;
+		numberMantissa = 0;
+		numberDigits = 0;
+		numberExponent = 0;
+		
+		boolean negative = false;
+		int c = peek();
+		if (c == '-') {
+			negative = true;
+			text.append('-');
+			pos++;
+		}
+		c = readDigits(false);
+		if (c == '.') {
+			numberIsIntegral = false;
+			text.append('.');
+			pos++;
+			c = readDigits(true);
+		}
+		if ((c == 'e') || (c == 'E')) {
+			numberIsIntegral = false;
+			text.append((char)c);
+			pos++;
+			c = peek();
+			boolean negativeExp = false;
+			if ((c == '+') || (c == '-')) {
+				negativeExp = (c == '-');
+				text.append((char)c);
+				pos++;
+			}
+			int exp = 0;
+			c = peek();
+			while ((c >= '0') && (c <= '9')) {
+				text.append((char)c);
+				exp = Math.min(exp * 10 + (c - '0'), 100000);
+				pos++;
+				c = peek();
+			}
+			numberExponent += negativeExp ? -exp : exp;
+		}
+		if (text.length() == (negative ? 1 : 0)) {
+			throw error("Invalid number");
+		}
+		if (negative) {
+			numberMantissa = -numberMantissa;
+		}
+	}
+
+	private int readDigits(boolean isFraction) throws IOException {
+		int c = peek();
+		while ((c >= '0') && (c <= '9')) {
+			text.append((char)c);
+			if (numberMantissa > (Long.MAX_VALUE - 9) / 10) {
+				numberFitsLong = false;
+			} else {
+				numberMantissa = numberMantissa * 10 + (c - '0');
+				if ((numberMantissa != 0) || isFraction) {
+					numberDigits++;
+				}
+				if (isFraction) {
+					numberExponent--;
+				}
+			}
+			pos++;
+			c = peek();
+		}
+		return c;
+	}
+
+	private IOException error(String message) {
+		return new IOException("JSON parse error: "+message);
+	}
+}
@@ -94,6 +94,33 @@ public class JsonSimpleUtil {
 		
 	}
 	
+	/**
+	 * Variant of parseJsonFloatValue() that returns a primitive, for callers
+	 * that store floats unboxed.
+	 * @param obj the JSONObject received from the server
+	 * @param key the String key of the value we want
+	 * @param defaultValue the float to return if a value is not found (e.g. Float.NaN)
+	 * @return the float value, or defaultValue if not found or not a float
+	 */
+	static public float parseJsonFloatValue(JSONObject obj, String key, float defaultValue) {
+		if ((obj == null) || (key == null)) {
+			return defaultValue;
+		}
+		Object valueObj = obj.get(key);
+		if (valueObj instanceof Number) {
+			return ((Number)valueObj).floatValue();
+		}
+		float value = defaultValue;
+		if (valueObj != null) {
+			try {
+				value = Float.parseFloat(valueObj.toString());
+			} catch (NumberFormatException nfe) {
+				value = defaultValue;
+			}
+		}
+		return value;
+	}
+	
 	/**
 	 * Convenience method for pulling a Boolean value off of a JSONObject
 	 * @param obj the JSONObject received from the server
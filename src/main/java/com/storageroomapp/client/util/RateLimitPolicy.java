@@ -0,0 +1,48 @@
+/*
+Copyright 2013 Peter Laird
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+*/
+package com.storageroomapp.client.util;
+
+/**
+ * Encapsulates the client side limits applied by a RateLimiter. The members
+ * you can set in this class are raw values read when the RateLimiter is
+ * created.
+ */
+public class RateLimitPolicy {
+
+	/**
+	 * Sustained request rate allowed, or -1 for no rate limit
+	 */
+	public double permitsPerSecond = 10;
+
+	/**
+	 * Number of requests that may be sent back to back after a quiet period,
+	 * i.e. the size of the token bucket
+	 */
+	public int burst = 10;
+
+	/**
+	 * Maximum number of requests in flight at the same time, or -1 for
+	 * no limit
+	 */
+	public int maxConcurrentRequests = 10;
+
+	/**
+	 * How long a request may wait for a permit before it is rejected. Use 0
+	 * to reject immediately when no permit is available, or -1 to wait
+	 * as long as it takes.
+	 */
+	public long acquireTimeoutMillis = 5000;
+}
@@ -0,0 +1,198 @@
+/*
+Copyright 2013 Peter Laird
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+*/
+package com.storageroomapp.client.util;
+
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A token bucket rate limiter combined with a bulkhead, a cap on the number
+ * of requests in flight. One instance holds the limits for one StorageRoom
+ * account; share it between Applications that use the same account.
+ * <p>
+ * The getters expose the current state and counters, for metrics.
+ */
+public class RateLimiter {
+
+	protected final RateLimitPolicy policy;
+	private final double nanosPerPermit;
+	private final double burst;
+	private final Semaphore inFlight;
+
+	// token bucket state, guarded by this
+	private double tokens;
+	private long lastRefillNanos;
+
+	private final AtomicInteger waiting = new AtomicInteger();
+	private final AtomicLong acquired = new AtomicLong();
+	private final AtomicLong rejected = new AtomicLong();
+	private final AtomicLong totalWaitNanos = new AtomicLong();
+
+	public RateLimiter(RateLimitPolicy policy) {
+		this.policy = (policy != null) ? policy : new RateLimitPolicy();
+		this.nanosPerPermit = (this.policy.permitsPerSecond > 0) ? (1e9 / this.policy.permitsPerSecond) : 0;
+		this.burst = Math.max(1, this.policy.burst);
+		this.inFlight = (this.policy.maxConcurrentRequests > 0) ? new Semaphore(this.policy.maxConcurrentRequests, true) : null;
+		this.tokens = this.burst;
+		this.lastRefillNanos = System.nanoTime();
+	}
+
+	public RateLimitPolicy getPolicy() {
+		return policy;
+	}
+
+	// OPERATIONS
+
+	/**
+	 * Waits, up to the policy's acquireTimeoutMillis, until a request may
+	 * be sent. Every successful call must be paired with release().
+	 * 
+	 * @return true if the request may be sent, false if it was rejected
+	 * @throws InterruptedException if interrupted while waiting
+	 */
+	public boolean acquire() throws InterruptedException {
+		long timeoutNanos = (policy.acquireTimeoutMillis < 0) ? -1 : TimeUnit.MILLISECONDS.toNanos(policy.acquireTimeoutMillis);
+		long start = System.nanoTime();
+		waiting.incrementAndGet();
+		try {
+			if (inFlight != null) {
+				boolean gotSlot;
+				if (timeoutNanos < 0) {
+					inFlight.acquire();
+					gotSlot = true;
+				} else {
+					gotSlot = inFlight.tryAcquire(timeoutNanos, TimeUnit.NANOSECONDS);
+				}
+				if (!gotSlot) {
+					rejected.incrementAndGet();
+					return false;
+				}
+			}
+			if (nanosPerPermit > 0) {
+				long remaining = (timeoutNanos < 0) ? -1 : Math.max(0, timeoutNanos - (System.nanoTime() - start));
+				long waitNanos = reserveToken(remaining);
+				if (waitNanos < 0) {
+					if (inFlight != null) {
+						inFlight.release();
+					}
+					rejected.incrementAndGet();
+					return false;
+				}
+				if (waitNanos > 0) {
+					try {
+						TimeUnit.NANOSECONDS.sleep(waitNanos);
+					} catch (InterruptedException ie) {
+						if (inFlight != null) {
+							inFlight.release();
+						}
+						throw ie;
+					}
+				}
+			}
+			acquired.incrementAndGet();
+			totalWaitNanos.addAndGet(System.nanoTime() - start);
+			return true;
+		} finally {
+			waiting.decrementAndGet();
+		}
+	}
+
+	/**
+	 * Marks a request admitted by acquire() as finished.
+	 */
+	public void release() {
+		if (inFlight != null) {
+			inFlight.release();
+		}
+	}
+
+	// METRICS
+
+	/**
+	 * @return the number of requests that could be sent right now without
+	 * waiting for the rate limit
+	 */
+	public synchronized double getAvailableTokens() {
+		refill(System.nanoTime());
+		return Math.max(0, tokens);
+	}
+
+	/**
+	 * @return the number of requests currently in flight, or 0 if 
+	 * concurrency is not limited
+	 */
+	public int getInFlightCount() {
+		if (inFlight == null) {
+			return 0;
+		}
+		return policy.maxConcurrentRequests - inFlight.availablePermits();
+	}
+
+	/**
+	 * @return the number of requests currently waiting for a permit
+	 */
+	public int getWaitingCount() {
+		return waiting.get();
+	}
+
+	public long getAcquiredCount() {
+		return acquired.get();
+	}
+
+	public long getRejectedCount() {
+		return rejected.get();
+	}
+
+	/**
+	 * @return the total time admitted requests spent waiting for a permit
+	 */
+	public long getTotalWaitMillis() {
+		return TimeUnit.NANOSECONDS.toMillis(totalWaitNanos.get());
+	}
+
+	// INTERNAL
+
+	/**
+	 * Takes a token from the bucket, possibly ahead of time.
+	 * @param maxWaitNanos the longest acceptable wait, or -1 for any
+	 * @return how long to wait before using the token, or -1 if that
+	 * would be longer than maxWaitNanos (no token is taken then)
+	 */
+	private synchronized long reserveToken(long maxWaitNanos) {
+		refill(System.nanoTime());
+		double deficit = 1.0 - tokens;
+		long waitNanos = (deficit <= 0) ? 0 : (long)Math.ceil(deficit * nanosPerPermit);
+		if ((maxWaitNanos >= 0) && (waitNanos > maxWaitNanos)) {
+			return -1;
+		}
+		// may go negative, which queues later callers behind this one
+		tokens -= 1.0;
+		return waitNanos;
+	}
+
+	private void refill(long now) {
+		if (nanosPerPermit <= 0) {
+			return;
+		}
+		long elapsed = now - lastRefillNanos;
+		if (elapsed > 0) {
+			tokens = Math.min(burst, tokens + elapsed / nanosPerPermit);
+			lastRefillNanos = now;
+		}
+	}
+}
@@ -0,0 +1,37 @@
+/*
+Copyright 2013 Peter Laird
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+*/
+package com.storageroomapp.client.util;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * A request body that is written straight to the connection, rather than
+ * built as a String first. See Entry.toRequestBody().
+ * <p>
+ * Implementations must be repeatable: writeTo() is called again for each
+ * attempt when a request is retried.
+ */
+public interface RequestBody {
+
+	/**
+	 * Writes the whole body. The stream must not be closed.
+	 * @param out the OutputStream of the request
+	 * @throws IOException if the body cannot be written
+	 */
+	void writeTo(OutputStream out) throws IOException;
+
+}
@@ -0,0 +1,96 @@
+/*
+Copyright 2013 Peter Laird
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+*/
+package com.storageroomapp.client.util;
+
+/**
+ * Timeouts for live API calls. An Application carries a default set
+ * (see Application.setRequestOptions()), and individual calls such as 
+ * CollectionQuery or CollectionEntries.insertNewEntry() accept an override.
+ * Members left at -1 are not set, and fall back to the next level: the
+ * call's options, then the Application's, then the Transport's own.
+ * <p>
+ * A value of 0 means no timeout.
+ */
+public class RequestOptions {
+
+	static public final long NOT_SET = -1;
+
+	/**
+	 * How long to wait for a TCP connection to be established.
+	 */
+	public long connectTimeoutMillis = NOT_SET;
+
+	/**
+	 * How long a single read from the socket may block, i.e. the longest
+	 * silence tolerated from the server mid-response.
+	 */
+	public long readTimeoutMillis = NOT_SET;
+
+	/**
+	 * Upper bound on the whole request, from sending it to receiving the
+	 * last byte of the response. This is per attempt; the RetryPolicy
+	 * deadline bounds the sum of all attempts.
+	 */
+	public long totalTimeoutMillis = NOT_SET;
+
+	public RequestOptions() {
+	}
+
+	public RequestOptions(long connectTimeoutMillis, long readTimeoutMillis, long totalTimeoutMillis) {
+		this.connectTimeoutMillis = connectTimeoutMillis;
+		this.readTimeoutMillis = readTimeoutMillis;
+		this.totalTimeoutMillis = totalTimeoutMillis;
+	}
+
+	/**
+	 * The defaults installed on every Application: 10 seconds to connect,
+	 * 30 seconds of read silence, 60 seconds overall.
+	 * @return a new RequestOptions
+	 */
+	static public RequestOptions defaults() {
+		return new RequestOptions(10000, 30000, 60000);
+	}
+
+	/**
+	 * Fills the members not set on the override from the defaults.
+	 * 
+	 * @param override the RequestOptions of the call, may be null
+	 * @param defaults the RequestOptions to fall back to, may be null
+	 * @return the merged RequestOptions (a new object when both are 
+	 * non-null), or null if both are null
+	 */
+	static public RequestOptions merge(RequestOptions override, RequestOptions defaults) {
+		if (override == null) {
+			return defaults;
+		}
+		if (defaults == null) {
+			return override;
+		}
+		return new RequestOptions(
+				pick(override.connectTimeoutMillis, defaults.connectTimeoutMillis),
+				pick(override.readTimeoutMillis, defaults.readTimeoutMillis),
+				pick(override.totalTimeoutMillis, defaults.totalTimeoutMillis));
+	}
+
+	static private long pick(long override, long fallback) {
+		return (override >= 0) ? override : fallback;
+	}
+
+	@Override
+	public String toString() {
+		return "RequestOptions connect ["+connectTimeoutMillis+"] read ["+readTimeoutMillis+"] total ["+totalTimeoutMillis+"]";
+	}
+}
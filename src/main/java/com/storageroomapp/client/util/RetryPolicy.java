@@ -0,0 +1,137 @@
+/*
+Copyright 2013 Peter Laird
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+*/
+package com.storageroomapp.client.util;
+
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Encapsulates when and how often a failed request is retried by a
+ * RetryingTransport. The members you can set in this class are raw values
+ * used by the retry loop.
+ * <p>
+ * Only idempotent requests (GET, PUT, DELETE) are retried unless 
+ * retryNonIdempotent is set. A request is retried if it failed with an
+ * IOException, or the server answered with one of retryableStatusCodes.
+ * The delay before attempt n is an exponential backoff with jitter, unless
+ * the server sent a Retry-After header, which is honored instead.
+ */
+public class RetryPolicy {
+
+	/**
+	 * Maximum number of attempts, including the first one. Use 1 to
+	 * disable retries.
+	 */
+	public int maxAttempts = 3;
+
+	/**
+	 * Backoff before the first retry; each later retry multiplies it
+	 * by backoffMultiplier, up to maxBackoffMillis.
+	 */
+	public long initialBackoffMillis = 100;
+
+	public double backoffMultiplier = 2.0;
+
+	public long maxBackoffMillis = 5000;
+
+	/**
+	 * Fraction (0.0 - 1.0) of each backoff that is randomized, so that
+	 * clients failing together do not retry together. 1.0 is "full jitter",
+	 * a delay picked uniformly between 0 and the backoff.
+	 */
+	public double jitter = 1.0;
+
+	/**
+	 * Total time budget for an operation, across all of its attempts and
+	 * delays. No retry is started that would end after the deadline. Use -1
+	 * for no deadline.
+	 */
+	public long deadlineMillis = 30000;
+
+	/**
+	 * If true, a Retry-After header on a retryable response sets the delay
+	 * before the next attempt.
+	 */
+	public boolean honorRetryAfter = true;
+
+	/**
+	 * HTTP status codes that are worth retrying
+	 */
+	public int[] retryableStatusCodes = { 429, 500, 502, 503, 504 };
+
+	/**
+	 * If true, POST requests are retried too. Only set this if duplicate
+	 * inserts are acceptable.
+	 */
+	public boolean retryNonIdempotent = false;
+
+	/**
+	 * @return true if the request may be retried under this policy
+	 */
+	public boolean canRetry(TransportRequest request) {
+		return (maxAttempts > 1) && (retryNonIdempotent || request.isIdempotent());
+	}
+
+	/**
+	 * @return true if the response status is worth retrying
+	 */
+	public boolean isRetryableStatus(int statusCode) {
+		for (int retryable : retryableStatusCodes) {
+			if (retryable == statusCode) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Computes the delay before the retry that follows the given attempt.
+	 * @param attempt the number of the attempt that just failed, from 1
+	 * @return the delay in millis
+	 */
+	public long computeBackoffMillis(int attempt) {
+		double backoff = initialBackoffMillis * Math.pow(backoffMultiplier, attempt - 1);
+		backoff = Math.min(backoff, maxBackoffMillis);
+		double j = Math.max(0.0, Math.min(1.0, jitter));
+		double random = ThreadLocalRandom.current().nextDouble();
+		return (long)(backoff * (1.0 - j) + backoff * j * random);
+	}
+
+	/**
+	 * Parses a Retry-After header, which is either a number of seconds or
+	 * an HTTP date.
+	 * @param value the header value
+	 * @return the delay in millis, or -1 if absent or not understood
+	 */
+	static public long parseRetryAfterMillis(String value) {
+		if (value == null) {
+			return -1;
+		}
+		value = value.trim();
+		try {
+			return Math.max(0, Long.parseLong(value) * 1000);
+		} catch (NumberFormatException nfe) {
+			// not seconds, try a date
+		}
+		try {
+			ZonedDateTime date = ZonedDateTime.parse(value, DateTimeFormatter.RFC_1123_DATE_TIME);
+			return Math.max(0, date.toInstant().toEpochMilli() - System.currentTimeMillis());
+		} catch (Exception e) {
+			return -1;
+		}
+	}
+}
@@ -0,0 +1,164 @@
+/*
+Copyright 2013 Peter Laird
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+*/
+package com.storageroomapp.client.util;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+/**
+ * Retries failed requests on the wrapped Transport according to a 
+ * RetryPolicy. When the attempts or the deadline run out, the last 
+ * response (or IOException) is passed on to the caller as-is.
+ */
+public class RetryingTransport extends TransportDecorator {
+	static private Log log = LogFactory.getLog(RetryingTransport.class);
+
+	protected final RetryPolicy policy;
+	private final AtomicLong retryCount = new AtomicLong();
+
+	public RetryingTransport(Transport delegate, RetryPolicy policy) {
+		super(delegate);
+		this.policy = (policy != null) ? policy : new RetryPolicy();
+	}
+
+	public RetryPolicy getPolicy() {
+		return policy;
+	}
+
+	/**
+	 * @return the number of retries made since this Transport was created
+	 */
+	public long getRetryCount() {
+		return retryCount.get();
+	}
+
+	@Override
+	public TransportResponse execute(TransportRequest request) throws IOException {
+		if (!policy.canRetry(request)) {
+			return delegate.execute(request);
+		}
+		long deadline = computeDeadline();
+		for (int attempt = 1; ; attempt++) {
+			TransportResponse response = null;
+			IOException failure = null;
+			try {
+				response = delegate.execute(request);
+			} catch (IOException ioe) {
+				failure = ioe;
+			}
+			long delay = retryDelay(request, attempt, deadline, response, failure);
+			if (delay < 0) {
+				if (failure != null) {
+					throw failure;
+				}
+				return response;
+			}
+			if (response != null) {
+				response.close();
+			}
+			try {
+				Thread.sleep(delay);
+			} catch (InterruptedException ie) {
+				Thread.currentThread().interrupt();
+				throw new InterruptedIOException("Interrupted while waiting to retry ["+request.getUrl()+"]");
+			}
+		}
+	}
+
+	@Override
+	public CompletableFuture<TransportResponse> executeAsync(TransportRequest request) {
+		if (!policy.canRetry(request)) {
+			return delegate.executeAsync(request);
+		}
+		return attemptAsync(request, 1, computeDeadline());
+	}
+
+	// INTERNAL
+
+	private CompletableFuture<TransportResponse> attemptAsync(final TransportRequest request, final int attempt, final long deadline) {
+		return delegate.executeAsync(request).handle((response, failure) -> {
+			Throwable cause = unwrap(failure);
+			IOException ioFailure = (cause instanceof IOException) ? (IOException)cause : null;
+			long delay = ((failure == null) || (ioFailure != null)) 
+					? retryDelay(request, attempt, deadline, response, ioFailure) : -1;
+			if (delay < 0) {
+				if (failure != null) {
+					CompletableFuture<TransportResponse> failed = new CompletableFuture<TransportResponse>();
+					failed.completeExceptionally(cause);
+					return failed;
+				}
+				return CompletableFuture.completedFuture(response);
+			}
+			if (response != null) {
+				response.close();
+			}
+			return CompletableFuture.runAsync(() -> {}, CompletableFuture.delayedExecutor(delay, TimeUnit.MILLISECONDS))
+					.thenCompose(ignored -> attemptAsync(request, attempt + 1, deadline));
+		}).thenCompose(future -> future);
+	}
+
+	/**
+	 * Decides whether to retry after an attempt.
+	 * @return the delay before the next attempt, or -1 to stop
+	 */
+	private long retryDelay(TransportRequest request, int attempt, long deadline, TransportResponse response, IOException failure) {
+		if (attempt >= policy.maxAttempts) {
+			return -1;
+		}
+		long delay;
+		if (failure instanceof TransportRejectedException) {
+			// refused before reaching the server, the limiter already decided how long to wait
+			return -1;
+		} else if (failure != null) {
+			delay = policy.computeBackoffMillis(attempt);
+		} else if (policy.isRetryableStatus(response.getStatusCode())) {
+			long retryAfter = policy.honorRetryAfter ? RetryPolicy.parseRetryAfterMillis(response.getHeader("Retry-After")) : -1;
+			delay = (retryAfter >= 0) ? retryAfter : policy.computeBackoffMillis(attempt);
+		} else {
+			return -1;
+		}
+		if ((deadline != Long.MAX_VALUE) && (System.currentTimeMillis() + delay >= deadline)) {
+			return -1;
+		}
+		retryCount.incrementAndGet();
+		if (log.isDebugEnabled()) {
+			String outcome = (failure != null) ? failure.toString() : "response code ["+response.getStatusCode()+"]";
+			log.debug("Retrying "+request.getMethod()+" url ["+request.getUrl()+"] in "+delay+"ms after attempt "+attempt+" failed with "+outcome);
+		}
+		return delay;
+	}
+
+	private long computeDeadline() {
+		if (policy.deadlineMillis < 0) {
+			return Long.MAX_VALUE;
+		}
+		return System.currentTimeMillis() + policy.deadlineMillis;
+	}
+
+	static private Throwable unwrap(Throwable failure) {
+		if ((failure instanceof CompletionException) && (failure.getCause() != null)) {
+			return failure.getCause();
+		}
+		return failure;
+	}
+}
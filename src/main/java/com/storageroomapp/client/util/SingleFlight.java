@@ -0,0 +1,132 @@
+/*
+Copyright 2013 Peter Laird
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+*/
+package com.storageroomapp.client.util;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Coalesces concurrent calls for the same key: while a call is in flight,
+ * callers asking for the same key wait for it and share its result 
+ * instead of making a call of their own. A thundering herd on one URL 
+ * then costs one request and one parse instead of N.
+ * <p>
+ * Only calls that overlap are shared; a call that starts after the 
+ * previous one finished runs again. Every caller receives the same result
+ * object. Asynchronous callers each get their own future, so one caller
+ * cancelling its future does not cancel the call for the others.
+ */
+public class SingleFlight<K, T> {
+
+	private final ConcurrentMap<K, CompletableFuture<T>> inFlight = new ConcurrentHashMap<K, CompletableFuture<T>>();
+	private final AtomicLong callCount = new AtomicLong();
+	private final AtomicLong coalescedCount = new AtomicLong();
+
+	// OPERATIONS
+
+	/**
+	 * Runs the call on the caller's thread, or waits for the identical
+	 * call already in flight.
+	 * 
+	 * @param key identifies the call, e.g. a URL
+	 * @param call produces the result
+	 * @return the result of the call, shared with any concurrent callers
+	 */
+	public T execute(K key, Supplier<T> call) {
+		CompletableFuture<T> mine = new CompletableFuture<T>();
+		CompletableFuture<T> leader = inFlight.putIfAbsent(key, mine);
+		if (leader != null) {
+			coalescedCount.incrementAndGet();
+			return leader.join();
+		}
+		callCount.incrementAndGet();
+		try {
+			T result = call.get();
+			mine.complete(result);
+			return result;
+		} catch (RuntimeException re) {
+			mine.completeExceptionally(re);
+			throw re;
+		} catch (Error e) {
+			mine.completeExceptionally(e);
+			throw e;
+		} finally {
+			inFlight.remove(key, mine);
+		}
+	}
+
+	/**
+	 * Asynchronous variant of execute(). The call is started only if no
+	 * identical call is in flight.
+	 * 
+	 * @param key identifies the call, e.g. a URL
+	 * @param call starts the call
+	 * @return a future for the result, shared with any concurrent callers;
+	 *         cancelling it affects only this caller
+	 */
+	public CompletableFuture<T> executeAsync(final K key, Supplier<CompletableFuture<T>> call) {
+		final CompletableFuture<T> mine = new CompletableFuture<T>();
+		CompletableFuture<T> leader = inFlight.putIfAbsent(key, mine);
+		if (leader != null) {
+			coalescedCount.incrementAndGet();
+			return leader.copy();
+		}
+		callCount.incrementAndGet();
+		CompletableFuture<T> started;
+		try {
+			started = call.get();
+		} catch (RuntimeException re) {
+			inFlight.remove(key, mine);
+			mine.completeExceptionally(re);
+			return mine.copy();
+		}
+		started.whenComplete((result, failure) -> {
+			inFlight.remove(key, mine);
+			if (failure != null) {
+				mine.completeExceptionally(failure);
+			} else {
+				mine.complete(result);
+			}
+		});
+		return mine.copy();
+	}
+
+	// METRICS
+
+	/**
+	 * @return the number of calls actually made
+	 */
+	public long getCallCount() {
+		return callCount.get();
+	}
+
+	/**
+	 * @return the number of callers that shared a call already in flight
+	 */
+	public long getCoalescedCount() {
+		return coalescedCount.get();
+	}
+
+	/**
+	 * @return the number of calls in flight right now
+	 */
+	public int getInFlightCount() {
+		return inFlight.size();
+	}
+}
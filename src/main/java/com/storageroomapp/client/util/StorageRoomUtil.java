@@ -15,9 +15,7 @@ Copyright 2013 Peter Laird
 */
 package com.storageroomapp.client.util;
 
-import java.text.SimpleDateFormat;
 import java.util.Calendar;
-import java.util.Date;
 import java.util.TimeZone;
 
 import org.apache.commons.logging.Log;
@@ -39,6 +37,11 @@ public class StorageRoomUtil {
 	 */
 	static public final String URL_BASE = "api.storageroomapp.com/accounts/";
 	
+	/**
+	 * Host of the public StorageRoom API
+	 */
+	static public final String API_HOST = "api.storageroomapp.com";
+	
 	/**
 	 * Marks up a url with necessary query parameters
 	 * 
@@ -68,15 +71,22 @@ public class StorageRoomUtil {
 	
 	// TIME AND DATE
 	
+	/**
+	 * Returned by the epoch millis parsing methods when the String is not
+	 * a valid StorageRoom date or time.
+	 */
+	static public final long INVALID_EPOCH_MILLIS = Long.MIN_VALUE;
+	
 	/**
 	 * Serializes a Calendar as a StorageRoom time String
 	 * @param cal the Calendar
-	 * @return the serialized String
+	 * @return the serialized String, or null if cal is null or its year is not between 0000 and 9999
 	 */
 	static public String calendarToStorageRoomTimeString(Calendar cal) {
-		initFormatters();
-		String date = timeFieldFormatter.format(cal.getTime());
-		return date;
+		if (cal == null) {
+			return null;
+		}
+		return epochMillisToStorageRoomTimeString(cal.getTimeInMillis());
 	}
 	
 	/**
@@ -85,26 +95,24 @@ public class StorageRoomUtil {
 	 * @return the Calendar, or null if not a valid time String
 	 */
 	static public Calendar storageRoomTimeStringToCalendar(String str) {
-		initFormatters();
-		Calendar cal=Calendar.getInstance(gmt);
-		try {
-			Date date = timeFieldFormatter.parse(str);
-			cal.setTime(date);
-		} catch (Exception e) {
-			log.error("Error deserializing a StorageRoom time field", e);
+		long millis = storageRoomTimeStringToEpochMillis(str);
+		if (millis == INVALID_EPOCH_MILLIS) {
+			log.error("Error deserializing a StorageRoom time field ["+str+"]");
+			return null;
 		}
-		return cal;
+		return epochMillisToCalendar(millis);
 	}
 
 	/**
 	 * Serializes a Calendar as a StorageRoom date String
 	 * @param cal the Calendar
-	 * @return the serialized String
+	 * @return the serialized String, or null if cal is null or its year is not between 0000 and 9999
 	 */
 	static public String calendarToStorageRoomDateString(Calendar cal) {
-		initFormatters();
-		String date = dateFieldFormatter.format(cal.getTime());
-		return date;
+		if (cal == null) {
+			return null;
+		}
+		return epochMillisToStorageRoomDateString(cal.getTimeInMillis());
 	}
 	
 	/**
@@ -113,31 +121,256 @@ public class StorageRoomUtil {
 	 * @return the Calendar, or null if not a valid date String
 	 */
 	static public Calendar storageRoomDateStringToCalendar(String str) {
-		initFormatters();
-		Calendar cal=Calendar.getInstance(gmt);
-		try {
-			Date date = dateFieldFormatter.parse(str);
-			cal.setTime(date);
-		} catch (Exception e) {
-			log.error("Error deserializing a StorageRoom date field", e);
+		long millis = storageRoomDateStringToEpochMillis(str);
+		if (millis == INVALID_EPOCH_MILLIS) {
+			log.error("Error deserializing a StorageRoom date field ["+str+"]");
+			return null;
+		}
+		return epochMillisToCalendar(millis);
+	}
+	
+	/**
+	 * Converts a StorageRoom time String, such as 2013-01-10T21:17:00Z, into
+	 * milliseconds since the epoch. Fractional seconds and numeric zone
+	 * offsets (+hh, +hhmm, +hh:mm, up to 18 hours) are accepted, and so is 
+	 * an hour of 24, which means midnight at the start of the day.
+	 * <p>
+	 * This method is thread safe and does not allocate.
+	 * @param str the String time field
+	 * @return the epoch millis, or INVALID_EPOCH_MILLIS if not a valid time String
+	 */
+	static public long storageRoomTimeStringToEpochMillis(CharSequence str) {
+		if ((str == null) || (str.length() < 20)) {
+			return INVALID_EPOCH_MILLIS;
+		}
+		long days = parseDate(str);
+		if ((days == INVALID_EPOCH_MILLIS) || (str.charAt(10) != 'T') 
+				|| (str.charAt(13) != ':') || (str.charAt(16) != ':')) {
+			return INVALID_EPOCH_MILLIS;
+		}
+		int hour = parseDigits(str, 11, 2);
+		int minute = parseDigits(str, 14, 2);
+		int second = parseDigits(str, 17, 2);
+		if ((hour < 0) || (hour > 24) || (minute < 0) || (minute > 59) || (second < 0) || (second > 59)) {
+			return INVALID_EPOCH_MILLIS;
+		}
+		if (hour == 24) {
+			// the server has been known to send 24:00:00 for midnight
+			hour = 0;
+		}
+		
+		int len = str.length();
+		int pos = 19;
+		int millis = 0;
+		if (str.charAt(pos) == '.') {
+			pos++;
+			int start = pos;
+			int scale = 100;
+			while ((pos < len) && (str.charAt(pos) >= '0') && (str.charAt(pos) <= '9')) {
+				millis += (str.charAt(pos) - '0') * scale;
+				scale /= 10;
+				pos++;
+			}
+			if (pos == start) {
+				return INVALID_EPOCH_MILLIS;
+			}
+		}
+		
+		if (pos >= len) {
+			return INVALID_EPOCH_MILLIS;
+		}
+		int offsetMinutes = 0;
+		char zone = str.charAt(pos++);
+		if ((zone == '+') || (zone == '-')) {
+			int offsetHours = parseDigits(str, pos, 2);
+			if ((offsetHours < 0) || (offsetHours > MAX_OFFSET_HOURS)) {
+				return INVALID_EPOCH_MILLIS;
+			}
+			pos += 2;
+			int offsetMins = 0;
+			if (pos < len) {
+				if (str.charAt(pos) == ':') {
+					pos++;
+				}
+				offsetMins = parseDigits(str, pos, 2);
+				if ((offsetMins < 0) || (offsetMins > 59)) {
+					return INVALID_EPOCH_MILLIS;
+				}
+				pos += 2;
+			}
+			offsetMinutes = offsetHours * 60 + offsetMins;
+			if (offsetMinutes > MAX_OFFSET_HOURS * 60) {
+				return INVALID_EPOCH_MILLIS;
+			}
+			if (zone == '-') {
+				offsetMinutes = -offsetMinutes;
+			}
+		} else if (zone != 'Z') {
+			return INVALID_EPOCH_MILLIS;
+		}
+		if (pos != len) {
+			return INVALID_EPOCH_MILLIS;
+		}
+		
+		long secondOfDay = hour * 3600 + minute * 60 + second - offsetMinutes * 60;
+		return (days * 86400 + secondOfDay) * 1000 + millis;
+	}
+	
+	/**
+	 * Converts a StorageRoom date String, such as 2013-01-10, into
+	 * milliseconds since the epoch at midnight GMT of that day.
+	 * <p>
+	 * This method is thread safe and does not allocate.
+	 * @param str the String date field
+	 * @return the epoch millis, or INVALID_EPOCH_MILLIS if not a valid date String
+	 */
+	static public long storageRoomDateStringToEpochMillis(CharSequence str) {
+		if ((str == null) || (str.length() < 10)) {
+			return INVALID_EPOCH_MILLIS;
+		}
+		// a full time String is tolerated, and only its date is used
+		if ((str.length() > 10) && (storageRoomTimeStringToEpochMillis(str) == INVALID_EPOCH_MILLIS)) {
+			return INVALID_EPOCH_MILLIS;
+		}
+		long days = parseDate(str);
+		if (days == INVALID_EPOCH_MILLIS) {
+			return INVALID_EPOCH_MILLIS;
 		}
+		return days * 86400000L;
+	}
+	
+	/**
+	 * Serializes milliseconds since the epoch as a StorageRoom time String,
+	 * in GMT with whole seconds, such as 2013-01-10T21:17:00Z
+	 * @param millis the epoch millis
+	 * @return the serialized String, or null if the year is not between 0000 and 9999
+	 */
+	static public String epochMillisToStorageRoomTimeString(long millis) {
+		char[] buf = new char[20];
+		long days = Math.floorDiv(millis, 86400000L);
+		int secondOfDay = (int)(Math.floorMod(millis, 86400000L) / 1000);
+		if (!formatDate(buf, days)) {
+			return null;
+		}
+		buf[10] = 'T';
+		writeDigits(buf, 11, secondOfDay / 3600);
+		buf[13] = ':';
+		writeDigits(buf, 14, (secondOfDay / 60) % 60);
+		buf[16] = ':';
+		writeDigits(buf, 17, secondOfDay % 60);
+		buf[19] = 'Z';
+		return new String(buf);
+	}
+	
+	/**
+	 * Serializes milliseconds since the epoch as a StorageRoom date String,
+	 * using the GMT day, such as 2013-01-10
+	 * @param millis the epoch millis
+	 * @return the serialized String, or null if the year is not between 0000 and 9999
+	 */
+	static public String epochMillisToStorageRoomDateString(long millis) {
+		char[] buf = new char[10];
+		if (!formatDate(buf, Math.floorDiv(millis, 86400000L))) {
+			return null;
+		}
+		return new String(buf);
+	}
+	
+	/**
+	 * Creates a GMT Calendar set to the epoch millis
+	 * @param millis the epoch millis
+	 * @return the Calendar
+	 */
+	static public Calendar epochMillisToCalendar(long millis) {
+		Calendar cal = Calendar.getInstance(GMT);
+		cal.setTimeInMillis(millis);
 		return cal;
 	}
 	
-	static private SimpleDateFormat timeFieldFormatter = null;
-	static private SimpleDateFormat dateFieldFormatter = null;
-	static private TimeZone gmt = null;
-	static private boolean initialized = false;
-	
-	static private void initFormatters() {
-		if (!initialized) {
-			gmt = TimeZone.getTimeZone("GMT");
-			timeFieldFormatter = new SimpleDateFormat("yyyy-MM-dd'T'kk:mm:ssX");
-			timeFieldFormatter.setTimeZone(gmt);
-			dateFieldFormatter = new SimpleDateFormat("yyyy-MM-dd");
-			dateFieldFormatter.setTimeZone(gmt);
-			
-			initialized = true;
+	// INTERNAL
+	
+	static private final TimeZone GMT = TimeZone.getTimeZone("GMT");
+	
+	// the widest zone offset in use, as java.time also allows
+	static private final int MAX_OFFSET_HOURS = 18;
+	
+	/**
+	 * Parses the yyyy-MM-dd prefix of the String into days since the epoch,
+	 * or INVALID_EPOCH_MILLIS
+	 */
+	static private long parseDate(CharSequence str) {
+		if ((str.charAt(4) != '-') || (str.charAt(7) != '-')) {
+			return INVALID_EPOCH_MILLIS;
+		}
+		int year = parseDigits(str, 0, 4);
+		int month = parseDigits(str, 5, 2);
+		int day = parseDigits(str, 8, 2);
+		if ((year < 0) || (month < 1) || (month > 12) || (day < 1) || (day > daysInMonth(year, month))) {
+			return INVALID_EPOCH_MILLIS;
+		}
+		// days from civil, see http://howardhinnant.github.io/date_algorithms.html
+		int y = (month <= 2) ? year - 1 : year;
+		int era = ((y >= 0) ? y : y - 399) / 400;
+		int yearOfEra = y - era * 400;
+		int dayOfYear = (153 * (month + ((month > 2) ? -3 : 9)) + 2) / 5 + day - 1;
+		int dayOfEra = yearOfEra * 365 + yearOfEra / 4 - yearOfEra / 100 + dayOfYear;
+		return era * 146097L + dayOfEra - 719468;
+	}
+	
+	/**
+	 * Writes days since the epoch as yyyy-MM-dd into the buffer, and returns
+	 * false if the year does not fit in four digits
+	 */
+	static private boolean formatDate(char[] buf, long days) {
+		// civil from days, the inverse of parseDate
+		long z = days + 719468;
+		long era = ((z >= 0) ? z : z - 146096) / 146097;
+		int dayOfEra = (int)(z - era * 146097);
+		int yearOfEra = (dayOfEra - dayOfEra / 1460 + dayOfEra / 36524 - dayOfEra / 146096) / 365;
+		int dayOfYear = dayOfEra - (365 * yearOfEra + yearOfEra / 4 - yearOfEra / 100);
+		int mp = (5 * dayOfYear + 2) / 153;
+		int day = dayOfYear - (153 * mp + 2) / 5 + 1;
+		int month = (mp < 10) ? mp + 3 : mp - 9;
+		int year = (int)(yearOfEra + era * 400) + ((month <= 2) ? 1 : 0);
+		
+		// StorageRoom only deals in four digit years
+		if ((year < 0) || (year > 9999)) {
+			return false;
 		}
+		writeDigits(buf, 0, year / 100);
+		writeDigits(buf, 2, year % 100);
+		buf[4] = '-';
+		writeDigits(buf, 5, month);
+		buf[7] = '-';
+		writeDigits(buf, 8, day);
+		return true;
+	}
+	
+	static private int daysInMonth(int year, int month) {
+		if (month == 2) {
+			boolean leap = ((year % 4) == 0) && (((year % 100) != 0) || ((year % 400) == 0));
+			return leap ? 29 : 28;
+		}
+		return ((month == 4) || (month == 6) || (month == 9) || (month == 11)) ? 30 : 31;
+	}
+	
+	static private int parseDigits(CharSequence str, int start, int count) {
+		if (start + count > str.length()) {
+			return -1;
+		}
+		int value = 0;
+		for (int i = start; i < start + count; i++) {
+			char c = str.charAt(i);
+			if ((c < '0') || (c > '9')) {
+				return -1;
+			}
+			value = value * 10 + (c - '0');
+		}
+		return value;
+	}
+	
+	static private void writeDigits(char[] buf, int pos, int twoDigitValue) {
+		buf[pos] = (char)('0' + twoDigitValue / 10);
+		buf[pos + 1] = (char)('0' + twoDigitValue % 10);
 	}
 }
@@ -0,0 +1,128 @@
+/*
+Copyright 2013 Peter Laird
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+*/
+package com.storageroomapp.client.util;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Passes every request through a RateLimiter before handing it to the
+ * wrapped Transport. Requests that cannot get a permit in time fail with
+ * a TransportRejectedException, so the verb methods return null or false
+ * for them.
+ * <p>
+ * A request holds its in-flight slot until its response body is closed.
+ */
+public class ThrottlingTransport extends TransportDecorator {
+
+	protected final RateLimiter limiter;
+
+	public ThrottlingTransport(Transport delegate, RateLimiter limiter) {
+		super(delegate);
+		this.limiter = limiter;
+	}
+
+	public RateLimiter getRateLimiter() {
+		return limiter;
+	}
+
+	@Override
+	public TransportResponse execute(TransportRequest request) throws IOException {
+		acquire(request);
+		TransportResponse response = null;
+		try {
+			response = delegate.execute(request);
+		} finally {
+			if (response == null) {
+				limiter.release();
+			}
+		}
+		return releaseOnClose(response);
+	}
+
+	@Override
+	public CompletableFuture<TransportResponse> executeAsync(final TransportRequest request) {
+		// waiting for a permit blocks, so do it on the async pool, not the caller
+		return CompletableFuture.supplyAsync(() -> {
+			try {
+				acquire(request);
+			} catch (IOException ioe) {
+				throw new CompletionException(ioe);
+			}
+			return request;
+		}, getAsyncExecutor()).thenCompose(admitted -> delegate.executeAsync(admitted).handle((response, failure) -> {
+			if (failure != null) {
+				limiter.release();
+				throw (failure instanceof CompletionException) ? (CompletionException)failure : new CompletionException(failure);
+			}
+			return releaseOnClose(response);
+		}));
+	}
+
+	// INTERNAL
+
+	private void acquire(TransportRequest request) throws IOException {
+		boolean admitted;
+		try {
+			admitted = limiter.acquire();
+		} catch (InterruptedException ie) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException("Interrupted while waiting for a rate limit permit for ["+request.getUrl()+"]");
+		}
+		if (!admitted) {
+			throw new TransportRejectedException("Rate limit permit not available for "+request.getMethod()+" ["+request.getUrl()+"]");
+		}
+	}
+
+	/**
+	 * Ties the in-flight slot to the body stream, which is what callers of
+	 * get() close, rather than to the response.
+	 */
+	private TransportResponse releaseOnClose(TransportResponse response) {
+		if (response.getBody() == null) {
+			limiter.release();
+		} else {
+			response.setBody(new ReleasingInputStream(response.getBody(), limiter));
+		}
+		return response;
+	}
+
+	static private class ReleasingInputStream extends FilterInputStream {
+		private final RateLimiter limiter;
+		private final AtomicBoolean released = new AtomicBoolean();
+
+		ReleasingInputStream(InputStream in, RateLimiter limiter) {
+			super(in);
+			this.limiter = limiter;
+		}
+
+		@Override
+		public void close() throws IOException {
+			try {
+				super.close();
+			} finally {
+				if (released.compareAndSet(false, true)) {
+					limiter.release();
+				}
+			}
+		}
+	}
+}
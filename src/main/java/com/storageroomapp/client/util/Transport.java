@@ -0,0 +1,252 @@
+/*
+Copyright 2013 Peter Laird
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+*/
+package com.storageroomapp.client.util;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * The HTTP stack used to talk to the StorageRoom API. An Application is 
+ * configured with a Transport (see Application.setTransport()), and every
+ * live API call made on behalf of that Application goes through it.
+ * <p>
+ * Two implementations ship with this client: ApacheHttpTransport, built on
+ * a pooled Apache HttpClient, and JdkHttpTransport, built on the JDK 
+ * java.net.http client with HTTP/2. Implementors normally extend 
+ * AbstractTransport and only provide execute().
+ * <p>
+ * Every verb also has an asynchronous variant returning a CompletableFuture.
+ * Like their blocking counterparts, the futures do not complete exceptionally
+ * for HTTP or network failures; they complete with null (or false) instead.
+ */
+public interface Transport {
+
+	/**
+	 * Executes a raw request. This is the single method an implementation
+	 * must provide; the verb methods below are conveniences on top of it.
+	 * <p>
+	 * NOTE: caller must close the returned response
+	 * 
+	 * @param request the TransportRequest to send
+	 * @return the TransportResponse, never null
+	 * @throws IOException if the request could not be completed
+	 */
+	TransportResponse execute(TransportRequest request) throws IOException;
+
+	/**
+	 * Executes a raw request without blocking the caller. The future 
+	 * completes exceptionally if the request could not be completed.
+	 * <p>
+	 * NOTE: caller must close the returned response
+	 * 
+	 * @param request the TransportRequest to send
+	 * @return a future for the TransportResponse
+	 */
+	CompletableFuture<TransportResponse> executeAsync(TransportRequest request);
+
+	/**
+	 * GET the payload for the given URL as a String
+	 * 
+	 * @param url a String url
+	 * @return a String if successful, null otherwise
+	 */
+	String getAsString(String url);
+
+	/**
+	 * GET the payload for the given URL as an Inputstream
+	 * 
+	 * NOTE: caller must close the stream
+	 * @param url a String url
+	 * @return an Inputstream if successful, null otherwise
+	 */
+	InputStream get(String url);
+
+	/**
+	 * GET with timeouts that override the Transport's defaults
+	 * 
+	 * NOTE: caller must close the stream
+	 * @param url a String url
+	 * @param options the RequestOptions for this call, or null
+	 * @return an Inputstream if successful, null otherwise
+	 */
+	InputStream get(String url, RequestOptions options);
+
+	/**
+	 * POST to the url with the provided body.
+	 * @param url a String url
+	 * @param body a String with text for the request body
+	 * @return true if successful (response code < 400), false otherwise
+	 */
+	boolean post(String url, String body);
+
+	/**
+	 * POST with timeouts that override the Transport's defaults
+	 * @param url a String url
+	 * @param body a String with text for the request body
+	 * @param options the RequestOptions for this call, or null
+	 * @return true if successful (response code < 400), false otherwise
+	 */
+	boolean post(String url, String body, RequestOptions options);
+
+	/**
+	 * POST a body that is written straight to the connection
+	 * @param url a String url
+	 * @param body the RequestBody
+	 * @param options the RequestOptions for this call, or null
+	 * @return true if successful (response code < 400), false otherwise
+	 */
+	boolean post(String url, RequestBody body, RequestOptions options);
+
+	/**
+	 * PUT to the url with the body provided
+	 * @param url a String url
+	 * @param body a String with text for the request body
+	 * @return true if successful (response code < 400), false otherwise
+	 */
+	boolean put(String url, String body);
+
+	/**
+	 * PUT with timeouts that override the Transport's defaults
+	 * @param url a String url
+	 * @param body a String with text for the request body
+	 * @param options the RequestOptions for this call, or null
+	 * @return true if successful (response code < 400), false otherwise
+	 */
+	boolean put(String url, String body, RequestOptions options);
+
+	/**
+	 * PUT a body that is written straight to the connection
+	 * @param url a String url
+	 * @param body the RequestBody
+	 * @param options the RequestOptions for this call, or null
+	 * @return true if successful (response code < 400), false otherwise
+	 */
+	boolean put(String url, RequestBody body, RequestOptions options);
+
+	/**
+	 * DELETE the url
+	 * @param url a String url
+	 * @return true if successful (response code < 400), false otherwise
+	 */
+	boolean delete(String url);
+
+	/**
+	 * DELETE with timeouts that override the Transport's defaults
+	 * @param url a String url
+	 * @param options the RequestOptions for this call, or null
+	 * @return true if successful (response code < 400), false otherwise
+	 */
+	boolean delete(String url, RequestOptions options);
+
+	/**
+	 * Asynchronous variant of getAsString()
+	 * @param url a String url
+	 * @return a future for the String, which completes with null on failure
+	 */
+	CompletableFuture<String> getAsStringAsync(String url);
+
+	/**
+	 * Asynchronous variant of get()
+	 * 
+	 * NOTE: caller must close the stream
+	 * @param url a String url
+	 * @return a future for the InputStream, which completes with null on failure
+	 */
+	CompletableFuture<InputStream> getAsync(String url);
+
+	/**
+	 * Asynchronous variant of get(), with timeouts for this call
+	 * 
+	 * NOTE: caller must close the stream
+	 * @param url a String url
+	 * @param options the RequestOptions for this call, or null
+	 * @return a future for the InputStream, which completes with null on failure
+	 */
+	CompletableFuture<InputStream> getAsync(String url, RequestOptions options);
+
+	/**
+	 * Asynchronous variant of post()
+	 * @param url a String url
+	 * @param body a String with text for the request body
+	 * @return a future that completes with true if successful (response code < 400)
+	 */
+	CompletableFuture<Boolean> postAsync(String url, String body);
+
+	/**
+	 * Asynchronous variant of post(), with timeouts for this call
+	 * @param url a String url
+	 * @param body a String with text for the request body
+	 * @param options the RequestOptions for this call, or null
+	 * @return a future that completes with true if successful (response code < 400)
+	 */
+	CompletableFuture<Boolean> postAsync(String url, String body, RequestOptions options);
+
+	/**
+	 * Asynchronous variant of post(String, RequestBody, RequestOptions)
+	 * @param url a String url
+	 * @param body the RequestBody
+	 * @param options the RequestOptions for this call, or null
+	 * @return a future that completes with true if successful (response code < 400)
+	 */
+	CompletableFuture<Boolean> postAsync(String url, RequestBody body, RequestOptions options);
+
+	/**
+	 * Asynchronous variant of put()
+	 * @param url a String url
+	 * @param body a String with text for the request body
+	 * @return a future that completes with true if successful (response code < 400)
+	 */
+	CompletableFuture<Boolean> putAsync(String url, String body);
+
+	/**
+	 * Asynchronous variant of put(), with timeouts for this call
+	 * @param url a String url
+	 * @param body a String with text for the request body
+	 * @param options the RequestOptions for this call, or null
+	 * @return a future that completes with true if successful (response code < 400)
+	 */
+	CompletableFuture<Boolean> putAsync(String url, String body, RequestOptions options);
+
+	/**
+	 * Asynchronous variant of put(String, RequestBody, RequestOptions)
+	 * @param url a String url
+	 * @param body the RequestBody
+	 * @param options the RequestOptions for this call, or null
+	 * @return a future that completes with true if successful (response code < 400)
+	 */
+	CompletableFuture<Boolean> putAsync(String url, RequestBody body, RequestOptions options);
+
+	/**
+	 * Asynchronous variant of delete()
+	 * @param url a String url
+	 * @return a future that completes with true if successful (response code < 400)
+	 */
+	CompletableFuture<Boolean> deleteAsync(String url);
+
+	/**
+	 * Asynchronous variant of delete(), with timeouts for this call
+	 * @param url a String url
+	 * @param options the RequestOptions for this call, or null
+	 * @return a future that completes with true if successful (response code < 400)
+	 */
+	CompletableFuture<Boolean> deleteAsync(String url, RequestOptions options);
+
+	/**
+	 * Releases pooled connections and any threads held by this Transport.
+	 */
+	void shutdown();
+}
@@ -0,0 +1,61 @@
+/*
+Copyright 2013 Peter Laird
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+*/
+package com.storageroomapp.client.util;
+
+import java.io.IOException;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Base class for Transports that wrap another Transport to add behavior,
+ * such as retries, to every request. Subclasses override execute() and
+ * executeAsync(); the verb methods inherited from AbstractTransport are 
+ * built on those, so they pick up the added behavior.
+ * <p>
+ * Shutting down a decorator shuts down the Transport it wraps.
+ */
+abstract public class TransportDecorator extends AbstractTransport {
+
+	protected final Transport delegate;
+
+	protected TransportDecorator(Transport delegate) {
+		if (delegate == null) {
+			throw new IllegalArgumentException("A TransportDecorator needs a Transport to wrap");
+		}
+		this.delegate = delegate;
+	}
+
+	/**
+	 * @return the Transport wrapped by this decorator
+	 */
+	public Transport getDelegate() {
+		return delegate;
+	}
+
+	public TransportResponse execute(TransportRequest request) throws IOException {
+		return delegate.execute(request);
+	}
+
+	@Override
+	public CompletableFuture<TransportResponse> executeAsync(TransportRequest request) {
+		return delegate.executeAsync(request);
+	}
+
+	@Override
+	public void shutdown() {
+		super.shutdown();
+		delegate.shutdown();
+	}
+}
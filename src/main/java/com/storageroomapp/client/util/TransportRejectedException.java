@@ -0,0 +1,31 @@
+/*
+Copyright 2013 Peter Laird
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+*/
+package com.storageroomapp.client.util;
+
+import java.io.IOException;
+
+/**
+ * Thrown by a Transport that refused to send a request at all, e.g. because
+ * a rate limit could not be met in time. Such requests never reached the
+ * server, and are not retried.
+ */
+public class TransportRejectedException extends IOException {
+	private static final long serialVersionUID = 1L;
+
+	public TransportRejectedException(String message) {
+		super(message);
+	}
+}
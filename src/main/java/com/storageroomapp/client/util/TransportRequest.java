@@ -0,0 +1,149 @@
+/*
+Copyright 2013 Peter Laird
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+*/
+package com.storageroomapp.client.util;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A single HTTP request handed to a Transport. Use the static factory
+ * methods for the common verbs; the StorageRoom specific headers are
+ * added for you.
+ */
+public class TransportRequest {
+
+	static public final String GET = "GET";
+	static public final String POST = "POST";
+	static public final String PUT = "PUT";
+	static public final String DELETE = "DELETE";
+
+	protected String method = null;
+	protected String url = null;
+	protected String body = null;
+	protected RequestBody streamingBody = null;
+	protected Map<String, String> headers = new LinkedHashMap<String, String>();
+	protected RequestOptions options = null;
+
+	public TransportRequest(String method, String url, String body) {
+		this.method = method;
+		this.url = url;
+		this.body = body;
+	}
+
+	// FACTORIES
+
+	static public TransportRequest get(String url) {
+		return new TransportRequest(GET, url, null);
+	}
+
+	static public TransportRequest post(String url, String body) {
+		return withJsonHeaders(new TransportRequest(POST, url, body));
+	}
+
+	static public TransportRequest put(String url, String body) {
+		return withJsonHeaders(new TransportRequest(PUT, url, body));
+	}
+
+	static public TransportRequest post(String url, RequestBody body) {
+		TransportRequest request = new TransportRequest(POST, url, (String)null);
+		request.streamingBody = body;
+		return withJsonHeaders(request);
+	}
+
+	static public TransportRequest put(String url, RequestBody body) {
+		TransportRequest request = new TransportRequest(PUT, url, (String)null);
+		request.streamingBody = body;
+		return withJsonHeaders(request);
+	}
+
+	static public TransportRequest delete(String url) {
+		return new TransportRequest(DELETE, url, null);
+	}
+
+	static private TransportRequest withJsonHeaders(TransportRequest request) {
+		// Be sure to add these headers or the StRoom API will NOT work! 
+		request.setHeader("Content-Type", "application/json");
+		request.setHeader("Accept", "*/*");
+		return request;
+	}
+
+	// GETTERS and SETTERS
+
+	public String getMethod() {
+		return method;
+	}
+
+	public String getUrl() {
+		return url;
+	}
+
+	/**
+	 * @return the String body, or null if there is none or it is streamed
+	 */
+	public String getBody() {
+		return body;
+	}
+
+	/**
+	 * @return the body to write straight to the connection, or null
+	 */
+	public RequestBody getStreamingBody() {
+		return streamingBody;
+	}
+
+	/**
+	 * @return a description of the body for logging
+	 */
+	public String describeBody() {
+		if (streamingBody != null) {
+			return "streamed";
+		}
+		return body;
+	}
+
+	public Map<String, String> getHeaders() {
+		return headers;
+	}
+
+	public void setHeader(String name, String value) {
+		headers.put(name, value);
+	}
+
+	/**
+	 * @return the timeouts for this request, or null to use the Transport's
+	 */
+	public RequestOptions getOptions() {
+		return options;
+	}
+
+	public void setOptions(RequestOptions options) {
+		this.options = options;
+	}
+
+	/**
+	 * Returns true if repeating this request has the same effect as
+	 * sending it once (GET, PUT and DELETE).
+	 * @return true if idempotent
+	 */
+	public boolean isIdempotent() {
+		return !POST.equals(method);
+	}
+
+	@Override
+	public String toString() {
+		return method+" ["+url+"]";
+	}
+}
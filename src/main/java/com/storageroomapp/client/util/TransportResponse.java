@@ -0,0 +1,104 @@
+/*
+Copyright 2013 Peter Laird
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+*/
+package com.storageroomapp.client.util;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * The response to a TransportRequest. The body is exposed as a live
+ * stream, so the response must be closed to release the underlying
+ * connection.
+ */
+public class TransportResponse implements Closeable {
+
+	protected int statusCode = 0;
+	protected String reasonPhrase = null;
+	// header names are stored lower case
+	protected Map<String, String> headers = new HashMap<String, String>();
+	protected InputStream body = null;
+
+	public TransportResponse(int statusCode, String reasonPhrase, InputStream body) {
+		this.statusCode = statusCode;
+		this.reasonPhrase = reasonPhrase;
+		this.body = body;
+	}
+
+	public int getStatusCode() {
+		return statusCode;
+	}
+
+	public String getReasonPhrase() {
+		return reasonPhrase;
+	}
+
+	/**
+	 * Returns true if the status code is below 400.
+	 * @return true if the request succeeded
+	 */
+	public boolean isSuccess() {
+		return statusCode < 400;
+	}
+
+	/**
+	 * Gets a response header, matched without regard to case.
+	 * @param name the String header name
+	 * @return the String value, or null if the header was not sent
+	 */
+	public String getHeader(String name) {
+		if (name == null) {
+			return null;
+		}
+		return headers.get(name.toLowerCase());
+	}
+
+	public void setHeader(String name, String value) {
+		if ((name != null) && (value != null)) {
+			headers.put(name.toLowerCase(), value);
+		}
+	}
+
+	public void removeHeader(String name) {
+		if (name != null) {
+			headers.remove(name.toLowerCase());
+		}
+	}
+
+	/**
+	 * Returns the body stream. It may be null if the server sent no body.
+	 * @return the InputStream
+	 */
+	public InputStream getBody() {
+		return body;
+	}
+
+	/**
+	 * Replaces the body stream, used by transports that wrap the raw stream.
+	 * @param body the new InputStream
+	 */
+	public void setBody(InputStream body) {
+		this.body = body;
+	}
+
+	public void close() {
+		if (body != null) {
+			try { body.close(); } catch (IOException ioe) {}
+		}
+	}
+}
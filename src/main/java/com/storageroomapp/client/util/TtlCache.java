@@ -0,0 +1,181 @@
+/*
+Copyright 2013 Peter Laird
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+*/
+package com.storageroomapp.client.util;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Predicate;
+
+/**
+ * A bounded, thread safe map whose entries expire a fixed time after they
+ * were put. When full, the least recently used entry is evicted.
+ * <p>
+ * Expired entries are dropped when they are looked up, and otherwise
+ * age out through the LRU order.
+ */
+public class TtlCache<K, V> {
+
+	private final Map<K, Timed<V>> entries;
+	private final long ttlNanos;
+	private final AtomicLong hitCount = new AtomicLong();
+	private final AtomicLong missCount = new AtomicLong();
+	private final AtomicLong evictionCount = new AtomicLong();
+
+	/**
+	 * @param maxEntries the most entries held at once
+	 * @param ttlMillis how long an entry is served after it was put, or 
+	 * -1 for no expiry
+	 */
+	public TtlCache(final int maxEntries, long ttlMillis) {
+		if (maxEntries < 1) {
+			throw new IllegalArgumentException("A TtlCache must hold at least one entry");
+		}
+		this.ttlNanos = (ttlMillis < 0) ? -1 : ttlMillis * 1000000L;
+		this.entries = new LinkedHashMap<K, Timed<V>>(16, 0.75f, true) {
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<K, Timed<V>> eldest) {
+				if (size() > maxEntries) {
+					evictionCount.incrementAndGet();
+					return true;
+				}
+				return false;
+			}
+		};
+	}
+
+	// OPERATIONS
+
+	/**
+	 * @param key the key
+	 * @return the live value, or null if absent or expired
+	 */
+	public V get(K key) {
+		synchronized (entries) {
+			Timed<V> timed = entries.get(key);
+			if ((timed != null) && isExpired(timed, System.nanoTime())) {
+				entries.remove(key);
+				timed = null;
+			}
+			if (timed == null) {
+				missCount.incrementAndGet();
+				return null;
+			}
+			hitCount.incrementAndGet();
+			return timed.value;
+		}
+	}
+
+	public void put(K key, V value) {
+		if (value == null) {
+			return;
+		}
+		synchronized (entries) {
+			entries.put(key, new Timed<V>(value, System.nanoTime()));
+		}
+	}
+
+	public void remove(K key) {
+		synchronized (entries) {
+			entries.remove(key);
+		}
+	}
+
+	/**
+	 * Removes every entry whose key matches
+	 * @param filter selects the keys to remove
+	 * @return the number of entries removed
+	 */
+	public int removeIf(Predicate<? super K> filter) {
+		int removed = 0;
+		synchronized (entries) {
+			Iterator<K> keys = entries.keySet().iterator();
+			while (keys.hasNext()) {
+				if (filter.test(keys.next())) {
+					keys.remove();
+					removed++;
+				}
+			}
+		}
+		return removed;
+	}
+
+	public void clear() {
+		synchronized (entries) {
+			entries.clear();
+		}
+	}
+
+	// METRICS
+
+	/**
+	 * @return the number of entries held, including any not yet dropped
+	 * after expiring
+	 */
+	public int size() {
+		synchronized (entries) {
+			return entries.size();
+		}
+	}
+
+	public long getHitCount() {
+		return hitCount.get();
+	}
+
+	public long getMissCount() {
+		return missCount.get();
+	}
+
+	/**
+	 * @return the number of entries evicted to stay within the bound
+	 */
+	public long getEvictionCount() {
+		return evictionCount.get();
+	}
+
+	/**
+	 * @return hits per lookup, or 0 before the first lookup
+	 */
+	public double getHitRate() {
+		long hits = hitCount.get();
+		long lookups = hits + missCount.get();
+		return (lookups > 0) ? ((double)hits / lookups) : 0;
+	}
+
+	@Override
+	public String toString() {
+		return "TtlCache size ["+size()+"] hits ["+getHitCount()+"] misses ["+getMissCount()+"] evictions ["+getEvictionCount()+"]";
+	}
+
+	// INTERNAL
+
+	private boolean isExpired(Timed<V> timed, long now) {
+		return (ttlNanos >= 0) && ((now - timed.createdNanos) >= ttlNanos);
+	}
+
+	static private class Timed<V> {
+		final V value;
+		final long createdNanos;
+
+		Timed(V value, long createdNanos) {
+			this.value = value;
+			this.createdNanos = createdNanos;
+		}
+	}
+}
@@ -0,0 +1,237 @@
+/*
+Copyright 2013 Peter Laird
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+*/
+package com.storageroomapp.client.util;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Writes JSON to a stream as UTF-8 bytes, through a small buffer of its
+ * own. Strings are escaped and encoded char by char, and numbers are 
+ * written digit by digit, so writing does not create garbage.
+ * <p>
+ * This is the output side of JsonPullParser; it does not track structure,
+ * callers write the punctuation themselves. Call flush() when done.
+ */
+public class Utf8JsonWriter {
+
+	static private final byte[] NULL = { 'n', 'u', 'l', 'l' };
+	static private final byte[] HEX = { '0', '1', '2', '3', '4', '5', '6', '7', '8', '9', 'a', 'b', 'c', 'd', 'e', 'f' };
+	static private final byte[] MIN_LONG = Long.toString(Long.MIN_VALUE).getBytes();
+
+	private final OutputStream out;
+	private final byte[] buffer;
+	private int count = 0;
+
+	public Utf8JsonWriter(OutputStream out) {
+		this(out, 8192);
+	}
+
+	public Utf8JsonWriter(OutputStream out, int bufferSize) {
+		this.out = out;
+		// room for the longest number
+		this.buffer = new byte[Math.max(bufferSize, 32)];
+	}
+
+	/**
+	 * Encodes the name part of a json member, e.g. <code>"identifier": </code>,
+	 * for callers that write the same names over and over.
+	 * @param name the String member name
+	 * @return the UTF-8 bytes
+	 */
+	static public byte[] encodeName(String name) {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream(name.length() + 4);
+		Utf8JsonWriter writer = new Utf8JsonWriter(bytes, name.length() * 6 + 4);
+		try {
+			writer.writeString(name);
+			writer.writeAscii(": ");
+			writer.flush();
+		} catch (IOException ioe) {
+			// not possible with a ByteArrayOutputStream
+		}
+		return bytes.toByteArray();
+	}
+
+	// OPERATIONS
+
+	public void writeRaw(byte b) throws IOException {
+		if (count == buffer.length) {
+			flushBuffer();
+		}
+		buffer[count++] = b;
+	}
+
+	public void writeRaw(byte[] bytes) throws IOException {
+		if (bytes.length > buffer.length - count) {
+			flushBuffer();
+			if (bytes.length > buffer.length) {
+				out.write(bytes);
+				return;
+			}
+		}
+		System.arraycopy(bytes, 0, buffer, count, bytes.length);
+		count += bytes.length;
+	}
+
+	/**
+	 * Writes a String that is already json (or json punctuation) as is,
+	 * encoded as UTF-8.
+	 * @param json the String
+	 * @throws IOException if the stream cannot be written
+	 */
+	public void writeRawString(String json) throws IOException {
+		int length = json.length();
+		for (int i = 0; i < length; i++) {
+			char c = json.charAt(i);
+			if (c < 0x80) {
+				writeRaw((byte)c);
+			} else {
+				i = writeUtf8(json, i, c);
+			}
+		}
+	}
+
+	/**
+	 * Writes json punctuation or other ASCII text as is.
+	 * @param ascii the String, all chars must be below 0x80
+	 * @throws IOException if the stream cannot be written
+	 */
+	public void writeAscii(String ascii) throws IOException {
+		int length = ascii.length();
+		for (int i = 0; i < length; i++) {
+			writeRaw((byte)ascii.charAt(i));
+		}
+	}
+
+	/**
+	 * Writes a quoted, escaped json string, or null.
+	 * @param value the String, may be null
+	 * @throws IOException if the stream cannot be written
+	 */
+	public void writeString(String value) throws IOException {
+		if (value == null) {
+			writeNull();
+			return;
+		}
+		writeRaw((byte)'"');
+		int length = value.length();
+		for (int i = 0; i < length; i++) {
+			char c = value.charAt(i);
+			if ((c >= 0x20) && (c < 0x80) && (c != '"') && (c != '\\')) {
+				writeRaw((byte)c);
+			} else if (c >= 0x80) {
+				i = writeUtf8(value, i, c);
+			} else {
+				writeEscape(c);
+			}
+		}
+		writeRaw((byte)'"');
+	}
+
+	public void writeLong(long value) throws IOException {
+		if (value == Long.MIN_VALUE) {
+			writeRaw(MIN_LONG);
+			return;
+		}
+		if (value < 0) {
+			writeRaw((byte)'-');
+			value = -value;
+		}
+		if (buffer.length - count < 20) {
+			flushBuffer();
+		}
+		int start = count;
+		do {
+			buffer[count++] = (byte)('0' + (value % 10));
+			value /= 10;
+		} while (value != 0);
+		// the digits went in backwards
+		for (int i = start, j = count - 1; i < j; i++, j--) {
+			byte b = buffer[i];
+			buffer[i] = buffer[j];
+			buffer[j] = b;
+		}
+	}
+
+	public void writeNull() throws IOException {
+		writeRaw(NULL);
+	}
+
+	/**
+	 * Writes out anything buffered, and flushes the stream.
+	 * @throws IOException if the stream cannot be written
+	 */
+	public void flush() throws IOException {
+		flushBuffer();
+		out.flush();
+	}
+
+	// INTERNAL
+
+	private void flushBuffer() throws IOException {
+		if (count > 0) {
+			out.write(buffer, 0, count);
+			count = 0;
+		}
+	}
+
+	private void writeEscape(char c) throws IOException {
+		writeRaw((byte)'\\');
+		switch (c) {
+		case '"': writeRaw((byte)'"'); break;
+		case '\\': writeRaw((byte)'\\'); break;
+		case '\b': writeRaw((byte)'b'); break;
+		case '\f': writeRaw((byte)'f'); break;
+		case '\n': writeRaw((byte)'n'); break;
+		case '\r': writeRaw((byte)'r'); break;
+		case '\t': writeRaw((byte)'t'); break;
+		default:
+			writeRaw((byte)'u');
+			writeRaw((byte)'0');
+			writeRaw((byte)'0');
+			writeRaw(HEX[(c >> 4) & 0xF]);
+			writeRaw(HEX[c & 0xF]);
+		}
+	}
+
+	/**
+	 * Encodes the non-ASCII char at index i, and its low surrogate if it
+	 * is the first of a pair.
+	 * @return the index of the last char consumed
+	 */
+	private int writeUtf8(String s, int i, char c) throws IOException {
+		if (c < 0x800) {
+			writeRaw((byte)(0xC0 | (c >> 6)));
+			writeRaw((byte)(0x80 | (c & 0x3F)));
+		} else if (Character.isHighSurrogate(c) && (i + 1 < s.length()) && Character.isLowSurrogate(s.charAt(i + 1))) {
+			int cp = Character.toCodePoint(c, s.charAt(++i));
+			writeRaw((byte)(0xF0 | (cp >> 18)));
+			writeRaw((byte)(0x80 | ((cp >> 12) & 0x3F)));
+			writeRaw((byte)(0x80 | ((cp >> 6) & 0x3F)));
+			writeRaw((byte)(0x80 | (cp & 0x3F)));
+		} else if (Character.isSurrogate(c)) {
+			// unpaired surrogate, as String.getBytes() does
+			writeRaw((byte)'?');
+		} else {
+			writeRaw((byte)(0xE0 | (c >> 12)));
+			writeRaw((byte)(0x80 | ((c >> 6) & 0x3F)));
+			writeRaw((byte)(0x80 | (c & 0x3F)));
+		}
+		return i;
+	}
+
+}
@@ -0,0 +1,229 @@
+/*
+Copyright 2013 Peter Laird
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+*/
+package com.storageroomapp.client.util;
+
+import java.io.InputStream;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+/**
+ * Remembers the validators (ETag and Last-Modified) the server sent for
+ * a URL, together with the object parsed from that response. The next GET
+ * of the URL is made conditional (If-None-Match, If-Modified-Since), and
+ * when the server answers 304 Not Modified the previously parsed object
+ * is handed back without downloading or parsing anything.
+ * <p>
+ * Every call still goes to the server, so nothing returned is stale; 
+ * polling unchanged data just becomes cheap. Note the same object is
+ * returned for every 304, so callers that modify it see their changes.
+ * <p>
+ * The cache holds at most maxEntries URLs, evicting the least recently 
+ * used.
+ */
+public class ValidatorCache {
+	static private Log log = LogFactory.getLog(ValidatorCache.class);
+
+	static public final int DEFAULT_MAX_ENTRIES = 256;
+
+	private final Map<String, Validators> entries;
+	private final AtomicLong notModifiedCount = new AtomicLong();
+	private final AtomicLong modifiedCount = new AtomicLong();
+
+	public ValidatorCache() {
+		this(DEFAULT_MAX_ENTRIES);
+	}
+
+	public ValidatorCache(final int maxEntries) {
+		this.entries = new LinkedHashMap<String, Validators>(16, 0.75f, true) {
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<String, Validators> eldest) {
+				return size() > maxEntries;
+			}
+		};
+	}
+
+	// OPERATIONS
+
+	/**
+	 * GETs the url, conditionally if an object parsed from it is cached.
+	 * <p>
+	 * SERVER ROUND TRIP: this is a live API call
+	 * 
+	 * @param transport the Transport to send the request with
+	 * @param url a String url
+	 * @param options the RequestOptions for this call, or null
+	 * @param parser turns the body into the result, returning null on failure
+	 * @return the parsed object, the cached object if the server answered 
+	 * 304, or null if the request or the parsing failed
+	 */
+	public <T> T get(Transport transport, String url, RequestOptions options, Function<InputStream, T> parser) {
+		TransportRequest request = createRequest(url, options);
+		TransportResponse response = null;
+		try {
+			response = transport.execute(request);
+			return bind(url, response, parser);
+		} catch (Exception e) {
+			log.error("ValidatorCache.get failed, with url ["+url+"]", e);
+			return null;
+		} finally {
+			if (response != null) {
+				response.close();
+			}
+		}
+	}
+
+	/**
+	 * Asynchronous variant of get(). The future completes with null if a
+	 * problem occurred, it does not complete exceptionally.
+	 * <p>
+	 * SERVER ROUND TRIP: this is a live API call
+	 */
+	public <T> CompletableFuture<T> getAsync(Transport transport, final String url, RequestOptions options, 
+			final Function<InputStream, T> parser) {
+		return transport.executeAsync(createRequest(url, options)).handle((response, failure) -> {
+			if (failure != null) {
+				log.error("ValidatorCache.getAsync failed, with url ["+url+"]", failure);
+				return null;
+			}
+			try {
+				return bind(url, response, parser);
+			} catch (RuntimeException re) {
+				log.error("ValidatorCache.getAsync failed, with url ["+url+"]", re);
+				return null;
+			} finally {
+				response.close();
+			}
+		});
+	}
+
+	/**
+	 * Forgets the validators of a url, so its next GET is unconditional
+	 * @param url a String url
+	 */
+	public void remove(String url) {
+		synchronized (entries) {
+			entries.remove(url);
+		}
+	}
+
+	public void clear() {
+		synchronized (entries) {
+			entries.clear();
+		}
+	}
+
+	// METRICS
+
+	/**
+	 * @return the number of GETs answered from the cache after a 304
+	 */
+	public long getNotModifiedCount() {
+		return notModifiedCount.get();
+	}
+
+	/**
+	 * @return the number of GETs that downloaded and parsed a new body
+	 */
+	public long getModifiedCount() {
+		return modifiedCount.get();
+	}
+
+	/**
+	 * @return the number of urls with validators
+	 */
+	public int size() {
+		synchronized (entries) {
+			return entries.size();
+		}
+	}
+
+	// INTERNAL
+
+	private TransportRequest createRequest(String url, RequestOptions options) {
+		TransportRequest request = TransportRequest.get(url);
+		request.setOptions(options);
+		Validators validators = lookup(url);
+		if (validators != null) {
+			if (validators.etag != null) {
+				request.setHeader("If-None-Match", validators.etag);
+			}
+			if (validators.lastModified != null) {
+				request.setHeader("If-Modified-Since", validators.lastModified);
+			}
+		}
+		return request;
+	}
+
+	@SuppressWarnings("unchecked")
+	private <T> T bind(String url, TransportResponse response, Function<InputStream, T> parser) {
+		int code = response.getStatusCode();
+		if (code == 304) {
+			Validators validators = lookup(url);
+			if (validators == null) {
+				// evicted while the request was in flight
+				log.warn("ValidatorCache got a 304 for an unknown url ["+url+"]");
+				return null;
+			}
+			notModifiedCount.incrementAndGet();
+			if (log.isDebugEnabled()) {
+				log.debug("ValidatorCache url ["+url+"] not modified");
+			}
+			return (T)validators.value;
+		}
+		if (!response.isSuccess() || (response.getBody() == null)) {
+			log.error("ValidatorCache.get failed, with url ["+url+"] response code ["+code+"]");
+			return null;
+		}
+		T value = parser.apply(response.getBody());
+		modifiedCount.incrementAndGet();
+		String etag = response.getHeader("ETag");
+		String lastModified = response.getHeader("Last-Modified");
+		synchronized (entries) {
+			if ((value != null) && ((etag != null) || (lastModified != null))) {
+				entries.put(url, new Validators(etag, lastModified, value));
+			} else {
+				entries.remove(url);
+			}
+		}
+		return value;
+	}
+
+	private Validators lookup(String url) {
+		synchronized (entries) {
+			return entries.get(url);
+		}
+	}
+
+	static private class Validators {
+		final String etag;
+		final String lastModified;
+		final Object value;
+
+		Validators(String etag, String lastModified, Object value) {
+			this.etag = etag;
+			this.lastModified = lastModified;
+			this.value = value;
+		}
+	}
+}
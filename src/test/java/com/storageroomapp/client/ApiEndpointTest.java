@@ -0,0 +1,73 @@
+package com.storageroomapp.client;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class ApiEndpointTest {
+
+	@Test
+	public void testDefaultEndpoint() {
+		ApiEndpoint endpoint = new ApiEndpoint();
+		assertEquals("The default endpoint must be the public API.", "http://api.storageroomapp.com/accounts/", endpoint.getBaseUrl());
+		String url = "http://api.storageroomapp.com/accounts/123/collections";
+		assertEquals("The default endpoint must not change hypermedia urls.", url, endpoint.rewriteUrl(url));
+	}
+
+	@Test
+	public void testRewriteToHttps() {
+		ApiEndpoint endpoint = new ApiEndpoint();
+		endpoint.scheme = "https";
+		assertEquals("Hypermedia urls should be upgraded to https.", "https://api.storageroomapp.com/accounts/123/collections", 
+				endpoint.rewriteUrl("http://api.storageroomapp.com/accounts/123/collections"));
+	}
+
+	@Test
+	public void testNoDowngradeToHttp() {
+		ApiEndpoint endpoint = new ApiEndpoint();
+		String url = "https://api.storageroomapp.com/accounts/123/collections";
+		assertEquals("The default endpoint must not downgrade https links.", url, endpoint.rewriteUrl(url));
+		endpoint = ApiEndpoint.parseBaseUrl("http://API.storageroomapp.com/accounts/");
+		assertEquals("The public host in another case must not downgrade https links.", url, endpoint.rewriteUrl(url));
+		endpoint.scheme = "https";
+		assertEquals("An https endpoint must keep https links.", url, endpoint.rewriteUrl(url));
+	}
+
+	@Test
+	public void testRewriteToProxy() {
+		ApiEndpoint endpoint = ApiEndpoint.parseBaseUrl("http://cache.local:8080/accounts/");
+		assertNotNull("Base url was not parsed.", endpoint);
+		assertEquals("Host was not parsed.", "cache.local", endpoint.host);
+		assertEquals("Port was not parsed.", 8080, endpoint.port);
+		assertEquals("Hypermedia urls should be sent through the proxy.", "http://cache.local:8080/accounts/123/collections/9/entries",
+				endpoint.rewriteUrl("http://api.storageroomapp.com/accounts/123/collections/9/entries"));
+		String fileUrl = "http://files.storageroomapp.com/accounts/123/file.pdf";
+		assertEquals("Urls on other hosts must not be rewritten.", fileUrl, endpoint.rewriteUrl(fileUrl));
+		String lookalike = "http://api.storageroomapp.com.example.org/accounts/123";
+		assertEquals("Urls on look-alike hosts must not be rewritten.", lookalike, endpoint.rewriteUrl(lookalike));
+	}
+
+	@Test
+	public void testApplicationEndpoint() {
+		Application app = Application.getInstance("EndpointTest");
+		assertTrue("A valid base url should be accepted.", app.setApiBaseUrl("https://eu.example.com/api/accounts"));
+		assertEquals("The base url should be normalized with a trailing slash.", "https://eu.example.com/api/accounts/", app.getApiBaseUrl());
+		assertTrue("Resetting the base url should be accepted.", app.setApiBaseUrl(null));
+		assertEquals("Resetting should restore the public API.", "http://api.storageroomapp.com/accounts/", app.getApiBaseUrl());
+	}
+
+	// NEGATIVE TESTS
+
+	@Test
+	public void testInvalidBaseUrls() {
+		assertNull("A non http url should not parse.", ApiEndpoint.parseBaseUrl("ftp://example.com/accounts/"));
+		assertNull("A relative url should not parse.", ApiEndpoint.parseBaseUrl("accounts/"));
+		Application app = Application.getInstance("EndpointNegativeTest");
+		assertFalse("An invalid base url should be rejected.", app.setApiBaseUrl("not a url"));
+		assertEquals("A rejected base url must leave the endpoint alone.", "http://api.storageroomapp.com/accounts/", app.getApiBaseUrl());
+	}
+}
@@ -1,9 +1,19 @@
 package com.storageroomapp.client;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+
 import org.junit.Ignore;
 import org.junit.Test;
 
+import com.storageroomapp.client.util.RetryPolicy;
+import com.storageroomapp.client.util.RetryingTransport;
+import com.storageroomapp.client.util.Transport;
+
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.assertEquals;
 
@@ -16,6 +26,37 @@ public class ApplicationTest {
 		assertTrue("Application.getInstance() should be handing out the same instance for the same app name.", app == app2);
 	}
 
+	@Test
+	public void testTransportChainFollowsSettings() throws InterruptedException {
+		final Application app = Application.getInstance("TransportChainTest");
+		Transport chain = app.getTransport();
+		assertSame("The transport chain should be built once.", chain, app.getTransport());
+		assertTrue("Retries should be on by default.", chain instanceof RetryingTransport);
+		app.setRetryPolicy(null);
+		assertFalse("A setter should rebuild the chain.", app.getTransport() instanceof RetryingTransport);
+		
+		// a setter that runs while another thread builds the chain must not be lost
+		final AtomicBoolean done = new AtomicBoolean(false);
+		List<Thread> readers = new ArrayList<Thread>();
+		for (int i = 0; i < 4; i++) {
+			Thread reader = new Thread(() -> {
+				while (!done.get()) {
+					app.getTransport();
+				}
+			});
+			reader.start();
+			readers.add(reader);
+		}
+		for (int i = 0; i < 2000; i++) {
+			app.setRetryPolicy(((i % 2) == 0) ? new RetryPolicy() : null);
+		}
+		done.set(true);
+		for (Thread reader : readers) {
+			reader.join();
+		}
+		assertFalse("The last setting should win over concurrent builds.", app.getTransport() instanceof RetryingTransport);
+	}
+
 	@Test
 	@Ignore // we don't test this since it is covered in so many other places
 	public void testConnectSingleApplication() {
@@ -4,6 +4,8 @@ import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertTrue;
 
+import java.util.List;
+
 import org.junit.Test;
 
 import com.storageroomapp.client.field.GenericField;
@@ -36,6 +38,43 @@ public class CollectionQueryDynamicTest {
 		}
 	}
 
+	@Test
+	public void testStreamAll() {
+		Application app = Application.getInstance("JavaClient");
+		boolean success = app.connect(StorageRoomTestEnv.JavaClientReadWrite_AccountId, StorageRoomTestEnv.JavaClientReadWrite_AuthToken, true);
+		assertTrue("Could not connect to StorageRoom, perhaps service is down or account "+StorageRoomTestEnv.JavaClientReadWrite_AccountId+" is no longer valid.", success);
+		Collections colls = app.getCollections(true);
+		Collection col = colls.findCollection("ReadOnlyCollection");
+		
+		EntryIterator results = col.getEntries().iterator(null);
+		int count = 0;
+		while (results.hasNext()) {
+			assertNotNull("Iterator returned a null entry.", results.next());
+			count++;
+		}
+		assertEquals("Iterating all items in ReadOnlyCollection returned incorrect number of results.", 1, count);
+		assertTrue("Iterating all items in ReadOnlyCollection did not complete.", results.isComplete());
+		
+		long streamed = col.getEntries().stream(null).count();
+		assertEquals("Streaming all items in ReadOnlyCollection returned incorrect number of results.", 1, streamed);
+	}
+
+	@Test
+	public void testFetchAll() {
+		Application app = Application.getInstance("JavaClient");
+		boolean success = app.connect(StorageRoomTestEnv.JavaClientReadWrite_AccountId, StorageRoomTestEnv.JavaClientReadWrite_AuthToken, true);
+		assertTrue("Could not connect to StorageRoom, perhaps service is down or account "+StorageRoomTestEnv.JavaClientReadWrite_AccountId+" is no longer valid.", success);
+		Collections colls = app.getCollections(true);
+		Collection col = colls.findCollection("ReadOnlyCollection");
+		
+		List<Entry> ordered = col.getEntries().fetchAll(null, 4);
+		assertNotNull("fetchAll for all items in ReadOnlyCollection failed.", ordered);
+		assertEquals("fetchAll for all items in ReadOnlyCollection returned incorrect number of results.", 1, ordered.size());
+		List<Entry> unordered = col.getEntries().fetchAll(null, 4, false);
+		assertNotNull("Unordered fetchAll for all items in ReadOnlyCollection failed.", unordered);
+		assertEquals("Unordered fetchAll for all items in ReadOnlyCollection returned incorrect number of results.", 1, unordered.size());
+	}
+
 	@Test
 	public void testQuery() {
 		//fail("Not yet implemented");
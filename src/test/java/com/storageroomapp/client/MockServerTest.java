@@ -0,0 +1,403 @@
+package com.storageroomapp.client;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import com.storageroomapp.client.field.IntegerField;
+import com.storageroomapp.client.field.IntegerValue;
+import com.storageroomapp.client.field.StringField;
+import com.storageroomapp.client.field.StringValue;
+import com.storageroomapp.client.mock.MockStorageRoomServer;
+import com.storageroomapp.client.mock.MockStorageRoomServer.MockCollection;
+import com.storageroomapp.client.util.JdkHttpTransport;
+import com.storageroomapp.client.util.RequestOptions;
+import com.storageroomapp.client.util.Transport;
+
+/**
+ * Runs the client against the in-process MockStorageRoomServer, so
+ * unlike the other dynamic tests it needs no network.
+ */
+public class MockServerTest {
+
+	static protected MockStorageRoomServer server = null;
+	static protected final int NUM_ENTRIES = 45;
+
+	@BeforeClass
+	static public void startServer() throws Exception {
+		server = new MockStorageRoomServer();
+		server.defaultPageSize = 10;
+		server.start();
+		
+		MockCollection col = server.addCollection("Products", "Product", "StringField", "sku", "IntegerField", "in_stock");
+		for (int i = 0; i < NUM_ENTRIES; i++) {
+			Map<String, Object> values = new HashMap<String, Object>();
+			values.put("sku", "SKU"+i);
+			values.put("in_stock", Long.valueOf(i % 5));
+			col.addEntry(values);
+		}
+	}
+
+	@AfterClass
+	static public void stopServer() {
+		server.stop();
+	}
+
+	@Before
+	public void resetServer() {
+		server.latencyMillis = 0;
+		server.errorRate = 0.0;
+	}
+
+	protected Collection connect(String appName) {
+		Application app = Application.getInstance(appName);
+		app.setApiBaseUrl(server.getApiBaseUrl());
+		boolean success = app.connect(server.accountId, server.authToken, false);
+		assertTrue("Could not connect to the mock server.", success);
+		Collections colls = app.getCollections(false);
+		assertNotNull("Could not retrieve collections from the mock server.", colls);
+		return colls.findCollection("Products");
+	}
+
+	@Test
+	public void testConnectAndQuery() {
+		Collection col = connect("MockQuery");
+		assertNotNull("Collection was not returned by the mock server.", col);
+		
+		PageOfEntries results = col.getEntries().queryAll();
+		assertNotNull("Query against the mock server failed.", results);
+		assertEquals("The mock server should page at its default page size.", 10, results.asList().size());
+		assertEquals("The number of pages was not reported correctly.", 5, results.getNumResultsPages());
+		
+		PageOfEntries last = results.jumpPage(5);
+		assertNotNull("Jumping to the last page failed.", last);
+		assertEquals("The last page is short.", 5, last.asList().size());
+		assertEquals("Paging with no filter must honor the page number.", "SKU40", last.asList().get(0).fieldValueToString("sku"));
+	}
+
+	@Test
+	public void testStreamAndFetchAll() {
+		Collection col = connect("MockStream");
+		
+		EntryIterator it = col.getEntries().iterator(null, 2);
+		int count = 0;
+		while (it.hasNext()) {
+			assertEquals("Entries must stream in page order.", "SKU"+count, it.next().fieldValueToString("sku"));
+			count++;
+		}
+		assertEquals("Streaming should have visited every entry.", NUM_ENTRIES, count);
+		assertTrue("Stream should have completed.", it.isComplete());
+		
+		CollectionQuery query = new CollectionQuery();
+		query.filterOptions = "in_stock=3";
+		assertEquals("Filtered stream returned the wrong number of entries.", NUM_ENTRIES / 5, col.getEntries().stream(query, 0).count());
+		
+		List<Entry> all = col.getEntries().fetchAll(null, 4);
+		assertNotNull("fetchAll against the mock server failed.", all);
+		assertEquals("fetchAll should have returned every entry.", NUM_ENTRIES, all.size());
+		assertEquals("Ordered fetchAll must keep page order.", "SKU44", all.get(NUM_ENTRIES - 1).fieldValueToString("sku"));
+	}
+
+	@Test
+	public void testInsertUpdateDelete() {
+		Collection col = connect("MockWrite");
+		CollectionEntries entries = col.getEntries();
+		
+		Entry newEntry = entries.createNewEntryTemplateObject();
+		((StringField)newEntry.get("sku")).setValue(new StringValue("MOCKSKU"));
+		((IntegerField)newEntry.get("in_stock")).setValue(new IntegerValue(888));
+		assertTrue("Could not insert an entry on the mock server.", entries.insertNewEntry(newEntry));
+		
+		CollectionQuery query = new CollectionQuery();
+		query.filterOptions = "sku=MOCKSKU";
+		PageOfEntries results = entries.query(query);
+		assertEquals("Inserted entry was not found.", 1, results.asList().size());
+		
+		Entry inserted = results.asList().get(0);
+		((IntegerField)inserted.get("in_stock")).setValue(new IntegerValue(67890));
+		assertTrue("Could not update an entry on the mock server.", inserted.update());
+		query.filterOptions = "in_stock=67890";
+		results = entries.query(query);
+		assertEquals("Updated entry was not found.", 1, results.asList().size());
+		
+		assertTrue("Could not delete an entry on the mock server.", results.asList().get(0).delete());
+		results = entries.query(query);
+		assertTrue("Deleted entry is still on the mock server.", results.asList().isEmpty());
+	}
+
+	@Test
+	public void testInsertWithJdkTransport() {
+		Application app = Application.getInstance("MockWriteJdk");
+		Transport transport = new JdkHttpTransport();
+		app.setTransport(transport);
+		try {
+			CollectionEntries entries = connect("MockWriteJdk").getEntries();
+			Entry newEntry = entries.createNewEntryTemplateObject();
+			((StringField)newEntry.get("sku")).setValue(new StringValue("JDK\u00e9SKU"));
+			((IntegerField)newEntry.get("in_stock")).setValue(new IntegerValue(777));
+			assertTrue("Could not insert an entry with the JDK transport.", entries.insertNewEntry(newEntry));
+			
+			CollectionQuery query = new CollectionQuery();
+			query.filterOptions = "in_stock=777";
+			PageOfEntries results = entries.query(query);
+			assertEquals("Inserted entry was not found.", 1, results.asList().size());
+			assertEquals("The streamed body should carry non-ASCII text.", "JDK\u00e9SKU", results.asList().get(0).fieldValueToString("sku"));
+			assertTrue("Could not delete an entry on the mock server.", results.asList().get(0).delete());
+		} finally {
+			app.setTransport(null);
+			transport.shutdown();
+		}
+	}
+
+	@Test
+	public void testInsertMismatchedField() {
+		CollectionEntries entries = connect("MockWriteMismatch").getEntries();
+		Entry newEntry = entries.createNewEntryTemplateObject();
+		((StringField)newEntry.get("sku")).setValue(new StringValue("MISMATCHSKU"));
+		
+		// a StringField put under the identifier of an IntegerField is kept aside, but is still data
+		StringField inStock = (StringField)entries.createNewEntryTemplateObject().get("sku");
+		inStock.setValue(new StringValue("555"));
+		newEntry.put("in_stock", inStock);
+		assertTrue("Could not insert an entry with a mismatched field.", entries.insertNewEntry(newEntry));
+		
+		CollectionQuery query = new CollectionQuery();
+		query.filterOptions = "sku=MISMATCHSKU";
+		PageOfEntries results = entries.query(query);
+		assertEquals("Inserted entry was not found.", 1, results.asList().size());
+		assertEquals("A mismatched data field should survive a round trip.", "555", results.asList().get(0).fieldValueToString("in_stock"));
+		assertTrue("Could not delete an entry on the mock server.", results.asList().get(0).delete());
+	}
+
+	// NEGATIVE TESTS
+
+	@Test
+	public void testServerErrors() {
+		Collection col = connect("MockErrors");
+		server.errorRate = 1.0;
+		
+		assertNull("A failing server must produce a null page.", col.getEntries().queryAll());
+		assertNull("A failing server must fail fetchAll.", col.getEntries().fetchAll(null, 2));
+		EntryIterator it = col.getEntries().iterator(null);
+		assertFalse("A failing server must produce no entries.", it.hasNext());
+		assertFalse("A failed stream must not report completion.", it.isComplete());
+	}
+
+	@Test
+	public void testBadCredentials() {
+		Application app = Application.getInstance("MockBadCredentials");
+		app.setApiBaseUrl(server.getApiBaseUrl());
+		assertFalse("Connect must fail with the wrong auth token.", app.connect(server.accountId, "wrongtoken", false));
+	}
+
+	@Test
+	public void testTotalTimeoutApache() {
+		assertTimeouts(connect("MockTimeoutApache"));
+	}
+
+	@Test
+	public void testTotalTimeoutJdk() {
+		Application app = Application.getInstance("MockTimeoutJdk");
+		Transport transport = new JdkHttpTransport();
+		app.setTransport(transport);
+		try {
+			assertTimeouts(connect("MockTimeoutJdk"));
+		} finally {
+			app.setTransport(null);
+			transport.shutdown();
+		}
+	}
+
+	private void assertTimeouts(Collection col) {
+		Application app = col.getParentApplication();
+		app.setRetryPolicy(null);
+		app.setRequestOptions(new RequestOptions(1000, 1000, 200));
+		server.latencyMillis = 600;
+		
+		long start = System.currentTimeMillis();
+		assertNull("A slow server must time out the query.", col.getEntries().queryAll());
+		long elapsed = System.currentTimeMillis() - start;
+		assertTrue("The total timeout was not enforced, took ["+elapsed+"] millis.", elapsed < 550);
+		
+		CollectionQuery patient = new CollectionQuery();
+		patient.requestOptions = new RequestOptions();
+		patient.requestOptions.totalTimeoutMillis = 5000;
+		assertNotNull("A per query timeout must override the Application's.", col.getEntries().query(patient));
+	}
+
+	@Test
+	public void testCompression() {
+		Collection col = connect("MockCompression");
+		Application app = col.getParentApplication();
+		long before = app.getCompressionStats().getRawBytes();
+		
+		CollectionQuery query = new CollectionQuery();
+		query.pageSize = NUM_ENTRIES;
+		PageOfEntries page = col.getEntries().query(query);
+		assertNotNull("A compressed page could not be read.", page);
+		assertEquals("A compressed page lost entries.", NUM_ENTRIES, page.asList().size());
+		assertTrue("The raw bytes of the page were not counted.", app.getCompressionStats().getRawBytes() > before);
+		assertTrue("An entry page should compress several times over.", app.getCompressionStats().getCompressionRatio() > 3.0);
+	}
+
+	@Test
+	public void testConditionalGet() {
+		Collection col = connect("MockConditional");
+		Application app = col.getParentApplication();
+		long notModified = server.getNotModifiedCount();
+		long clientNotModified = app.getValidatorCache().getNotModifiedCount();
+		
+		// connect() already fetched the schema, so this is a revalidation
+		Collections colls = app.getCollections(false);
+		assertSame("An unchanged schema must return the Collections parsed before.", colls, app.getCollections(false));
+		
+		PageOfEntries page = col.getEntries().queryAll();
+		assertNotNull("The first query failed.", page);
+		assertSame("An unchanged page must return the PageOfEntries parsed before.", page, col.getEntries().queryAll());
+		assertSame("An unchanged page must also be reused asynchronously.", page, col.getEntries().queryAllAsync().join());
+		assertEquals("The server should have answered 304 four times.", notModified + 4, server.getNotModifiedCount());
+		assertEquals("The client should have counted the 304s.", clientNotModified + 4, app.getValidatorCache().getNotModifiedCount());
+		
+		PageOfEntries second = page.jumpPage(2);
+		assertNotNull("The second page failed.", second);
+		assertNotSame("A different page must not be answered from the cache.", page, second);
+	}
+
+	@Test
+	public void testQueryCache() {
+		Collection col = connect("MockQueryCache");
+		Application app = col.getParentApplication();
+		QueryCache cache = new QueryCache(100, 60000);
+		app.setQueryCache(cache);
+		CollectionEntries entries = col.getEntries();
+		
+		CollectionQuery query = new CollectionQuery();
+		query.filterOptions = "sku=CACHESKU";
+		PageOfEntries results = entries.query(query);
+		assertTrue("The entry should not exist yet.", results.asList().isEmpty());
+		
+		long requests = server.getRequestCount();
+		CollectionQuery sameQuery = new CollectionQuery();
+		sameQuery.filterOptions = "sku=CACHESKU";
+		assertEquals("Queries with the same options must be equal.", query, sameQuery);
+		assertSame("An identical query must be answered from the cache.", results, entries.query(sameQuery));
+		assertSame("An identical async query must be answered from the cache.", results, entries.queryAsync(sameQuery).join());
+		assertEquals("A cached query must not reach the server.", requests, server.getRequestCount());
+		assertEquals("The cache hits were not counted.", 2, cache.getHitCount());
+		
+		Entry newEntry = entries.createNewEntryTemplateObject();
+		((StringField)newEntry.get("sku")).setValue(new StringValue("CACHESKU"));
+		((IntegerField)newEntry.get("in_stock")).setValue(new IntegerValue(1));
+		assertTrue("Could not insert an entry on the mock server.", entries.insertNewEntry(newEntry));
+		results = entries.query(query);
+		assertEquals("An insert must invalidate the cached queries of the collection.", 1, results.asList().size());
+		
+		assertTrue("Could not delete an entry on the mock server.", results.asList().get(0).delete());
+		assertTrue("A delete must invalidate the cached queries of the collection.", entries.query(query).asList().isEmpty());
+		app.setQueryCache(null);
+	}
+
+	@Test
+	public void testConcurrentQueriesAreCoalesced() throws Exception {
+		final Collection col = connect("MockCoalesce");
+		Application app = col.getParentApplication();
+		server.latencyMillis = 500;
+		long requests = server.getRequestCount();
+		long calls = app.getPageReads().getCallCount();
+		
+		final int threads = 8;
+		final CountDownLatch go = new CountDownLatch(1);
+		ExecutorService pool = Executors.newFixedThreadPool(threads);
+		List<CompletableFuture<PageOfEntries>> results = new ArrayList<CompletableFuture<PageOfEntries>>();
+		for (int i = 0; i < threads; i++) {
+			results.add(CompletableFuture.supplyAsync(() -> {
+				try {
+					go.await();
+				} catch (InterruptedException ie) {
+					Thread.currentThread().interrupt();
+				}
+				return col.getEntries().queryAll();
+			}, pool));
+		}
+		go.countDown();
+		try {
+			for (CompletableFuture<PageOfEntries> result : results) {
+				assertNotNull("A coalesced query failed.", result.get());
+			}
+		} finally {
+			pool.shutdown();
+		}
+		
+		long made = app.getPageReads().getCallCount() - calls;
+		assertTrue("Concurrent identical queries should share requests, made ["+made+"].", made < threads);
+		assertEquals("Only the shared calls should reach the server.", requests + made, server.getRequestCount());
+	}
+
+	@Test
+	public void testSchemaSnapshot() throws Exception {
+		File snapshotFile = File.createTempFile("schema", ".snapshot");
+		snapshotFile.delete();
+		try {
+			Application cold = Application.getInstance("MockSnapshotCold");
+			cold.setApiBaseUrl(server.getApiBaseUrl());
+			assertTrue("A missing snapshot must fall back to connect().", 
+					cold.connectFromSnapshot(snapshotFile, server.accountId, server.authToken));
+			assertTrue("The snapshot was not written after the cold start.", snapshotFile.isFile());
+			
+			Application warm = Application.getInstance("MockSnapshotWarm");
+			warm.setApiBaseUrl(server.getApiBaseUrl());
+			server.latencyMillis = 300;
+			long start = System.currentTimeMillis();
+			assertTrue("Could not connect from the snapshot.", 
+					warm.connectFromSnapshot(snapshotFile, server.accountId, server.authToken));
+			Collection col = warm.getCollections(true).findCollection("Products");
+			long elapsed = System.currentTimeMillis() - start;
+			assertNotNull("The snapshot lost the collection.", col);
+			assertEquals("The snapshot lost the fields.", cold.getCollections(true).findCollection("Products").getFields().size(), 
+					col.getFields().size());
+			assertTrue("Starting from the snapshot must not wait for the server, took ["+elapsed+"] millis.", elapsed < 300);
+			
+			assertTrue("The background revalidation failed.", warm.getSnapshotRevalidation().get());
+			assertNotSame("The revalidated collections should replace the snapshot's.", col, warm.getCollections(true).findCollection("Products"));
+			server.latencyMillis = 0;
+			assertEquals("A collection from the snapshot must be queryable.", 10, col.getEntries().queryAll().asList().size());
+		} finally {
+			snapshotFile.delete();
+		}
+	}
+
+	@Test
+	public void testSchemaSnapshotOfOtherAccount() throws Exception {
+		File snapshotFile = File.createTempFile("schema", ".snapshot");
+		try {
+			Collection col = connect("MockSnapshotOther");
+			assertTrue("Could not save the snapshot.", col.getParentApplication().saveSnapshot(snapshotFile));
+			
+			Application other = Application.getInstance("MockSnapshotOtherAccount");
+			other.setApiBaseUrl(server.getApiBaseUrl());
+			assertFalse("A snapshot of another account must not be used.", 
+					other.connectFromSnapshot(snapshotFile, "otheraccount", server.authToken));
+		} finally {
+			snapshotFile.delete();
+		}
+	}
+}
@@ -0,0 +1,322 @@
+package com.storageroomapp.client;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UnsupportedEncodingException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+import org.json.simple.JSONArray;
+import org.json.simple.JSONObject;
+import org.json.simple.JSONValue;
+import org.junit.Test;
+
+import com.storageroomapp.client.field.BooleanField;
+import com.storageroomapp.client.field.BooleanValue;
+import com.storageroomapp.client.field.DateValue;
+import com.storageroomapp.client.field.EntryBinder;
+import com.storageroomapp.client.field.FileField;
+import com.storageroomapp.client.field.FloatField;
+import com.storageroomapp.client.field.FloatValue;
+import com.storageroomapp.client.field.IntegerField;
+import com.storageroomapp.client.field.GenericField;
+import com.storageroomapp.client.field.IntegerValue;
+import com.storageroomapp.client.field.StringField;
+import com.storageroomapp.client.field.StringValue;
+import com.storageroomapp.client.field.TimeValue;
+import com.storageroomapp.client.util.StorageRoomUtil;
+
+public class PageOfEntriesStaticTest {
+
+	protected Application fakeApplication = Application.getInstance("fake");
+	
+	static private String collectionJson = 
+			"{ \"collection\": "+
+					"{ \"name\":\"c1\", \"@url\": \"URL\", \"@entries_url\": \"ENTRIES\", \"entry_type\": \"ENTRY_TYPE\", "+
+					    "\"fields\": ["+
+					    	"{\"@type\":\"StringField\", \"name\":\"SKU\", \"identifier\":\"sku\"},"+
+					    	"{\"@type\":\"IntegerField\", \"name\":\"InStock\", \"identifier\":\"in_stock\"},"+
+					    	"{\"@type\":\"FloatField\", \"name\":\"Price\", \"identifier\":\"price\"},"+
+					    	"{\"@type\":\"FileField\", \"name\":\"Specs\", \"identifier\":\"specs\"}"+
+					    "]"+
+					"}"+
+			"}";
+	
+	static private String pageJson = 
+			"{ \"array\": { \"@type\":\"Array\", \"@url\":\"ENTRIES\", \"@page\":1, \"@pages\":3, \"@total_resources\":2, \"resources\":["+
+					"{ \"@type\":\"CatalogItem\", \"@url\":\"ENTRY_URL_1\", \"@version\":2, \"@trash\":false, \"@created_at\":\"2013-01-09T21:34:19Z\", "+
+						"\"sku\":\"A\\u0042C \\\"quoted\\\"\", \"in_stock\":12, \"price\":79.25, "+
+						"\"specs\":{\"@type\":\"File\", \"@url\":\"FILE_URL\"}, \"not_in_schema\":{\"deep\":[1,2,{\"x\":null}]} },"+
+					"{ \"@type\":\"CatalogItem\", \"@url\":\"ENTRY_URL_2\", \"sku\":\"D\", \"in_stock\":null }"+
+			"]}}";
+	
+	@Test
+	public void testParsePageJson() throws UnsupportedEncodingException {
+		Collection col = Collection.parseJson(fakeApplication, collectionJson);
+		PageOfEntries page = PageOfEntries.parseJSON(col, new ByteArrayInputStream(pageJson.getBytes("UTF-8")));
+		
+		assertNotNull("The page of entries was not parsed.", page);
+		assertEquals("@pages was not parsed correctly.", 3, page.getNumResultsPages());
+		assertEquals("@total_resources was not parsed correctly.", 2, page.getCurrentPageSize());
+		assertEquals("Both entries should have been parsed, in order.", 2, page.asList().size());
+		
+		Entry e1 = page.asList().get(0);
+		assertEquals("String field was not parsed correctly.", "ABC \"quoted\"", ((StringField)e1.get("sku")).getValueWrapper().getInnerValue());
+		assertEquals("Integer field was not parsed correctly.", Integer.valueOf(12), ((IntegerField)e1.get("in_stock")).getValueWrapper().getInnerValue());
+		assertEquals("Float field was not parsed correctly.", Float.valueOf(79.25f), ((FloatField)e1.get("price")).getValueWrapper().getInnerValue());
+		assertEquals("File field was not parsed correctly.", "FILE_URL", ((FileField)e1.get("specs")).getValueWrapper().getUrl());
+		assertEquals("Metadata field was not parsed correctly.", "ENTRY_URL_1", e1.fieldValueToString("@url"));
+		assertNull("Keys outside the Collection definition should be skipped.", e1.get("not_in_schema"));
+		
+		Entry e2 = page.asList().get(1);
+		assertEquals("Second entry was not parsed correctly.", "D", e2.fieldValueToString("sku"));
+		assertNull("A null value should not produce a field.", e2.get("in_stock"));
+	}
+	
+	@Test
+	public void testStreamingMatchesStringParsing() {
+		Collection col = Collection.parseJson(fakeApplication, collectionJson);
+		PageOfEntries page = PageOfEntries.parseJSON(col, pageJson);
+		
+		assertNotNull("The page of entries was not parsed from a String.", page);
+		assertTrue("Both entries should have been parsed.", page.asList().size() == 2);
+	}
+	
+	@Test
+	public void testPrimitiveValues() {
+		Collection col = Collection.parseJson(fakeApplication, collectionJson);
+		Entry streamed = PageOfEntries.parseJSON(col, pageJson).asList().get(0);
+		
+		IntegerValue inStock = ((IntegerField)streamed.get("in_stock")).getValueWrapper();
+		assertTrue("The integer should have a value.", inStock.hasValue());
+		assertEquals("The integer should be readable unboxed.", 12, inStock.getIntValue());
+		FloatValue price = ((FloatField)streamed.get("price")).getValueWrapper();
+		assertEquals("The float should be readable unboxed.", 79.25f, price.getFloatValue(), 0f);
+		assertEquals("The boolean should have been parsed.", Boolean.FALSE, ((BooleanField)streamed.get("@trash")).getValueWrapper().getInnerValue());
+		
+		// the json-simple path should produce the same values
+		JSONObject root = (JSONObject)JSONValue.parse(pageJson);
+		JSONObject entryObj = (JSONObject)((List<?>)((JSONObject)root.get("array")).get("resources")).get(0);
+		Entry bound = Entry.parseJSONObject(col, entryObj);
+		for (String key : new String[] { "in_stock", "price", "@trash", "@version" }) {
+			assertEquals("Both parse paths should agree on "+key, streamed.fieldValueToString(key), bound.fieldValueToString(key));
+		}
+		
+		inStock.setIntValue(7);
+		assertEquals("A primitive set should be visible boxed.", Integer.valueOf(7), inStock.getInnerValue());
+		assertNull("An empty value should have no String form.", new IntegerValue().toString());
+		assertTrue("An empty value should have no value.", !new FloatValue().hasValue());
+	}
+	
+	@Test
+	public void testClearingPrimitiveValues() {
+		IntegerValue inStock = new IntegerValue(12);
+		inStock.innerValue = null;
+		assertFalse("A direct assignment of null should clear a primitive.", inStock.hasValue());
+		assertNull("A cleared value should have no String form.", inStock.toString());
+		assertEquals("A cleared value should read as 0.", 0, inStock.getIntValue());
+		
+		FloatValue price = new FloatValue(79.25f);
+		price.innerValue = Float.valueOf(1.5f);
+		assertEquals("A direct assignment should replace the primitive.", 1.5f, price.getFloatValue(), 0f);
+		price.innerValue = null;
+		assertNull("A direct assignment of null should clear the value.", price.getInnerValue());
+		
+		BooleanValue trash = new BooleanValue(true);
+		trash.setInnerValue(null);
+		assertFalse("A cleared boolean should have no value.", trash.hasValue());
+		
+		// values parsed from the server are built from primitives
+		Collection col = Collection.parseJson(fakeApplication, collectionJson);
+		Entry e1 = PageOfEntries.parseJSON(col, pageJson).asList().get(0);
+		((IntegerField)e1.get("in_stock")).getValueWrapper().innerValue = null;
+		JSONObject written = (JSONObject)((JSONObject)JSONValue.parse(e1.toJSONString(true))).get("entry");
+		assertTrue("A cleared value should be sent.", written.containsKey("in_stock"));
+		assertNull("A cleared value should be sent as null.", written.get("in_stock"));
+	}
+	
+	@Test
+	public void testClearingDateValues() {
+		// values parsed from the server are built from epoch millis
+		DateValue created = new DateValue(1357776000000L);
+		assertEquals("A date built from millis should have a Calendar.", 1357776000000L, created.getInnerValue().getTimeInMillis());
+		created.innerValue = null;
+		assertNull("A direct assignment of null should clear the date.", created.getInnerValue());
+		assertNull("A cleared date should have no String form.", created.toString());
+		
+		TimeValue updated = new TimeValue(1357852620000L);
+		updated.innerValue = null;
+		assertEquals("A cleared time should have no epoch millis.", StorageRoomUtil.INVALID_EPOCH_MILLIS, updated.getEpochMillis());
+		assertNull("Invalid millis should make an empty time.", new TimeValue(StorageRoomUtil.INVALID_EPOCH_MILLIS).getInnerValue());
+	}
+	
+	@Test
+	public void testEntryBinder() {
+		Collection col = Collection.parseJson(fakeApplication, collectionJson);
+		EntryBinder binder = col.getFields().getEntryBinder();
+		
+		assertTrue("The binder should be compiled once.", binder == col.getFields().getEntryBinder());
+		assertEquals("Every field definition should have a slot.", col.getFields().size(), binder.getSlotCount());
+		assertEquals("Data fields should come first.", 0, binder.slotOf("sku"));
+		assertEquals("Unknown keys should have no slot.", -1, binder.slotOf("not_in_schema"));
+		
+		JSONObject entryObj = (JSONObject)JSONValue.parse("{\"sku\":\"X\", \"not_in_schema\":1, \"price\":null, \"in_stock\":4}");
+		Entry entry = Entry.parseJSONObject(col, entryObj);
+		assertEquals("Only the known, non-null keys should be bound.", 2, entry.size());
+		assertEquals("The bound value should be readable.", "4", entry.fieldValueToString("in_stock"));
+	}
+	
+	@Test
+	public void testDataFieldsShareDefinition() {
+		Collection col = Collection.parseJson(fakeApplication, collectionJson);
+		Entry e1 = PageOfEntries.parseJSON(col, pageJson).asList().get(0);
+		GenericField<?> definition = col.getFields().findFieldByIdentifier("price");
+		GenericField<?> dataField = e1.get("price");
+		
+		assertTrue("A data field should be the same field as its definition.", dataField.isSameField(definition));
+		assertEquals("A data field should carry the definition's name.", "Price", dataField.getName());
+		assertEquals("A data field should carry the definition's type.", FloatField.STORAGEROOM_TYPE_NAME, dataField.getType());
+		assertTrue("A data field should belong to the Collection.", dataField.getParentCollection() == col);
+		assertTrue("File fields should be compound.", e1.get("specs").isCompoundFieldType());
+		assertTrue("Metadata fields should belong to the Collection.", e1.get("@url").getParentCollection() == col);
+	}
+	
+	// a field subclass outside the field package, as an application would write one
+	static private class CodeField extends StringField {
+		CodeField() {
+			setType("CodeField");
+			setName("Code");
+			setIdentifier("code");
+			setCompoundFieldType(true);
+		}
+	}
+	
+	@Test
+	public void testSubclassCanRedefineField() {
+		Collection col = Collection.parseJson(fakeApplication, collectionJson);
+		GenericField<?> sku = col.getFields().findFieldByIdentifier("sku");
+		CodeField code = new CodeField();
+		
+		assertEquals("A subclass should be able to set its type.", "CodeField", code.getType());
+		assertEquals("A subclass should be able to set its identifier.", "code", code.getIdentifier());
+		assertTrue("A subclass should be able to mark itself compound.", code.isCompoundFieldType());
+		assertEquals("Redefining a field should not touch other fields.", "sku", sku.getIdentifier());
+		assertFalse("Redefining a field should not touch other fields.", sku.isCompoundFieldType());
+	}
+	
+	@Test
+	public void testStreamingSerializer() throws IOException {
+		Collection col = Collection.parseJson(fakeApplication, collectionJson);
+		List<Entry> entries = PageOfEntries.parseJSON(col, pageJson).asList();
+		Entry e2 = entries.get(1);
+		
+		assertEquals("Data fields should be written in definition order, as Strings.", 
+				"{ \"entry\": {\"sku\": \"D\"} }", e2.toJSONString(true));
+		
+		Entry e1 = entries.get(0);
+		((IntegerField)e1.get("in_stock")).setValue(new IntegerValue(-40));
+		JSONObject written = (JSONObject)((JSONObject)JSONValue.parse(e1.toJSONString(false))).get("entry");
+		assertEquals("Quotes in values should be escaped.", "ABC \"quoted\"", written.get("sku"));
+		assertEquals("Integers should be written as the API expects.", "-40", written.get("in_stock"));
+		assertEquals("Floats should be written as the API expects.", "79.25", written.get("price"));
+		assertEquals("Metadata fields should be written when asked for.", "ENTRY_URL_1", written.get("@url"));
+		
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		e1.toRequestBody(true).writeTo(bytes);
+		assertEquals("The request body should match the json String.", e1.toJSONString(true), new String(bytes.toByteArray(), "UTF-8"));
+		
+		bytes.reset();
+		Entry.writeJSON(entries, bytes, true);
+		JSONArray batch = (JSONArray)JSONValue.parse(new String(bytes.toByteArray(), "UTF-8"));
+		assertEquals("Every entry of the batch should be written.", 2, batch.size());
+	}
+	
+	@Test
+	public void testEntryMapView() {
+		Collection col = Collection.parseJson(fakeApplication, collectionJson);
+		Entry e1 = PageOfEntries.parseJSON(col, pageJson).asList().get(0);
+		
+		assertEquals("Every parsed field should be in the map.", 9, e1.size());
+		List<String> keys = new ArrayList<String>(e1.keySet());
+		assertEquals("Fields should iterate in definition order.", "sku", keys.get(0));
+		assertEquals("Fields should iterate in definition order.", "@type", keys.get(4));
+		
+		StringField sku = (StringField)e1.get("sku");
+		sku.setValue(new StringValue("NEW"));
+		assertEquals("Setting the value of a field should write through to the entry.", "NEW", e1.fieldValueToString("sku"));
+		assertTrue("The serialized entry should carry the new value.", e1.toJSONString(true).contains("\"sku\": \"NEW\""));
+		
+		e1.put("in_stock", e1.get("in_stock"));
+		assertEquals("Putting a field back should keep its value.", "12", e1.fieldValueToString("in_stock"));
+		
+		GenericField<?> removed = e1.remove("price");
+		assertNotNull("Removing a field should return it.", removed);
+		assertNull("A removed field should be gone.", e1.get("price"));
+		assertEquals("A removed field should not be counted.", 8, e1.size());
+		
+		for (Iterator<GenericField<?>> it = e1.values().iterator(); it.hasNext(); ) {
+			if ("specs".equals(it.next().getIdentifier())) {
+				it.remove();
+			}
+		}
+		assertTrue("Removing through the iterator should remove the field.", !e1.containsKey("specs"));
+	}
+	
+	@Test
+	public void testEntryHashCodeIgnoresEmptySlots() {
+		Collection col = Collection.parseJson(fakeApplication, collectionJson);
+		IntegerValue shared = new IntegerValue(3);
+		Entry grown = new Entry(col);
+		grown.bindSlot(50, shared);
+		grown.clear();
+		grown.bindSlot(0, shared);
+		Entry plain = new Entry(col);
+		plain.bindSlot(0, shared);
+		
+		assertEquals("Entries holding the same values should be equal.", plain, grown);
+		assertEquals("Equal entries should hash alike, whatever their slot arrays.", plain.hashCode(), grown.hashCode());
+		
+		grown.put("not_in_schema", grown.get("sku"));
+		grown.remove("not_in_schema");
+		assertEquals("An emptied set of other fields should not matter.", plain, grown);
+		assertEquals("An emptied set of other fields should not matter.", plain.hashCode(), grown.hashCode());
+	}
+	
+	@Test
+	public void testEntryTemplateFields() {
+		Collection col = Collection.parseJson(fakeApplication, collectionJson);
+		Entry template = new CollectionEntries(col).createNewEntryTemplateObject();
+		
+		assertEquals("The template should hold every data field.", 4, template.size());
+		IntegerField inStock = (IntegerField)template.get("in_stock");
+		assertNotNull("A data field without a value should still be present.", inStock);
+		assertNull("The template field should have no value.", inStock.getValueWrapper());
+		
+		inStock.setValue(new IntegerValue(3));
+		assertEquals("Setting a template field should write through to the entry.", "3", template.fieldValueToString("in_stock"));
+		
+		// a field the Collection does not define is kept as is
+		StringField other = (StringField)template.get("sku");
+		template.put("not_in_schema", other);
+		assertTrue("A field outside the definition should be kept.", template.get("not_in_schema") == other);
+		assertEquals("A field outside the definition should be counted.", 5, template.size());
+	}
+	
+	// NEGATIVE TESTS
+	
+	@Test
+	public void testParseMalformedPageJson() {
+		Collection col = Collection.parseJson(fakeApplication, collectionJson);
+		
+		assertNull("Truncated json should not parse.", PageOfEntries.parseJSON(col, pageJson.substring(0, 120)));
+		assertNull("Json without resources is not a page of entries.", PageOfEntries.parseJSON(col, "{ \"error\": { \"message\": \"bad\" } }"));
+	}
+}
@@ -0,0 +1,584 @@
+package com.storageroomapp.client.mock;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.GZIPOutputStream;
+
+import org.json.simple.JSONArray;
+import org.json.simple.JSONObject;
+import org.json.simple.JSONValue;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * An in-process stand-in for the StorageRoom API, for offline tests and
+ * load testing. It serves the account, its collections and paged entries,
+ * and accepts entry inserts, updates and deletes, keeping everything in
+ * memory.
+ * <p>
+ * Point an Application at it with setApiBaseUrl(getApiBaseUrl()), then
+ * connect with the accountId and authToken configured here. Every URL 
+ * after that comes from the hypermedia this server returns.
+ * <p>
+ * The public members tune the server's behavior and may be changed while
+ * it is running.
+ */
+public class MockStorageRoomServer {
+
+	/**
+	 * Delay added before every response.
+	 */
+	public volatile long latencyMillis = 0;
+
+	/**
+	 * Fraction (0.0 - 1.0) of requests answered with a 503 instead of
+	 * being processed.
+	 */
+	public volatile double errorRate = 0.0;
+
+	/**
+	 * Page size used when the request does not ask for one (per_page).
+	 */
+	public volatile int defaultPageSize = 20;
+
+	/**
+	 * Largest page size honored, as on the real server.
+	 */
+	public volatile int maxPageSize = 100;
+
+	/**
+	 * Compress responses with gzip or deflate when the client accepts it.
+	 */
+	public volatile boolean compressResponses = true;
+
+	/**
+	 * Send an ETag with every GET, and answer 304 Not Modified when the
+	 * client already holds the current representation.
+	 */
+	public volatile boolean sendETags = true;
+
+	public final String accountId;
+	public final String authToken;
+
+	private HttpServer server = null;
+	private ExecutorService executor = null;
+	private String baseUrl = null;
+	private final Map<String, MockCollection> collections = new ConcurrentHashMap<String, MockCollection>();
+	private final AtomicInteger nextCollectionId = new AtomicInteger(1);
+	private final AtomicLong requestCount = new AtomicLong();
+	private final AtomicLong errorCount = new AtomicLong();
+	private final AtomicLong bytesSent = new AtomicLong();
+	private final AtomicLong notModifiedCount = new AtomicLong();
+
+	public MockStorageRoomServer() {
+		this("mockaccount", "mocktoken");
+	}
+
+	public MockStorageRoomServer(String accountId, String authToken) {
+		this.accountId = accountId;
+		this.authToken = authToken;
+	}
+
+	// LIFECYCLE
+
+	/**
+	 * Starts the server on an ephemeral port of the loopback interface
+	 */
+	public void start() throws IOException {
+		server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+		executor = Executors.newCachedThreadPool();
+		server.setExecutor(executor);
+		server.createContext("/accounts/", new Handler());
+		server.start();
+		baseUrl = "http://127.0.0.1:"+server.getAddress().getPort()+"/accounts/";
+	}
+
+	public void stop() {
+		if (server != null) {
+			server.stop(0);
+			executor.shutdownNow();
+			server = null;
+		}
+	}
+
+	/**
+	 * @return the URL to pass to Application.setApiBaseUrl()
+	 */
+	public String getApiBaseUrl() {
+		return baseUrl;
+	}
+
+	public long getRequestCount() {
+		return requestCount.get();
+	}
+
+	public long getErrorCount() {
+		return errorCount.get();
+	}
+
+	/**
+	 * @return the number of GETs answered 304 Not Modified
+	 */
+	public long getNotModifiedCount() {
+		return notModifiedCount.get();
+	}
+
+	/**
+	 * @return the response body bytes sent, after any compression
+	 */
+	public long getBytesSent() {
+		return bytesSent.get();
+	}
+
+	// DATA
+
+	/**
+	 * Defines a collection on the account.
+	 * @param name the collection name
+	 * @param entryType the entry type, e.g. "CatalogItem"
+	 * @param fieldTypesAndIdentifiers pairs of field type (e.g. "StringField") and identifier
+	 * @return the collection, to which entries can be added
+	 */
+	public MockCollection addCollection(String name, String entryType, String... fieldTypesAndIdentifiers) {
+		MockCollection col = new MockCollection(String.valueOf(nextCollectionId.getAndIncrement()), name, entryType);
+		for (int i = 0; i + 1 < fieldTypesAndIdentifiers.length; i += 2) {
+			col.addField(fieldTypesAndIdentifiers[i], fieldTypesAndIdentifiers[i + 1]);
+		}
+		collections.put(col.id, col);
+		return col;
+	}
+
+	public MockCollection findCollection(String name) {
+		for (MockCollection col : collections.values()) {
+			if (col.name.equals(name)) {
+				return col;
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * A collection held by the server. Entries are plain JSON objects
+	 * keyed by their id.
+	 */
+	public class MockCollection {
+		public final String id;
+		public final String name;
+		public final String entryType;
+		protected final JSONArray fields = new JSONArray();
+		protected final Map<String, JSONObject> entries = new LinkedHashMap<String, JSONObject>();
+		private int nextEntryId = 1;
+
+		MockCollection(String id, String name, String entryType) {
+			this.id = id;
+			this.name = name;
+			this.entryType = entryType;
+		}
+
+		@SuppressWarnings("unchecked")
+		public MockCollection addField(String type, String identifier) {
+			JSONObject field = new JSONObject();
+			field.put("@type", type);
+			field.put("name", identifier);
+			field.put("identifier", identifier);
+			fields.add(field);
+			return this;
+		}
+
+		/**
+		 * Adds an entry with the passed data field values
+		 * @return the entry id
+		 */
+		@SuppressWarnings("unchecked")
+		public synchronized String addEntry(Map<String, Object> values) {
+			String entryId = String.valueOf(nextEntryId++);
+			JSONObject entry = new JSONObject();
+			for (Map.Entry<String, Object> value : values.entrySet()) {
+				entry.put(value.getKey(), coerce(value.getKey(), value.getValue()));
+			}
+			entry.put("@type", entryType);
+			entry.put("@url", getUrl()+"/entries/"+entryId);
+			entry.put("@collection_url", getUrl());
+			entry.put("@version", Long.valueOf(1));
+			entry.put("@trash", Boolean.FALSE);
+			entry.put("@created_at", "2013-01-10T21:17:00Z");
+			entry.put("@updated_at", "2013-01-10T21:17:00Z");
+			entries.put(entryId, entry);
+			return entryId;
+		}
+
+		/**
+		 * The client writes every value as a String; like the real server,
+		 * store numbers and booleans as their JSON types
+		 */
+		protected Object coerce(String identifier, Object value) {
+			if (!(value instanceof String)) {
+				return value;
+			}
+			String str = (String)value;
+			for (Object fieldObj : fields) {
+				JSONObject field = (JSONObject)fieldObj;
+				if (!identifier.equals(field.get("identifier"))) {
+					continue;
+				}
+				try {
+					Object type = field.get("@type");
+					if ("IntegerField".equals(type)) {
+						return Long.valueOf(str);
+					} else if ("FloatField".equals(type)) {
+						return Double.valueOf(str);
+					} else if ("BooleanField".equals(type)) {
+						return Boolean.valueOf(str);
+					}
+				} catch (NumberFormatException nfe) {
+					return null;
+				}
+			}
+			return value;
+		}
+
+		public synchronized int getEntryCount() {
+			return entries.size();
+		}
+
+		public synchronized JSONObject getEntry(String entryId) {
+			return entries.get(entryId);
+		}
+
+		public String getUrl() {
+			return baseUrl+accountId+"/collections/"+id;
+		}
+
+		@SuppressWarnings("unchecked")
+		protected JSONObject toJSONObject() {
+			JSONObject col = new JSONObject();
+			col.put("@type", "Collection");
+			col.put("@url", getUrl());
+			col.put("@entries_url", getUrl()+"/entries");
+			col.put("name", name);
+			col.put("entry_type", entryType);
+			if (!fields.isEmpty()) {
+				col.put("primary_field_identifier", ((JSONObject)fields.get(0)).get("identifier"));
+			}
+			col.put("fields", fields);
+			return col;
+		}
+	}
+
+	// INTERNAL
+
+	private class Handler implements HttpHandler {
+		public void handle(HttpExchange exchange) throws IOException {
+			requestCount.incrementAndGet();
+			try {
+				if (latencyMillis > 0) {
+					Thread.sleep(latencyMillis);
+				}
+				if ((errorRate > 0) && (ThreadLocalRandom.current().nextDouble() < errorRate)) {
+					errorCount.incrementAndGet();
+					respond(exchange, 503, null);
+					return;
+				}
+				Map<String, String> params = parseQuery(exchange.getRequestURI().getRawQuery());
+				if (!authToken.equals(params.remove("auth_token"))) {
+					respond(exchange, 401, error("Invalid auth_token"));
+					return;
+				}
+				route(exchange, params);
+			} catch (InterruptedException ie) {
+				Thread.currentThread().interrupt();
+				respond(exchange, 503, null);
+			} catch (RuntimeException re) {
+				respond(exchange, 500, error(re.toString()));
+			} finally {
+				exchange.close();
+			}
+		}
+	}
+
+	private void route(HttpExchange exchange, Map<String, String> params) throws IOException {
+		String method = exchange.getRequestMethod();
+		String path = exchange.getRequestURI().getPath();
+		if (!path.endsWith(".json")) {
+			respond(exchange, 406, error("Only the json representation is supported"));
+			return;
+		}
+		// accounts/{account}/collections/{collection}/entries/{entry}
+		String[] parts = path.substring(1, path.length() - ".json".length()).split("/");
+		if ((parts.length < 2) || !accountId.equals(parts[1])) {
+			respond(exchange, 404, error("Unknown account"));
+			return;
+		}
+		if (parts.length == 2) {
+			respond(exchange, 200, wrap("account", account()));
+			return;
+		}
+		if (!"collections".equals(parts[2])) {
+			respond(exchange, 404, error("Unknown resource"));
+			return;
+		}
+		if (parts.length == 3) {
+			respond(exchange, 200, wrap("array", collectionsArray()));
+			return;
+		}
+		MockCollection col = collections.get(parts[3]);
+		if (col == null) {
+			respond(exchange, 404, error("Unknown collection"));
+			return;
+		}
+		if (parts.length == 4) {
+			respond(exchange, 200, wrap("collection", col.toJSONObject()));
+			return;
+		}
+		if (parts.length == 5) {
+			if ("POST".equals(method)) {
+				insertEntry(exchange, col);
+			} else {
+				respond(exchange, 200, wrap("array", pageOfEntries(col, params)));
+			}
+			return;
+		}
+		String entryId = parts[5];
+		synchronized (col) {
+			JSONObject entry = col.entries.get(entryId);
+			if (entry == null) {
+				respond(exchange, 404, error("Unknown entry"));
+			} else if ("DELETE".equals(method)) {
+				col.entries.remove(entryId);
+				respond(exchange, 200, null);
+			} else if ("PUT".equals(method)) {
+				updateEntry(exchange, col, entry);
+			} else {
+				respond(exchange, 200, wrap("entry", entry));
+			}
+		}
+	}
+
+	@SuppressWarnings("unchecked")
+	private JSONObject account() {
+		JSONObject account = new JSONObject();
+		account.put("@type", "Account");
+		account.put("@url", baseUrl+accountId);
+		account.put("@collections_url", baseUrl+accountId+"/collections");
+		account.put("@deleted_entries_url", baseUrl+accountId+"/deleted_entries");
+		account.put("@created_at", "2013-01-10T21:17:00Z");
+		account.put("@updated_at", "2013-01-10T21:17:00Z");
+		account.put("name", "Mock Account");
+		account.put("subdomain", "mock");
+		return account;
+	}
+
+	@SuppressWarnings("unchecked")
+	private JSONObject collectionsArray() {
+		JSONArray resources = new JSONArray();
+		for (MockCollection col : collections.values()) {
+			resources.add(col.toJSONObject());
+		}
+		JSONObject array = new JSONObject();
+		array.put("@type", "Array");
+		array.put("@url", baseUrl+accountId+"/collections");
+		array.put("resources", resources);
+		return array;
+	}
+
+	@SuppressWarnings("unchecked")
+	private JSONObject pageOfEntries(MockCollection col, Map<String, String> params) {
+		int page = parseInt(params.remove("page"), 1);
+		int perPage = Math.min(parseInt(params.remove("per_page"), defaultPageSize), maxPageSize);
+		final String sortField = params.remove("sort");
+		final boolean descending = "desc".equals(params.remove("order"));
+
+		// the remaining params are equality filters on entry values
+		List<JSONObject> matches = new ArrayList<JSONObject>();
+		synchronized (col) {
+			for (JSONObject entry : col.entries.values()) {
+				if (matches(entry, params)) {
+					matches.add(entry);
+				}
+			}
+		}
+		if (sortField != null) {
+			Comparator<JSONObject> comparator = new Comparator<JSONObject>() {
+				@SuppressWarnings("rawtypes")
+				public int compare(JSONObject o1, JSONObject o2) {
+					Comparable v1 = (Comparable)o1.get(sortField);
+					Comparable v2 = (Comparable)o2.get(sortField);
+					if ((v1 == null) || (v2 == null)) {
+						return (v1 == null) ? ((v2 == null) ? 0 : -1) : 1;
+					}
+					return v1.compareTo(v2);
+				}
+			};
+			matches.sort(descending ? comparator.reversed() : comparator);
+		}
+
+		int pages = Math.max(1, (matches.size() + perPage - 1) / perPage);
+		int from = Math.min((page - 1) * perPage, matches.size());
+		int to = Math.min(from + perPage, matches.size());
+		JSONArray resources = new JSONArray();
+		resources.addAll(matches.subList(Math.max(0, from), to));
+
+		JSONObject array = new JSONObject();
+		array.put("@type", "Array");
+		array.put("@url", col.getUrl()+"/entries");
+		array.put("@page", Long.valueOf(page));
+		array.put("@pages", Long.valueOf(pages));
+		array.put("@total_resources", Long.valueOf(matches.size()));
+		array.put("resources", resources);
+		return array;
+	}
+
+	private boolean matches(JSONObject entry, Map<String, String> filters) {
+		for (Map.Entry<String, String> filter : filters.entrySet()) {
+			Object value = entry.get(filter.getKey());
+			if ((value == null) || !value.toString().equals(filter.getValue())) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private void insertEntry(HttpExchange exchange, MockCollection col) throws IOException {
+		JSONObject values = readEntryBody(exchange);
+		if (values == null) {
+			respond(exchange, 422, error("Body must be an entry object"));
+			return;
+		}
+		// json-simple maps are raw, so copy the members into a typed Map
+		Map<String, Object> typedValues = new LinkedHashMap<String, Object>();
+		for (Object key : values.keySet()) {
+			typedValues.put(key.toString(), values.get(key));
+		}
+		String entryId = col.addEntry(typedValues);
+		respond(exchange, 201, wrap("entry", col.getEntry(entryId)));
+	}
+
+	@SuppressWarnings("unchecked")
+	private void updateEntry(HttpExchange exchange, MockCollection col, JSONObject entry) throws IOException {
+		JSONObject values = readEntryBody(exchange);
+		if (values == null) {
+			respond(exchange, 422, error("Body must be an entry object"));
+			return;
+		}
+		for (Object key : values.keySet()) {
+			// metadata is owned by the server
+			if (!key.toString().startsWith("@")) {
+				entry.put(key, col.coerce(key.toString(), values.get(key)));
+			}
+		}
+		entry.put("@version", Long.valueOf(((Long)entry.get("@version")).longValue() + 1));
+		respond(exchange, 200, wrap("entry", entry));
+	}
+
+	private JSONObject readEntryBody(HttpExchange exchange) throws IOException {
+		InputStream is = exchange.getRequestBody();
+		Object body = JSONValue.parse(new InputStreamReader(is, "UTF-8"));
+		if (!(body instanceof JSONObject)) {
+			return null;
+		}
+		Object entry = ((JSONObject)body).get("entry");
+		return (entry instanceof JSONObject) ? (JSONObject)entry : null;
+	}
+
+	@SuppressWarnings("unchecked")
+	private static JSONObject wrap(String key, JSONObject value) {
+		JSONObject root = new JSONObject();
+		root.put(key, value);
+		return root;
+	}
+
+	@SuppressWarnings("unchecked")
+	private static JSONObject error(String message) {
+		JSONObject error = new JSONObject();
+		error.put("message", message);
+		return wrap("error", error);
+	}
+
+	private void respond(HttpExchange exchange, int status, JSONObject body) throws IOException {
+		byte[] bytes = (body != null) ? body.toJSONString().getBytes("UTF-8") : new byte[0];
+		exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+		if (sendETags && (status == 200) && (bytes.length > 0) && "GET".equals(exchange.getRequestMethod())) {
+			String etag = "\""+Integer.toHexString(Arrays.hashCode(bytes))+"\"";
+			exchange.getResponseHeaders().set("ETag", etag);
+			if (etag.equals(exchange.getRequestHeaders().getFirst("If-None-Match"))) {
+				notModifiedCount.incrementAndGet();
+				exchange.sendResponseHeaders(304, -1);
+				return;
+			}
+		}
+		String accepted = exchange.getRequestHeaders().getFirst("Accept-Encoding");
+		if (compressResponses && (bytes.length > 0) && (accepted != null)) {
+			if (accepted.contains("gzip")) {
+				bytes = compress(bytes, true);
+				exchange.getResponseHeaders().set("Content-Encoding", "gzip");
+			} else if (accepted.contains("deflate")) {
+				bytes = compress(bytes, false);
+				exchange.getResponseHeaders().set("Content-Encoding", "deflate");
+			}
+		}
+		bytesSent.addAndGet(bytes.length);
+		exchange.sendResponseHeaders(status, (bytes.length > 0) ? bytes.length : -1);
+		if (bytes.length > 0) {
+			OutputStream os = exchange.getResponseBody();
+			os.write(bytes);
+			os.close();
+		}
+	}
+
+	private static byte[] compress(byte[] bytes, boolean gzip) throws IOException {
+		ByteArrayOutputStream sink = new ByteArrayOutputStream();
+		DeflaterOutputStream out = gzip ? new GZIPOutputStream(sink) : new DeflaterOutputStream(sink);
+		out.write(bytes);
+		out.close();
+		return sink.toByteArray();
+	}
+
+	private static Map<String, String> parseQuery(String rawQuery) throws IOException {
+		Map<String, String> params = new LinkedHashMap<String, String>();
+		if (rawQuery == null) {
+			return params;
+		}
+		for (String pair : rawQuery.split("&")) {
+			if (pair.isEmpty()) {
+				continue;
+			}
+			int eq = pair.indexOf('=');
+			String key = (eq < 0) ? pair : pair.substring(0, eq);
+			String value = (eq < 0) ? "" : pair.substring(eq + 1);
+			params.put(URLDecoder.decode(key, "UTF-8"), URLDecoder.decode(value, "UTF-8"));
+		}
+		return params;
+	}
+
+	private static int parseInt(String value, int defaultValue) {
+		if (value == null) {
+			return defaultValue;
+		}
+		try {
+			return Math.max(1, Integer.parseInt(value));
+		} catch (NumberFormatException nfe) {
+			return defaultValue;
+		}
+	}
+}
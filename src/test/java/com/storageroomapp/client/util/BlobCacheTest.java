@@ -0,0 +1,102 @@
+package com.storageroomapp.client.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class BlobCacheTest {
+
+	/**
+	 * Serves fixed content per url, 404 for anything else, and counts requests
+	 */
+	static class ContentTransport extends AbstractTransport {
+		Map<String, String> content = new HashMap<String, String>();
+		int calls = 0;
+
+		public synchronized TransportResponse execute(TransportRequest request) throws IOException {
+			calls++;
+			String body = content.get(request.getUrl());
+			if (body == null) {
+				return new TransportResponse(404, "Not Found", new ByteArrayInputStream("missing".getBytes("UTF-8")));
+			}
+			return new TransportResponse(200, "OK", new ByteArrayInputStream(body.getBytes("UTF-8")));
+		}
+	}
+
+	File dir = null;
+	ContentTransport transport = null;
+
+	@Before
+	public void setUp() throws IOException {
+		dir = Files.createTempDirectory("blobcache").toFile();
+		transport = new ContentTransport();
+		transport.content.put("http://files/a.png", "AAAAAAAAAA");
+		transport.content.put("http://files/b.png", "BBBBBBBBBB");
+		transport.content.put("http://files/a-copy.png", "AAAAAAAAAA");
+	}
+
+	@After
+	public void tearDown() {
+		FileUtil.deleteFileTree(dir);
+	}
+
+	static String read(InputStream is) {
+		return AbstractTransport.deserializeBody(is);
+	}
+
+	@Test
+	public void testHitAfterMiss() throws IOException {
+		BlobCache cache = new BlobCache(dir, 1000);
+		assertEquals("The first get should download the content.", "AAAAAAAAAA", read(cache.get(transport, "http://files/a.png")));
+		assertEquals("The second get should be served from disk.", "AAAAAAAAAA", read(cache.get(transport, "http://files/a.png")));
+		assertEquals("Only one download should have been made.", 1, transport.calls);
+		assertEquals("The hit was not counted.", 1, cache.getHitCount());
+		assertTrue("The url should be cached.", cache.contains("http://files/a.png"));
+		
+		BlobCache reopened = new BlobCache(dir, 1000);
+		assertEquals("A reopened cache must serve the content from disk.", "AAAAAAAAAA", read(reopened.get(transport, "http://files/a.png")));
+		assertEquals("A reopened cache must not download again.", 1, transport.calls);
+	}
+
+	@Test
+	public void testContentIsStoredOnce() throws IOException {
+		BlobCache cache = new BlobCache(dir, 1000);
+		read(cache.get(transport, "http://files/a.png"));
+		read(cache.get(transport, "http://files/a-copy.png"));
+		assertEquals("Identical content must be stored once.", 10, cache.getTotalBytes());
+	}
+
+	@Test
+	public void testLruEviction() throws IOException {
+		BlobCache cache = new BlobCache(dir, 15);
+		read(cache.get(transport, "http://files/a.png"));
+		read(cache.get(transport, "http://files/b.png"));
+		assertEquals("The cache must stay within its size cap.", 10, cache.getTotalBytes());
+		assertFalse("The least recently used content must be evicted.", cache.contains("http://files/a.png"));
+		assertTrue("The most recent content must remain.", cache.contains("http://files/b.png"));
+		assertEquals("The eviction was not counted.", 1, cache.getEvictionCount());
+	}
+
+	// NEGATIVE TESTS
+
+	@Test
+	public void testFailedDownloadIsNotCached() throws IOException {
+		BlobCache cache = new BlobCache(dir, 1000);
+		assertNull("A failed download must return null.", cache.get(transport, "http://files/none.png"));
+		assertFalse("A failed download must not be cached.", cache.contains("http://files/none.png"));
+		assertEquals("A failed download must not leave temporary files.", 0, new File(dir, "tmp").list().length);
+	}
+}
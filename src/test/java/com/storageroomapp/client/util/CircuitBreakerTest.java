@@ -0,0 +1,105 @@
+package com.storageroomapp.client.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+
+import org.junit.Test;
+
+import com.storageroomapp.client.util.CircuitBreakers.EndpointClass;
+import com.storageroomapp.client.util.RetryingTransportTest.ScriptedTransport;
+
+public class CircuitBreakerTest {
+
+	static final String ENTRIES_URL = "http://api.storageroomapp.com/accounts/1/collections/2/entries.json?auth_token=x";
+	static final String COLLECTIONS_URL = "http://api.storageroomapp.com/accounts/1/collections.json?auth_token=x";
+
+	static CircuitBreakerPolicy policy(long openDurationMillis) {
+		CircuitBreakerPolicy policy = new CircuitBreakerPolicy();
+		policy.failureThreshold = 3;
+		policy.openDurationMillis = openDurationMillis;
+		return policy;
+	}
+
+	@Test
+	public void testClassifyEndpoints() {
+		assertEquals("Account url misclassified.", EndpointClass.ACCOUNT, CircuitBreakers.classify("http://api.storageroomapp.com/accounts/1.json?auth_token=x"));
+		assertEquals("Collections url misclassified.", EndpointClass.COLLECTIONS, CircuitBreakers.classify(COLLECTIONS_URL));
+		assertEquals("Collection url misclassified.", EndpointClass.COLLECTIONS, CircuitBreakers.classify("http://api.storageroomapp.com/accounts/1/collections/2.json"));
+		assertEquals("Entries url misclassified.", EndpointClass.ENTRIES, CircuitBreakers.classify(ENTRIES_URL));
+		assertEquals("Entry url misclassified.", EndpointClass.ENTRIES, CircuitBreakers.classify("http://api.storageroomapp.com/accounts/1/collections/2/entries/3.json?auth_token=x"));
+		assertEquals("File url misclassified.", EndpointClass.FILES, CircuitBreakers.classify("http://files.storageroomapp.com/accounts/1/collection/2/entries/3/fields/k4/file.png"));
+	}
+
+	@Test
+	public void testOpensAndFailsFast() {
+		CircuitBreakers breakers = new CircuitBreakers(policy(60000));
+		ScriptedTransport base = new ScriptedTransport(new IOException("1"), Integer.valueOf(500), Integer.valueOf(503));
+		CircuitBreakingTransport transport = new CircuitBreakingTransport(base, breakers);
+		for (int i = 0; i < 3; i++) {
+			transport.getAsString(ENTRIES_URL);
+		}
+		assertTrue("Three consecutive failures should open the entries circuit.", breakers.isOpen(EndpointClass.ENTRIES));
+		assertNull("An open circuit should refuse the request.", transport.get(ENTRIES_URL));
+		assertEquals("A refused request must not reach the server.", 3, base.calls);
+		assertEquals("The refusal should have been counted.", 1, breakers.getBreaker(EndpointClass.ENTRIES).getRejectedCount());
+		
+		assertFalse("Other endpoint classes must not be affected.", breakers.isOpen(EndpointClass.COLLECTIONS));
+		assertEquals("Collections requests should still flow.", "body200", transport.getAsString(COLLECTIONS_URL));
+		
+		assertFalse("Async requests should be refused too.", transport.deleteAsync(ENTRIES_URL).join());
+	}
+
+	@Test
+	public void testHalfOpenProbe() throws Exception {
+		CircuitBreakers breakers = new CircuitBreakers(policy(300));
+		CircuitBreaker breaker = breakers.getBreaker(EndpointClass.ENTRIES);
+		ScriptedTransport base = new ScriptedTransport(Integer.valueOf(500), Integer.valueOf(500), Integer.valueOf(500), Integer.valueOf(500));
+		CircuitBreakingTransport transport = new CircuitBreakingTransport(base, breakers);
+		for (int i = 0; i < 3; i++) {
+			transport.getAsString(ENTRIES_URL);
+		}
+		assertEquals("The circuit should be open.", CircuitBreaker.State.OPEN, breaker.getState());
+		
+		Thread.sleep(400);
+		assertEquals("The circuit should be half open after the open period.", CircuitBreaker.State.HALF_OPEN, breaker.getState());
+		transport.getAsString(ENTRIES_URL);
+		assertEquals("A failed probe should reopen the circuit.", CircuitBreaker.State.OPEN, breaker.getState());
+		
+		Thread.sleep(400);
+		assertEquals("A successful probe should be returned.", "body200", transport.getAsString(ENTRIES_URL));
+		assertEquals("A successful probe should close the circuit.", CircuitBreaker.State.CLOSED, breaker.getState());
+		assertEquals("The circuit opened twice.", 2, breaker.getOpenedCount());
+	}
+
+	// NEGATIVE TESTS
+
+	@Test
+	public void testOnlyOneProbeWhileHalfOpen() throws Exception {
+		CircuitBreaker breaker = new CircuitBreaker("test", policy(10));
+		for (int i = 0; i < 3; i++) {
+			assertTrue("A closed circuit should admit requests.", breaker.tryAcquire());
+			breaker.onFailure();
+		}
+		Thread.sleep(30);
+		assertTrue("The first probe should be admitted.", breaker.tryAcquire());
+		assertFalse("A second concurrent probe should be refused.", breaker.tryAcquire());
+		breaker.onIgnored();
+		assertTrue("A probe that was never sent should free its slot.", breaker.tryAcquire());
+	}
+
+	@Test
+	public void testSuccessResetsFailureCount() {
+		CircuitBreaker breaker = new CircuitBreaker("test", policy(60000));
+		breaker.onFailure();
+		breaker.onFailure();
+		breaker.onSuccess();
+		breaker.onFailure();
+		breaker.onFailure();
+		assertFalse("Failures that are not consecutive must not open the circuit.", breaker.isOpen());
+		assertEquals("The failure count should restart after a success.", 2, breaker.getConsecutiveFailures());
+	}
+}
@@ -0,0 +1,137 @@
+package com.storageroomapp.client.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.GZIPOutputStream;
+
+import org.junit.Test;
+
+public class DecompressingTransportTest {
+
+	static final String PAYLOAD;
+	static {
+		StringBuilder sb = new StringBuilder("[");
+		for (int i = 0; i < 200; i++) {
+			sb.append("{\"@url\":\"http://api.storageroomapp.com/accounts/1/collections/2/entries/").append(i).append("\"},");
+		}
+		PAYLOAD = sb.append("{}]").toString();
+	}
+
+	/**
+	 * Answers every request with the payload in the given encoding, and 
+	 * remembers the Accept-Encoding it was sent
+	 */
+	static class EncodingTransport extends AbstractTransport {
+		final String encoding;
+		String acceptEncoding = null;
+
+		EncodingTransport(String encoding) {
+			this.encoding = encoding;
+		}
+
+		public TransportResponse execute(TransportRequest request) throws IOException {
+			acceptEncoding = request.getHeaders().get("Accept-Encoding");
+			byte[] bytes = PAYLOAD.getBytes("UTF-8");
+			ByteArrayOutputStream sink = new ByteArrayOutputStream();
+			DeflaterOutputStream out = null;
+			if ("gzip".equals(encoding)) {
+				out = new GZIPOutputStream(sink);
+			} else if ("deflate".equals(encoding)) {
+				out = new DeflaterOutputStream(sink);
+			} else if ("raw-deflate".equals(encoding)) {
+				out = new DeflaterOutputStream(sink, new Deflater(Deflater.DEFAULT_COMPRESSION, true));
+			}
+			if (out != null) {
+				out.write(bytes);
+				out.close();
+				bytes = sink.toByteArray();
+			}
+			TransportResponse response = new TransportResponse(200, "OK", new ByteArrayInputStream(bytes));
+			if (encoding != null) {
+				response.setHeader("Content-Encoding", encoding.equals("raw-deflate") ? "deflate" : encoding);
+				response.setHeader("Content-Length", String.valueOf(bytes.length));
+			}
+			return response;
+		}
+	}
+
+	@Test
+	public void testGzip() {
+		EncodingTransport base = new EncodingTransport("gzip");
+		DecompressingTransport transport = new DecompressingTransport(base);
+		assertEquals("The gzip body was not decoded.", PAYLOAD, transport.getAsString("http://test/"));
+		assertEquals("Compression must be negotiated.", DecompressingTransport.ACCEPT_ENCODING, base.acceptEncoding);
+		
+		CompressionStats stats = transport.getStats();
+		assertEquals("One compressed response should be counted.", 1, stats.getCompressedResponseCount());
+		assertEquals("The raw bytes should be the decoded size.", PAYLOAD.length(), stats.getRawBytes());
+		assertTrue("The payload should compress several times over.", stats.getCompressionRatio() > 4.0);
+	}
+
+	@Test
+	public void testDeflate() {
+		assertEquals("The zlib deflate body was not decoded.", PAYLOAD, 
+				new DecompressingTransport(new EncodingTransport("deflate")).getAsString("http://test/"));
+		assertEquals("The raw deflate body was not decoded.", PAYLOAD, 
+				new DecompressingTransport(new EncodingTransport("raw-deflate")).getAsString("http://test/"));
+	}
+
+	@Test
+	public void testIdentityAndHeaders() throws IOException {
+		DecompressingTransport transport = new DecompressingTransport(new EncodingTransport(null));
+		assertEquals("An uncompressed body must pass through.", PAYLOAD, transport.getAsString("http://test/"));
+		assertEquals("An uncompressed body must not be counted.", 0, transport.getStats().getCompressedBytes());
+		
+		transport = new DecompressingTransport(new EncodingTransport("gzip"));
+		TransportResponse response = transport.execute(TransportRequest.get("http://test/"));
+		assertNull("The encoding header no longer describes the body.", response.getHeader("Content-Encoding"));
+		assertNull("The length header no longer describes the body.", response.getHeader("Content-Length"));
+		response.close();
+	}
+
+	@Test
+	public void testAsync() {
+		DecompressingTransport transport = new DecompressingTransport(new EncodingTransport("gzip"));
+		assertEquals("The async gzip body was not decoded.", PAYLOAD, transport.getAsStringAsync("http://test/").join());
+	}
+
+	@Test
+	public void testEmptyEncodedBodies() throws IOException {
+		final int[] status = { 304 };
+		final String[] length = { null };
+		AbstractTransport base = new AbstractTransport() {
+			public TransportResponse execute(TransportRequest request) throws IOException {
+				TransportResponse response = new TransportResponse(status[0], "empty", new ByteArrayInputStream(new byte[0]));
+				response.setHeader("Content-Encoding", "gzip");
+				if (length[0] != null) {
+					response.setHeader("Content-Length", length[0]);
+				}
+				return response;
+			}
+		};
+		DecompressingTransport transport = new DecompressingTransport(base);
+		
+		TransportResponse response = transport.execute(TransportRequest.get("http://test/"));
+		assertEquals("An empty gzip labelled 304 must not fail.", 304, response.getStatusCode());
+		assertEquals("An empty gzip labelled 304 must have an empty body.", -1, response.getBody().read());
+		assertNull("The encoding header no longer describes the body.", response.getHeader("Content-Encoding"));
+		response.close();
+		
+		status[0] = 204;
+		assertTrue("An empty gzip labelled 204 must count as a success.", transport.delete("http://test/"));
+		
+		status[0] = 200;
+		length[0] = "0";
+		assertEquals("An empty gzip labelled body with a zero length must read as empty.", "", transport.getAsString("http://test/"));
+		length[0] = null;
+		assertEquals("An empty gzip labelled body must read as empty.", "", transport.getAsStringAsync("http://test/").join());
+		assertEquals("Empty bodies must not be counted as compressed.", 0, transport.getStats().getCompressedResponseCount());
+	}
+}
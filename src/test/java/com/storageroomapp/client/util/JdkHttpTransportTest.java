@@ -0,0 +1,43 @@
+package com.storageroomapp.client.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeoutException;
+
+import org.junit.Test;
+
+public class JdkHttpTransportTest {
+
+	@Test
+	public void testDeadlineCancelsExchange() {
+		CompletableFuture<String> sent = new CompletableFuture<String>();
+		CompletableFuture<String> future = JdkHttpTransport.withDeadline(sent, sent.thenApply(s -> s), 20);
+		try {
+			future.join();
+			fail("The deadline should have failed the future.");
+		} catch (CompletionException expected) {
+			assertTrue("The failure should be a timeout.", expected.getCause() instanceof TimeoutException);
+		}
+		assertTrue("The exchange should have been cancelled at the deadline.", sent.isCancelled());
+	}
+
+	@Test
+	public void testCallerCancelCancelsExchange() {
+		CompletableFuture<String> sent = new CompletableFuture<String>();
+		CompletableFuture<String> future = JdkHttpTransport.withDeadline(sent, sent.thenApply(s -> s), 0);
+		future.cancel(false);
+		assertTrue("The exchange should have been cancelled with the caller's future.", sent.isCancelled());
+	}
+
+	@Test
+	public void testCompletedExchangeIsKept() {
+		CompletableFuture<String> sent = new CompletableFuture<String>();
+		CompletableFuture<String> future = JdkHttpTransport.withDeadline(sent, sent.thenApply(s -> s), 5000);
+		sent.complete("response");
+		assertEquals("A response within the deadline should be handed on.", "response", future.join());
+	}
+}
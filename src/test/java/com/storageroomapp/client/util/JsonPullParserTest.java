@@ -0,0 +1,90 @@
+package com.storageroomapp.client.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.io.StringReader;
+
+import org.json.simple.JSONArray;
+import org.json.simple.JSONObject;
+import org.junit.Test;
+
+import com.storageroomapp.client.util.JsonPullParser.Token;
+
+public class JsonPullParserTest {
+
+	@Test
+	public void testTokenSequence() throws IOException {
+		JsonPullParser parser = new JsonPullParser(new StringReader(" { \"a\" : [ 1 , -2.5e1, true, false, null ], \"b\": {}, \"c\": [] } "));
+		Token[] expected = { Token.START_OBJECT, Token.FIELD_NAME, Token.START_ARRAY, Token.VALUE_NUMBER, Token.VALUE_NUMBER,
+				Token.VALUE_TRUE, Token.VALUE_FALSE, Token.VALUE_NULL, Token.END_ARRAY, Token.FIELD_NAME, Token.START_OBJECT,
+				Token.END_OBJECT, Token.FIELD_NAME, Token.START_ARRAY, Token.END_ARRAY, Token.END_OBJECT };
+		for (Token token : expected) {
+			assertEquals("The parser produced an unexpected token.", token, parser.nextToken());
+		}
+		assertNull("The parser should report the end of input.", parser.nextToken());
+	}
+
+	@Test
+	public void testNumbers() throws IOException {
+		JsonPullParser parser = new JsonPullParser(new StringReader("[12, -7, 79.25, 0.1, 1e3, 12345678901234567890]"));
+		parser.nextToken();
+		parser.nextToken();
+		assertEquals("Integer was not parsed.", 12, parser.getIntValue());
+		parser.nextToken();
+		assertEquals("Negative integer was not parsed.", -7L, parser.getLongValue());
+		parser.nextToken();
+		assertEquals("Decimal was not parsed.", 79.25, parser.getDoubleValue(), 0);
+		parser.nextToken();
+		assertEquals("Decimal was not parsed to the nearest double.", 0.1, parser.getDoubleValue(), 0);
+		parser.nextToken();
+		assertEquals("Exponent was not parsed.", 1000.0, parser.getDoubleValue(), 0);
+		parser.nextToken();
+		assertEquals("Numbers beyond a long should fall back to double.", 12345678901234567890.0, parser.getDoubleValue(), 0);
+	}
+
+	@Test
+	public void testReadValueMatchesJsonSimple() throws IOException {
+		JsonPullParser parser = new JsonPullParser(new StringReader("{\"s\":\"x\\ty\\u00e9\", \"n\":[1, 2.5], \"o\":{\"k\":null}}"));
+		parser.nextToken();
+		JSONObject obj = (JSONObject)parser.readValue();
+		
+		assertEquals("Escapes were not decoded.", "x\ty\u00e9", obj.get("s"));
+		JSONArray array = (JSONArray)obj.get("n");
+		assertEquals("Integers should be read as Long, like json-simple.", Long.valueOf(1), array.get(0));
+		assertEquals("Decimals should be read as Double, like json-simple.", Double.valueOf(2.5), array.get(1));
+		assertTrue("Null values should be kept.", ((JSONObject)obj.get("o")).containsKey("k"));
+	}
+
+	@Test
+	public void testSkipChildren() throws IOException {
+		JsonPullParser parser = new JsonPullParser(new StringReader("{\"skip\":{\"a\":[1,{\"b\":2}]}, \"keep\":3}"));
+		parser.nextToken();
+		parser.nextToken();
+		parser.nextToken();
+		parser.skipChildren();
+		assertEquals("skipChildren() should leave the parser on the next field.", Token.FIELD_NAME, parser.nextToken());
+		assertTrue("skipChildren() should leave the parser on the next field.", parser.textEquals("keep"));
+	}
+
+	// NEGATIVE TESTS
+
+	@Test
+	public void testMalformedJson() {
+		String[] malformed = { "{\"a\" 1}", "[1, 2", "{\"a\":tru}", "[1}", "\"open" };
+		for (String json : malformed) {
+			try {
+				JsonPullParser parser = new JsonPullParser(new StringReader(json));
+				while (parser.nextToken() != null) {
+					// drain
+				}
+				fail("Malformed json ["+json+"] should have been rejected.");
+			} catch (IOException expected) {
+				// good
+			}
+		}
+	}
+}
@@ -0,0 +1,98 @@
+package com.storageroomapp.client.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import org.junit.Test;
+
+import com.storageroomapp.client.util.RetryingTransportTest.ScriptedTransport;
+
+public class RateLimiterTest {
+
+	@Test
+	public void testBurstThenSustainedRate() throws Exception {
+		RateLimitPolicy policy = new RateLimitPolicy();
+		policy.permitsPerSecond = 50;
+		policy.burst = 5;
+		policy.maxConcurrentRequests = -1;
+		policy.acquireTimeoutMillis = -1;
+		RateLimiter limiter = new RateLimiter(policy);
+		
+		long start = System.nanoTime();
+		for (int i = 0; i < 15; i++) {
+			assertTrue("Permits should be granted when waiting is allowed.", limiter.acquire());
+			limiter.release();
+		}
+		long elapsedMillis = (System.nanoTime() - start) / 1000000;
+		// 5 from the burst, then 10 at 50/s
+		assertTrue("The sustained rate was not enforced, took "+elapsedMillis+"ms.", elapsedMillis >= 150);
+		assertEquals("Every permit should have been counted.", 15, limiter.getAcquiredCount());
+		assertTrue("Waiting time should have been recorded.", limiter.getTotalWaitMillis() > 0);
+	}
+
+	@Test
+	public void testBulkheadThroughTransport() throws Exception {
+		RateLimitPolicy policy = new RateLimitPolicy();
+		policy.permitsPerSecond = -1;
+		policy.maxConcurrentRequests = 2;
+		policy.acquireTimeoutMillis = 0;
+		RateLimiter limiter = new RateLimiter(policy);
+		ThrottlingTransport transport = new ThrottlingTransport(new ScriptedTransport(), limiter);
+		
+		InputStream first = transport.get("http://test/1");
+		InputStream second = transport.get("http://test/2");
+		assertNotNull("The first request should have been admitted.", first);
+		assertNotNull("The second request should have been admitted.", second);
+		assertEquals("Two requests should be in flight until their streams are closed.", 2, limiter.getInFlightCount());
+		assertNull("A third concurrent request should have been rejected.", transport.get("http://test/3"));
+		assertEquals("The rejection should have been counted.", 1, limiter.getRejectedCount());
+		
+		first.close();
+		assertEquals("Closing the stream should free the slot.", 1, limiter.getInFlightCount());
+		assertEquals("A request should be admitted once a slot is free.", "body200", transport.getAsString("http://test/4"));
+		second.close();
+		assertEquals("All slots should be free.", 0, limiter.getInFlightCount());
+	}
+
+	@Test
+	public void testAsyncRequestsAreLimited() {
+		RateLimitPolicy policy = new RateLimitPolicy();
+		policy.permitsPerSecond = 1000;
+		policy.maxConcurrentRequests = 3;
+		ThrottlingTransport transport = new ThrottlingTransport(new ScriptedTransport(), new RateLimiter(policy));
+		List<CompletableFuture<Boolean>> futures = new ArrayList<CompletableFuture<Boolean>>();
+		for (int i = 0; i < 20; i++) {
+			futures.add(transport.putAsync("http://test/"+i, "{}"));
+		}
+		for (CompletableFuture<Boolean> future : futures) {
+			assertTrue("Queued async requests should all succeed.", future.join());
+		}
+		assertEquals("No slot should be held once the responses are closed.", 0, transport.getRateLimiter().getInFlightCount());
+	}
+
+	// NEGATIVE TESTS
+
+	@Test
+	public void testRejectsImmediately() throws Exception {
+		RateLimitPolicy policy = new RateLimitPolicy();
+		policy.permitsPerSecond = 1;
+		policy.burst = 1;
+		policy.acquireTimeoutMillis = 0;
+		RateLimiter limiter = new RateLimiter(policy);
+		ScriptedTransport base = new ScriptedTransport();
+		RetryingTransport transport = new RetryingTransport(new ThrottlingTransport(base, limiter), new RetryPolicy());
+		
+		assertTrue("The first request should use the burst.", transport.delete("http://test/"));
+		assertFalse("The second request should be rejected without waiting.", transport.delete("http://test/"));
+		assertEquals("A rejected request must not reach the server.", 1, base.calls);
+		assertEquals("A rejected request must not be retried.", 0, transport.getRetryCount());
+	}
+}
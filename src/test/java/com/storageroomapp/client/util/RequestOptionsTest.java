@@ -0,0 +1,65 @@
+package com.storageroomapp.client.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+
+import org.junit.Test;
+
+public class RequestOptionsTest {
+
+	/**
+	 * Remembers the last request it was asked to execute
+	 */
+	static class RecordingTransport extends AbstractTransport {
+		volatile TransportRequest lastRequest = null;
+
+		public TransportResponse execute(TransportRequest request) throws IOException {
+			lastRequest = request;
+			return new TransportResponse(200, "OK", new ByteArrayInputStream(new byte[0]));
+		}
+	}
+
+	@Test
+	public void testMerge() {
+		RequestOptions defaults = RequestOptions.defaults();
+		RequestOptions override = new RequestOptions();
+		override.readTimeoutMillis = 0;
+		override.totalTimeoutMillis = 500;
+		
+		RequestOptions merged = RequestOptions.merge(override, defaults);
+		assertEquals("An unset member must come from the defaults.", defaults.connectTimeoutMillis, merged.connectTimeoutMillis);
+		assertEquals("0 is a value, it must override the default.", 0, merged.readTimeoutMillis);
+		assertEquals("A set member must override the default.", 500, merged.totalTimeoutMillis);
+		assertEquals("Merging must not change the defaults.", 60000, defaults.totalTimeoutMillis);
+	}
+
+	@Test
+	public void testMergeNulls() {
+		RequestOptions options = new RequestOptions(1, 2, 3);
+		assertSame("No override must return the defaults.", options, RequestOptions.merge(null, options));
+		assertSame("No defaults must return the override.", options, RequestOptions.merge(options, null));
+		assertNull("Nothing merged with nothing is nothing.", RequestOptions.merge(null, null));
+	}
+
+	@Test
+	public void testDeleteCarriesOptions() {
+		RecordingTransport transport = new RecordingTransport();
+		RequestOptions options = new RequestOptions(1, 2, 3);
+		
+		transport.delete("http://test/1", options);
+		assertEquals("The DELETE should have been sent.", "DELETE", transport.lastRequest.getMethod());
+		assertSame("The DELETE should carry the options of the call.", options, transport.lastRequest.getOptions());
+		
+		transport.deleteAsync("http://test/2", options).join();
+		assertEquals("The async DELETE should have been sent.", "http://test/2", transport.lastRequest.getUrl());
+		assertSame("The async DELETE should carry the options of the call.", options, transport.lastRequest.getOptions());
+		
+		transport.delete("http://test/3");
+		assertNull("A DELETE without options should carry none.", transport.lastRequest.getOptions());
+		transport.shutdown();
+	}
+}
@@ -0,0 +1,125 @@
+package com.storageroomapp.client.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.Deque;
+
+import org.junit.Test;
+
+public class RetryingTransportTest {
+
+	/**
+	 * Plays back a script of responses (status codes) and failures (IOExceptions)
+	 */
+	static class ScriptedTransport extends AbstractTransport {
+		Deque<Object> script = new ArrayDeque<Object>();
+		int calls = 0;
+
+		ScriptedTransport(Object... steps) {
+			for (Object step : steps) {
+				script.add(step);
+			}
+		}
+
+		public synchronized TransportResponse execute(TransportRequest request) throws IOException {
+			calls++;
+			Object step = script.isEmpty() ? Integer.valueOf(200) : script.poll();
+			if (step instanceof IOException) {
+				throw (IOException)step;
+			}
+			int code = ((Integer)step).intValue();
+			TransportResponse response = new TransportResponse(code, "scripted", new ByteArrayInputStream(("body"+code).getBytes("UTF-8")));
+			if (code == 429) {
+				response.setHeader("Retry-After", "0");
+			}
+			return response;
+		}
+	}
+
+	static RetryPolicy fastPolicy() {
+		RetryPolicy policy = new RetryPolicy();
+		policy.initialBackoffMillis = 1;
+		policy.maxBackoffMillis = 5;
+		return policy;
+	}
+
+	@Test
+	public void testRetriesTransientFailures() {
+		ScriptedTransport base = new ScriptedTransport(new IOException("reset"), Integer.valueOf(503), Integer.valueOf(200));
+		RetryingTransport transport = new RetryingTransport(base, fastPolicy());
+		assertEquals("The GET should have succeeded on the third attempt.", "body200", transport.getAsString("http://test/"));
+		assertEquals("Three attempts should have been made.", 3, base.calls);
+		assertEquals("Two retries should have been counted.", 2, transport.getRetryCount());
+	}
+
+	@Test
+	public void testRetriesAsync() {
+		ScriptedTransport base = new ScriptedTransport(Integer.valueOf(429), Integer.valueOf(502));
+		RetryingTransport transport = new RetryingTransport(base, fastPolicy());
+		assertTrue("The async DELETE should have succeeded on the third attempt.", transport.deleteAsync("http://test/").join());
+		assertEquals("Three attempts should have been made.", 3, base.calls);
+	}
+
+	@Test
+	public void testBackoffBounds() {
+		RetryPolicy policy = new RetryPolicy();
+		policy.jitter = 0.0;
+		assertEquals("First backoff should be the initial backoff.", 100, policy.computeBackoffMillis(1));
+		assertEquals("Backoff should grow exponentially.", 400, policy.computeBackoffMillis(3));
+		assertEquals("Backoff should be capped.", 5000, policy.computeBackoffMillis(20));
+		policy.jitter = 1.0;
+		for (int i = 0; i < 100; i++) {
+			long backoff = policy.computeBackoffMillis(2);
+			assertTrue("Jittered backoff must stay within the backoff.", (backoff >= 0) && (backoff <= 200));
+		}
+		assertEquals("Retry-After seconds should be parsed.", 7000, RetryPolicy.parseRetryAfterMillis("7"));
+		assertEquals("Retry-After dates in the past mean no delay.", 0, RetryPolicy.parseRetryAfterMillis("Wed, 21 Oct 2015 07:28:00 GMT"));
+	}
+
+	// NEGATIVE TESTS
+
+	@Test
+	public void testGivesUpAfterMaxAttempts() {
+		ScriptedTransport base = new ScriptedTransport(new IOException("1"), new IOException("2"), new IOException("3"), Integer.valueOf(200));
+		RetryingTransport transport = new RetryingTransport(base, fastPolicy());
+		assertNull("The GET should have failed once the attempts ran out.", transport.getAsString("http://test/"));
+		assertEquals("Only maxAttempts attempts should have been made.", 3, base.calls);
+	}
+
+	@Test
+	public void testDoesNotRetryPost() {
+		ScriptedTransport base = new ScriptedTransport(Integer.valueOf(503), Integer.valueOf(200));
+		RetryingTransport transport = new RetryingTransport(base, fastPolicy());
+		assertFalse("A failed POST must not be retried.", transport.post("http://test/", "{}"));
+		assertEquals("Only one attempt should have been made.", 1, base.calls);
+	}
+
+	@Test
+	public void testDoesNotRetryClientErrors() {
+		ScriptedTransport base = new ScriptedTransport(Integer.valueOf(404), Integer.valueOf(200));
+		RetryingTransport transport = new RetryingTransport(base, fastPolicy());
+		assertFalse("A 404 must not be retried.", transport.put("http://test/", "{}"));
+		assertEquals("Only one attempt should have been made.", 1, base.calls);
+	}
+
+	@Test
+	public void testDeadlineStopsRetries() {
+		RetryPolicy policy = fastPolicy();
+		policy.initialBackoffMillis = 10000;
+		policy.maxBackoffMillis = 10000;
+		policy.jitter = 0.0;
+		policy.deadlineMillis = 500;
+		ScriptedTransport base = new ScriptedTransport(Integer.valueOf(503), Integer.valueOf(200));
+		RetryingTransport transport = new RetryingTransport(base, policy);
+		long start = System.currentTimeMillis();
+		assertEquals("The failed response should be returned when the deadline forbids a retry.", "body503", transport.getAsString("http://test/"));
+		assertTrue("The deadline should have prevented waiting for the backoff.", System.currentTimeMillis() - start < 5000);
+		assertEquals("Only one attempt should have been made.", 1, base.calls);
+	}
+}
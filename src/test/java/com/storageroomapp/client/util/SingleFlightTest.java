@@ -0,0 +1,130 @@
+package com.storageroomapp.client.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+public class SingleFlightTest {
+
+	@Test
+	public void testConcurrentCallsShareOneResult() throws Exception {
+		final SingleFlight<String, Object> flight = new SingleFlight<String, Object>();
+		final CountDownLatch started = new CountDownLatch(1);
+		final CountDownLatch release = new CountDownLatch(1);
+		final AtomicInteger calls = new AtomicInteger();
+		final int callers = 8;
+		
+		ExecutorService pool = Executors.newFixedThreadPool(callers);
+		try {
+			Future<?>[] results = new Future<?>[callers];
+			results[0] = pool.submit(() -> flight.execute("url", () -> {
+				calls.incrementAndGet();
+				started.countDown();
+				try {
+					release.await();
+				} catch (InterruptedException ie) {
+					Thread.currentThread().interrupt();
+				}
+				return new Object();
+			}));
+			assertTrue("The leading call did not start.", started.await(5, TimeUnit.SECONDS));
+			for (int i = 1; i < callers; i++) {
+				results[i] = pool.submit(() -> flight.execute("url", () -> {
+					calls.incrementAndGet();
+					return new Object();
+				}));
+			}
+			while (flight.getCoalescedCount() < callers - 1) {
+				Thread.sleep(5);
+			}
+			release.countDown();
+			
+			Object shared = results[0].get(5, TimeUnit.SECONDS);
+			for (int i = 1; i < callers; i++) {
+				assertSame("Every caller must get the leader's result.", shared, results[i].get(5, TimeUnit.SECONDS));
+			}
+			assertEquals("Only one call should have been made.", 1, calls.get());
+			assertEquals("Nothing should remain in flight.", 0, flight.getInFlightCount());
+		} finally {
+			pool.shutdownNow();
+		}
+	}
+
+	@Test
+	public void testSequentialCallsRunAgain() {
+		SingleFlight<String, Integer> flight = new SingleFlight<String, Integer>();
+		AtomicInteger calls = new AtomicInteger();
+		flight.execute("url", () -> calls.incrementAndGet());
+		flight.execute("url", () -> calls.incrementAndGet());
+		assertEquals("Calls that do not overlap must not be shared.", 2, calls.get());
+	}
+
+	@Test
+	public void testAsync() {
+		SingleFlight<String, String> flight = new SingleFlight<String, String>();
+		CompletableFuture<String> pending = new CompletableFuture<String>();
+		CompletableFuture<String> first = flight.executeAsync("url", () -> pending);
+		CompletableFuture<String> second = flight.executeAsync("url", () -> CompletableFuture.completedFuture("other"));
+		assertEquals("A concurrent async call must share the call in flight.", 1, flight.getCallCount());
+		assertEquals("A concurrent async call must be counted as coalesced.", 1, flight.getCoalescedCount());
+		pending.complete("result");
+		assertEquals("The leading future must complete with the result.", "result", first.join());
+		assertEquals("The shared future must complete with the result.", "result", second.join());
+		assertEquals("A later call must start again.", "other", 
+				flight.executeAsync("url", () -> CompletableFuture.completedFuture("other")).join());
+	}
+
+	@Test
+	public void testCancelAffectsOnlyItsCaller() throws Exception {
+		final SingleFlight<String, String> flight = new SingleFlight<String, String>();
+		final CompletableFuture<String> pending = new CompletableFuture<String>();
+		CompletableFuture<String> first = flight.executeAsync("url", () -> pending);
+		CompletableFuture<String> second = flight.executeAsync("url", () -> CompletableFuture.completedFuture("other"));
+		
+		ExecutorService pool = Executors.newSingleThreadExecutor();
+		try {
+			Future<String> blocking = pool.submit(() -> flight.execute("url", () -> "other"));
+			while (flight.getCoalescedCount() < 2) {
+				Thread.sleep(5);
+			}
+			assertTrue("The first caller must be able to cancel its future.", first.cancel(false));
+			assertFalse("Cancelling one caller must not cancel the call in flight.", pending.isCancelled());
+			pending.complete("page");
+			
+			assertTrue("The cancelled caller must see its cancellation.", first.isCancelled());
+			assertEquals("A coalesced async caller must still get the result.", "page", second.join());
+			assertEquals("A coalesced sync caller must still get the result.", "page", blocking.get(5, TimeUnit.SECONDS));
+			assertEquals("Only one call should have been made.", 1, flight.getCallCount());
+		} finally {
+			pool.shutdownNow();
+		}
+	}
+
+	// NEGATIVE TESTS
+
+	@Test
+	public void testFailureIsReleased() {
+		SingleFlight<String, String> flight = new SingleFlight<String, String>();
+		try {
+			flight.execute("url", () -> {
+				throw new IllegalStateException("boom");
+			});
+			fail("The failure of the call must reach its caller.");
+		} catch (IllegalStateException expected) {
+		}
+		assertEquals("A failed call must not stay in flight.", 0, flight.getInFlightCount());
+		assertEquals("A failed call must not block the next one.", "ok", flight.execute("url", () -> "ok"));
+	}
+}
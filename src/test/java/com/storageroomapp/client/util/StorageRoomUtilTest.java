@@ -2,8 +2,16 @@ package com.storageroomapp.client.util;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
 
+import java.util.ArrayList;
 import java.util.Calendar;
+import java.util.List;
+import java.util.TimeZone;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import org.json.simple.JSONObject;
 import org.json.simple.JSONValue;
@@ -44,6 +52,122 @@ public class StorageRoomUtilTest {
 				timeStr, roundtripStr);
 	}
 
+	@Test
+	public void testTimeEpochMillis() {
+		long millis = StorageRoomUtil.storageRoomTimeStringToEpochMillis("2013-01-10T21:17:00Z");
+		assertEquals("StorageRoom time String did not convert to the right epoch millis.", 1357852620000L, millis);
+		assertEquals("Epoch millis did not convert to the right StorageRoom time String.", 
+				"2013-01-10T21:17:00Z", StorageRoomUtil.epochMillisToStorageRoomTimeString(millis));
+		assertEquals("Fractional seconds were not honored.", 1357852620250L,
+				StorageRoomUtil.storageRoomTimeStringToEpochMillis("2013-01-10T21:17:00.25Z"));
+		assertEquals("A numeric zone offset was not honored.", millis,
+				StorageRoomUtil.storageRoomTimeStringToEpochMillis("2013-01-10T22:47:00+01:30"));
+		assertEquals("A negative compact zone offset was not honored.", millis,
+				StorageRoomUtil.storageRoomTimeStringToEpochMillis("2013-01-10T16:17:00-0500"));
+		assertEquals("Dates before the epoch did not round trip.", "1969-12-31T23:59:59Z",
+				StorageRoomUtil.epochMillisToStorageRoomTimeString(-1000L));
+		
+		Calendar cal = Calendar.getInstance(TimeZone.getTimeZone("America/Los_Angeles"));
+		cal.setTimeInMillis(millis);
+		assertEquals("Calendars in other zones must serialize in GMT.", "2013-01-10T21:17:00Z",
+				StorageRoomUtil.calendarToStorageRoomTimeString(cal));
+	}
+
+	@Test
+	public void testTimeMidnight() {
+		String midnight = "2013-02-28T00:00:00Z";
+		long millis = StorageRoomUtil.storageRoomTimeStringToEpochMillis(midnight);
+		assertEquals("Midnight must serialize as hour 00.", midnight, StorageRoomUtil.epochMillisToStorageRoomTimeString(millis));
+		assertEquals("Hour 24 must parse as midnight at the start of the day.", millis,
+				StorageRoomUtil.storageRoomTimeStringToEpochMillis("2013-02-28T24:00:00Z"));
+	}
+
+	@Test
+	public void testDateEpochMillis() {
+		assertEquals("StorageRoom date String did not convert to the right epoch millis.", 1357776000000L,
+				StorageRoomUtil.storageRoomDateStringToEpochMillis("2013-01-10"));
+		assertEquals("Leap day did not round trip.", "2012-02-29",
+				StorageRoomUtil.epochMillisToStorageRoomDateString(StorageRoomUtil.storageRoomDateStringToEpochMillis("2012-02-29")));
+		assertEquals("A full time String should parse as its date.", 1357776000000L,
+				StorageRoomUtil.storageRoomDateStringToEpochMillis("2013-01-10T21:17:00Z"));
+	}
+
+	@Test
+	public void testTimeConcurrentParsing() throws Exception {
+		ExecutorService executor = Executors.newFixedThreadPool(4);
+		try {
+			List<Future<Boolean>> results = new ArrayList<Future<Boolean>>();
+			for (int t = 0; t < 4; t++) {
+				final int threadNum = t;
+				results.add(executor.submit(new Callable<Boolean>() {
+					public Boolean call() {
+						for (int i = 0; i < 10000; i++) {
+							long millis = 1357852620000L + (threadNum * 10000 + i) * 61000L;
+							String str = StorageRoomUtil.epochMillisToStorageRoomTimeString(millis);
+							Calendar cal = StorageRoomUtil.storageRoomTimeStringToCalendar(str);
+							if ((cal == null) || (cal.getTimeInMillis() != millis)) {
+								return false;
+							}
+						}
+						return true;
+					}
+				}));
+			}
+			for (Future<Boolean> result : results) {
+				assertTrue("Concurrent time parsing produced a wrong result.", result.get());
+			}
+		} finally {
+			executor.shutdown();
+		}
+	}
+
+	// NEGATIVE TESTS
+
+	@Test
+	public void testInvalidTimeStrings() {
+		String[] invalid = { "", "2013-01-10", "2013-01-10T21:17:00", "2013-13-10T21:17:00Z", "2013-02-29T21:17:00Z",
+				"2013-01-10T25:17:00Z", "2013-01-10T21:60:00Z", "2013-01-10 21:17:00Z", "2013-01-10T21:17:00.Z", 
+				"2013-01-10T21:17:00+1", "2013-01-10T21:17:00ZZ", "20x3-01-10T21:17:00Z" };
+		for (String str : invalid) {
+			assertEquals("Invalid time String ["+str+"] was accepted.", StorageRoomUtil.INVALID_EPOCH_MILLIS,
+					StorageRoomUtil.storageRoomTimeStringToEpochMillis(str));
+		}
+		assertNull("Invalid time String must convert to a null Calendar.", StorageRoomUtil.storageRoomTimeStringToCalendar("garbage"));
+		assertNull("Invalid date String must convert to a null Calendar.", StorageRoomUtil.storageRoomDateStringToCalendar("2013-1-10"));
+	}
+
+	@Test
+	public void testInvalidZoneOffsets() {
+		String[] invalid = { "2013-01-10T21:17:00+99:99", "2013-01-10T21:17:00+19:00", "2013-01-10T21:17:00-18:01", 
+				"2013-01-10T21:17:00+0560" };
+		for (String str : invalid) {
+			assertEquals("Out of range zone offset ["+str+"] was accepted.", StorageRoomUtil.INVALID_EPOCH_MILLIS,
+					StorageRoomUtil.storageRoomTimeStringToEpochMillis(str));
+		}
+		assertEquals("The widest zone offset should be accepted.", 1357852620000L - 18 * 3600000L,
+				StorageRoomUtil.storageRoomTimeStringToEpochMillis("2013-01-10T21:17:00+18:00"));
+	}
+
+	@Test
+	public void testInvalidDateStrings() {
+		String[] invalid = { "2013-01-10T", "2013-01-10Tgarbage", "2013-01-10T25:00:00Z", "2013-01-10Z", "2013-01-10x" };
+		for (String str : invalid) {
+			assertEquals("Invalid date String ["+str+"] was accepted.", StorageRoomUtil.INVALID_EPOCH_MILLIS,
+					StorageRoomUtil.storageRoomDateStringToEpochMillis(str));
+		}
+	}
+
+	@Test
+	public void testUnformattableYears() {
+		long year10000 = StorageRoomUtil.storageRoomDateStringToEpochMillis("9999-12-31") + 86400000L;
+		assertNull("A year after 9999 must not be wrapped.", StorageRoomUtil.epochMillisToStorageRoomDateString(year10000));
+		assertNull("A year after 9999 must not be wrapped.", StorageRoomUtil.epochMillisToStorageRoomTimeString(year10000));
+		long yearMinus1 = StorageRoomUtil.storageRoomDateStringToEpochMillis("0000-01-01") - 1;
+		assertNull("A year before 0000 must not be wrapped.", StorageRoomUtil.epochMillisToStorageRoomTimeString(yearMinus1));
+		assertEquals("The last four digit year should still be written.", "9999-12-31T23:59:59Z", 
+				StorageRoomUtil.epochMillisToStorageRoomTimeString(year10000 - 1000));
+	}
+
 	@Test
 	public void testDateParsingUtils() {
 		String dateStr = "2013-01-10";
@@ -0,0 +1,43 @@
+package com.storageroomapp.client.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import org.junit.Test;
+
+public class TtlCacheTest {
+
+	@Test
+	public void testLruEviction() {
+		TtlCache<String, String> cache = new TtlCache<String, String>(2, -1);
+		cache.put("a", "A");
+		cache.put("b", "B");
+		assertEquals("A live entry must be returned.", "A", cache.get("a"));
+		cache.put("c", "C");
+		assertNull("The least recently used entry must be evicted.", cache.get("b"));
+		assertEquals("A recently used entry must survive.", "A", cache.get("a"));
+		assertEquals("The eviction was not counted.", 1, cache.getEvictionCount());
+		assertEquals("The hits were not counted.", 2, cache.getHitCount());
+		assertEquals("The miss was not counted.", 1, cache.getMissCount());
+	}
+
+	@Test
+	public void testExpiry() throws InterruptedException {
+		TtlCache<String, String> cache = new TtlCache<String, String>(10, 50);
+		cache.put("a", "A");
+		assertEquals("A fresh entry must be returned.", "A", cache.get("a"));
+		Thread.sleep(80);
+		assertNull("An expired entry must not be returned.", cache.get("a"));
+		assertEquals("An expired entry must be dropped.", 0, cache.size());
+	}
+
+	@Test
+	public void testRemoveIf() {
+		TtlCache<String, String> cache = new TtlCache<String, String>(10, -1);
+		cache.put("col1/a", "A");
+		cache.put("col1/b", "B");
+		cache.put("col2/a", "C");
+		assertEquals("Two entries should match.", 2, cache.removeIf(key -> key.startsWith("col1/")));
+		assertEquals("The other entry must remain.", "C", cache.get("col2/a"));
+	}
+}
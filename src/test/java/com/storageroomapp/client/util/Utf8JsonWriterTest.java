@@ -0,0 +1,68 @@
+package com.storageroomapp.client.util;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+import org.json.simple.JSONArray;
+import org.json.simple.JSONValue;
+import org.junit.Test;
+
+public class Utf8JsonWriterTest {
+
+	@Test
+	public void testStrings() throws IOException {
+		String value = "plain \"quoted\" back\\slash\ttab\u0001 caf\u00e9 \u20ac \ud83d\ude00";
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		Utf8JsonWriter writer = new Utf8JsonWriter(out);
+		writer.writeAscii("[");
+		writer.writeString(value);
+		writer.writeAscii(", ");
+		writer.writeString(null);
+		writer.writeAscii("]");
+		writer.flush();
+		
+		String json = new String(out.toByteArray(), StandardCharsets.UTF_8);
+		JSONArray parsed = (JSONArray)JSONValue.parse(json);
+		assertEquals("The escaped string should parse back to the original.", value, parsed.get(0));
+		assertEquals("A null String should be written as null.", null, parsed.get(1));
+	}
+
+	@Test
+	public void testNumbers() throws IOException {
+		long[] values = { 0, 7, -7, 1234567890123L, Long.MAX_VALUE, Long.MIN_VALUE };
+		for (long value : values) {
+			ByteArrayOutputStream out = new ByteArrayOutputStream();
+			Utf8JsonWriter writer = new Utf8JsonWriter(out);
+			writer.writeLong(value);
+			writer.flush();
+			assertEquals("The number was not written correctly.", Long.toString(value), new String(out.toByteArray(), StandardCharsets.US_ASCII));
+		}
+	}
+
+	@Test
+	public void testSmallBuffer() throws IOException {
+		StringBuilder sb = new StringBuilder();
+		for (int i = 0; i < 200; i++) {
+			sb.append("\u00e9x").append(i);
+		}
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		Utf8JsonWriter writer = new Utf8JsonWriter(out, 16);
+		writer.writeRawString(sb.toString());
+		writer.writeRaw(new byte[100]);
+		writer.writeLong(Long.MAX_VALUE);
+		writer.flush();
+		
+		assertEquals("Every byte should be written through a small buffer.", 
+				sb.toString().getBytes(StandardCharsets.UTF_8).length + 100 + 19, out.size());
+	}
+
+	@Test
+	public void testEncodeName() {
+		assertArrayEquals("The member name was not encoded correctly.", 
+				"\"in_stock\": ".getBytes(StandardCharsets.UTF_8), Utf8JsonWriter.encodeName("in_stock"));
+	}
+}
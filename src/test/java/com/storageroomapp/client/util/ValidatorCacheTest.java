@@ -0,0 +1,80 @@
+package com.storageroomapp.client.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.function.Function;
+
+import org.junit.Test;
+
+public class ValidatorCacheTest {
+
+	/**
+	 * Serves a body with a Last-Modified date, answering 304 when the
+	 * request carries that date, and remembers the conditional headers
+	 */
+	static class LastModifiedTransport extends AbstractTransport {
+		String lastModified = "Tue, 15 Jan 2013 21:47:38 GMT";
+		String ifModifiedSince = null;
+		String ifNoneMatch = null;
+
+		public TransportResponse execute(TransportRequest request) throws IOException {
+			ifModifiedSince = request.getHeaders().get("If-Modified-Since");
+			ifNoneMatch = request.getHeaders().get("If-None-Match");
+			if (lastModified.equals(ifModifiedSince)) {
+				return new TransportResponse(304, "Not Modified", null);
+			}
+			TransportResponse response = new TransportResponse(200, "OK", new ByteArrayInputStream(lastModified.getBytes("UTF-8")));
+			response.setHeader("Last-Modified", lastModified);
+			return response;
+		}
+	}
+
+	static final Function<InputStream, String> PARSER = in -> AbstractTransport.deserializeBody(in);
+
+	@Test
+	public void testRevalidation() {
+		LastModifiedTransport transport = new LastModifiedTransport();
+		ValidatorCache cache = new ValidatorCache();
+		
+		String first = cache.get(transport, "http://test/1", null, PARSER);
+		assertEquals("The first GET should return the body.", transport.lastModified, first);
+		assertNull("The first GET must be unconditional.", transport.ifModifiedSince);
+		
+		assertSame("A 304 must return the object parsed before.", first, cache.get(transport, "http://test/1", null, PARSER));
+		assertEquals("The second GET must be conditional.", transport.lastModified, transport.ifModifiedSince);
+		assertNull("No ETag was sent, so none must be echoed.", transport.ifNoneMatch);
+		assertEquals("The 304 was not counted.", 1, cache.getNotModifiedCount());
+		
+		transport.lastModified = "Wed, 16 Jan 2013 08:00:00 GMT";
+		assertEquals("A modified resource must be parsed again.", transport.lastModified, cache.get(transport, "http://test/1", null, PARSER));
+		assertEquals("Two bodies should have been parsed.", 2, cache.getModifiedCount());
+	}
+
+	@Test
+	public void testEviction() {
+		LastModifiedTransport transport = new LastModifiedTransport();
+		ValidatorCache cache = new ValidatorCache(2);
+		cache.get(transport, "http://test/1", null, PARSER);
+		cache.get(transport, "http://test/2", null, PARSER);
+		cache.get(transport, "http://test/3", null, PARSER);
+		assertEquals("The cache must stay within its bound.", 2, cache.size());
+		
+		cache.get(transport, "http://test/1", null, PARSER);
+		assertNull("An evicted url must be fetched unconditionally.", transport.ifModifiedSince);
+	}
+
+	// NEGATIVE TESTS
+
+	@Test
+	public void testFailedParseIsNotCached() {
+		LastModifiedTransport transport = new LastModifiedTransport();
+		ValidatorCache cache = new ValidatorCache();
+		assertNull("A failed parse must return null.", cache.get(transport, "http://test/1", null, in -> null));
+		assertEquals("A failed parse must not be cached.", 0, cache.size());
+	}
+}